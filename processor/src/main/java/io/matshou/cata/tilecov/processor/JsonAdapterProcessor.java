@@ -0,0 +1,322 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * This annotation processor generates reflection-free Gson type adapters for classes
+ * that declare fields annotated with {@code SerializedArrayName} or {@code SerializedObjectName}.
+ * <p>
+ * For each such class a {@code <ClassName>JsonAdapter} is generated in the same package. The adapter
+ * reads the object straight from the token stream, handles string-or-array and string-or-object
+ * properties without building a JSON element tree and reads and assigns fields directly, which is why
+ * bound fields are required to be neither {@code private} nor {@code final}. Classes referenced by
+ * {@code SerializedObjectName} fields get an adapter generated as well. Properties that are not bound
+ * to any field are skipped. Adapters reject the same malformed values hand-written deserializers do,
+ * string-or-array properties that hold nested arrays or a single object and {@code null} values
+ * of properties bound to {@code SerializedObjectName} fields. Every package with generated adapters also gets
+ * a {@code GeneratedJsonAdapters} class that can be used to look up the adapter for a given class.
+ */
+@SupportedAnnotationTypes({ JsonAdapterProcessor.ARRAY_NAME, JsonAdapterProcessor.OBJECT_NAME })
+public class JsonAdapterProcessor extends AbstractProcessor {
+
+	static final String ARRAY_NAME = "io.matshou.cata.tilecov.json.SerializedArrayName";
+	static final String OBJECT_NAME = "io.matshou.cata.tilecov.json.SerializedObjectName";
+	static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+	static final String NULL_OBJECT_EXCEPTION = "io.matshou.cata.tilecov.json.NullJsonObjectException";
+
+	// qualified names of classes that have already been processed
+	private final Set<String> processedTypes = new HashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		Deque<TypeElement> pending = new ArrayDeque<>();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.FIELD) {
+					pending.add((TypeElement) element.getEnclosingElement());
+				}
+			}
+		}
+		Map<PackageElement, List<TypeElement>> generated = new LinkedHashMap<>();
+		while (!pending.isEmpty()) {
+			TypeElement type = pending.poll();
+			if (!processedTypes.add(type.getQualifiedName().toString())) {
+				continue;
+			}
+			if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+				String msg = "JSON adapters are generated only for top-level classes, %s will use reflection";
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+						String.format(msg, type.getQualifiedName()), type);
+				continue;
+			}
+			List<JsonProperty> properties = collectProperties(type, pending);
+			if (properties == null) {
+				continue;
+			}
+			PackageElement packageElement = getPackage(type);
+			JsonAdapterWriter adapterWriter = new JsonAdapterWriter(processingEnv, type, properties);
+			writeSourceFile(type, adapterWriter.getQualifiedName(), adapterWriter.write());
+			generated.computeIfAbsent(packageElement, p -> new ArrayList<>()).add(type);
+		}
+		for (Map.Entry<PackageElement, List<TypeElement>> entry : generated.entrySet()) {
+			PackageElement packageElement = entry.getKey();
+			String source = JsonAdapterWriter.writeRegistry(packageElement, entry.getValue());
+			String packageName = packageElement.getQualifiedName().toString();
+			String registryName = (packageName.isEmpty() ? "" : packageName + '.') + JsonAdapterWriter.REGISTRY_NAME;
+			writeSourceFile(packageElement, registryName, source);
+		}
+		// annotations are not claimed by this processor
+		return false;
+	}
+
+	/**
+	 * Collect JSON properties bound to fields of given class.
+	 *
+	 * @param type class to collect properties for.
+	 * @param pending queue to add classes referenced by object properties to.
+	 * @return list of properties or {@code null} if the class cannot have an adapter generated.
+	 */
+	private List<JsonProperty> collectProperties(TypeElement type, Deque<TypeElement> pending) {
+
+		boolean valid = true;
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(type, "%s needs to be a concrete class to have a JSON adapter generated", type);
+			valid = false;
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			error(type, "%s cannot declare type parameters to have a JSON adapter generated", type);
+			valid = false;
+		}
+		if (!hasConstructor(type, 0)) {
+			error(type, "%s needs to declare a non-private constructor without parameters", type);
+			valid = false;
+		}
+		List<JsonProperty> result = new ArrayList<>();
+		Set<String> jsonNames = new HashSet<>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			Set<Modifier> modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+				continue;
+			}
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+				error(field, "Field %s in %s cannot be private or final to be written by generated adapter",
+						field.getSimpleName(), type.getSimpleName());
+				valid = false;
+				continue;
+			}
+			JsonProperty property = createProperty(type, field);
+			if (property == null) {
+				valid = false;
+				continue;
+			}
+			if (!jsonNames.add(property.jsonName)) {
+				error(field, "JSON property '%s' is bound to more than one field in %s",
+						property.jsonName, type.getSimpleName());
+				valid = false;
+				continue;
+			}
+			if (property.objectType != null) {
+				TypeElement objectType = property.objectType;
+				if (objectType.getNestingKind() != NestingKind.TOP_LEVEL
+						|| !getPackage(objectType).equals(getPackage(type))) {
+					error(field, "Field %s in %s needs to reference a top-level class declared in the same package",
+							field.getSimpleName(), type.getSimpleName());
+					valid = false;
+					continue;
+				}
+				pending.add(objectType);
+			}
+			result.add(property);
+		}
+		return valid ? result : null;
+	}
+
+	private JsonProperty createProperty(TypeElement type, VariableElement field) {
+
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror fieldType = field.asType();
+
+		String arrayName = getAnnotationValue(field, ARRAY_NAME);
+		String objectName = getAnnotationValue(field, OBJECT_NAME);
+		String serializedName = getAnnotationValue(field, SERIALIZED_NAME);
+
+		String jsonName = field.getSimpleName().toString();
+		if (arrayName != null) {
+			jsonName = arrayName;
+		}
+		else if (objectName != null) {
+			jsonName = objectName;
+		}
+		else if (serializedName != null) {
+			jsonName = serializedName;
+		}
+		switch (fieldType.getKind()) {
+			case INT:
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.INT, null);
+			case LONG:
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.LONG, null);
+			case FLOAT:
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.FLOAT, null);
+			case DOUBLE:
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.DOUBLE, null);
+			case BOOLEAN:
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.BOOLEAN, null);
+			case DECLARED:
+				break;
+			default:
+				error(field, "Field %s in %s has unsupported type", field.getSimpleName(), type.getSimpleName());
+				return null;
+		}
+		TypeElement fieldElement = (TypeElement) types.asElement(fieldType);
+		String fieldClass = fieldElement.getQualifiedName().toString();
+		if (fieldClass.equals("java.util.List")) {
+			List<? extends TypeMirror> typeArguments = ((DeclaredType) fieldType).getTypeArguments();
+			TypeElement elementType = typeArguments.size() == 1 && typeArguments.get(0).getKind() == TypeKind.DECLARED
+					? (TypeElement) types.asElement(typeArguments.get(0)) : null;
+
+			if (elementType != null && elementType.getQualifiedName().contentEquals("java.lang.String")) {
+				if (arrayName != null) {
+					return new JsonProperty(jsonName, field, JsonProperty.Kind.STRING_OR_ARRAY, null);
+				}
+			}
+			else if (elementType != null && arrayName == null && isObjectType(elementType)) {
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.OBJECT_LIST, elementType, objectName != null);
+			}
+		}
+		else if (arrayName == null) {
+			if (fieldClass.equals("java.lang.String")) {
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.STRING, null);
+			}
+			if (isObjectType(fieldElement)) {
+				return new JsonProperty(jsonName, field, JsonProperty.Kind.OBJECT, fieldElement, objectName != null);
+			}
+		}
+		if (arrayName != null) {
+			error(field, "Field %s in %s needs to be of type java.util.List<String> to be annotated with %s",
+					field.getSimpleName(), type.getSimpleName(), ARRAY_NAME);
+		}
+		else {
+			error(field, "Field %s in %s has unsupported type", field.getSimpleName(), type.getSimpleName());
+		}
+		return null;
+	}
+
+	private PackageElement getPackage(Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	/**
+	 * @return {@code true} if given type can be read as a JSON object with a generated adapter.
+	 */
+	private static boolean isObjectType(TypeElement type) {
+
+		String name = type.getQualifiedName().toString();
+		return type.getKind() == ElementKind.CLASS && !name.startsWith("java.") && !name.startsWith("javax.");
+	}
+
+	/**
+	 * @return {@code true} if the type has a non-private constructor with given number of parameters.
+	 */
+	static boolean hasConstructor(TypeElement type, int parameterCount) {
+
+		List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (!constructor.getModifiers().contains(Modifier.PRIVATE)
+					&& constructor.getParameters().size() == parameterCount) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return {@code true} if the type has a non-private constructor with a single {@code String} parameter.
+	 */
+	static boolean hasStringConstructor(TypeElement type) {
+
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			List<? extends VariableElement> parameters = constructor.getParameters();
+			if (!constructor.getModifiers().contains(Modifier.PRIVATE) && parameters.size() == 1) {
+				TypeMirror parameterType = parameters.get(0).asType();
+				if (parameterType.getKind() == TypeKind.DECLARED && ((TypeElement) ((DeclaredType) parameterType)
+						.asElement()).getQualifiedName().contentEquals("java.lang.String")) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return string value of the annotation with given name or {@code null} if the annotation is not present.
+	 */
+	private static String getAnnotationValue(Element element, String annotationName) {
+
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+			if (!annotationType.getQualifiedName().contentEquals(annotationName)) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+					: mirror.getElementValues().entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals("value")) {
+					return String.valueOf(entry.getValue().getValue());
+				}
+			}
+		}
+		return null;
+	}
+
+	private void writeSourceFile(Element origin, String qualifiedName, String source) {
+
+		try {
+			JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedName, origin);
+			try (Writer writer = sourceFile.openWriter()) {
+				writer.write(source);
+			}
+		}
+		catch (IOException e) {
+			error(origin, "Unable to write generated source file %s: %s", qualifiedName, e.getMessage());
+		}
+	}
+
+	private void error(Element element, String format, Object... args) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+	}
+}
@@ -0,0 +1,467 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.processor;
+
+import java.util.*;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * This class writes the source code of a JSON adapter generated for a single class.
+ * <p>
+ * Generated adapters are package-private final classes that extend Gson {@code TypeAdapter}
+ * and expose a shared stateless instance through {@code INSTANCE} field. Helper methods
+ * used to read and write property values are written into each adapter for only the kinds
+ * of properties that adapter handles. Objects are written in the form they are read in,
+ * with string-or-array properties written as arrays and object properties as objects.
+ */
+final class JsonAdapterWriter {
+
+	/**
+	 * Suffix appended to class name to create the name of the generated adapter.
+	 */
+	static final String ADAPTER_SUFFIX = "JsonAdapter";
+
+	/**
+	 * Name of the class generated in each package that maps classes to their adapters.
+	 */
+	static final String REGISTRY_NAME = "GeneratedJsonAdapters";
+
+	private static final String GENERATED = "@javax.annotation.processing.Generated(\""
+			+ JsonAdapterProcessor.class.getName() + "\")";
+
+	private final List<JsonProperty> properties;
+	private final String packageName;
+	private final String typeName;
+	private final String adapterName;
+
+	private final StringBuilder sb = new StringBuilder();
+
+	JsonAdapterWriter(ProcessingEnvironment env, TypeElement type, List<JsonProperty> properties) {
+		this.properties = properties;
+		this.packageName = env.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		this.typeName = type.getSimpleName().toString();
+		this.adapterName = typeName + ADAPTER_SUFFIX;
+	}
+
+	/**
+	 * @return qualified name of the generated adapter class.
+	 */
+	String getQualifiedName() {
+		return packageName.isEmpty() ? adapterName : packageName + '.' + adapterName;
+	}
+
+	/**
+	 * @return source code of the generated adapter.
+	 */
+	String write() {
+
+		sb.setLength(0);
+		writePackage(sb, packageName);
+		sb.append("import java.io.IOException;\n");
+		sb.append("import java.util.ArrayList;\n");
+		sb.append("import java.util.List;\n\n");
+		sb.append("import com.google.gson.JsonSyntaxException;\n");
+		sb.append("import com.google.gson.TypeAdapter;\n");
+		sb.append("import com.google.gson.stream.JsonReader;\n");
+		sb.append("import com.google.gson.stream.JsonToken;\n");
+		sb.append("import com.google.gson.stream.JsonWriter;\n\n");
+		sb.append("/**\n * Reflection-free JSON adapter for {@link ").append(typeName).append("} class.\n");
+		sb.append(" * <p>\n * This class was generated by {@code JsonAdapterProcessor}, do not edit it.\n */\n");
+		sb.append(GENERATED).append('\n');
+		sb.append("final class ").append(adapterName).append(" extends TypeAdapter<").append(typeName).append("> {\n\n");
+		sb.append("\tstatic final ").append(adapterName).append(" INSTANCE = new ").append(adapterName).append("();\n\n");
+		sb.append("\tprivate ").append(adapterName).append("() {}\n\n");
+
+		writeWriteMethod();
+		sb.append("\t@Override\n");
+		sb.append("\tpublic ").append(typeName).append(" read(JsonReader in) throws IOException {\n\n");
+		sb.append("\t\tif (in.peek() == JsonToken.NULL) {\n");
+		sb.append("\t\t\tin.nextNull();\n");
+		sb.append("\t\t\treturn null;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\t").append(typeName).append(" result = new ").append(typeName).append("();\n");
+		sb.append("\t\ttry {\n");
+		sb.append("\t\t\tin.beginObject();\n");
+		sb.append("\t\t\twhile (in.hasNext()) {\n");
+		sb.append("\t\t\t\tswitch (in.nextName()) {\n");
+		for (JsonProperty property : properties) {
+			String field = "result." + property.field.getSimpleName();
+			String expression = readExpression(property, field);
+			if (property.required) {
+				expression = "requireObject(" + expression + ", \"" + escape(property.jsonName) + "\", "
+						+ property.objectType.getSimpleName() + ".class)";
+			}
+			sb.append("\t\t\t\t\tcase \"").append(escape(property.jsonName)).append("\" -> ")
+					.append(field).append(" = ").append(expression).append(";\n");
+		}
+		sb.append("\t\t\t\t\t// property is not bound to any field\n");
+		sb.append("\t\t\t\t\tdefault -> in.skipValue();\n");
+		sb.append("\t\t\t\t}\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t\tin.endObject();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tcatch (IllegalStateException | NumberFormatException e) {\n");
+		sb.append("\t\t\tthrow new JsonSyntaxException(e);\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn result;\n");
+		sb.append("\t}\n");
+
+		writeHelpers();
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private void writeWriteMethod() {
+
+		sb.append("\t@Override\n");
+		sb.append("\tpublic void write(JsonWriter out, ").append(typeName).append(" value) throws IOException {\n\n");
+		sb.append("\t\tif (value == null) {\n");
+		sb.append("\t\t\tout.nullValue();\n");
+		sb.append("\t\t\treturn;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tout.beginObject();\n");
+		for (JsonProperty property : properties) {
+			String field = "value." + property.field.getSimpleName();
+			String name = "out.name(\"" + escape(property.jsonName) + "\")";
+			switch (property.kind) {
+				case INT, LONG, DOUBLE, BOOLEAN -> sb.append("\t\t").append(name)
+						.append(".value(").append(field).append(");\n");
+				// boxed so the value is not widened to double and written with rounding error
+				case FLOAT -> sb.append("\t\t").append(name)
+						.append(".value(Float.valueOf(").append(field).append("));\n");
+				default -> {
+					// null properties are omitted like they are by Gson default adapters
+					sb.append("\t\tif (").append(field).append(" != null) {\n");
+					sb.append("\t\t\t").append(name).append(";\n");
+					sb.append("\t\t\t").append(writeStatement(property, field)).append(";\n");
+					sb.append("\t\t}\n");
+				}
+			}
+		}
+		sb.append("\t\tout.endObject();\n");
+		sb.append("\t}\n\n");
+	}
+
+	private static String writeStatement(JsonProperty property, String field) {
+
+		return switch (property.kind) {
+			case STRING -> "out.value(" + field + ")";
+			case STRING_OR_ARRAY -> "writeStringArray(out, " + field + ")";
+			case OBJECT -> adapterReference(property.objectType) + ".write(out, " + field + ")";
+			case OBJECT_LIST -> "write" + property.objectType.getSimpleName() + "List(out, " + field + ")";
+			default -> throw new IllegalArgumentException("Unexpected property kind: " + property.kind);
+		};
+	}
+
+	private String readExpression(JsonProperty property, String field) {
+
+		return switch (property.kind) {
+			case STRING -> "readString(in)";
+			case INT -> "readInt(in, " + field + ")";
+			case LONG -> "readLong(in, " + field + ")";
+			case FLOAT -> "readFloat(in, " + field + ")";
+			case DOUBLE -> "readDouble(in, " + field + ")";
+			case BOOLEAN -> "readBoolean(in, " + field + ")";
+			case STRING_OR_ARRAY -> "readStringOrArray(in, \"" + escape(property.jsonName) + "\")";
+			case OBJECT -> "read" + property.objectType.getSimpleName() + "(in)";
+			case OBJECT_LIST -> "read" + property.objectType.getSimpleName() + "List(in)";
+		};
+	}
+
+	private void writeHelpers() {
+
+		EnumSet<JsonProperty.Kind> kinds = EnumSet.noneOf(JsonProperty.Kind.class);
+		// object types keyed by qualified name so each helper is written once
+		Map<String, TypeElement> objectTypes = new TreeMap<>();
+		Map<String, TypeElement> listTypes = new TreeMap<>();
+		for (JsonProperty property : properties) {
+			kinds.add(property.kind);
+			if (property.kind == JsonProperty.Kind.OBJECT) {
+				objectTypes.put(property.objectType.getQualifiedName().toString(), property.objectType);
+			}
+			else if (property.kind == JsonProperty.Kind.OBJECT_LIST) {
+				listTypes.put(property.objectType.getQualifiedName().toString(), property.objectType);
+			}
+		}
+		boolean needsString = kinds.contains(JsonProperty.Kind.STRING) || kinds.contains(JsonProperty.Kind.STRING_OR_ARRAY);
+		for (TypeElement objectType : objectTypes.values()) {
+			needsString |= JsonAdapterProcessor.hasStringConstructor(objectType);
+		}
+		for (TypeElement objectType : listTypes.values()) {
+			needsString |= JsonAdapterProcessor.hasStringConstructor(objectType);
+		}
+		if (needsString) {
+			sb.append("\n\tprivate static String readString(JsonReader in) throws IOException {\n\n");
+			sb.append("\t\tJsonToken token = in.peek();\n");
+			sb.append("\t\tif (token == JsonToken.NULL) {\n");
+			sb.append("\t\t\tin.nextNull();\n");
+			sb.append("\t\t\treturn null;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\tif (token == JsonToken.BOOLEAN) {\n");
+			sb.append("\t\t\treturn Boolean.toString(in.nextBoolean());\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\treturn in.nextString();\n");
+			sb.append("\t}\n");
+		}
+		if (kinds.contains(JsonProperty.Kind.STRING_OR_ARRAY)) {
+			sb.append("\n\t/**\n");
+			sb.append("\t * Read a property value that can be either a single string or an array of strings.\n");
+			sb.append("\t * Array elements that are objects (like weighted sprite entries) are skipped, other objects\n");
+			sb.append("\t * and arrays are rejected like they are by {@code JsonArrayDeserializer}.\n");
+			sb.append("\t */\n");
+			sb.append("\tprivate static List<String> readStringOrArray(JsonReader in, String name) throws IOException {\n\n");
+			sb.append("\t\tJsonToken token = in.peek();\n");
+			sb.append("\t\tif (token == JsonToken.NULL) {\n");
+			sb.append("\t\t\tin.nextNull();\n");
+			sb.append("\t\t\treturn null;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\tif (token != JsonToken.BEGIN_ARRAY) {\n");
+			sb.append("\t\t\tList<String> result = new ArrayList<>(1);\n");
+			sb.append("\t\t\tresult.add(readArrayElement(in, name));\n");
+			sb.append("\t\t\treturn result;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\tList<String> result = new ArrayList<>();\n");
+			sb.append("\t\tin.beginArray();\n");
+			sb.append("\t\twhile (in.hasNext()) {\n");
+			sb.append("\t\t\tif (in.peek() == JsonToken.BEGIN_OBJECT) {\n");
+			sb.append("\t\t\t\tin.skipValue();\n");
+			sb.append("\t\t\t}\n");
+			sb.append("\t\t\telse {\n");
+			sb.append("\t\t\t\tresult.add(readArrayElement(in, name));\n");
+			sb.append("\t\t\t}\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\tin.endArray();\n");
+			sb.append("\t\treturn result;\n");
+			sb.append("\t}\n");
+
+			sb.append("\n\tprivate static String readArrayElement(JsonReader in, String name) throws IOException {\n\n");
+			sb.append("\t\tJsonToken token = in.peek();\n");
+			sb.append("\t\tif (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {\n");
+			sb.append("\t\t\tthrow new JsonSyntaxException(\"Expected a string value in '\" + name + \"' but was \"\n");
+			sb.append("\t\t\t\t\t+ token + \" at \" + in.getPath());\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\treturn readString(in);\n");
+			sb.append("\t}\n");
+
+			sb.append("\n\tprivate static void writeStringArray(JsonWriter out, List<String> values) throws IOException {\n\n");
+			sb.append("\t\tout.beginArray();\n");
+			sb.append("\t\tfor (String value : values) {\n");
+			sb.append("\t\t\tout.value(value);\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\tout.endArray();\n");
+			sb.append("\t}\n");
+		}
+		writePrimitiveHelper(kinds, JsonProperty.Kind.INT, "int", "Int", "in.nextInt()");
+		writePrimitiveHelper(kinds, JsonProperty.Kind.LONG, "long", "Long", "in.nextLong()");
+		writePrimitiveHelper(kinds, JsonProperty.Kind.FLOAT, "float", "Float", "(float) in.nextDouble()");
+		writePrimitiveHelper(kinds, JsonProperty.Kind.DOUBLE, "double", "Double", "in.nextDouble()");
+		writePrimitiveHelper(kinds, JsonProperty.Kind.BOOLEAN, "boolean", "Boolean",
+				"in.peek() == JsonToken.STRING ? Boolean.parseBoolean(in.nextString()) : in.nextBoolean()");
+
+		if (properties.stream().anyMatch(p -> p.required)) {
+			writeRequireHelper();
+		}
+		for (TypeElement objectType : objectTypes.values()) {
+			writeObjectHelper(objectType);
+		}
+		for (TypeElement objectType : listTypes.values()) {
+			writeObjectListHelper(objectType);
+		}
+	}
+
+	private void writePrimitiveHelper(Set<JsonProperty.Kind> kinds, JsonProperty.Kind kind,
+									  String typeName, String methodSuffix, String expression) {
+		if (!kinds.contains(kind)) {
+			return;
+		}
+		sb.append("\n\tprivate static ").append(typeName).append(" read").append(methodSuffix)
+				.append("(JsonReader in, ").append(typeName).append(" defaultValue) throws IOException {\n\n");
+		sb.append("\t\tif (in.peek() == JsonToken.NULL) {\n");
+		sb.append("\t\t\tin.nextNull();\n");
+		sb.append("\t\t\treturn defaultValue;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn ").append(expression).append(";\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Write a helper that rejects {@code null} values of object properties like hand-written
+	 * deserializers do, which includes empty arrays read by object property helpers.
+	 */
+	private void writeRequireHelper() {
+
+		sb.append("\n\tprivate static <T> T requireObject(T value, String name, Class<?> type) {\n\n");
+		sb.append("\t\tif (value == null) {\n");
+		sb.append("\t\t\tthrow new ").append(JsonAdapterProcessor.NULL_OBJECT_EXCEPTION).append("(name, type);\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn value;\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Write a helper that reads a property value that can be either an object,
+	 * an array of objects of which only the first one is used or a string when
+	 * the object class declares a constructor with a single {@code String} parameter.
+	 */
+	private void writeObjectHelper(TypeElement objectType) {
+
+		String name = objectType.getSimpleName().toString();
+		String adapter = adapterReference(objectType);
+
+		sb.append("\n\tprivate static ").append(name).append(" read").append(objectType.getSimpleName())
+				.append("(JsonReader in) throws IOException {\n\n");
+		sb.append("\t\tJsonToken token = in.peek();\n");
+		sb.append("\t\tif (token == JsonToken.NULL) {\n");
+		sb.append("\t\t\tin.nextNull();\n");
+		sb.append("\t\t\treturn null;\n");
+		sb.append("\t\t}\n");
+		if (JsonAdapterProcessor.hasStringConstructor(objectType)) {
+			sb.append("\t\tif (token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY) {\n");
+			sb.append("\t\t\treturn new ").append(name).append("(readString(in));\n");
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t\tif (token != JsonToken.BEGIN_ARRAY) {\n");
+		sb.append("\t\t\treturn ").append(adapter).append(".read(in);\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\t").append(name).append(" result = null;\n");
+		sb.append("\t\tin.beginArray();\n");
+		sb.append("\t\twhile (in.hasNext()) {\n");
+		sb.append("\t\t\tif (result == null) {\n");
+		sb.append("\t\t\t\tresult = ").append(adapter).append(".read(in);\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t\telse {\n");
+		sb.append("\t\t\t\t// only the first object is used\n");
+		sb.append("\t\t\t\tin.skipValue();\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tin.endArray();\n");
+		sb.append("\t\treturn result;\n");
+		sb.append("\t}\n");
+	}
+
+	/**
+	 * Write a helper that reads a property value that can be either an array of objects
+	 * or a single object which is then wrapped in a list.
+	 */
+	private void writeObjectListHelper(TypeElement objectType) {
+
+		String name = objectType.getSimpleName().toString();
+		String adapter = adapterReference(objectType);
+		boolean hasStringConstructor = JsonAdapterProcessor.hasStringConstructor(objectType);
+
+		sb.append("\n\tprivate static List<").append(name).append("> read").append(objectType.getSimpleName())
+				.append("List(JsonReader in) throws IOException {\n\n");
+		sb.append("\t\tJsonToken token = in.peek();\n");
+		sb.append("\t\tif (token == JsonToken.NULL) {\n");
+		sb.append("\t\t\tin.nextNull();\n");
+		sb.append("\t\t\treturn null;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tList<").append(name).append("> result = new ArrayList<>();\n");
+		sb.append("\t\tif (token != JsonToken.BEGIN_ARRAY) {\n");
+		writeListElement(name, adapter, hasStringConstructor, "\t\t\t");
+		sb.append("\t\t\treturn result;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tin.beginArray();\n");
+		sb.append("\t\twhile (in.hasNext()) {\n");
+		writeListElement(name, adapter, hasStringConstructor, "\t\t\t");
+		sb.append("\t\t}\n");
+		sb.append("\t\tin.endArray();\n");
+		sb.append("\t\treturn result;\n");
+		sb.append("\t}\n");
+
+		sb.append("\n\tprivate static void write").append(objectType.getSimpleName()).append("List(JsonWriter out, List<")
+				.append(name).append("> values) throws IOException {\n\n");
+		sb.append("\t\tout.beginArray();\n");
+		sb.append("\t\tfor (").append(name).append(" value : values) {\n");
+		sb.append("\t\t\t").append(adapter).append(".write(out, value);\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tout.endArray();\n");
+		sb.append("\t}\n");
+	}
+
+	private void writeListElement(String name, String adapter, boolean hasStringConstructor, String indent) {
+
+		if (hasStringConstructor) {
+			sb.append(indent).append("if (in.peek() == JsonToken.STRING) {\n");
+			sb.append(indent).append("\tresult.add(new ").append(name).append("(in.nextString()));\n");
+			sb.append(indent).append("\tcontinue;\n");
+			sb.append(indent).append("}\n");
+		}
+		sb.append(indent).append(name).append(" element = ").append(adapter).append(".read(in);\n");
+		sb.append(indent).append("if (element != null) {\n");
+		sb.append(indent).append("\tresult.add(element);\n");
+		sb.append(indent).append("}\n");
+	}
+
+	/**
+	 * Write the source code of the class that maps classes to adapters generated in given package.
+	 *
+	 * @param packageElement package the adapters were generated in.
+	 * @param types classes for which adapters were generated.
+	 * @return source code of the generated class.
+	 */
+	static String writeRegistry(PackageElement packageElement, List<TypeElement> types) {
+
+		StringBuilder sb = new StringBuilder();
+		writePackage(sb, packageElement.getQualifiedName().toString());
+		sb.append("import com.google.gson.TypeAdapter;\n\n");
+		sb.append("/**\n * This class provides access to JSON adapters generated for classes in this package.\n");
+		sb.append(" * <p>\n * This class was generated by {@code JsonAdapterProcessor}, do not edit it.\n */\n");
+		sb.append(GENERATED).append('\n');
+		sb.append("final class ").append(REGISTRY_NAME).append(" {\n\n");
+		sb.append("\tprivate ").append(REGISTRY_NAME).append("() {}\n\n");
+		sb.append("\t/**\n");
+		sb.append("\t * @param type class to get the generated adapter for.\n");
+		sb.append("\t * @return generated adapter for given class or {@code null} if no adapter was generated.\n");
+		sb.append("\t */\n");
+		sb.append("\t@SuppressWarnings(\"unchecked\")\n");
+		sb.append("\tstatic <T> TypeAdapter<T> forType(Class<T> type) {\n\n");
+		List<TypeElement> sorted = new ArrayList<>(types);
+		sorted.sort(Comparator.comparing(t -> t.getQualifiedName().toString()));
+		for (TypeElement type : sorted) {
+			sb.append("\t\tif (type == ").append(type.getSimpleName()).append(".class) {\n");
+			sb.append("\t\t\treturn (TypeAdapter<T>) ").append(type.getSimpleName())
+					.append(ADAPTER_SUFFIX).append(".INSTANCE;\n");
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t\treturn null;\n");
+		sb.append("\t}\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * @return reference to adapter instance for given class, which is always declared in the same package.
+	 */
+	private static String adapterReference(TypeElement objectType) {
+		return objectType.getSimpleName() + ADAPTER_SUFFIX + ".INSTANCE";
+	}
+
+	private static void writePackage(StringBuilder sb, String packageName) {
+		if (!packageName.isEmpty()) {
+			sb.append("package ").append(packageName).append(";\n\n");
+		}
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
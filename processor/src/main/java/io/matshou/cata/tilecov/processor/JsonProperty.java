@@ -0,0 +1,118 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.processor;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * This class represents a single JSON property bound to a field of a class
+ * for which a JSON adapter is being generated.
+ */
+final class JsonProperty {
+
+	/**
+	 * This class represents the way a JSON property value is read from and written to the token stream.
+	 */
+	enum Kind {
+
+		/**
+		 * Property is read as {@code String}, numbers and booleans are converted to strings.
+		 */
+		STRING,
+
+		/**
+		 * Property is read as primitive {@code int}.
+		 */
+		INT,
+
+		/**
+		 * Property is read as primitive {@code long}.
+		 */
+		LONG,
+
+		/**
+		 * Property is read as primitive {@code float}.
+		 */
+		FLOAT,
+
+		/**
+		 * Property is read as primitive {@code double}.
+		 */
+		DOUBLE,
+
+		/**
+		 * Property is read as primitive {@code boolean}.
+		 */
+		BOOLEAN,
+
+		/**
+		 * Property can be either a string or an array of strings and is read as {@code List<String>}.
+		 */
+		STRING_OR_ARRAY,
+
+		/**
+		 * Property can be either a string or an object and is read with the object type adapter.
+		 */
+		OBJECT,
+
+		/**
+		 * Property can be either an object or an array of objects and is read as {@code List}.
+		 */
+		OBJECT_LIST
+	}
+
+	/**
+	 * Name of the JSON property.
+	 */
+	final String jsonName;
+
+	/**
+	 * Field that stores the property value.
+	 */
+	final VariableElement field;
+
+	/**
+	 * The way property value is read from and written to the token stream.
+	 */
+	final Kind kind;
+
+	/**
+	 * Type of the object read by {@link Kind#OBJECT} and {@link Kind#OBJECT_LIST} properties,
+	 * {@code null} for all other kinds of properties.
+	 */
+	final TypeElement objectType;
+
+	/**
+	 * Whether a {@code null} value of the property is rejected, which is the case
+	 * for object properties bound to fields annotated with {@code SerializedObjectName}.
+	 */
+	final boolean required;
+
+	JsonProperty(String jsonName, VariableElement field, Kind kind, TypeElement objectType) {
+		this(jsonName, field, kind, objectType, false);
+	}
+
+	JsonProperty(String jsonName, VariableElement field, Kind kind, TypeElement objectType, boolean required) {
+		this.jsonName = jsonName;
+		this.field = field;
+		this.kind = kind;
+		this.objectType = objectType;
+		this.required = required;
+	}
+}
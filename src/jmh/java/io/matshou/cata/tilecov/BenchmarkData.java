@@ -0,0 +1,105 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+
+/**
+ * Synthetic game directory used as benchmark input.
+ * <p>
+ * The directory is written by {@link GameDataGenerator} with a fixed seed to a temporary directory,
+ * so every benchmark run measures the same input. It contains JSON files with the requested amount
+ * of objects and a single tileset in {@code gfx/bench_tileset} that covers half of those objects.
+ */
+public final class BenchmarkData {
+
+	private static final long SEED = 0x7113C0FL;
+
+	private final GeneratedGameData data;
+
+	private BenchmarkData(GeneratedGameData data) {
+		this.data = data;
+	}
+
+	/**
+	 * Write a new synthetic game directory to a temporary directory.
+	 *
+	 * @param objectCount total number of objects in all JSON files.
+	 * @param fileCount number of JSON files to spread the objects over.
+	 * @return new instance of {@code BenchmarkData}.
+	 *
+	 * @throws IOException when an I/O error occurred while writing files.
+	 */
+	public static BenchmarkData create(int objectCount, int fileCount) throws IOException {
+
+		return new BenchmarkData(GameDataGenerator.Builder.create()
+				.withSeed(SEED)
+				.withObjectCount(objectCount)
+				.withObjectsPerFile((objectCount + fileCount - 1) / fileCount)
+				.withTileset("bench_tileset", 0.5)
+				.build().generate(Files.createTempDirectory("tilecov-bench")));
+	}
+
+	/**
+	 * @return path to synthetic game directory.
+	 */
+	public Path getGameDir() {
+		return data.getGameDir();
+	}
+
+	/**
+	 * @return paths to generated JSON files in order of creation.
+	 */
+	public ImmutableList<Path> getJsonFiles() {
+		return data.getJsonFiles();
+	}
+
+	/**
+	 * @return path to generated tileset directory.
+	 */
+	public Path getTilesetDir() {
+		return data.getTilesetDirs().get(0);
+	}
+
+	/**
+	 * Delete the synthetic game directory with all of its contents.
+	 *
+	 * @throws IOException when an I/O error occurred while deleting files.
+	 */
+	public void delete() throws IOException {
+
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(data.getGameDir())) {
+			paths = stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+		}
+		for (Path path : paths) {
+			Files.deleteIfExists(path);
+		}
+	}
+}
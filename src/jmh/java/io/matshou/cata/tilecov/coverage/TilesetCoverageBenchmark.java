@@ -0,0 +1,88 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.CopyFromResolver;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
+import io.matshou.cata.tilecov.tile.CataTileset;
+
+/**
+ * Measures construction of {@link TilesetCoverage} from parsed objects and a loaded tileset,
+ * both when the builder has to build the {@code looks_like} graph and when a graph is reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TilesetCoverageBenchmark {
+
+	@Param({ "10000", "100000" })
+	int objectCount;
+
+	private BenchmarkData data;
+	private CataTileset tileset;
+	private final Map<Path, Set<CataJsonObject>> objects = new TreeMap<>();
+	private LooksLikeGraph graph;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		data = BenchmarkData.create(objectCount, 20);
+		tileset = new CataTileset(data.getTilesetDir());
+		for (Path jsonFile : data.getJsonFiles()) {
+			objects.put(jsonFile, new HashSet<>(CataJsonLoader.STREAMING.load(jsonFile).orElseThrow()));
+		}
+		graph = LooksLikeGraph.of(objects.values(), CopyFromResolver.of(objects.values()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	private TilesetCoverage.Builder createBuilder() {
+
+		TilesetCoverage.Builder builder = TilesetCoverage.Builder.create(tileset).excludeOverlays();
+		for (Map.Entry<Path, Set<CataJsonObject>> entry : objects.entrySet()) {
+			builder.withCataJsonObjects(entry.getKey(), entry.getValue());
+		}
+		return builder;
+	}
+
+	@Benchmark
+	public TilesetCoverage build() {
+		return createBuilder().build();
+	}
+
+	@Benchmark
+	public TilesetCoverage buildWithGraph() {
+		return createBuilder().withLooksLikeGraph(graph).build();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.tile.CataTileset;
+
+/**
+ * Measures rendering of coverage report pages to output directory. Pages are rendered and
+ * hashed on every invocation, but since coverage does not change between invocations only
+ * the first invocation moves pages in place, which is the common case for repeated runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TilesetCoverageReportBenchmark {
+
+	/** Number of JSON files, each file is rendered as a single report table row. */
+	@Param({ "100", "2000" })
+	int fileCount;
+
+	private BenchmarkData data;
+	private TilesetCoverageReport report;
+	private Path outputDir;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		data = BenchmarkData.create(fileCount * 10, fileCount);
+		TilesetCoverage.Builder builder = TilesetCoverage.Builder
+				.create(new CataTileset(data.getTilesetDir())).excludeOverlays();
+		for (Path jsonFile : data.getJsonFiles()) {
+			builder.withCataJsonObjects(jsonFile, new HashSet<>(CataJsonLoader.STREAMING.load(jsonFile).orElseThrow()));
+		}
+		report = new TilesetCoverageReport(Set.of(builder.build()));
+		outputDir = Files.createDirectories(data.getGameDir().resolve("reports"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	@Benchmark
+	public ImmutableSortedSet<Path> writeToFile() throws IOException {
+		return report.writeToFile(outputDir);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+
+/**
+ * Measures matching of all objects in a file tree against {@link CataIdentifiableFilter} values,
+ * the same way filters are applied before objects are classified for coverage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CataIdentifiableFilterBenchmark {
+
+	@Param({ "10000" })
+	int objectCount;
+
+	@Param({ "NO_EMPTY_ID", "NO_OVERLAYS" })
+	CataIdentifiableFilter filter;
+
+	private List<CataJsonObject> objects;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		BenchmarkData data = BenchmarkData.create(objectCount, 1);
+		try {
+			objects = new ArrayList<>();
+			for (Path jsonFile : data.getJsonFiles()) {
+				objects.addAll(CataJsonLoader.STREAMING.load(jsonFile).orElseThrow());
+			}
+		}
+		finally {
+			data.delete();
+		}
+	}
+
+	@Benchmark
+	public int match() {
+
+		int matched = 0;
+		for (CataJsonObject object : objects) {
+			if (filter.match(object)) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+}
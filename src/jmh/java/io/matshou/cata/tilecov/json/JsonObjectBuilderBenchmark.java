@@ -0,0 +1,90 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.gson.reflect.TypeToken;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+
+/**
+ * Measures deserialization of Cataclysm JSON files with {@link JsonObjectBuilder}
+ * and {@link CataJsonDeserializer}, with the {@link CataJsonLoader#STREAMING streaming}
+ * loader as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonObjectBuilderBenchmark {
+
+	@Param({ "1000", "10000" })
+	int objectCount;
+
+	private BenchmarkData data;
+	private Path jsonFile;
+	private String json;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		data = BenchmarkData.create(objectCount, 1);
+		jsonFile = data.getJsonFiles().get(0);
+		json = Files.readString(jsonFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	@Benchmark
+	public Optional<List<CataJsonObject>> buildAsListFromFile() throws IOException {
+
+		return JsonObjectBuilder.<CataJsonObject>create()
+				.ofType(CataJsonObject.class)
+				.withListTypeToken(new TypeToken<>() {})
+				.withDeserializer(CataJsonDeserializer.class)
+				.buildAsList(jsonFile);
+	}
+
+	@Benchmark
+	public Optional<List<CataJsonObject>> buildAsListFromString() {
+
+		return JsonObjectBuilder.<CataJsonObject>create()
+				.ofType(CataJsonObject.class)
+				.withListTypeToken(new TypeToken<>() {})
+				.withDeserializer(CataJsonDeserializer.class)
+				.buildAsList(json);
+	}
+
+	@Benchmark
+	public Optional<List<CataJsonObject>> streamingLoader() throws IOException {
+		return CataJsonLoader.STREAMING.load(jsonFile);
+	}
+}
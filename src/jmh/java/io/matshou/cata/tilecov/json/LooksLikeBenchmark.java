@@ -0,0 +1,92 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+
+/**
+ * Measures resolution of {@code looks_like} references of all objects that define them,
+ * by linear search with {@link CataJsonObject#looksLikeWhat(Set)} and by lookup in a prebuilt
+ * {@link LooksLikeGraph}, and the cost of building the graph itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LooksLikeBenchmark {
+
+	@Param({ "1000", "5000" })
+	int objectCount;
+
+	private Set<CataJsonObject> objects;
+	private List<CataJsonObject> references;
+	private LooksLikeGraph graph;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		BenchmarkData data = BenchmarkData.create(objectCount, 1);
+		try {
+			objects = new HashSet<>();
+			for (Path jsonFile : data.getJsonFiles()) {
+				objects.addAll(CataJsonLoader.STREAMING.load(jsonFile).orElseThrow());
+			}
+		}
+		finally {
+			data.delete();
+		}
+		references = new ArrayList<>();
+		for (CataJsonObject object : objects) {
+			if (!object.getLooksLike().isEmpty()) {
+				references.add(object);
+			}
+		}
+		graph = LooksLikeGraph.of(List.of(objects));
+	}
+
+	@Benchmark
+	public void looksLikeWhat(Blackhole blackhole) {
+
+		for (CataJsonObject object : references) {
+			blackhole.consume(object.looksLikeWhat(objects));
+		}
+	}
+
+	@Benchmark
+	public void resolveWithGraph(Blackhole blackhole) {
+
+		for (CataJsonObject object : references) {
+			blackhole.consume(graph.resolve(object));
+		}
+	}
+
+	@Benchmark
+	public LooksLikeGraph buildGraph() {
+		return LooksLikeGraph.of(List.of(objects));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.gson.reflect.TypeToken;
+
+import io.matshou.cata.tilecov.BenchmarkData;
+import io.matshou.cata.tilecov.tile.TileIdIndex;
+
+/**
+ * Measures loading of large tileset {@code tile_config.json} files, both complete
+ * deserialization with {@link TileConfigJsonDeserializer} and the tile-id-only
+ * {@link TileIdIndex} fast path used when tilesets are loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileConfigBenchmark {
+
+	/** Number of objects, about half of which have a tile in the tileset. */
+	@Param({ "20000", "200000" })
+	int objectCount;
+
+	private BenchmarkData data;
+	private Path configFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		data = BenchmarkData.create(objectCount, 1);
+		configFile = data.getTilesetDir().resolve("tile_config.json");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		data.delete();
+	}
+
+	@Benchmark
+	public Optional<TileConfigJsonObject> deserialize() throws IOException {
+
+		return JsonObjectBuilder.<TileConfigJsonObject>create()
+				.ofType(TileConfigJsonObject.class)
+				.withTypeToken(new TypeToken<>() {})
+				.withDeserializer(TileConfigJsonDeserializer.class)
+				.build(configFile);
+	}
+
+	@Benchmark
+	public TileIdIndex readTileIdIndex() throws IOException {
+		return TileIdIndex.read(configFile);
+	}
+}
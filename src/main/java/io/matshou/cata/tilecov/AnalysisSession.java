@@ -0,0 +1,301 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import io.matshou.cata.tilecov.config.Config;
+import io.matshou.cata.tilecov.profile.Profiler;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+import io.matshou.cata.tilecov.tile.ParseCache;
+
+/**
+ * This class represents the context of a single coverage analysis.
+ * <p>
+ * The session carries everything an analysis needs besides the game files themselves:
+ * configuration, game and output directory, parse cache, executors used to parse files
+ * and evaluate tilesets, dictionary that maps ids to bitset keys, and profiler. Sessions
+ * do not share analysis state, so any number of sessions can run independent analyses
+ * in the same process at the same time. Note that {@link io.matshou.cata.tilecov.profile.Metrics Metrics}
+ * are still shared by all sessions, since they describe the whole process.
+ * <p>
+ * Executors are created by the session and owned by it, close the session
+ * to shut them down once the analysis is finished.
+ */
+public final class AnalysisSession implements Closeable {
+
+	private final Config config;
+	private final Path gameDir;
+	private final @Nullable Path outputDir;
+	private final @Nullable ParseCache cache;
+	private final @Nullable ForkJoinPool pool;
+	private final @Nullable ExecutorService tilesetExecutor;
+	private volatile IdDictionary idDictionary = new IdDictionary();
+	private final Profiler profiler;
+
+	private AnalysisSession(Builder builder) {
+
+		config = builder.config;
+		gameDir = builder.gameDir;
+		outputDir = builder.outputDir;
+		cache = builder.cache;
+		profiler = builder.profiler;
+		// files are parsed on the calling thread when parallel parsing is not configured
+		pool = builder.parseThreads > 1 ? new ForkJoinPool(builder.parseThreads) : null;
+		// tilesets are loaded on the calling thread when parallel loading is not configured
+		tilesetExecutor = builder.tilesetThreads > 1 ? Executors.newFixedThreadPool(builder.tilesetThreads) : null;
+	}
+
+	/**
+	 * This builder is used to construct a {@link AnalysisSession} object.
+	 * <p>
+	 * Call {@link #create(Path)} to create a new builder and {@link #build()}
+	 * to instruct the builder to create a new {@code AnalysisSession} instance.
+	 */
+	public static class Builder {
+
+		private final Path gameDir;
+		private Config config = Config.defaults();
+		private @Nullable Path outputDir;
+		private @Nullable ParseCache cache;
+		private int parseThreads = 1, tilesetThreads = 1;
+		private Profiler profiler = Profiler.disabled();
+
+		private Builder(Path gameDir) {
+			this.gameDir = gameDir;
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for given game directory. Unless configured
+		 * otherwise, the session parses files and evaluates tilesets on the calling thread,
+		 * does not cache parsed files and has no output directory.
+		 *
+		 * @param gameDir path to Cataclysm game directory.
+		 * @return new instance of {@code Builder}.
+		 */
+		@Contract("_ -> new")
+		public static Builder create(Path gameDir) {
+			return new Builder(gameDir);
+		}
+
+		/**
+		 * Configure the builder to create session with given configuration. Output directory,
+		 * parse cache and number of threads are configured from respective configuration properties,
+		 * and can be overridden by calling other builder methods afterwards.
+		 *
+		 * @param config configuration of the session.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withConfig(Config config) {
+
+			this.config = config;
+			File configOutputDir = config.getProperty(Config.Entry.OUTPUT_DIR.name, File.class);
+			if (configOutputDir != null) {
+				outputDir = configOutputDir.toPath();
+			}
+			File cacheDir = config.getProperty(Config.Entry.CACHE_DIR.name, File.class);
+			Boolean cacheHash = config.getProperty(Config.Entry.CACHE_HASH.name, Boolean.class);
+			cache = cacheDir != null ? new ParseCache(cacheDir.toPath(), Boolean.TRUE.equals(cacheHash)) : null;
+
+			Integer configParseThreads = config.getProperty(Config.Entry.PARSE_THREADS.name, Integer.class);
+			if (configParseThreads != null) {
+				parseThreads = configParseThreads;
+			}
+			Integer configTilesetThreads = config.getProperty(Config.Entry.TILESET_THREADS.name, Integer.class);
+			if (configTilesetThreads != null) {
+				tilesetThreads = configTilesetThreads;
+			}
+			return this;
+		}
+
+		/**
+		 * Configure the builder to write coverage reports and other output to given directory.
+		 *
+		 * @param outputDir path to output directory.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withOutputDir(Path outputDir) {
+			this.outputDir = outputDir;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load files from given cache.
+		 *
+		 * @param cache cache to load files from or {@code null} to always parse files.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withCache(@Nullable ParseCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to parse files in parallel on given number of threads.
+		 *
+		 * @param threads number of threads, value of {@code 1} parses files on the calling thread.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException if given number of threads is not positive.
+		 */
+		@Contract("_ -> this")
+		public Builder withParseThreads(int threads) {
+
+			if (threads < 1) {
+				throw new IllegalArgumentException("Number of parse threads has to be positive: " + threads);
+			}
+			parseThreads = threads;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load and evaluate tilesets in parallel on given number of threads.
+		 *
+		 * @param threads number of threads, value of {@code 1} loads tilesets on the calling thread.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException if given number of threads is not positive.
+		 */
+		@Contract("_ -> this")
+		public Builder withTilesetThreads(int threads) {
+
+			if (threads < 1) {
+				throw new IllegalArgumentException("Number of tileset threads has to be positive: " + threads);
+			}
+			tilesetThreads = threads;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to record measurements of the analysis with given profiler.
+		 *
+		 * @param profiler profiler to record measurements with.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withProfiler(Profiler profiler) {
+			this.profiler = profiler;
+			return this;
+		}
+
+		/**
+		 * @return new instance of {@code AnalysisSession} based on builder configuration.
+		 */
+		@Contract("-> new")
+		public AnalysisSession build() {
+			return new AnalysisSession(this);
+		}
+	}
+
+	/**
+	 * @return configuration of this session.
+	 */
+	public Config getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return path to Cataclysm game directory.
+	 */
+	public Path getGameDir() {
+		return gameDir;
+	}
+
+	/**
+	 * @return path to output directory or {@code null} if not configured.
+	 */
+	public @Nullable Path getOutputDir() {
+		return outputDir;
+	}
+
+	/**
+	 * @return cache to load parsed files from or {@code null} if files are always parsed.
+	 */
+	public @Nullable ParseCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return pool to parse files on or {@code null} if files are parsed on the calling thread.
+	 */
+	public @Nullable ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * @return executor to load and evaluate tilesets on
+	 * or {@code null} if tilesets are loaded on the calling thread.
+	 */
+	public @Nullable ExecutorService getTilesetExecutor() {
+		return tilesetExecutor;
+	}
+
+	/**
+	 * @return dictionary used to map tile and object ids to keys.
+	 */
+	public IdDictionary getIdDictionary() {
+		return idDictionary;
+	}
+
+	/**
+	 * Replace the dictionary of this session with a new empty dictionary. Ids are never removed
+	 * from a dictionary, so this is how ids that are no longer used are released. Coverage that
+	 * was computed with the previous dictionary keeps using it.
+	 *
+	 * @return the new dictionary.
+	 */
+	public IdDictionary renewIdDictionary() {
+
+		IdDictionary dictionary = new IdDictionary();
+		idDictionary = dictionary;
+		return dictionary;
+	}
+
+	/**
+	 * @return profiler to record measurements with.
+	 */
+	public Profiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Shut down executors of this session. Tasks that were already submitted are completed,
+	 * but the session should not be used to start new analyses after it has been closed.
+	 */
+	@Override
+	public void close() {
+
+		if (pool != null) {
+			pool.shutdown();
+		}
+		if (tilesetExecutor != null) {
+			tilesetExecutor.shutdown();
+		}
+	}
+}
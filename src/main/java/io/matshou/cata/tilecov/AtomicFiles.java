@@ -0,0 +1,84 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class provides helpers to replace output files atomically, so readers of
+ * output files never observe partially written files.
+ * <p>
+ * Write new contents to a file created with {@link #createTempFile(Path)}
+ * and then move it in place of the target file with {@link #moveAtomically(Path, Path)}.
+ */
+public final class AtomicFiles {
+
+	private AtomicFiles() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Create temporary file in the same directory as given target file,
+	 * so it can later be atomically moved in place of the target file.
+	 * Unlike {@link Files#createTempFile} the file is created with default
+	 * permissions, which are kept by the target file after it is moved.
+	 *
+	 * @param target path to file the temporary file will replace.
+	 * @return path to created temporary file.
+	 *
+	 * @throws IOException when an I/O error occurred while creating the file.
+	 */
+	public static Path createTempFile(Path target) throws IOException {
+
+		String prefix = '.' + target.getFileName().toString() + '.';
+		while (true) {
+			Path tempFile = target.resolveSibling(prefix + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+			try {
+				return Files.createFile(tempFile);
+			}
+			catch (FileAlreadyExistsException e) {
+				// try again with another name
+			}
+		}
+	}
+
+	/**
+	 * Move given source file to target location, replacing target file atomically
+	 * if supported by file system.
+	 *
+	 * @param source path to file to move.
+	 * @param target path to file to replace.
+	 *
+	 * @throws IOException when an I/O error occurred while moving the file.
+	 */
+	public static void moveAtomically(Path source, Path target) throws IOException {
+
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This class provides helpers to write strings to binary data streams and read them back.
+ * <p>
+ * Strings are written as UTF-8 encoded bytes prefixed with their length, unlike
+ * {@link DataOutput#writeUTF(String)} which fails for strings longer than 64KB.
+ */
+public final class DataStrings {
+
+	private DataStrings() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Write given string to output, it can be read back with {@link #readString(DataInput)}.
+	 *
+	 * @param out output to write the string to.
+	 * @param value string to write or {@code null}.
+	 *
+	 * @throws IOException if an I/O error occurred while writing.
+	 */
+	public static void writeString(DataOutput out, @Nullable String value) throws IOException {
+
+		if (value == null) {
+			// negative length marks null strings
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutput, String)} from given input.
+	 *
+	 * @param in input to read the string from.
+	 * @return string read from the input or {@code null} if {@code null} was written.
+	 *
+	 * @throws IOException if an I/O error occurred while reading.
+	 */
+	public static @Nullable String readString(DataInput in) throws IOException {
+
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -18,26 +18,33 @@
 package io.matshou.cata.tilecov;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
+import org.jetbrains.annotations.Nullable;
+
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableSet;
 
 import io.matshou.cata.tilecov.config.Config;
-import io.matshou.cata.tilecov.coverage.TilesetCoverage;
-import io.matshou.cata.tilecov.coverage.TilesetCoverageReport;
-import io.matshou.cata.tilecov.json.CataJsonObject;
-import io.matshou.cata.tilecov.tile.CataJsonFileTree;
+import io.matshou.cata.tilecov.coverage.CoverageDiff;
+import io.matshou.cata.tilecov.coverage.CoverageExport;
+import io.matshou.cata.tilecov.coverage.CoverageServer;
+import io.matshou.cata.tilecov.coverage.CoverageSnapshot;
+import io.matshou.cata.tilecov.coverage.CoverageWatcher;
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+import io.matshou.cata.tilecov.profile.Metrics;
+import io.matshou.cata.tilecov.profile.Profiler;
+import io.matshou.cata.tilecov.tile.ParseCache;
 
 public class Main {
 
-	static final Map<Argument, Object> APP_ARGS = new HashMap<>();
 	private static final Splitter SPLITTER = Splitter.on("=");
+	private static final Splitter EXPORT_SPLITTER = Splitter.on(",").trimResults().omitEmptyStrings();
 
 	/**
 	 * Represents available application arguments.
@@ -71,10 +78,114 @@ public class Main {
 			void validate(String value) {
 				// output directory path has to NOT point to an existing file
 				Path outputDir = ((Path) getAsObject(value));
-				if (java.nio.file.Files.isRegularFile(outputDir)) {
+				if (Files.isRegularFile(outputDir)) {
 					throw new IllegalArgumentException("Output directory needs to be a directory: " + value);
 				}
 			}
+		},
+		MODE("mode", "MODE", true) {
+			@Override
+			Object getAsObject(String value) {
+				return !value.isEmpty() ? Mode.valueOf(value.toUpperCase(Locale.ROOT)) : Mode.REPORT;
+			}
+
+			@Override
+			void validate(String value) {
+				try {
+					getAsObject(value);
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown application mode: " + value);
+				}
+			}
+		},
+		DIFF_BEFORE("before", "DIFF_BEFORE", true) {
+			@Override
+			@Nullable Object getAsObject(String value) {
+				return !value.isEmpty() ? Paths.get(value) : null;
+			}
+
+			@Override
+			void validate(String value) {
+				// has to be either a game directory or a snapshot file
+				if (!Files.exists(Paths.get(value))) {
+					throw new IllegalArgumentException("Game directory or snapshot file does not exist: " + value);
+				}
+			}
+		},
+		DIFF_AFTER("after", "DIFF_AFTER", true) {
+			@Override
+			@Nullable Object getAsObject(String value) {
+				return DIFF_BEFORE.getAsObject(value);
+			}
+
+			@Override
+			void validate(String value) {
+				DIFF_BEFORE.validate(value);
+			}
+		},
+		EXPORT("export", "EXPORT", true) {
+			@Override
+			Object getAsObject(String value) {
+
+				Set<CoverageExport> exports = EnumSet.noneOf(CoverageExport.class);
+				for (String format : EXPORT_SPLITTER.split(value)) {
+					exports.add(CoverageExport.of(format));
+				}
+				return exports;
+			}
+
+			@Override
+			void validate(String value) {
+				// throws exception for unknown export formats
+				getAsObject(value);
+			}
+		},
+		GENERATOR("generate", "GENERATE", true) {
+			@Override
+			Object getAsObject(String value) {
+				return GameDataGenerator.Builder.parse(value).build();
+			}
+
+			@Override
+			void validate(String value) {
+				// throws exception for unknown or malformed generator options
+				getAsObject(value);
+			}
+		},
+		PROFILE("profile", "PROFILE", true) {
+			@Override
+			Object getAsObject(String value) {
+				return Boolean.parseBoolean(value);
+			}
+
+			@Override
+			void validate(String value) {
+				if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+					throw new IllegalArgumentException("Expected true or false for profile argument: " + value);
+				}
+			}
+		},
+		PORT("port", "PORT", true) {
+			@Override
+			Object getAsObject(String value) {
+				return !value.isEmpty() ? Integer.parseInt(value.trim()) : 8080;
+			}
+
+			@Override
+			void validate(String value) {
+
+				int port;
+				try {
+					port = (Integer) getAsObject(value);
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Port is not a number: " + value);
+				}
+				if (port < 0 || port > 65535) {
+					throw new IllegalArgumentException("Port out of range: " + value);
+				}
+			}
 		};
 		final String appArgName, sysPropName;
 		private final boolean optional;
@@ -85,7 +196,7 @@ public class Main {
 		 * @param value string to convert.
 		 * @return given argument value as {@code Object}.
 		 */
-		abstract Object getAsObject(String value);
+		abstract @Nullable Object getAsObject(String value);
 
 		/**
 		 * Validate the given argument value for this argument.
@@ -103,6 +214,32 @@ public class Main {
 		}
 	}
 
+	/**
+	 * Represents modes in which the application can run.
+	 */
+	enum Mode {
+		/**
+		 * Write coverage reports once and exit.
+		 */
+		REPORT,
+		/**
+		 * Write coverage reports and keep running, updating reports whenever game files change.
+		 */
+		WATCH,
+		/**
+		 * Write differences in coverage between two game directories or coverage snapshots.
+		 */
+		DIFF,
+		/**
+		 * Generate synthetic game data in output directory.
+		 */
+		GENERATE,
+		/**
+		 * Write coverage reports and keep running, serving reports and coverage queries over HTTP on localhost.
+		 */
+		SERVE
+	}
+
 	/**
 	 * Cata-TileCov application entry point.
 	 * <p>
@@ -113,54 +250,184 @@ public class Main {
 	 */
 	public static void main(String[] args) throws IOException {
 
-		// initialize configuration file
-		Config.initialize();
+		// load configuration file
+		Config config = Config.load();
 
 		// parse and validate app arguments
-		handleAppArgs(args);
+		Map<Argument, Object> appArgs = handleAppArgs(args, config);
 
-		Path gameDir = getGameDirectory();
-		Path gameJsonDir = gameDir.resolve("data/json");
-		if (!gameJsonDir.toFile().exists()) {
-			throw new FileNotFoundException("Unable to find 'data/json' in game root directory: " + gameDir);
+		Path outputDir = (Path) appArgs.get(Argument.OUTPUT_DIR);
+		if (appArgs.get(Argument.MODE) == Mode.GENERATE) {
+			GeneratedGameData data = ((GameDataGenerator) appArgs.get(Argument.GENERATOR)).generate(outputDir);
+			System.out.printf("Generated %d objects in %d files and %d tilesets in %s%n", data.getObjectCount(),
+					data.getJsonFiles().size(), data.getTilesetDirs().size(), data.getGameDir());
+			return;
 		}
-		Path gfxDir = gameDir.resolve("gfx");
-		if (!gfxDir.toFile().exists()) {
-			throw new FileNotFoundException("Unable to find 'gfx' directory in: " + gameDir);
+		Profiler profiler = Boolean.TRUE.equals(appArgs.get(Argument.PROFILE))
+				? Profiler.create() : Profiler.disabled();
+		// expose live counters through JMX while the application is running
+		Metrics.register();
+		File metricsDir = config.getProperty(Config.Entry.METRICS_DIR.name, File.class);
+
+		try (AnalysisSession session = AnalysisSession.Builder.create(getGameDirectory(appArgs))
+				.withConfig(config).withOutputDir(outputDir).withProfiler(profiler).build()) {
+			if (appArgs.get(Argument.MODE) == Mode.DIFF) {
+				Path before = (Path) appArgs.get(Argument.DIFF_BEFORE);
+				Path after = (Path) appArgs.get(Argument.DIFF_AFTER);
+				if (before == null || after == null) {
+					String msg = "Diff mode requires both %s and %s application arguments";
+					throw new IllegalStateException(String.format(msg,
+							Argument.DIFF_BEFORE.appArgName, Argument.DIFF_AFTER.appArgName));
+				}
+				CoverageDiff diff = CoverageDiff.of(
+						openSnapshot(before, outputDir.resolve("before.snapshot"), session),
+						openSnapshot(after, outputDir.resolve("after.snapshot"), session)
+				);
+				try (Profiler.Phase ignored = profiler.phase("write diff")) {
+					diff.writeToFile(outputDir);
+				}
+				writeProfile(profiler, outputDir);
+				writeMetrics(metricsDir);
+				for (CoverageDiff.TilesetDiff tileset : diff.getTilesets()) {
+					System.out.printf("%s: %d added, %d removed, %d changed%n", tileset.getName(),
+							tileset.getAddedCount(), tileset.getRemovedCount(), tileset.getChangedCount());
+				}
+				return;
+			}
+			CoverageWorkspace workspace = createWorkspace(session.getGameDir(), session)
+					.withOutputDir(outputDir).withExports(getExports(appArgs)).build();
+
+			Path snapshotFile = outputDir.resolve(CoverageSnapshot.FILE_NAME);
+			workspace.load();
+			printFailures(workspace, session.getCache());
+			workspace.writeReport();
+			workspace.writeSnapshot(snapshotFile);
+			// profile covers the initial run only, updates in watch mode are not measured
+			writeProfile(profiler, outputDir);
+			writeMetrics(metricsDir);
+
+			if (appArgs.get(Argument.MODE) == Mode.SERVE) {
+				CoverageServer server = CoverageServer.Builder.create(workspace)
+						.withPort((Integer) appArgs.get(Argument.PORT)).build();
+				Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+				server.start();
+				System.out.printf("Serving coverage on http://%s:%d/%n",
+						server.getAddress().getHostString(), server.getAddress().getPort());
+				try {
+					server.join();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			else if (appArgs.get(Argument.MODE) == Mode.WATCH) {
+				try (CoverageWatcher watcher = new CoverageWatcher(workspace)) {
+					System.out.println("Watching game directory for changes: " + workspace.getGameDir());
+					watcher.run(updated -> {
+						printFailures(workspace, session.getCache());
+						try {
+							workspace.writeSnapshot(snapshotFile);
+						}
+						catch (IOException e) {
+							System.err.println("Unable to write coverage snapshot: " + e);
+						}
+						try {
+							writeMetrics(metricsDir);
+						}
+						catch (IOException e) {
+							System.err.println("Unable to write metrics: " + e);
+						}
+						System.out.printf("Updated coverage reports for %d tilesets%n", updated.size());
+					});
+				}
+			}
 		}
+	}
+
+	private static CoverageWorkspace.Builder createWorkspace(Path gameDir, AnalysisSession session) {
+
 		String[] jsonDirectories = new String[]{
 				"items", "monsters"
 		};
-		Set<CataJsonFileTree> cataJsonFileTrees = new HashSet<>();
-		for (String sJsonDir : jsonDirectories) {
-			Path jsonDir = Paths.get(sJsonDir);
-			cataJsonFileTrees.add(new CataJsonFileTree(gameJsonDir, jsonDir));
+		return CoverageWorkspace.Builder.create(gameDir).withJsonTargets(jsonDirectories)
+				.withSession(session).excludeOverlays();
+	}
+
+	/**
+	 * Open coverage snapshot to compare in diff mode. When given path is a game directory, coverage
+	 * of the game directory is computed first and written to given snapshot file.
+	 *
+	 * @param path path to game directory or snapshot file.
+	 * @param snapshotFile path to write snapshot of game directory coverage to.
+	 * @param session session to compute coverage in.
+	 * @return opened coverage snapshot.
+	 *
+	 * @throws IOException when an I/O error occurred while computing or reading coverage.
+	 */
+	private static CoverageSnapshot openSnapshot(Path path, Path snapshotFile,
+			AnalysisSession session) throws IOException {
+
+		if (!Files.isDirectory(path)) {
+			return CoverageSnapshot.open(path);
 		}
-		Set<TilesetCoverage> tilesetCoverages = new HashSet<>();
-		for (Path path : Files.find(gfxDir, 1, (p, bfa) ->
-				p != gfxDir && bfa.isDirectory()).collect(java.util.stream.Collectors.toSet())) {
+		CoverageWorkspace workspace = createWorkspace(path, session).build();
+		workspace.load();
+		printFailures(workspace, session.getCache());
 
-			TilesetCoverage.Builder builder = TilesetCoverage.Builder.create(path).excludeOverlays();
-			for (CataJsonFileTree fileTree : cataJsonFileTrees) {
-				for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : fileTree.entrySet()) {
-					builder.withCataJsonObjects(gameJsonDir.resolve(entry.getKey()), entry.getValue());
-				}
+		Files.createDirectories(snapshotFile.getParent());
+		workspace.writeSnapshot(snapshotFile);
+		return CoverageSnapshot.open(snapshotFile);
+	}
+
+	/**
+	 * Print summary of given profiler to standard output and write it to output directory.
+	 * Nothing is printed or written when profiling is not enabled.
+	 */
+	private static void writeProfile(Profiler profiler, Path outputDir) throws IOException {
+
+		if (profiler.isEnabled()) {
+			profiler.printSummary(System.out, 10);
+			System.out.println("Profile written to " + profiler.writeToFile(outputDir));
+		}
+	}
+
+	/**
+	 * Write metrics counted so far to given directory in Prometheus textfile format.
+	 * Nothing is written when metrics directory is not configured.
+	 */
+	private static void writeMetrics(@Nullable File metricsDir) throws IOException {
+
+		if (metricsDir != null) {
+			Metrics.getDefault().writeTextfile(metricsDir.toPath());
+		}
+	}
+
+	private static void printFailures(CoverageWorkspace workspace, @Nullable ParseCache cache) {
+
+		for (Map.Entry<Path, Exception> entry : workspace.getTilesetFailures().entrySet()) {
+			System.err.printf("Unable to load tileset %s: %s%n", entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<Path, Exception> entry : workspace.getJsonFailures().entrySet()) {
+			System.err.printf("Unable to reload %s, using its previous content: %s%n", entry.getKey(), entry.getValue());
+		}
+		if (cache != null) {
+			for (Map.Entry<Path, Exception> entry : cache.takeWriteFailures().entrySet()) {
+				System.err.printf("Unable to write cache entry for %s: %s%n", entry.getKey(), entry.getValue());
 			}
-			tilesetCoverages.add(builder.build());
 		}
-		TilesetCoverageReport coverageReport = new TilesetCoverageReport(tilesetCoverages);
-		coverageReport.writeToFile(((File) APP_ARGS.get(Argument.OUTPUT_DIR)).toPath());
 	}
 
 	/**
-	 * Parse, validate and store given application arguments.
+	 * Parse and validate given application arguments.
 	 *
 	 * @param args array of arguments to handle.
+	 * @param config configuration to fall back to for arguments that were not given.
+	 * @return {@code Map} of application arguments to their values converted to objects.
 	 *
 	 * @throws IllegalArgumentException when any application argument is malformed.
 	 * @throws IllegalStateException when missing non-optional application argument.
 	 */
-	static void handleAppArgs(String[] args) {
+	static Map<Argument, Object> handleAppArgs(String[] args, Config config) {
 
 		// parse application arguments and create a map of properties
 		Map<String, String> appArgs = new HashMap<>();
@@ -177,6 +444,7 @@ public class Main {
 			}
 			appArgs.put(argProperty.get(0), argProperty.get(1));
 		}
+		Map<Argument, Object> result = new EnumMap<>(Argument.class);
 		for (Argument property : Argument.values()) {
 			String appArgValue = appArgs.get(property.appArgName);
 			String systemProp = System.getProperty(property.sysPropName);
@@ -191,22 +459,37 @@ public class Main {
 				// validate argument values before storing them to map
 				property.validate(appArgValue);
 				// store argument value as object in map
-				APP_ARGS.put(property, property.getAsObject(appArgValue));
+				result.put(property, property.getAsObject(appArgValue));
 				continue;
 			}
 			else if (!property.optional) {
 				String msg = "Missing non-optional application argument: %s(%s)";
 				throw new IllegalStateException(String.format(msg, property.appArgName, property.sysPropName));
 			}
-			Config.Entry configEntry = Config.Entry.values()[property.ordinal()];
-			APP_ARGS.put(property, Config.getProperty(configEntry.name, Object.class));
+			// fall back to configuration property with the same name or argument default value
+			Object configProperty = config.getProperty(property.sysPropName, Object.class);
+			if (configProperty instanceof File) {
+				configProperty = ((File) configProperty).toPath();
+			}
+			result.put(property, configProperty != null ? configProperty : property.getAsObject(""));
 		}
+		return result;
+	}
+
+	/**
+	 * @param appArgs application arguments returned by {@link #handleAppArgs(String[], Config)}.
+	 * @return formats to export coverage in, next to coverage reports.
+	 */
+	@SuppressWarnings("unchecked")
+	static Set<CoverageExport> getExports(Map<Argument, Object> appArgs) {
+		return (Set<CoverageExport>) appArgs.getOrDefault(Argument.EXPORT, Set.of());
 	}
 
 	/**
+	 * @param appArgs application arguments returned by {@link #handleAppArgs(String[], Config)}.
 	 * @return path to Cataclysm game directory.
 	 */
-	public static Path getGameDirectory() {
-		return (Path) APP_ARGS.get(Argument.GAME_DIRECTORY);
+	static Path getGameDirectory(Map<Argument, Object> appArgs) {
+		return (Path) appArgs.get(Argument.GAME_DIRECTORY);
 	}
 }
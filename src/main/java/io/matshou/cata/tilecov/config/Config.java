@@ -38,15 +38,20 @@ import com.google.common.io.Files;
 /**
  * This class represents application configuration file.
  * <p>
- * Initialize the configuration file by calling {@link #initialize()}.
+ * Load the configuration file by calling {@link #load()}. Loaded configuration is immutable,
+ * so the same instance can be shared by any number of analyses running at the same time.
  */
-public class Config {
+public final class Config {
 
 	// configuration filename
 	static final String FILENAME = "tilecov.ini";
 
 	// map of configuration properties
-	static ImmutableMap<String, Object> properties;
+	private final ImmutableMap<String, Object> properties;
+
+	Config(ImmutableMap<String, Object> properties) {
+		this.properties = properties;
+	}
 
 	public enum Entry {
 
@@ -81,7 +86,66 @@ public class Config {
 				throw new IllegalConfigPropertyException("OUTPUT_DIR", String.format(message, p));
 			}
 			return outputDir.toFile();
-		}, "Path to coverage report output directory", false);
+		}, "Path to coverage report output directory", false),
+		/**
+		 * Number of threads used to parse game JSON files.
+		 * <p>
+		 * Value of {@code 1} parses files one at a time on the calling thread
+		 * and value of {@code 0} uses as many threads as there are available processors.
+		 */
+		PARSE_THREADS("PARSE_THREADS", "0", p -> parseThreadCount("PARSE_THREADS", p),
+				"Number of threads used to parse game JSON files (0 uses all available processors)", true),
+		/**
+		 * Number of threads used to load tilesets and compute their coverage.
+		 * <p>
+		 * Value of {@code 1} loads tilesets one at a time on the calling thread
+		 * and value of {@code 0} uses as many threads as there are available processors.
+		 */
+		TILESET_THREADS("TILESET_THREADS", "0", p -> parseThreadCount("TILESET_THREADS", p),
+				"Number of threads used to load and evaluate tilesets (0 uses all available processors)", true),
+		/**
+		 * Path to directory where parsed JSON files are cached between runs.
+		 * <p>
+		 * This property has to point to a non-existing file or an existing directory.
+		 * When the property is empty parsed files are not cached.
+		 */
+		CACHE_DIR("CACHE_DIR", "", p ->
+		{
+			if (p.isEmpty()) {
+				return null;
+			}
+			Path cacheDir = Paths.get(p);
+			if (java.nio.file.Files.isRegularFile(cacheDir)) {
+				String message = "path is not a directory (%s)";
+				throw new IllegalConfigPropertyException("CACHE_DIR", String.format(message, p));
+			}
+			return cacheDir.toFile();
+		}, "Path to directory where parsed JSON files are cached (empty disables caching)", true),
+		/**
+		 * Whether cached files should also be validated by a hash of file contents
+		 * in addition to file size and last modification time.
+		 */
+		CACHE_HASH("CACHE_HASH", "false", p -> Boolean.parseBoolean(p.trim()),
+				"Validate cached files by hash of file contents", true),
+		/**
+		 * Path to directory where run metrics are written in Prometheus textfile format,
+		 * usually the directory read by node exporter textfile collector.
+		 * <p>
+		 * This property has to point to a non-existing file or an existing directory.
+		 * When the property is empty metrics are not written.
+		 */
+		METRICS_DIR("METRICS_DIR", "", p ->
+		{
+			if (p.isEmpty()) {
+				return null;
+			}
+			Path metricsDir = Paths.get(p);
+			if (java.nio.file.Files.isRegularFile(metricsDir)) {
+				String message = "path is not a directory (%s)";
+				throw new IllegalConfigPropertyException("METRICS_DIR", String.format(message, p));
+			}
+			return metricsDir.toFile();
+		}, "Path to directory where run metrics are written in Prometheus textfile format (empty disables)", true);
 
 		public final String name;
 		final String defaultValue;
@@ -98,6 +162,32 @@ public class Config {
 		}
 	}
 
+	/**
+	 * Convert given property value to a number of threads.
+	 *
+	 * @param name name of the property.
+	 * @param value property value to convert.
+	 * @return number of threads, value of {@code 0} is converted to number of available processors.
+	 *
+	 * @throws IllegalConfigPropertyException when the value is not a number or is negative.
+	 */
+	private static int parseThreadCount(String name, String value) {
+
+		int threads;
+		try {
+			threads = Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			String message = "value is not a number (%s)";
+			throw new IllegalConfigPropertyException(name, String.format(message, value));
+		}
+		if (threads < 0) {
+			String message = "value cannot be negative (%s)";
+			throw new IllegalConfigPropertyException(name, String.format(message, value));
+		}
+		return threads != 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
 	/**
 	 * Perform basic validation on given properties.
 	 * <p>
@@ -127,15 +217,16 @@ public class Config {
 	}
 
 	/**
-	 * Initialize the configuration file in a directory with given path.
+	 * Load the configuration file in a directory with given path.
 	 *
 	 * @param configDir path to directory where the config file resides.
+	 * @return configuration loaded from the file.
 	 *
 	 * @throws IOException when there was an error creating config file or loading properties.
 	 * @throws ConfigPropertyException when any property has failed validation.
-	 * @see #initialize()
+	 * @see #load()
 	 */
-	static void initialize(Path configDir) throws IOException, ConfigPropertyException {
+	static Config load(Path configDir) throws IOException, ConfigPropertyException {
 
 		File configFile = configDir.resolve(FILENAME).toFile();
 		if (!configFile.exists()) {
@@ -165,13 +256,21 @@ public class Config {
 		Map<String, Object> tmpProperties = new HashMap<>();
 		for (Entry entry : Entry.values()) {
 			String propertyValue = (String) propertiesFromFile.get(entry.name);
-			tmpProperties.put(entry.name, entry.type.apply(propertyValue));
+			// optional properties that are not defined fall back to default values
+			if (entry.optional && (propertyValue == null || propertyValue.isEmpty())) {
+				propertyValue = entry.defaultValue;
+			}
+			Object propertyObject = entry.type.apply(propertyValue);
+			// optional properties without value are not stored
+			if (propertyObject != null) {
+				tmpProperties.put(entry.name, propertyObject);
+			}
 		}
-		properties = ImmutableMap.copyOf(tmpProperties);
+		return new Config(ImmutableMap.copyOf(tmpProperties));
 	}
 
 	/**
-	 * Initialize the configuration file in application root directory.
+	 * Load the configuration file in application root directory.
 	 * <p>
 	 * If the configuration file in the given directory does not exist
 	 * the config property file will be created with default property values.
@@ -180,11 +279,32 @@ public class Config {
 	 * converted to their intended class object types and stored in immutable map.
 	 * Other property entries will be ignored.
 	 *
+	 * @return configuration loaded from the file.
+	 *
 	 * @throws IOException when there was an error creating config file or loading properties.
 	 * @throws ConfigPropertyException when any property has failed validation.
 	 */
-	public static void initialize() throws IOException {
-		initialize(Paths.get("."));
+	public static Config load() throws IOException {
+		return load(Paths.get("."));
+	}
+
+	/**
+	 * Create configuration with default values of all optional properties. Non-optional
+	 * properties are not defined, and have to be provided by other means.
+	 *
+	 * @return configuration with default property values.
+	 */
+	@Contract(pure = true)
+	public static Config defaults() {
+
+		Map<String, Object> tmpProperties = new HashMap<>();
+		for (Entry entry : Entry.values()) {
+			Object propertyObject = entry.optional ? entry.type.apply(entry.defaultValue) : null;
+			if (propertyObject != null) {
+				tmpProperties.put(entry.name, propertyObject);
+			}
+		}
+		return new Config(ImmutableMap.copyOf(tmpProperties));
 	}
 
 	/**
@@ -198,7 +318,7 @@ public class Config {
 	 * @throws ClassCastException if the found property is not assignable to {@code T}.
 	 */
 	@Contract(pure = true)
-	public static @Nullable <T> T getProperty(String name, Class<T> type) {
+	public @Nullable <T> T getProperty(String name, Class<T> type) {
 
 		Object property = properties.get(name);
 		return property != null ? type.cast(property) : null;
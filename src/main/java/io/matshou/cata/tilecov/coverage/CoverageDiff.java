@@ -0,0 +1,655 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.*;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonWriter;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+/**
+ * This class represents differences in tileset coverage between two coverage snapshots,
+ * usually of two game versions or two runs of the application.
+ * <p>
+ * For every tileset the diff contains objects that were added to or removed from coverage,
+ * objects whose {@link CoverageType} changed and files whose {@link CoverageStats} changed.
+ * Tilesets are matched by name and files by path relative to game directory. Entries that aggregate
+ * all objects of a JSON directory are compared only by their statistics, so that changes of objects
+ * are listed and counted once, under the files the objects are defined in.
+ * <p>
+ * Since files and file entries in snapshots are sorted, the diff is computed with a sorted
+ * merge of both snapshots that is linear in their size. Entries of every file are aligned
+ * only once, and the alignment is shared by all tilesets.
+ */
+public final class CoverageDiff {
+
+	public static final String HTML_FILE_NAME = "diff.html";
+	public static final String JSON_FILE_NAME = "diff.json";
+
+	private static final HtmlTemplate PAGE_HEADER = HtmlTemplate.compile("""
+			<html lang="en">
+			 <head>
+			  <meta charset="utf-8">
+			  <link rel="stylesheet" href="css/main.css">
+			  <link rel="stylesheet" href="css/table.css">
+			  <title>Tileset Coverage Diff</title>
+			 </head>
+			 <body>
+			  <h1>Tileset Coverage Diff</h1>
+			  <hr>
+			  <div class="flex-table coverage wide">
+			   <div class="flex-row">
+			    <div class="flex-column"><div class="indented-text">Tileset</div></div>
+			    <div class="flex-column"><div class="indented-text">Added</div></div>
+			    <div class="flex-column"><div class="indented-text">Removed</div></div>
+			    <div class="flex-column"><div class="indented-text">Changed</div></div>
+			   </div>
+			""");
+
+	/** Summary row, expects tileset name, and number of added, removed and changed objects. */
+	private static final HtmlTemplate SUMMARY_ROW = HtmlTemplate.compile("""
+			   <div class="flex-row">
+			    <div><div class="indented-text">{}</div></div>
+			    <div>{}</div>
+			    <div>{}</div>
+			    <div>{}</div>
+			   </div>
+			""");
+
+	/** Tileset section header, expects tileset name. */
+	private static final HtmlTemplate TILESET_HEADER = HtmlTemplate.compile("""
+			  </div>
+			  <h2>{}</h2>
+			  <hr>
+			  <div class="flex-table coverage wide">
+			   <div class="flex-row">
+			    <div class="flex-column"><div class="indented-text">Files</div></div>
+			    <div class="flex-column"><div class="indented-text">Objects</div></div>
+			    <div class="flex-column"><div class="indented-text">Before</div></div>
+			    <div class="flex-column"><div class="indented-text">After</div></div>
+			   </div>
+			""");
+
+	/** File row, expects file name, objects before and after, and coverage before and after. */
+	private static final HtmlTemplate FILE_ROW = HtmlTemplate.compile("""
+			   <div class="flex-row">
+			    <div><div class="indented-text">{}</div></div>
+			    <div>{} &rarr; {}</div>
+			    <div>{}</div>
+			    <div>{}</div>
+			   </div>
+			""");
+
+	/** Change row, expects object id, and coverage type before and after. */
+	private static final HtmlTemplate CHANGE_ROW = HtmlTemplate.compile("""
+			   <div class="flex-row">
+			    <div><div class="indented-text">&nbsp;&nbsp;{}</div></div>
+			    <div></div>
+			    <div>{}</div>
+			    <div>{}</div>
+			   </div>
+			""");
+
+	private static final HtmlTemplate PAGE_FOOTER = HtmlTemplate.compile("""
+			  </div>
+			 </body>
+			</html>""");
+
+	private final ImmutableList<TilesetDiff> tilesets;
+
+	private CoverageDiff(ImmutableList<TilesetDiff> tilesets) {
+		this.tilesets = tilesets;
+	}
+
+	/**
+	 * This class represents a change in coverage of a single object.
+	 */
+	public static final class Change {
+
+		private final String id;
+		private final @Nullable CoverageType before, after;
+
+		private Change(String id, @Nullable CoverageType before, @Nullable CoverageType after) {
+			this.id = id;
+			this.before = before;
+			this.after = after;
+		}
+
+		/**
+		 * @return id of the object.
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return coverage of the object before or {@code null} if the object was added.
+		 */
+		public @Nullable CoverageType getBefore() {
+			return before;
+		}
+
+		/**
+		 * @return coverage of the object after or {@code null} if the object was removed.
+		 */
+		public @Nullable CoverageType getAfter() {
+			return after;
+		}
+	}
+
+	/**
+	 * This class represents changes in coverage of a single file.
+	 */
+	public static final class FileDiff {
+
+		private final String file;
+		private final boolean directory;
+		private final @Nullable CoverageStats before, after;
+		private final ImmutableList<Change> changes;
+
+		private FileDiff(String file, boolean directory, @Nullable CoverageStats before,
+				@Nullable CoverageStats after, ImmutableList<Change> changes) {
+
+			this.file = file;
+			this.directory = directory;
+			this.before = before;
+			this.after = after;
+			this.changes = changes;
+		}
+
+		/**
+		 * @return path to file relative to game directory.
+		 */
+		public String getFile() {
+			return file;
+		}
+
+		/**
+		 * @return {@code true} if this entry aggregates all objects of a JSON directory.
+		 * Changes of objects are listed only in entries of files they are defined in.
+		 */
+		public boolean isDirectory() {
+			return directory;
+		}
+
+		/**
+		 * @return coverage statistics of the file before or {@code null} if the file was not covered.
+		 */
+		public @Nullable CoverageStats getBefore() {
+			return before;
+		}
+
+		/**
+		 * @return coverage statistics of the file after or {@code null} if the file is no longer covered.
+		 */
+		public @Nullable CoverageStats getAfter() {
+			return after;
+		}
+
+		/**
+		 * @return changes in coverage of objects in the file, in order of object ids.
+		 */
+		public ImmutableList<Change> getChanges() {
+			return changes;
+		}
+	}
+
+	/**
+	 * This class represents changes in coverage of a single tileset.
+	 */
+	public static final class TilesetDiff {
+
+		private final String name;
+		private final boolean inBefore, inAfter;
+		private final ImmutableList<FileDiff> files;
+		private final int added, removed, changed;
+
+		private TilesetDiff(String name, boolean inBefore, boolean inAfter, ImmutableList<FileDiff> files) {
+
+			this.name = name;
+			this.inBefore = inBefore;
+			this.inAfter = inAfter;
+			this.files = files;
+
+			int added = 0, removed = 0, changed = 0;
+			for (FileDiff file : files) {
+				for (Change change : file.changes) {
+					if (change.before == null) {
+						added++;
+					}
+					else if (change.after == null) {
+						removed++;
+					}
+					else {
+						changed++;
+					}
+				}
+			}
+			this.added = added;
+			this.removed = removed;
+			this.changed = changed;
+		}
+
+		/**
+		 * @return name of the tileset directory.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return {@code true} if the tileset is present in snapshot before.
+		 */
+		public boolean isInBefore() {
+			return inBefore;
+		}
+
+		/**
+		 * @return {@code true} if the tileset is present in snapshot after.
+		 */
+		public boolean isInAfter() {
+			return inAfter;
+		}
+
+		/**
+		 * @return changes in coverage of files, in order of file paths.
+		 */
+		public ImmutableList<FileDiff> getFiles() {
+			return files;
+		}
+
+		/**
+		 * @return number of objects that were added to coverage.
+		 */
+		public int getAddedCount() {
+			return added;
+		}
+
+		/**
+		 * @return number of objects that were removed from coverage.
+		 */
+		public int getRemovedCount() {
+			return removed;
+		}
+
+		/**
+		 * @return number of objects whose coverage type changed.
+		 */
+		public int getChangedCount() {
+			return changed;
+		}
+	}
+
+	/**
+	 * Compute differences in tileset coverage between given snapshots.
+	 *
+	 * @param before snapshot of coverage before.
+	 * @param after snapshot of coverage after.
+	 * @return differences in coverage of every tileset present in either snapshot, in order of tileset names.
+	 */
+	@Contract("_, _ -> new")
+	public static CoverageDiff of(CoverageSnapshot before, CoverageSnapshot after) {
+
+		// match tilesets by name, tilesets present in only one snapshot are compared to nothing
+		SortedMap<String, CoverageSnapshot.TilesetView[]> views = new TreeMap<>(CoverageSnapshot.CODE_POINT_ORDER);
+		for (int i = 0; i < before.getTilesetCount(); i++) {
+			CoverageSnapshot.TilesetView view = before.getTileset(i);
+			views.computeIfAbsent(view.getName(), k -> new CoverageSnapshot.TilesetView[2])[0] = view;
+		}
+		for (int i = 0; i < after.getTilesetCount(); i++) {
+			CoverageSnapshot.TilesetView view = after.getTileset(i);
+			views.computeIfAbsent(view.getName(), k -> new CoverageSnapshot.TilesetView[2])[1] = view;
+		}
+		List<CoverageSnapshot.TilesetView[]> pairs = new ArrayList<>(views.values());
+		Set<String> directories = findDirectories(before);
+		directories.addAll(findDirectories(after));
+		List<List<FileDiff>> files = new ArrayList<>();
+		pairs.forEach(p -> files.add(new ArrayList<>()));
+
+		// merge sorted file tables
+		int i = 0, j = 0;
+		while (i < before.getFileCount() || j < after.getFileCount()) {
+			int cmp;
+			if (i >= before.getFileCount()) {
+				cmp = 1;
+			}
+			else if (j >= after.getFileCount()) {
+				cmp = -1;
+			}
+			else {
+				cmp = CoverageSnapshot.CODE_POINT_ORDER.compare(before.getFile(i), after.getFile(j));
+			}
+
+			int beforeFile = cmp <= 0 ? i++ : -1;
+			int afterFile = cmp >= 0 ? j++ : -1;
+			FileAlignment alignment = new FileAlignment(before, beforeFile, after, afterFile, directories);
+
+			for (int t = 0; t < pairs.size(); t++) {
+				CoverageSnapshot.TilesetView[] pair = pairs.get(t);
+				FileDiff fileDiff = alignment.diff(pair[0], pair[1]);
+				if (fileDiff != null) {
+					files.get(t).add(fileDiff);
+				}
+			}
+		}
+		ImmutableList.Builder<TilesetDiff> result = ImmutableList.builder();
+		for (int t = 0; t < pairs.size(); t++) {
+			CoverageSnapshot.TilesetView[] pair = pairs.get(t);
+			String name = (pair[0] != null ? pair[0] : pair[1]).getName();
+			result.add(new TilesetDiff(name, pair[0] != null, pair[1] != null, ImmutableList.copyOf(files.get(t))));
+		}
+		return new CoverageDiff(result.build());
+	}
+
+	/**
+	 * Find files of given snapshot that are entries of JSON directories, which aggregate
+	 * objects of other files in the snapshot.
+	 *
+	 * @return {@code Set} of paths to files that are parent directories of other files.
+	 */
+	private static Set<String> findDirectories(CoverageSnapshot snapshot) {
+
+		Set<String> files = new HashSet<>();
+		for (int i = 0; i < snapshot.getFileCount(); i++) {
+			files.add(snapshot.getFile(i));
+		}
+		Set<String> result = new HashSet<>();
+		for (String file : files) {
+			for (int k = file.lastIndexOf('/'); k > 0; k = file.lastIndexOf('/', k - 1)) {
+				String parent = file.substring(0, k);
+				if (files.contains(parent)) {
+					result.add(parent);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Alignment of entries of the same file in two snapshots, computed with a sorted merge
+	 * of file entries. Entries present in only one snapshot are aligned with {@code -1}.
+	 * Entries of directories are not aligned, since only their statistics are compared.
+	 */
+	private static final class FileAlignment {
+
+		private final String file;
+		private final boolean directory;
+		private final int beforeFile, afterFile;
+		private final String[] ids;
+		private final int[] beforeEntries, afterEntries;
+
+		private FileAlignment(CoverageSnapshot before, int beforeFile,
+				CoverageSnapshot after, int afterFile, Set<String> directories) {
+
+			this.file = beforeFile >= 0 ? before.getFile(beforeFile) : after.getFile(afterFile);
+			this.directory = directories.contains(file);
+			this.beforeFile = beforeFile;
+			this.afterFile = afterFile;
+
+			int i = beforeFile >= 0 && !directory ? before.getEntryStart(beforeFile) : 0;
+			int iEnd = beforeFile >= 0 && !directory ? i + before.getEntryCount(beforeFile) : 0;
+			int j = afterFile >= 0 && !directory ? after.getEntryStart(afterFile) : 0;
+			int jEnd = afterFile >= 0 && !directory ? j + after.getEntryCount(afterFile) : 0;
+
+			int capacity = (iEnd - i) + (jEnd - j);
+			String[] ids = new String[capacity];
+			int[] beforeEntries = new int[capacity], afterEntries = new int[capacity];
+
+			int size = 0;
+			String beforeId = i < iEnd ? before.getEntryId(i) : null;
+			String afterId = j < jEnd ? after.getEntryId(j) : null;
+			while (beforeId != null || afterId != null) {
+				int cmp;
+				if (beforeId == null) {
+					cmp = 1;
+				}
+				else if (afterId == null) {
+					cmp = -1;
+				}
+				else {
+					cmp = CoverageSnapshot.CODE_POINT_ORDER.compare(beforeId, afterId);
+				}
+
+				ids[size] = cmp <= 0 ? beforeId : afterId;
+				beforeEntries[size] = cmp <= 0 ? i : -1;
+				afterEntries[size++] = cmp >= 0 ? j : -1;
+				if (cmp <= 0) {
+					beforeId = ++i < iEnd ? before.getEntryId(i) : null;
+				}
+				if (cmp >= 0) {
+					afterId = ++j < jEnd ? after.getEntryId(j) : null;
+				}
+			}
+			this.ids = Arrays.copyOf(ids, size);
+			this.beforeEntries = Arrays.copyOf(beforeEntries, size);
+			this.afterEntries = Arrays.copyOf(afterEntries, size);
+		}
+
+		/**
+		 * @return differences in coverage of this file between given tileset views, or
+		 * {@code null} if coverage of the file did not change.
+		 */
+		private @Nullable FileDiff diff(CoverageSnapshot.@Nullable TilesetView before,
+				CoverageSnapshot.@Nullable TilesetView after) {
+
+			CoverageStats beforeStats = before != null && beforeFile >= 0 ? before.getStats(beforeFile) : null;
+			CoverageStats afterStats = after != null && afterFile >= 0 ? after.getStats(afterFile) : null;
+			if (beforeStats == null && afterStats == null) {
+				return null;
+			}
+			ImmutableList.Builder<Change> changes = ImmutableList.builder();
+			boolean changed = false;
+			for (int k = 0; k < ids.length; k++) {
+				CoverageType beforeType = beforeStats != null && beforeEntries[k] >= 0
+						? before.getCoverageType(beforeEntries[k]) : null;
+				CoverageType afterType = afterStats != null && afterEntries[k] >= 0
+						? after.getCoverageType(afterEntries[k]) : null;
+				if (beforeType != afterType) {
+					changes.add(new Change(ids[k], beforeType, afterType));
+					changed = true;
+				}
+			}
+			if (!changed && statsEqual(beforeStats, afterStats)) {
+				return null;
+			}
+			return new FileDiff(file, directory, beforeStats, afterStats, changes.build());
+		}
+	}
+
+	private static boolean statsEqual(@Nullable CoverageStats s1, @Nullable CoverageStats s2) {
+
+		if (s1 == null || s2 == null) {
+			return s1 == s2;
+		}
+		return s1.getUniqueCoverageTotal() == s2.getUniqueCoverageTotal()
+				&& s1.getInheritedTotal() == s2.getInheritedTotal()
+				&& s1.getNoCoverageTotal() == s2.getNoCoverageTotal();
+	}
+
+	/**
+	 * @return differences in coverage of every tileset, in order of tileset names.
+	 */
+	public ImmutableList<TilesetDiff> getTilesets() {
+		return tilesets;
+	}
+
+	/**
+	 * @return {@code true} if coverage of no tileset changed.
+	 */
+	public boolean isEmpty() {
+		return tilesets.stream().allMatch(t -> t.inBefore && t.inAfter && t.files.isEmpty());
+	}
+
+	/**
+	 * Write this diff as a JSON document to given writer. The writer is not closed.
+	 *
+	 * @param writer writer to write the document to.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public void writeJson(Writer writer) throws IOException {
+
+		JsonWriter json = new JsonWriter(writer);
+		json.beginObject().name("tilesets").beginArray();
+		for (TilesetDiff tileset : tilesets) {
+			json.beginObject()
+					.name("name").value(tileset.name)
+					.name("inBefore").value(tileset.inBefore)
+					.name("inAfter").value(tileset.inAfter)
+					.name("added").value(tileset.added)
+					.name("removed").value(tileset.removed)
+					.name("changed").value(tileset.changed)
+					.name("files").beginArray();
+
+			for (FileDiff file : tileset.files) {
+				json.beginObject().name("file").value(file.file).name("directory").value(file.directory);
+				writeJsonStats(json.name("before"), file.before);
+				writeJsonStats(json.name("after"), file.after);
+				json.name("changes").beginArray();
+				for (Change change : file.changes) {
+					json.beginObject()
+							.name("id").value(change.id)
+							.name("before").value(change.before != null ? change.before.name() : null)
+							.name("after").value(change.after != null ? change.after.name() : null)
+							.endObject();
+				}
+				json.endArray().endObject();
+			}
+			json.endArray().endObject();
+		}
+		json.endArray().endObject();
+		json.flush();
+	}
+
+	private static void writeJsonStats(JsonWriter json, @Nullable CoverageStats stats) throws IOException {
+
+		if (stats == null) {
+			json.nullValue();
+			return;
+		}
+		json.beginObject()
+				.name("total").value(stats.getObjectsTotal())
+				.name("unique").value(stats.getUniqueCoverageTotal())
+				.name("inherited").value(stats.getInheritedTotal())
+				.name("none").value(stats.getNoCoverageTotal())
+				.endObject();
+	}
+
+	/**
+	 * Write this diff as an HTML page to given writer. The page uses the same
+	 * style sheets as coverage reports. The writer is not closed.
+	 *
+	 * @param writer writer to write the page to.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public void writeHtml(Writer writer) throws IOException {
+
+		DecimalFormat decimalFormat = new DecimalFormat("0.0");
+		PAGE_HEADER.render(writer);
+		for (TilesetDiff tileset : tilesets) {
+			String name = tileset.name;
+			if (!tileset.inBefore) {
+				name += " (added)";
+			}
+			else if (!tileset.inAfter) {
+				name += " (removed)";
+			}
+			SUMMARY_ROW.render(writer, name, tileset.added, tileset.removed, tileset.changed);
+		}
+		for (TilesetDiff tileset : tilesets) {
+			if (tileset.files.isEmpty()) {
+				continue;
+			}
+			TILESET_HEADER.render(writer, tileset.name);
+			for (FileDiff file : tileset.files) {
+				FILE_ROW.render(writer, file.file,
+						file.before != null ? file.before.getObjectsTotal() : "-",
+						file.after != null ? file.after.getObjectsTotal() : "-",
+						formatCoverage(decimalFormat, file.before), formatCoverage(decimalFormat, file.after));
+
+				for (Change change : file.changes) {
+					CHANGE_ROW.render(writer, change.id,
+							change.before != null ? change.before.name() : "-",
+							change.after != null ? change.after.name() : "-");
+				}
+			}
+		}
+		PAGE_FOOTER.render(writer);
+		writer.flush();
+	}
+
+	private static String formatCoverage(DecimalFormat decimalFormat, @Nullable CoverageStats stats) {
+
+		if (stats == null) {
+			return "-";
+		}
+		int covered = stats.getUniqueCoverageTotal() + stats.getInheritedTotal();
+		return decimalFormat.format(covered / ((double) stats.getObjectsTotal()) * 100) + '%';
+	}
+
+	/**
+	 * Write this diff to {@value #HTML_FILE_NAME} and {@value #JSON_FILE_NAME} files in given output directory,
+	 * together with style sheets used by the HTML page. Files are written to temporary files first
+	 * and then atomically moved in place.
+	 *
+	 * @param outputDir path to directory where to write the files.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public void writeToFile(Path outputDir) throws IOException {
+
+		Files.createDirectories(outputDir);
+		TilesetCoverageReport.copyStyleSheets(outputDir);
+		writeToFile(outputDir.resolve(HTML_FILE_NAME), true);
+		writeToFile(outputDir.resolve(JSON_FILE_NAME), false);
+	}
+
+	private void writeToFile(Path file, boolean html) throws IOException {
+
+		Path tempFile = AtomicFiles.createTempFile(file);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				if (html) {
+					writeHtml(writer);
+				}
+				else {
+					writeJson(writer);
+				}
+			}
+			AtomicFiles.moveAtomically(tempFile, file);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+}
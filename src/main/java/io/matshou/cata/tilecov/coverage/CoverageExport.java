@@ -0,0 +1,323 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonWriter;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+/**
+ * This class represents machine-readable formats tileset coverage can be exported to.
+ * <p>
+ * Exports contain two kinds of records. For every file considered in tileset coverage
+ * a {@code stats} record with {@link CoverageStats} of that file is written, followed by
+ * an {@code object} record for every game object in that file with its {@link CoverageType}.
+ * Entries that aggregate all objects of a JSON directory are not exported, so every object
+ * is exported once and totals of {@code stats} records can be summed. Records are streamed straight from coverage data as they are written, so exporting
+ * does not require memory proportional to the amount of exported records.
+ * <p>
+ * Tilesets are exported in the same order as report pages and files in the order of their paths.
+ */
+public enum CoverageExport {
+
+	/**
+	 * One JSON object per line, with {@code record} property denoting the kind of record.
+	 */
+	JSON_LINES("jsonl") {
+		@Override
+		RecordWriter open(Writer writer) {
+
+			JsonWriter jsonWriter = new JsonWriter(writer);
+			// allows writing multiple top-level values, separated by new lines below
+			jsonWriter.setLenient(true);
+			return new RecordWriter() {
+				@Override
+				public void writeStats(String tileset, String file, CoverageStats stats) throws IOException {
+
+					jsonWriter.beginObject()
+							.name("record").value("stats")
+							.name("tileset").value(tileset)
+							.name("file").value(file)
+							.name("total").value(stats.getObjectsTotal())
+							.name("unique").value(stats.getUniqueCoverageTotal())
+							.name("inherited").value(stats.getInheritedTotal())
+							.name("none").value(stats.getNoCoverageTotal())
+							.endObject();
+					writer.write('\n');
+				}
+
+				@Override
+				public void writeObject(String tileset, String file, String id, CoverageType type) throws IOException {
+
+					jsonWriter.beginObject()
+							.name("record").value("object")
+							.name("tileset").value(tileset)
+							.name("file").value(file)
+							.name("id").value(id)
+							.name("coverage").value(type.name())
+							.endObject();
+					writer.write('\n');
+				}
+			};
+		}
+	},
+	/**
+	 * Comma-separated values as described by RFC 4180, with a header line. Columns that do not
+	 * apply to the kind of record on the line are left empty.
+	 */
+	CSV("csv") {
+		@Override
+		RecordWriter open(Writer writer) throws IOException {
+
+			writer.write("record,tileset,file,id,coverage,total,unique,inherited,none");
+			writer.write("\r\n");
+			return new RecordWriter() {
+				@Override
+				public void writeStats(String tileset, String file, CoverageStats stats) throws IOException {
+
+					writer.write("stats,");
+					writeField(writer, tileset);
+					writer.write(',');
+					writeField(writer, file);
+					writer.write(",,,");
+					writer.write(String.valueOf(stats.getObjectsTotal()));
+					writer.write(',');
+					writer.write(String.valueOf(stats.getUniqueCoverageTotal()));
+					writer.write(',');
+					writer.write(String.valueOf(stats.getInheritedTotal()));
+					writer.write(',');
+					writer.write(String.valueOf(stats.getNoCoverageTotal()));
+					writer.write("\r\n");
+				}
+
+				@Override
+				public void writeObject(String tileset, String file, String id, CoverageType type) throws IOException {
+
+					writer.write("object,");
+					writeField(writer, tileset);
+					writer.write(',');
+					writeField(writer, file);
+					writer.write(',');
+					writeField(writer, id);
+					writer.write(',');
+					writer.write(type.name());
+					writer.write(",,,,\r\n");
+				}
+			};
+		}
+	};
+
+	/**
+	 * Writes records of a single export.
+	 */
+	interface RecordWriter {
+
+		/**
+		 * Write record with coverage statistics of a single file.
+		 *
+		 * @param tileset name of tileset.
+		 * @param file path to file relative to game directory.
+		 * @param stats coverage statistics of the file.
+		 */
+		void writeStats(String tileset, String file, CoverageStats stats) throws IOException;
+
+		/**
+		 * Write record with coverage of a single game object.
+		 *
+		 * @param tileset name of tileset.
+		 * @param file path to file the object is defined in, relative to game directory.
+		 * @param id id of the object.
+		 * @param type coverage of the object.
+		 */
+		void writeObject(String tileset, String file, String id, CoverageType type) throws IOException;
+	}
+
+	private final String fileExtension;
+
+	CoverageExport(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * Start writing export records to given writer.
+	 *
+	 * @param writer writer to write records to.
+	 * @return record writer that writes records in this format.
+	 */
+	abstract RecordWriter open(Writer writer) throws IOException;
+
+	/**
+	 * @return extension of files this export is written to.
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * @return name of the file this export is written to in output directory.
+	 */
+	public String getFileName() {
+		return "coverage." + fileExtension;
+	}
+
+	/**
+	 * Find export format with given name or file extension, ignoring case.
+	 *
+	 * @param name name of the format or extension of files it is written to.
+	 * @return export format with given name or extension.
+	 *
+	 * @throws IllegalArgumentException if there is no such export format.
+	 */
+	@Contract(pure = true)
+	public static CoverageExport of(String name) {
+
+		for (CoverageExport export : values()) {
+			if (export.name().equalsIgnoreCase(name) || export.fileExtension.equalsIgnoreCase(name)) {
+				return export;
+			}
+		}
+		throw new IllegalArgumentException("Unknown coverage export format: " + name);
+	}
+
+	/**
+	 * Write coverage of given tilesets in this format to given writer. The writer is not closed.
+	 * Paths of files are exported as they are stored in coverage.
+	 *
+	 * @param coverages coverage of tilesets to export.
+	 * @param writer writer to write export to.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 * @see #write(Collection, Writer, Path)
+	 */
+	public void write(Collection<TilesetCoverage> coverages, Writer writer) throws IOException {
+		write(coverages, writer, null);
+	}
+
+	/**
+	 * Write coverage of given tilesets in this format to given writer,
+	 * with paths of files exported relative to given game directory. The writer is not closed.
+	 *
+	 * @param coverages coverage of tilesets to export.
+	 * @param writer writer to write export to.
+	 * @param gameDir game directory the coverage was computed for.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public void write(Collection<TilesetCoverage> coverages, Writer writer, @Nullable Path gameDir) throws IOException {
+
+		RecordWriter records = open(writer);
+		for (TilesetCoverage coverage : ImmutableList.sortedCopyOf(TilesetCoverageReport.PAGE_ORDER, coverages)) {
+			String tileset = coverage.getTileset().getName();
+			Set<Path> directories = TilesetCoverage.findDirectoryEntries(coverage.data.keySet());
+			for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
+				if (directories.contains(entry.getKey())) {
+					continue;
+				}
+				String file = TilesetCoverageReport.getPathName(entry.getKey(), gameDir);
+				records.writeStats(tileset, file, Objects.requireNonNull(coverage.stats.get(entry.getKey())));
+
+				for (Map.Entry<String, CoverageType> object : entry.getValue().entrySet()) {
+					records.writeObject(tileset, file, object.getKey(), object.getValue());
+				}
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Write coverage of given tilesets in this format to file named {@link #getFileName()}
+	 * in given output directory. The export is written to a temporary file first and then
+	 * atomically moved in place, so readers never observe a partially written export.
+	 *
+	 * @param coverages coverage of tilesets to export.
+	 * @param outputDir path to directory where to write the file.
+	 * @return path to written file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 * @see #writeToFile(Collection, Path, Path)
+	 */
+	public Path writeToFile(Collection<TilesetCoverage> coverages, Path outputDir) throws IOException {
+		return writeToFile(coverages, outputDir, null);
+	}
+
+	/**
+	 * Write coverage of given tilesets in this format to file named {@link #getFileName()}
+	 * in given output directory, with paths of files exported relative to given game directory.
+	 *
+	 * @param coverages coverage of tilesets to export.
+	 * @param outputDir path to directory where to write the file.
+	 * @param gameDir game directory the coverage was computed for.
+	 * @return path to written file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public Path writeToFile(Collection<TilesetCoverage> coverages,
+			Path outputDir, @Nullable Path gameDir) throws IOException {
+
+		Files.createDirectories(outputDir);
+		Path exportPath = outputDir.resolve(getFileName());
+		Path tempFile = AtomicFiles.createTempFile(exportPath);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				write(coverages, writer, gameDir);
+			}
+			AtomicFiles.moveAtomically(tempFile, exportPath);
+			return exportPath;
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Write given value as CSV field, quoting it only when it contains special characters.
+	 */
+	private static void writeField(Writer writer, String value) throws IOException {
+
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -0,0 +1,572 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+/**
+ * This class serves coverage of a loaded {@link CoverageWorkspace} over HTTP on the loopback interface.
+ * <p>
+ * The workspace stays loaded for as long as the server is running, so parsed JSON file trees,
+ * tilesets and coverage are kept in memory and queries are answered without reading game files.
+ * Changes to game files are detected by a {@link CoverageWatcher} and are applied only when
+ * a refresh is requested, in which case only changed files and tilesets are loaded again.
+ * <p>
+ * The server answers the following requests:
+ * <ul>
+ *     <li>{@code GET /report/<file>} - file from report output directory, such as a tileset report page.</li>
+ *     <li>{@code GET /api/tilesets} - tilesets with coverage, their report pages and tilesets that failed to load.</li>
+ *     <li>{@code GET /api/coverage?tileset=<name>} - coverage statistics of each file for a tileset.</li>
+ *     <li>{@code GET /api/coverage?tileset=<name>&file=<path>} - statistics and coverage of each object
+ *     in a file, with path relative to game directory.</li>
+ *     <li>{@code GET /api/coverage?id=<id>[&tileset=<name>]} - coverage of an object in each tileset.</li>
+ *     <li>{@code POST /api/refresh[?full=true]} - apply changes to game files detected since the last refresh,
+ *     or load the whole workspace again.</li>
+ * </ul>
+ * When a refresh fails, the changes it was applying are kept and applied again by the next refresh.
+ * JSON files that fail to load keep their previous coverage and are reported as failures by both
+ * refresh and tilesets requests.
+ * Queries are answered concurrently on a thread pool, while a refresh has exclusive access to the workspace.
+ */
+public final class CoverageServer implements Closeable {
+
+	private static final Gson GSON = new Gson();
+
+	private final CoverageWorkspace workspace;
+	private final CoverageWatcher watcher;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final CountDownLatch closed = new CountDownLatch(1);
+
+	/**
+	 * Changes drained from the watcher that have not been applied yet because refresh failed.
+	 */
+	private final Set<Path> pendingChanges = new TreeSet<>();
+
+	/**
+	 * Whether the workspace needs to be loaded again because a full refresh failed.
+	 */
+	private boolean pendingLoad;
+
+	/**
+	 * This exception is thrown when a request cannot be answered because of the request itself.
+	 */
+	private static final class RequestException extends Exception {
+
+		private final int status;
+
+		private RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * This class represents a handler of requests that can be rejected with an error status.
+	 */
+	@FunctionalInterface
+	private interface RequestHandler {
+		void handle(HttpExchange exchange) throws IOException, RequestException;
+	}
+
+	private CoverageServer(Builder builder) throws IOException {
+
+		workspace = builder.workspace;
+		watcher = new CoverageWatcher(workspace);
+		executor = Executors.newFixedThreadPool(builder.threads);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+		server.setExecutor(executor);
+		server.createContext("/", route("GET", this::handleRoot));
+		server.createContext("/report/", route("GET", this::handleReport));
+		server.createContext("/api/tilesets", route("GET", this::handleTilesets));
+		server.createContext("/api/coverage", route("GET", this::handleCoverage));
+		server.createContext("/api/refresh", route("POST", this::handleRefresh));
+	}
+
+	/**
+	 * This builder is used to construct a {@link CoverageServer} object.
+	 * <p>
+	 * Call {@link #create(CoverageWorkspace)} to create a new builder and {@link #build()}
+	 * to instruct the builder to create a new {@code CoverageServer} instance.
+	 */
+	public static class Builder {
+
+		private final CoverageWorkspace workspace;
+		private int port = 8080;
+		private int threads = Runtime.getRuntime().availableProcessors();
+
+		private Builder(CoverageWorkspace workspace) {
+			this.workspace = workspace;
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for given workspace.
+		 * The workspace should already be loaded and have an output directory configured.
+		 *
+		 * @param workspace workspace to serve coverage of.
+		 * @return new instance of {@code Builder}.
+		 */
+		@Contract("_ -> new")
+		public static Builder create(CoverageWorkspace workspace) {
+			return new Builder(workspace);
+		}
+
+		/**
+		 * Configure the builder to listen on given port of the loopback interface.
+		 *
+		 * @param port port to listen on or {@code 0} to use any free port.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException if port is outside of valid range.
+		 */
+		@Contract("_ -> this")
+		public Builder withPort(int port) {
+
+			if (port < 0 || port > 65535) {
+				throw new IllegalArgumentException("Port out of range: " + port);
+			}
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to answer requests with given number of threads.
+		 *
+		 * @param threads number of threads, at least one.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException if number of threads is less than one.
+		 */
+		@Contract("_ -> this")
+		public Builder withThreads(int threads) {
+
+			if (threads < 1) {
+				throw new IllegalArgumentException("Expected at least one thread: " + threads);
+			}
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * Create a new server bound to configured port. The server does not
+		 * answer requests until {@link CoverageServer#start()} is called.
+		 *
+		 * @return new instance of {@code CoverageServer} based on builder configuration.
+		 *
+		 * @throws IOException when the server could not be bound or game directories could not be watched.
+		 */
+		@Contract("-> new")
+		public CoverageServer build() throws IOException {
+			return new CoverageServer(this);
+		}
+	}
+
+	/**
+	 * Start answering requests in background threads.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * @return address the server is bound to.
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Block calling thread until this server is closed.
+	 *
+	 * @throws InterruptedException when the thread was interrupted while waiting.
+	 */
+	public void join() throws InterruptedException {
+		closed.await();
+	}
+
+	/**
+	 * Stop answering requests and stop watching game directories.
+	 * Requests that are being answered are given a second to complete.
+	 */
+	@Override
+	public void close() {
+
+		if (closed.getCount() == 0) {
+			return;
+		}
+		server.stop(1);
+		executor.shutdown();
+		try {
+			watcher.close();
+		}
+		catch (IOException e) {
+			// nothing is watched anymore either way
+		}
+		closed.countDown();
+	}
+
+	private HttpHandler route(String method, RequestHandler handler) {
+
+		return exchange -> {
+			try {
+				if (!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					throw new RequestException(405, "Method not allowed: " + exchange.getRequestMethod());
+				}
+				handler.handle(exchange);
+			}
+			catch (RequestException e) {
+				sendError(exchange, e.status, e.getMessage());
+			}
+			catch (IOException | RuntimeException e) {
+				sendError(exchange, 500, e.toString());
+			}
+			finally {
+				exchange.close();
+			}
+		};
+	}
+
+	private void handleRoot(HttpExchange exchange) throws IOException, RequestException {
+
+		if (!exchange.getRequestURI().getPath().equals("/")) {
+			throw new RequestException(404, "Not found: " + exchange.getRequestURI().getPath());
+		}
+		exchange.getResponseHeaders().set("Location", "/api/tilesets");
+		exchange.sendResponseHeaders(302, -1);
+	}
+
+	private void handleReport(HttpExchange exchange) throws IOException, RequestException {
+
+		Path outputDir = workspace.getOutputDir();
+		String fileName = exchange.getRequestURI().getPath().substring("/report/".length());
+		if (outputDir == null || fileName.isEmpty()) {
+			throw new RequestException(404, "Not found: " + exchange.getRequestURI().getPath());
+		}
+		outputDir = outputDir.toAbsolutePath().normalize();
+		Path file = outputDir.resolve(fileName).normalize();
+		// requests should never reach files outside of output directory
+		if (!file.startsWith(outputDir) || !Files.isRegularFile(file)) {
+			throw new RequestException(404, "Not found: " + exchange.getRequestURI().getPath());
+		}
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try (InputStream stream = Files.newInputStream(file)) {
+			exchange.getResponseHeaders().set("Content-Type", getContentType(file));
+			exchange.sendResponseHeaders(200, Files.size(file));
+			try (OutputStream body = exchange.getResponseBody()) {
+				stream.transferTo(body);
+			}
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	private void handleTilesets(HttpExchange exchange) throws IOException {
+
+		JsonObject result = new JsonObject();
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			JsonArray tilesets = new JsonArray();
+			for (TilesetCoverage coverage : getSortedCoverages()) {
+				JsonObject tileset = new JsonObject();
+				tileset.addProperty("name", coverage.getTileset().getName());
+				tileset.addProperty("displayName", coverage.getTileset().getDisplayName());
+				tileset.addProperty("path", getPathName(coverage.getTileset().getPath()));
+				tileset.addProperty("report", "/report/" + coverage.getTileset().getName() + ".html");
+				tilesets.add(tileset);
+			}
+			result.add("tilesets", tilesets);
+			JsonObject failures = new JsonObject();
+			for (Map.Entry<Path, Exception> entry : workspace.getTilesetFailures().entrySet()) {
+				failures.addProperty(getPathName(entry.getKey()), entry.getValue().toString());
+			}
+			for (Map.Entry<Path, Exception> entry : workspace.getJsonFailures().entrySet()) {
+				failures.addProperty(getPathName(entry.getKey()), entry.getValue().toString());
+			}
+			result.add("failures", failures);
+		}
+		finally {
+			readLock.unlock();
+		}
+		sendJson(exchange, 200, result);
+	}
+
+	private void handleCoverage(HttpExchange exchange) throws IOException, RequestException {
+
+		Map<String, String> query = parseQuery(exchange.getRequestURI());
+		String tilesetName = query.get("tileset");
+		String file = query.get("file");
+		String id = query.get("id");
+
+		JsonObject result;
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			if (id != null) {
+				result = getObjectCoverage(id, tilesetName != null ? getCoverage(tilesetName) : null);
+			}
+			else if (tilesetName != null) {
+				TilesetCoverage coverage = getCoverage(tilesetName);
+				result = file != null ? getFileCoverage(coverage, file) : getTilesetCoverage(coverage);
+			}
+			else {
+				throw new RequestException(400, "Expected tileset or id query parameter");
+			}
+		}
+		finally {
+			readLock.unlock();
+		}
+		sendJson(exchange, 200, result);
+	}
+
+	private void handleRefresh(HttpExchange exchange) throws IOException, RequestException {
+
+		boolean full = Boolean.parseBoolean(parseQuery(exchange.getRequestURI()).get("full"));
+		long start = System.nanoTime();
+		int changedFiles;
+		Set<TilesetCoverage> updated;
+		JsonObject failures = new JsonObject();
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			pendingChanges.addAll(watcher.drain());
+			changedFiles = pendingChanges.size();
+			// pending changes are applied by reloading everything when refresh is full
+			full |= pendingLoad;
+			try {
+				if (full) {
+					pendingLoad = true;
+					workspace.load();
+					workspace.writeReport();
+					updated = workspace.getCoverages();
+				}
+				else {
+					updated = !pendingChanges.isEmpty() ? workspace.update(pendingChanges) : Set.of();
+				}
+			}
+			catch (IOException | RuntimeException e) {
+				// changes stay pending so that the next refresh applies them again
+				throw new RequestException(500, "Unable to refresh coverage: " + e);
+			}
+			pendingChanges.clear();
+			pendingLoad = false;
+			for (Map.Entry<Path, Exception> entry : workspace.getJsonFailures().entrySet()) {
+				failures.addProperty(getPathName(entry.getKey()), entry.getValue().toString());
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+		JsonObject result = new JsonObject();
+		result.addProperty("full", full);
+		result.addProperty("changedFiles", changedFiles);
+		JsonArray tilesets = new JsonArray();
+		updated.stream().map(c -> c.getTileset().getName()).sorted().forEach(tilesets::add);
+		result.add("updatedTilesets", tilesets);
+		result.add("failures", failures);
+		result.addProperty("millis", (System.nanoTime() - start) / 1_000_000);
+		sendJson(exchange, 200, result);
+	}
+
+	private JsonObject getTilesetCoverage(TilesetCoverage coverage) {
+
+		JsonObject result = new JsonObject();
+		result.addProperty("tileset", coverage.getTileset().getName());
+		JsonArray files = new JsonArray();
+		for (Path path : coverage.data.keySet()) {
+			JsonObject file = new JsonObject();
+			file.addProperty("file", getPathName(path));
+			addStats(file, Objects.requireNonNull(coverage.stats.get(path)));
+			files.add(file);
+		}
+		result.add("files", files);
+		return result;
+	}
+
+	private JsonObject getFileCoverage(TilesetCoverage coverage, String file) throws RequestException {
+
+		for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
+			if (!getPathName(entry.getKey()).equals(file)) {
+				continue;
+			}
+			JsonObject result = new JsonObject();
+			result.addProperty("tileset", coverage.getTileset().getName());
+			result.addProperty("file", file);
+			addStats(result, Objects.requireNonNull(coverage.stats.get(entry.getKey())));
+			JsonObject objects = new JsonObject();
+			for (Map.Entry<String, CoverageType> object : new TreeMap<>(entry.getValue()).entrySet()) {
+				objects.addProperty(object.getKey(), object.getValue().name());
+			}
+			result.add("objects", objects);
+			return result;
+		}
+		throw new RequestException(404, "File not found in coverage: " + file);
+	}
+
+	private JsonObject getObjectCoverage(String id, @Nullable TilesetCoverage tilesetCoverage) {
+
+		// JSON directories map to all objects in them and are not reported as files
+		Set<Path> jsonDirs = ImmutableSet.copyOf(workspace.getJsonDirs());
+		JsonArray coverages = new JsonArray();
+		for (TilesetCoverage coverage : tilesetCoverage != null ? List.of(tilesetCoverage) : getSortedCoverages()) {
+			for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
+				CoverageType type = entry.getValue().get(id);
+				if (type != null && !jsonDirs.contains(entry.getKey())) {
+					JsonObject object = new JsonObject();
+					object.addProperty("tileset", coverage.getTileset().getName());
+					object.addProperty("file", getPathName(entry.getKey()));
+					object.addProperty("coverage", type.name());
+					coverages.add(object);
+				}
+			}
+		}
+		JsonObject result = new JsonObject();
+		result.addProperty("id", id);
+		result.add("coverage", coverages);
+		return result;
+	}
+
+	private TilesetCoverage getCoverage(String tilesetName) throws RequestException {
+
+		for (TilesetCoverage coverage : workspace.getCoverages()) {
+			if (coverage.getTileset().getName().equals(tilesetName)) {
+				return coverage;
+			}
+		}
+		throw new RequestException(404, "Tileset not found: " + tilesetName);
+	}
+
+	private List<TilesetCoverage> getSortedCoverages() {
+
+		List<TilesetCoverage> result = new ArrayList<>(workspace.getCoverages());
+		result.sort(Comparator.comparing(c -> c.getTileset().getName()));
+		return result;
+	}
+
+	private String getPathName(Path path) {
+		return TilesetCoverageReport.getPathName(path, workspace.getGameDir());
+	}
+
+	private static void addStats(JsonObject object, CoverageStats stats) {
+
+		object.addProperty("total", stats.getObjectsTotal());
+		object.addProperty("unique", stats.getUniqueCoverageTotal());
+		object.addProperty("inherited", stats.getInheritedTotal());
+		object.addProperty("none", stats.getNoCoverageTotal());
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+
+		Map<String, String> result = new HashMap<>();
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return result;
+		}
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			String name = separator >= 0 ? parameter.substring(0, separator) : parameter;
+			String value = separator >= 0 ? parameter.substring(separator + 1) : "";
+			result.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+
+	private static String getContentType(Path file) {
+
+		String fileName = file.getFileName().toString();
+		if (fileName.endsWith(".html")) {
+			// report pages are written in default charset
+			return "text/html; charset=" + Charset.defaultCharset().name();
+		}
+		else if (fileName.endsWith(".css")) {
+			return "text/css";
+		}
+		else if (fileName.endsWith(".png")) {
+			return "image/png";
+		}
+		else if (fileName.endsWith(".json")) {
+			return "application/json";
+		}
+		return "application/octet-stream";
+	}
+
+	private static void sendJson(HttpExchange exchange, int status, JsonElement json) throws IOException {
+
+		byte[] body = GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream stream = exchange.getResponseBody()) {
+			stream.write(body);
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) {
+
+		// the response cannot be changed once headers have been sent
+		if (exchange.getResponseCode() != -1) {
+			return;
+		}
+		JsonObject error = new JsonObject();
+		error.addProperty("status", status);
+		error.addProperty("error", message);
+		try {
+			sendJson(exchange, status, error);
+		}
+		catch (IOException e) {
+			// client has gone away
+		}
+	}
+}
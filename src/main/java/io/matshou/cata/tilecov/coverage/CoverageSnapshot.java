@@ -0,0 +1,585 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+/**
+ * This class represents a read-only view of tileset coverage stored in a binary snapshot file.
+ * <p>
+ * Snapshots are written with {@link #write(Collection, Path)} and opened with {@link #open(Path)}.
+ * The file is memory-mapped and nothing is deserialized when it is opened, lookups and scans
+ * read only the parts of the file they need. Views are immutable and safe to use from multiple threads.
+ * <p>
+ * All integers are stored in big-endian order, and the file consists of following sections:
+ * <ul>
+ *     <li>Header with magic number, format {@link #VERSION} and the number of tilesets,
+ *     files, file entries and strings.</li>
+ *     <li>Tileset table, with string indexes of tileset name, display name and path.</li>
+ *     <li>File table, with string index of file path and range of file entries.</li>
+ *     <li>File entries, with string index of object id. Entries of every file are
+ *     sorted by id, which allows finding an object in a file with binary search.</li>
+ *     <li>Precomputed {@link CoverageStats} for every tileset and file.</li>
+ *     <li>One byte {@link CoverageType} code for every tileset and file entry.</li>
+ *     <li>String dictionary, with offsets and UTF-8 bytes of all strings sorted in byte order.</li>
+ * </ul>
+ * File paths are stored relative to game directory, the same way they are shown in reports.
+ */
+public final class CoverageSnapshot {
+
+	/**
+	 * Version of snapshot format. Snapshots written with a different version cannot be opened.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Name of snapshot file written next to coverage reports.
+	 */
+	public static final String FILE_NAME = "coverage.snapshot";
+
+	private static final int MAGIC = 0x54434F56; // TCOV
+	private static final int HEADER_SIZE = 6 * Integer.BYTES;
+	private static final int TILESET_RECORD = 3, FILE_RECORD = 3, STATS_RECORD = 3;
+
+	/** Code of entries not covered by tileset, other codes are {@link CoverageType} ordinal plus one. */
+	private static final byte NO_ENTRY = 0;
+	private static final CoverageType[] COVERAGE_TYPES = CoverageType.values();
+
+	/**
+	 * Orders strings by code points, which is the same as order of UTF-8 encoded bytes.
+	 */
+	static final Comparator<String> CODE_POINT_ORDER = (s1, s2) -> {
+		int i1 = 0, i2 = 0;
+		while (i1 < s1.length() && i2 < s2.length()) {
+			int c1 = s1.codePointAt(i1), c2 = s2.codePointAt(i2);
+			if (c1 != c2) {
+				return Integer.compare(c1, c2);
+			}
+			i1 += Character.charCount(c1);
+			i2 += Character.charCount(c2);
+		}
+		return Integer.compare(s1.length() - i1, s2.length() - i2);
+	};
+
+	private final ByteBuffer buffer;
+	private final int tilesetCount, fileCount, entryCount, stringCount;
+	private final int tilesetTable, fileTable, entryTable, statsTable, codeTable, stringTable, stringBytes;
+
+	private CoverageSnapshot(ByteBuffer buffer, Path file) throws IOException {
+
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("File is not a coverage snapshot: " + file);
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			String msg = "Unsupported coverage snapshot version %d, expected %d: %s";
+			throw new IOException(String.format(msg, version, VERSION, file));
+		}
+		tilesetCount = buffer.getInt(8);
+		fileCount = buffer.getInt(12);
+		entryCount = buffer.getInt(16);
+		stringCount = buffer.getInt(20);
+
+		long offset = HEADER_SIZE;
+		tilesetTable = (int) offset;
+		offset += (long) tilesetCount * TILESET_RECORD * Integer.BYTES;
+		fileTable = (int) offset;
+		offset += (long) fileCount * FILE_RECORD * Integer.BYTES;
+		entryTable = (int) offset;
+		offset += (long) entryCount * Integer.BYTES;
+		statsTable = (int) offset;
+		offset += (long) tilesetCount * fileCount * STATS_RECORD * Integer.BYTES;
+		codeTable = (int) offset;
+		offset += padding((long) tilesetCount * entryCount);
+		stringTable = (int) offset;
+		offset += (long) (stringCount + 1) * Integer.BYTES;
+		stringBytes = (int) offset;
+
+		if (tilesetCount < 0 || fileCount < 0 || entryCount < 0 || stringCount < 0
+				|| offset > buffer.capacity() || offset + buffer.getInt(stringTable + stringCount * Integer.BYTES) > buffer.capacity()) {
+			throw new IOException("Coverage snapshot is truncated or corrupted: " + file);
+		}
+	}
+
+	/**
+	 * Open snapshot file for reading. The file is memory-mapped and only the header is read.
+	 *
+	 * @param file path to snapshot file.
+	 * @return view of the snapshot.
+	 *
+	 * @throws IOException when an I/O error occurred, or the file is not a valid snapshot.
+	 */
+	@Contract("_ -> new")
+	public static CoverageSnapshot open(Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Coverage snapshot is too large to map: " + file);
+			}
+			// mapping remains valid after channel is closed
+			return new CoverageSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+		}
+	}
+
+	/**
+	 * Write coverage of given tilesets to snapshot file. The snapshot is written to a temporary
+	 * file first and then atomically moved in place, so readers never observe a partial snapshot.
+	 * Paths are stored as they are stored in coverage.
+	 *
+	 * @param coverages coverage of tilesets to write.
+	 * @param file path to snapshot file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public static void write(Collection<TilesetCoverage> coverages, Path file) throws IOException {
+		write(coverages, file, null);
+	}
+
+	/**
+	 * Write coverage of given tilesets to snapshot file, with paths stored relative to given game directory.
+	 *
+	 * @param coverages coverage of tilesets to write.
+	 * @param file path to snapshot file.
+	 * @param gameDir game directory the coverage was computed for.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 * @see #write(Collection, Path)
+	 */
+	public static void write(Collection<TilesetCoverage> coverages, Path file, @Nullable Path gameDir) throws IOException {
+
+		List<TilesetCoverage> tilesets = ImmutableList.sortedCopyOf(TilesetCoverageReport.PAGE_ORDER, coverages);
+
+		// coverage data of every tileset mapped to file path names
+		List<Map<String, ImmutableMap<String, CoverageType>>> tilesetData = new ArrayList<>();
+		List<Map<String, CoverageStats>> tilesetStats = new ArrayList<>();
+		SortedMap<String, SortedSet<String>> fileIds = new TreeMap<>(CODE_POINT_ORDER);
+		SortedSet<String> strings = new TreeSet<>(CODE_POINT_ORDER);
+
+		for (TilesetCoverage coverage : tilesets) {
+			Map<String, ImmutableMap<String, CoverageType>> data = new HashMap<>();
+			Map<String, CoverageStats> stats = new HashMap<>();
+			for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
+				String fileName = TilesetCoverageReport.getPathName(entry.getKey(), gameDir);
+				data.put(fileName, entry.getValue());
+				stats.put(fileName, Objects.requireNonNull(coverage.stats.get(entry.getKey())));
+				fileIds.computeIfAbsent(fileName, k -> new TreeSet<>(CODE_POINT_ORDER)).addAll(entry.getValue().keySet());
+			}
+			tilesetData.add(data);
+			tilesetStats.add(stats);
+			strings.add(coverage.getTileset().getName());
+			strings.add(coverage.getTileset().getDisplayName());
+			strings.add(TilesetCoverageReport.getPathName(coverage.getTileset().getPath(), gameDir));
+		}
+		strings.addAll(fileIds.keySet());
+		fileIds.values().forEach(strings::addAll);
+
+		Map<String, Integer> stringIndex = new HashMap<>();
+		for (String string : strings) {
+			stringIndex.put(string, stringIndex.size());
+		}
+		long entryCount = fileIds.values().stream().mapToLong(Set::size).sum();
+		long stringBytes = 0;
+		for (String string : strings) {
+			stringBytes += string.getBytes(StandardCharsets.UTF_8).length;
+		}
+		long size = HEADER_SIZE + (long) tilesets.size() * TILESET_RECORD * Integer.BYTES
+				+ (long) fileIds.size() * FILE_RECORD * Integer.BYTES + entryCount * Integer.BYTES
+				+ (long) tilesets.size() * fileIds.size() * STATS_RECORD * Integer.BYTES
+				+ padding(tilesets.size() * entryCount) + (strings.size() + 1L) * Integer.BYTES + stringBytes;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Coverage snapshot would be too large: " + size + " bytes");
+		}
+		Path tempFile = AtomicFiles.createTempFile(file);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(tilesets.size());
+				out.writeInt(fileIds.size());
+				out.writeInt((int) entryCount);
+				out.writeInt(strings.size());
+
+				for (TilesetCoverage coverage : tilesets) {
+					out.writeInt(stringIndex.get(coverage.getTileset().getName()));
+					out.writeInt(stringIndex.get(coverage.getTileset().getDisplayName()));
+					out.writeInt(stringIndex.get(TilesetCoverageReport.getPathName(coverage.getTileset().getPath(), gameDir)));
+				}
+				int entryStart = 0;
+				for (Map.Entry<String, SortedSet<String>> entry : fileIds.entrySet()) {
+					out.writeInt(stringIndex.get(entry.getKey()));
+					out.writeInt(entryStart);
+					out.writeInt(entry.getValue().size());
+					entryStart += entry.getValue().size();
+				}
+				// ids are sorted in the same order as strings, so their indexes are sorted too
+				for (SortedSet<String> ids : fileIds.values()) {
+					for (String id : ids) {
+						out.writeInt(stringIndex.get(id));
+					}
+				}
+				for (Map<String, CoverageStats> stats : tilesetStats) {
+					for (String fileName : fileIds.keySet()) {
+						CoverageStats fileStats = stats.get(fileName);
+						out.writeInt(fileStats != null ? fileStats.getUniqueCoverageTotal() : -1);
+						out.writeInt(fileStats != null ? fileStats.getInheritedTotal() : -1);
+						out.writeInt(fileStats != null ? fileStats.getNoCoverageTotal() : -1);
+					}
+				}
+				for (Map<String, ImmutableMap<String, CoverageType>> data : tilesetData) {
+					for (Map.Entry<String, SortedSet<String>> entry : fileIds.entrySet()) {
+						Map<String, CoverageType> fileData = data.getOrDefault(entry.getKey(), ImmutableMap.of());
+						for (String id : entry.getValue()) {
+							CoverageType type = fileData.get(id);
+							out.writeByte(type != null ? type.ordinal() + 1 : NO_ENTRY);
+						}
+					}
+				}
+				for (long i = tilesets.size() * entryCount; i < padding(tilesets.size() * entryCount); i++) {
+					out.writeByte(0);
+				}
+				int stringOffset = 0;
+				for (String string : strings) {
+					out.writeInt(stringOffset);
+					stringOffset += string.getBytes(StandardCharsets.UTF_8).length;
+				}
+				out.writeInt(stringOffset);
+				for (String string : strings) {
+					out.write(string.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			AtomicFiles.moveAtomically(tempFile, file);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * @return given size rounded up to a multiple of integer size.
+	 */
+	private static long padding(long size) {
+		return (size + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+	}
+
+	/**
+	 * @return number of tilesets in this snapshot.
+	 */
+	public int getTilesetCount() {
+		return tilesetCount;
+	}
+
+	/**
+	 * @return number of files in this snapshot.
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * @param index index of the file, files are sorted by path.
+	 * @return path to file with given index relative to game directory.
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public String getFile(int index) {
+		Objects.checkIndex(index, fileCount);
+		return getString(buffer.getInt(fileTable + index * FILE_RECORD * Integer.BYTES));
+	}
+
+	/**
+	 * @param index index of the tileset, tilesets are sorted by name.
+	 * @return view of tileset coverage with given index.
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public TilesetView getTileset(int index) {
+		Objects.checkIndex(index, tilesetCount);
+		return new TilesetView(index);
+	}
+
+	/**
+	 * @param name name of the tileset directory.
+	 * @return view of tileset coverage with given name or {@code null} if the snapshot has no such tileset.
+	 */
+	public @Nullable TilesetView getTileset(String name) {
+
+		int nameIndex = indexOfString(name);
+		if (nameIndex >= 0) {
+			for (int i = 0; i < tilesetCount; i++) {
+				if (buffer.getInt(tilesetTable + i * TILESET_RECORD * Integer.BYTES) == nameIndex) {
+					return new TilesetView(i);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * This class represents a view of coverage of a single tileset in snapshot.
+	 */
+	public final class TilesetView {
+
+		private final int index;
+
+		private TilesetView(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return name of the tileset directory.
+		 */
+		public String getName() {
+			return getString(tilesetField(0));
+		}
+
+		/**
+		 * @return name of the tileset as displayed in game.
+		 */
+		public String getDisplayName() {
+			return getString(tilesetField(1));
+		}
+
+		/**
+		 * @return path to tileset directory.
+		 */
+		public String getPath() {
+			return getString(tilesetField(2));
+		}
+
+		private int tilesetField(int field) {
+			return buffer.getInt(tilesetTable + (index * TILESET_RECORD + field) * Integer.BYTES);
+		}
+
+		/**
+		 * @return index of this tileset in snapshot.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @param entry index of file entry.
+		 * @return coverage of object in file entry or {@code null} if the object is not covered by this tileset.
+		 */
+		@Nullable CoverageType getCoverageType(int entry) {
+			return decode(buffer.get(codeTable + index * entryCount + entry));
+		}
+
+		/**
+		 * @param fileIndex index of the file.
+		 * @return precomputed coverage statistics of file with given index or {@code null}
+		 * if the file is not covered by this tileset.
+		 */
+		@Nullable CoverageStats getStats(int fileIndex) {
+
+			int offset = statsTable + (index * fileCount + fileIndex) * STATS_RECORD * Integer.BYTES;
+			int unique = buffer.getInt(offset);
+			if (unique < 0) {
+				return null;
+			}
+			return new CoverageStats(unique, buffer.getInt(offset + 4), buffer.getInt(offset + 8));
+		}
+
+		/**
+		 * Find coverage of object with given id in given file.
+		 *
+		 * @param file path to file relative to game directory.
+		 * @param id id of the object.
+		 * @return coverage of the object or {@code null} if the object is not covered by this tileset.
+		 */
+		public @Nullable CoverageType getCoverageType(String file, String id) {
+
+			int fileIndex = indexOfFile(file), idIndex = indexOfString(id);
+			if (fileIndex < 0 || idIndex < 0) {
+				return null;
+			}
+			int start = fileField(fileIndex, 1), end = start + fileField(fileIndex, 2) - 1;
+			while (start <= end) {
+				int mid = (start + end) >>> 1;
+				int midIndex = buffer.getInt(entryTable + mid * Integer.BYTES);
+				if (midIndex < idIndex) {
+					start = mid + 1;
+				}
+				else if (midIndex > idIndex) {
+					end = mid - 1;
+				}
+				else {
+					return getCoverageType(mid);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @param file path to file relative to game directory.
+		 * @return precomputed coverage statistics of given file or {@code null} if
+		 * the file is not covered by this tileset.
+		 */
+		public @Nullable CoverageStats getStats(String file) {
+
+			int fileIndex = indexOfFile(file);
+			return fileIndex >= 0 ? getStats(fileIndex) : null;
+		}
+
+		/**
+		 * Scan coverage of all objects in given file, in order of object ids.
+		 *
+		 * @param file path to file relative to game directory.
+		 * @param action action to perform for every object id and its coverage.
+		 */
+		public void forEach(String file, BiConsumer<String, CoverageType> action) {
+
+			int fileIndex = indexOfFile(file);
+			if (fileIndex < 0) {
+				return;
+			}
+			int start = getEntryStart(fileIndex), end = start + getEntryCount(fileIndex);
+			for (int i = start; i < end; i++) {
+				CoverageType type = getCoverageType(i);
+				if (type != null) {
+					action.accept(getEntryId(i), type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return index of the first entry of file with given index.
+	 */
+	int getEntryStart(int fileIndex) {
+		return fileField(fileIndex, 1);
+	}
+
+	/**
+	 * @return number of entries of file with given index.
+	 */
+	int getEntryCount(int fileIndex) {
+		return fileField(fileIndex, 2);
+	}
+
+	/**
+	 * @return object id of file entry with given index.
+	 */
+	String getEntryId(int entry) {
+		return getString(buffer.getInt(entryTable + entry * Integer.BYTES));
+	}
+
+	private static @Nullable CoverageType decode(byte code) {
+		return code != NO_ENTRY ? COVERAGE_TYPES[code - 1] : null;
+	}
+
+	private int fileField(int fileIndex, int field) {
+		return buffer.getInt(fileTable + (fileIndex * FILE_RECORD + field) * Integer.BYTES);
+	}
+
+	/**
+	 * @return index of file with given path in file table or {@code -1} if there is no such file.
+	 */
+	private int indexOfFile(String file) {
+
+		int stringIndex = indexOfString(file);
+		if (stringIndex < 0) {
+			return -1;
+		}
+		// files are sorted by path, so their string indexes are sorted too
+		int start = 0, end = fileCount - 1;
+		while (start <= end) {
+			int mid = (start + end) >>> 1;
+			int midIndex = fileField(mid, 0);
+			if (midIndex < stringIndex) {
+				start = mid + 1;
+			}
+			else if (midIndex > stringIndex) {
+				end = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return index of given string in string dictionary or {@code -1} if there is no such string.
+	 */
+	private int indexOfString(String string) {
+
+		byte[] key = string.getBytes(StandardCharsets.UTF_8);
+		int start = 0, end = stringCount - 1;
+		while (start <= end) {
+			int mid = (start + end) >>> 1;
+			int cmp = compareString(mid, key);
+			if (cmp < 0) {
+				start = mid + 1;
+			}
+			else if (cmp > 0) {
+				end = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compare UTF-8 bytes of string with given index to given key, without decoding the string.
+	 */
+	private int compareString(int index, byte[] key) {
+
+		int offset = stringBytes + buffer.getInt(stringTable + index * Integer.BYTES);
+		int length = stringBytes + buffer.getInt(stringTable + (index + 1) * Integer.BYTES) - offset;
+		for (int i = 0; i < Math.min(length, key.length); i++) {
+			int cmp = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, key.length);
+	}
+
+	private String getString(int index) {
+
+		int offset = buffer.getInt(stringTable + index * Integer.BYTES);
+		byte[] bytes = new byte[buffer.getInt(stringTable + (index + 1) * Integer.BYTES) - offset];
+		buffer.get(stringBytes + offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * This class watches game directories for changes and updates coverage of a
+ * {@link CoverageWorkspace} whenever files in those directories are changed.
+ * <p>
+ * All JSON directories of the workspace are watched recursively, along with {@code gfx}
+ * directory and each tileset directory. Events are collected until no new events arrive
+ * for a short quiet period so that a batch of changes results in a single update.
+ */
+public final class CoverageWatcher implements Closeable {
+
+	/**
+	 * Time in milliseconds without new events after which collected changes are applied.
+	 */
+	static final long QUIET_PERIOD = 250;
+
+	private final CoverageWorkspace workspace;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+	/**
+	 * Create a new watcher for given workspace and register all watched directories.
+	 *
+	 * @param workspace workspace to update when files change.
+	 *
+	 * @throws IOException when an I/O error occurred while registering directories.
+	 */
+	public CoverageWatcher(CoverageWorkspace workspace) throws IOException {
+
+		this.workspace = workspace;
+		this.watchService = workspace.getGameDir().getFileSystem().newWatchService();
+		registerRoots();
+	}
+
+	private void registerRoots() throws IOException {
+
+		for (Path jsonDir : workspace.getJsonDirs()) {
+			registerTree(jsonDir);
+		}
+		// directories at maximum depth are not visited so depth of two registers each tileset directory
+		registerTree(workspace.getGfxDir(), 2);
+	}
+
+	private void registerTree(Path dir) throws IOException {
+		registerTree(dir, Integer.MAX_VALUE);
+	}
+
+	private void registerTree(Path dir, int maxDepth) throws IOException {
+
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+		Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+				watchedDirs.put(d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), d);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Wait for the next batch of file changes.
+	 * <p>
+	 * This method blocks until at least one change is detected and then collects
+	 * further changes until no new events arrive for {@link #QUIET_PERIOD} milliseconds.
+	 * Directories created in watched directories are registered as well.
+	 * <p>
+	 * When events were lost because too many changes happened at once, the result contains
+	 * all JSON directories and gfx directory, which instructs the workspace to rescan them.
+	 *
+	 * @return {@code Set} of paths to changed files.
+	 *
+	 * @throws InterruptedException when the thread was interrupted while waiting.
+	 * @throws IOException when an I/O error occurred while registering new directories.
+	 * @throws ClosedWatchServiceException when the watcher was closed.
+	 */
+	@Contract("-> new")
+	public Set<Path> poll() throws InterruptedException, IOException {
+		return collect(watchService.take(), true);
+	}
+
+	/**
+	 * Collect all file changes detected since changes were last collected, without waiting.
+	 * Directories created in watched directories are registered as well. Lost events are handled
+	 * the same way as by {@link #poll()}.
+	 *
+	 * @return {@code Set} of paths to changed files, empty if no changes were detected.
+	 *
+	 * @throws IOException when an I/O error occurred while registering new directories.
+	 * @throws ClosedWatchServiceException when the watcher was closed.
+	 */
+	@Contract("-> new")
+	public Set<Path> drain() throws IOException {
+
+		try {
+			return collect(watchService.poll(), false);
+		}
+		catch (InterruptedException e) {
+			// never thrown because collecting does not wait for events
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Set<Path> collect(@Nullable WatchKey key, boolean wait) throws InterruptedException, IOException {
+
+		Set<Path> changedFiles = new TreeSet<>();
+		boolean overflow = false;
+		while (key != null) {
+			Path dir = watchedDirs.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					overflow = true;
+					continue;
+				}
+				if (dir == null) {
+					continue;
+				}
+				Path changed = dir.resolve((Path) event.context());
+				// register new JSON directories and new tileset directories
+				if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+					if (!changed.startsWith(workspace.getGfxDir())) {
+						registerTree(changed);
+					}
+					else if (dir.equals(workspace.getGfxDir())) {
+						registerTree(changed, 1);
+					}
+				}
+				changedFiles.add(changed);
+			}
+			if (!key.reset()) {
+				watchedDirs.remove(key);
+			}
+			key = wait ? watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS) : watchService.poll();
+		}
+		if (overflow) {
+			// directories created while events were lost have not been registered yet
+			registerRoots();
+			changedFiles.addAll(workspace.getJsonDirs());
+			changedFiles.add(workspace.getGfxDir());
+		}
+		return changedFiles;
+	}
+
+	/**
+	 * Continuously wait for file changes and update workspace coverage until the thread
+	 * is interrupted or the watcher is closed. JSON files that fail to load do not stop
+	 * watching, they are reported by {@link CoverageWorkspace#getJsonFailures()} instead.
+	 *
+	 * @param listener consumer notified with coverages updated after each batch of changes.
+	 *
+	 * @throws IOException when an I/O error occurred while updating coverage.
+	 */
+	public void run(Consumer<Set<TilesetCoverage>> listener) throws IOException {
+
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Set<Path> changedFiles = poll();
+				if (!changedFiles.isEmpty()) {
+					listener.accept(workspace.update(changedFiles));
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ClosedWatchServiceException e) {
+			// watcher was closed, stop watching
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+}
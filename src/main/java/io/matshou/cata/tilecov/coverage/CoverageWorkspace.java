@@ -0,0 +1,705 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import io.matshou.cata.tilecov.AnalysisSession;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.CopyFromResolver;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
+import io.matshou.cata.tilecov.profile.Profiler;
+import io.matshou.cata.tilecov.tile.CataJsonFileTree;
+import io.matshou.cata.tilecov.tile.CataTileset;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+import io.matshou.cata.tilecov.tile.ParseCache;
+import io.matshou.cata.tilecov.tile.TileIdSet;
+
+/**
+ * This class represents the state of tileset coverage for a Cataclysm game directory.
+ * <p>
+ * The workspace loads JSON file trees for configured JSON directories and coverage for every
+ * tileset found in {@code gfx} directory, and keeps them in memory so that coverage can be
+ * updated incrementally with {@link #update(Collection)} when game files change. Only changed
+ * files are parsed again, only coverage entries derived from changed files or affected by changed
+ * {@code looks_like} references are recomputed
+ * and only coverage reports of affected tilesets are written again.
+ * <p>
+ * When a tileset executor is configured tilesets are loaded and evaluated in parallel. Tilesets that
+ * fail to load are excluded from coverage and reported by {@link #getTilesetFailures()} instead of
+ * aborting the whole workspace.
+ * <p>
+ * Ids are never removed from an {@link IdDictionary}, so ids of renamed and removed tiles stay
+ * interned until the dictionary is replaced. Each reload after the first one maps ids with a new
+ * dictionary and so does an update that reloads tilesets once most interned ids are no longer used
+ * by any tileset, which lets long-running workspaces release stale ids. When the workspace is loaded
+ * in an {@link AnalysisSession} the dictionary is owned and replaced by the session.
+ */
+public final class CoverageWorkspace {
+
+	private final Path gameDir, jsonDir, gfxDir;
+	private final ImmutableList<Path> jsonTargets;
+	private final @Nullable Path outputDir;
+	private final CataJsonLoader loader;
+	private final @Nullable ForkJoinPool pool;
+	private final @Nullable ParseCache cache;
+	private final @Nullable ExecutorService tilesetExecutor;
+	private final @Nullable AnalysisSession session;
+	private final ImmutableSet<CoverageExport> exports;
+	private final boolean excludeOverlays;
+	private final Profiler profiler;
+
+	private final List<CataJsonFileTree> fileTrees = new ArrayList<>();
+
+	/**
+	 * Exceptions thrown while loading tilesets mapped to tileset directory paths.
+	 */
+	private final Map<Path, Exception> tilesetFailures = new TreeMap<>();
+
+	/**
+	 * Exceptions thrown while reloading JSON files mapped to JSON file paths.
+	 */
+	private final Map<Path, Exception> jsonFailures = new TreeMap<>();
+	private LooksLikeGraph looksLikeGraph = LooksLikeGraph.of(List.of());
+
+	/**
+	 * Dictionary used to map ids when the workspace was not built with a session.
+	 */
+	private IdDictionary idDictionary = new IdDictionary();
+
+	/**
+	 * Coverage of all loaded tilesets or {@code null} if the workspace has not been loaded.
+	 */
+	private @Nullable MultiTilesetCoverage coverage;
+
+	private CoverageWorkspace(Builder builder) throws FileNotFoundException {
+
+		gameDir = builder.gameDir;
+		jsonDir = gameDir.resolve("data/json");
+		if (!jsonDir.toFile().exists()) {
+			throw new FileNotFoundException("Unable to find 'data/json' in game root directory: " + gameDir);
+		}
+		gfxDir = gameDir.resolve("gfx");
+		if (!gfxDir.toFile().exists()) {
+			throw new FileNotFoundException("Unable to find 'gfx' directory in: " + gameDir);
+		}
+		jsonTargets = ImmutableList.copyOf(builder.jsonTargets);
+		outputDir = builder.outputDir;
+		loader = builder.loader;
+		pool = builder.pool;
+		cache = builder.cache;
+		tilesetExecutor = builder.tilesetExecutor;
+		session = builder.session;
+		exports = Sets.immutableEnumSet(builder.exports);
+		excludeOverlays = builder.excludeOverlays;
+		profiler = builder.profiler;
+	}
+
+	/**
+	 * This builder is used to construct a {@link CoverageWorkspace} object.
+	 * <p>
+	 * Call {@link #create(Path)} or {@link #create(AnalysisSession)} to create a new builder
+	 * and {@link #build()} to instruct the builder to create a new {@code CoverageWorkspace} instance.
+	 */
+	public static class Builder {
+
+		private final Path gameDir;
+		private final List<Path> jsonTargets = new ArrayList<>();
+		private @Nullable Path outputDir;
+		private CataJsonLoader loader = CataJsonLoader.STREAMING;
+		private @Nullable ForkJoinPool pool;
+		private @Nullable ParseCache cache;
+		private @Nullable ExecutorService tilesetExecutor;
+		private @Nullable AnalysisSession session;
+		private final Set<CoverageExport> exports = EnumSet.noneOf(CoverageExport.class);
+		private boolean excludeOverlays;
+		private Profiler profiler = Profiler.disabled();
+
+		private Builder(Path gameDir) {
+			this.gameDir = gameDir;
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for given game directory.
+		 *
+		 * @param gameDir path to Cataclysm game directory.
+		 * @return new instance of {@code Builder}.
+		 */
+		@Contract("_ -> new")
+		public static Builder create(Path gameDir) {
+			return new Builder(gameDir);
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for game directory of given session,
+		 * configured to write coverage reports to output directory of the session
+		 * and to use its executors, cache, id dictionary and profiler.
+		 *
+		 * @param session session the workspace is loaded in.
+		 * @return new instance of {@code Builder}.
+		 * @see #withSession(AnalysisSession)
+		 */
+		@Contract("_ -> new")
+		public static Builder create(AnalysisSession session) {
+
+			Builder builder = new Builder(session.getGameDir()).withSession(session);
+			builder.outputDir = session.getOutputDir();
+			return builder;
+		}
+
+		/**
+		 * Configure the builder to parse files and load tilesets on executors of given session,
+		 * load files from its cache, map ids to keys with its dictionary and measure the workspace
+		 * with its profiler. Game directory
+		 * and output directory of the builder are not changed, so that the same session can
+		 * be used to load workspaces for other game directories.
+		 *
+		 * @param session session the workspace is loaded in.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withSession(AnalysisSession session) {
+
+			pool = session.getPool();
+			cache = session.getCache();
+			tilesetExecutor = session.getTilesetExecutor();
+			this.session = session;
+			profiler = session.getProfiler();
+			return this;
+		}
+
+		/**
+		 * Configure the builder to include JSON files in given directories in coverage.
+		 *
+		 * @param targets paths to directories relative to {@code data/json} game directory.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withJsonTargets(String... targets) {
+
+			for (String target : targets) {
+				jsonTargets.add(Paths.get(target));
+			}
+			return this;
+		}
+
+		/**
+		 * Configure the builder to write coverage reports to given directory.
+		 *
+		 * @param outputDir path to directory where to write coverage reports.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withOutputDir(Path outputDir) {
+			this.outputDir = outputDir;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load JSON objects with given strategy.
+		 *
+		 * @param loader strategy used to load JSON objects from each file.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withLoader(CataJsonLoader loader) {
+			this.loader = loader;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to parse files in parallel on given pool.
+		 *
+		 * @param pool pool used to parse files or {@code null} to parse files on the calling thread.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withPool(@Nullable ForkJoinPool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load files from given cache.
+		 *
+		 * @param cache cache to load files from or {@code null} to always parse files.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withCache(@Nullable ParseCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load and evaluate tilesets in parallel on given executor.
+		 * The same executor is used to write report pages for different tilesets in parallel.
+		 *
+		 * @param executor executor used to load and evaluate tilesets
+		 * or {@code null} to load tilesets one at a time on the calling thread.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withTilesetExecutor(@Nullable ExecutorService executor) {
+			this.tilesetExecutor = executor;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to export coverage of all tilesets in given formats
+		 * to output directory whenever coverage reports are written.
+		 *
+		 * @param exports formats to export coverage in.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withExports(Collection<CoverageExport> exports) {
+			this.exports.addAll(exports);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to exclude overlay tiles from coverage.
+		 *
+		 * @return instance of this builder.
+		 */
+		@Contract("-> this")
+		public Builder excludeOverlays() {
+			excludeOverlays = true;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to measure each phase of loading coverage and writing reports,
+		 * and each JSON file and tileset that is loaded, with given profiler.
+		 *
+		 * @param profiler profiler to record measurements with.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withProfiler(Profiler profiler) {
+			this.profiler = profiler;
+			return this;
+		}
+
+		/**
+		 * @return new instance of {@code CoverageWorkspace} based on builder configuration.
+		 *
+		 * @throws FileNotFoundException when game directory does not contain {@code data/json} or {@code gfx}.
+		 */
+		@Contract("-> new")
+		public CoverageWorkspace build() throws FileNotFoundException {
+			return new CoverageWorkspace(this);
+		}
+	}
+
+	/**
+	 * Load all JSON file trees and compute coverage for every tileset found in game directory.
+	 * Any previously loaded state is discarded, including ids interned by previous loads.
+	 *
+	 * @throws IOException when an I/O exception occurs while loading files.
+	 */
+	public void load() throws IOException {
+
+		// coverage that is still in use keeps the dictionary it was created with
+		IdDictionary dictionary = coverage != null ? renewIdDictionary() : getIdDictionary();
+		fileTrees.clear();
+		jsonFailures.clear();
+		for (Path target : jsonTargets) {
+			fileTrees.add(CataJsonFileTree.Builder.create(jsonDir).withTarget(target).withLoader(loader)
+					.withPool(pool).withCache(cache).withProfiler(profiler).build());
+		}
+		try (Profiler.Phase ignored = profiler.phase("resolve references")) {
+			looksLikeGraph = buildLooksLikeGraph();
+		}
+		tilesetFailures.clear();
+		List<CataTileset> tilesets;
+		try (Profiler.Phase ignored = profiler.phase("load tilesets")) {
+			tilesets = loadTilesets(findTilesetDirs());
+		}
+		MultiTilesetCoverage.Builder builder = MultiTilesetCoverage.Builder.create(tilesets)
+				.withLooksLikeGraph(looksLikeGraph).withIdDictionary(dictionary)
+				.withExecutor(tilesetExecutor);
+		if (excludeOverlays) {
+			builder.excludeOverlays();
+		}
+		for (CataJsonFileTree fileTree : fileTrees) {
+			for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : fileTree.entrySet()) {
+				builder.withCataJsonObjects(jsonDir.resolve(entry.getKey()), entry.getValue());
+			}
+		}
+		try (Profiler.Phase ignored = profiler.phase("classify coverage")) {
+			coverage = builder.build();
+		}
+	}
+
+	/**
+	 * Update coverage to reflect changes to given files.
+	 * <p>
+	 * Changed JSON files are parsed again and coverage entries derived from them are recomputed
+	 * for every tileset. Changes to files in a tileset directory reload that tileset and its coverage.
+	 * Coverage reports are written again only for tilesets whose coverage was updated.
+	 * <p>
+	 * When one of the {@link #getJsonDirs() JSON directories} or {@link #getGfxDir() gfx directory}
+	 * is given as changed, the directory is scanned again and all of its files or tilesets are reloaded.
+	 * This is used to recover when individual changes were lost.
+	 * <p>
+	 * JSON files that fail to load keep their previous coverage and are reported by {@link #getJsonFailures()}
+	 * until they load again.
+	 *
+	 * @param changedFiles paths to files that were created, modified or deleted.
+	 * @return {@code Set} of coverages that were updated.
+	 *
+	 * @throws IOException when an I/O exception occurs while loading files or writing reports.
+	 */
+	public Set<TilesetCoverage> update(Collection<Path> changedFiles) throws IOException {
+
+		if (coverage == null) {
+			throw new IllegalStateException("Workspace has not been loaded");
+		}
+		Set<Path> changedJsonFiles = new TreeSet<>();
+		Set<Path> changedTilesetDirs = new TreeSet<>();
+		List<Path> jsonDirs = getJsonDirs();
+		for (Path changedFile : changedFiles) {
+			if (jsonDirs.contains(changedFile)) {
+				changedJsonFiles.addAll(scanJsonDir(changedFile));
+			}
+			else if (changedFile.startsWith(jsonDir)) {
+				changedJsonFiles.add(changedFile);
+			}
+			else if (changedFile.equals(gfxDir)) {
+				changedTilesetDirs.addAll(scanGfxDir());
+			}
+			else if (changedFile.startsWith(gfxDir)) {
+				changedTilesetDirs.add(gfxDir.resolve(gfxDir.relativize(changedFile).getName(0)));
+			}
+		}
+		Map<Path, ImmutableSet<CataJsonObject>> changed = new HashMap<>();
+		Set<Path> removed = new HashSet<>();
+		for (CataJsonFileTree fileTree : fileTrees) {
+			for (Path key : fileTree.reload(changedJsonFiles, jsonFailures)) {
+				ImmutableSet<CataJsonObject> objects = fileTree.get(key);
+				if (objects != null) {
+					changed.put(jsonDir.resolve(key), objects);
+				}
+				else {
+					removed.add(jsonDir.resolve(key));
+				}
+			}
+		}
+		Set<TilesetCoverage> result = new HashSet<>();
+		if (!changed.isEmpty() || !removed.isEmpty()) {
+			looksLikeGraph = buildLooksLikeGraph();
+			coverage = coverage.update(looksLikeGraph, changed, removed);
+			result.addAll(coverage.getCoverages());
+		}
+		if (!changedTilesetDirs.isEmpty()) {
+			List<Path> existingDirs = new ArrayList<>();
+			for (Path tilesetDir : changedTilesetDirs) {
+				tilesetFailures.remove(tilesetDir);
+				if (Files.isRegularFile(tilesetDir.resolve("tileset.txt"))) {
+					existingDirs.add(tilesetDir);
+				}
+			}
+			List<CataTileset> tilesets = loadTilesets(existingDirs);
+			// coverage of removed tilesets is dropped and coverage of changed tilesets is replaced
+			coverage = coverage.withTilesets(tilesets, changedTilesetDirs);
+			result.removeIf(c -> changedTilesetDirs.contains(c.getTileset().getPath()));
+			for (CataTileset tileset : tilesets) {
+				result.add(Objects.requireNonNull(coverage.getCoverage(tileset.getPath())));
+			}
+			// ids of tiles that were removed from reloaded tilesets stay interned
+			if (coverage.getIdDictionary().size() > 2 * countTileIds(coverage)) {
+				coverage = coverage.withIdDictionary(renewIdDictionary());
+			}
+		}
+		if (!result.isEmpty()) {
+			writeReport(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Write coverage reports and configured exports for all tilesets to output directory.
+	 * Nothing is written if output directory has not been configured.
+	 *
+	 * @throws IOException when an I/O error occurred while writing reports.
+	 */
+	public void writeReport() throws IOException {
+		writeReport(getCoverages());
+	}
+
+	/**
+	 * Write coverage of all tilesets to a binary snapshot file.
+	 *
+	 * @param file path to snapshot file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing snapshot.
+	 * @see CoverageSnapshot
+	 */
+	public void writeSnapshot(Path file) throws IOException {
+
+		try (Profiler.Phase ignored = profiler.phase("write snapshot")) {
+			CoverageSnapshot.write(getCoverages(), file, gameDir);
+		}
+	}
+
+	private void writeReport(Set<TilesetCoverage> coverageSet) throws IOException {
+
+		if (outputDir != null) {
+			try (Profiler.Phase ignored = profiler.phase("write report")) {
+				new TilesetCoverageReport(coverageSet, gameDir).writeToFile(outputDir, tilesetExecutor);
+			}
+			// exports always contain coverage of all tilesets
+			for (CoverageExport export : exports) {
+				try (Profiler.Phase ignored = profiler.phase("write " + export.name().toLowerCase(Locale.ROOT))) {
+					export.writeToFile(getCoverages(), outputDir, gameDir);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return dictionary used to map ids of newly loaded coverage.
+	 */
+	private IdDictionary getIdDictionary() {
+		return session != null ? session.getIdDictionary() : idDictionary;
+	}
+
+	/**
+	 * Replace the dictionary used to map ids, in the session when the workspace was built with one.
+	 *
+	 * @return the new dictionary.
+	 */
+	private IdDictionary renewIdDictionary() {
+
+		if (session != null) {
+			return session.renewIdDictionary();
+		}
+		idDictionary = new IdDictionary();
+		return idDictionary;
+	}
+
+	/**
+	 * @return number of distinct tile ids of all tilesets in given coverage.
+	 */
+	private static int countTileIds(MultiTilesetCoverage coverage) {
+
+		IdDictionary dictionary = coverage.getIdDictionary();
+		TileIdSet result = TileIdSet.of(dictionary, List.of());
+		for (TilesetCoverage tilesetCoverage : coverage.getCoverages()) {
+			result = result.union(tilesetCoverage.getTileset().getTileIds(dictionary));
+		}
+		return result.size();
+	}
+
+	/**
+	 * Load tilesets in given directories, in parallel when a tileset executor is configured.
+	 * Tilesets that fail to load are recorded in {@link #tilesetFailures} and skipped.
+	 *
+	 * @param tilesetDirs paths to tileset directories.
+	 * @return list of tilesets that were loaded, in order of given directories.
+	 *
+	 * @throws InterruptedIOException when the thread was interrupted while waiting for tilesets to load.
+	 */
+	private List<CataTileset> loadTilesets(List<Path> tilesetDirs) throws InterruptedIOException {
+
+		List<CataTileset> result = new ArrayList<>();
+		if (tilesetExecutor == null || tilesetDirs.size() < 2) {
+			for (Path tilesetDir : tilesetDirs) {
+				try {
+					result.add(loadTileset(tilesetDir));
+				}
+				catch (Exception e) {
+					tilesetFailures.put(tilesetDir, e);
+				}
+			}
+			return result;
+		}
+		List<Future<CataTileset>> futures = new ArrayList<>();
+		for (Path tilesetDir : tilesetDirs) {
+			futures.add(tilesetExecutor.submit(() -> loadTileset(tilesetDir)));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				result.add(futures.get(i).get());
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				tilesetFailures.put(tilesetDirs.get(i), (Exception) cause);
+			}
+			catch (InterruptedException e) {
+				futures.forEach(f -> f.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while loading tilesets");
+			}
+		}
+		return result;
+	}
+
+	private CataTileset loadTileset(Path tilesetDir) throws IOException {
+
+		Path name = tilesetDir.getFileName();
+		return profiler.measure(Profiler.Kind.TILESET, name != null ? name.toString() : tilesetDir.toString(),
+				-1, () -> new CataTileset(tilesetDir, cache));
+	}
+
+	private LooksLikeGraph buildLooksLikeGraph() {
+
+		List<ImmutableSet<CataJsonObject>> objectSets = new ArrayList<>();
+		for (CataJsonFileTree fileTree : fileTrees) {
+			objectSets.addAll(fileTree.values());
+		}
+		return LooksLikeGraph.of(objectSets, CopyFromResolver.of(objectSets, pool));
+	}
+
+	/**
+	 * @return paths to all JSON files in given JSON directory and all files loaded from it,
+	 * including files that no longer exist.
+	 */
+	private Set<Path> scanJsonDir(Path dir) throws IOException {
+
+		Set<Path> result = new TreeSet<>(jsonFailures.keySet());
+		if (Files.isDirectory(dir)) {
+			try (Stream<Path> stream = Files.find(dir, Integer.MAX_VALUE, (p, bfa) -> bfa.isRegularFile())) {
+				stream.forEach(result::add);
+			}
+		}
+		for (CataJsonFileTree fileTree : fileTrees) {
+			for (Path key : fileTree.keySet()) {
+				Path file = jsonDir.resolve(key);
+				if (file.startsWith(dir) && !file.equals(dir)) {
+					result.add(file);
+				}
+			}
+		}
+		result.removeIf(p -> !p.startsWith(dir));
+		return result;
+	}
+
+	/**
+	 * @return paths to all tileset directories in gfx directory and all tileset directories
+	 * loaded from it, including directories that no longer exist.
+	 */
+	private Set<Path> scanGfxDir() throws IOException {
+
+		Set<Path> result = new TreeSet<>(tilesetFailures.keySet());
+		result.addAll(findTilesetDirs());
+		for (TilesetCoverage tilesetCoverage : getCoverages()) {
+			result.add(tilesetCoverage.getTileset().getPath());
+		}
+		return result;
+	}
+
+	private List<Path> findTilesetDirs() throws IOException {
+
+		try (Stream<Path> stream = Files.find(gfxDir, 1, (p, bfa) -> !p.equals(gfxDir) && bfa.isDirectory())) {
+			return stream.sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * @return {@code Set} of coverage for every loaded tileset.
+	 */
+	public ImmutableSet<TilesetCoverage> getCoverages() {
+		return coverage != null ? ImmutableSet.copyOf(coverage.getCoverages()) : ImmutableSet.of();
+	}
+
+	/**
+	 * @param tilesetDir path to tileset directory.
+	 * @return coverage for tileset in given directory or {@code null} if the tileset was not loaded.
+	 */
+	public @Nullable TilesetCoverage getCoverage(Path tilesetDir) {
+		return coverage != null ? coverage.getCoverage(tilesetDir) : null;
+	}
+
+	/**
+	 * @return exceptions thrown while loading tilesets mapped to paths of tileset directories.
+	 * Tilesets that failed to load are not included in coverage.
+	 */
+	public ImmutableMap<Path, Exception> getTilesetFailures() {
+		return ImmutableMap.copyOf(tilesetFailures);
+	}
+
+	/**
+	 * @return exceptions thrown while reloading JSON files mapped to paths of JSON files.
+	 * Files that failed to reload keep coverage computed from their last successfully loaded content.
+	 */
+	public ImmutableMap<Path, Exception> getJsonFailures() {
+		return ImmutableMap.copyOf(jsonFailures);
+	}
+
+	/**
+	 * @return graph of {@code looks_like} references between all loaded objects.
+	 */
+	public LooksLikeGraph getLooksLikeGraph() {
+		return looksLikeGraph;
+	}
+
+	/**
+	 * @return path to Cataclysm game directory.
+	 */
+	public Path getGameDir() {
+		return gameDir;
+	}
+
+	/**
+	 * @return paths to directories that contain JSON files included in coverage.
+	 */
+	public ImmutableList<Path> getJsonDirs() {
+		return jsonTargets.stream().map(jsonDir::resolve).collect(ImmutableList.toImmutableList());
+	}
+
+	/**
+	 * @return path to directory that contains tileset directories.
+	 */
+	public Path getGfxDir() {
+		return gfxDir;
+	}
+
+	/**
+	 * @return path to directory where coverage reports are written or {@code null} if not configured.
+	 */
+	public @Nullable Path getOutputDir() {
+		return outputDir;
+	}
+}
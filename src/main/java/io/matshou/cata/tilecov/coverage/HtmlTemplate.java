@@ -0,0 +1,118 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * This class represents a precompiled fragment of HTML markup with positional placeholders.
+ * <p>
+ * The template source is split on {@code {}} placeholders once when the template is compiled,
+ * and rendering only writes the literal parts and escaped values in order to the given writer.
+ * No intermediate document or string is created, which makes templates suitable for streaming
+ * large pages straight to file.
+ */
+final class HtmlTemplate {
+
+	private static final String PLACEHOLDER = "{}";
+
+	private final String[] parts;
+
+	private HtmlTemplate(String[] parts) {
+		this.parts = parts;
+	}
+
+	/**
+	 * Compile template from given source markup.
+	 *
+	 * @param source markup with {@code {}} placeholders for values.
+	 * @return new precompiled template.
+	 */
+	@Contract("_ -> new")
+	static HtmlTemplate compile(String source) {
+
+		List<String> parts = new ArrayList<>();
+		int start = 0;
+		for (int i = source.indexOf(PLACEHOLDER); i >= 0; i = source.indexOf(PLACEHOLDER, start)) {
+			parts.add(source.substring(start, i));
+			start = i + PLACEHOLDER.length();
+		}
+		parts.add(source.substring(start));
+		return new HtmlTemplate(parts.toArray(String[]::new));
+	}
+
+	/**
+	 * @return number of values this template expects to render.
+	 */
+	int getPlaceholderCount() {
+		return parts.length - 1;
+	}
+
+	/**
+	 * Write this template to given writer, replacing each placeholder with
+	 * the HTML escaped string representation of value in the same position.
+	 *
+	 * @param writer writer to write rendered markup to.
+	 * @param values values to substitute placeholders with.
+	 *
+	 * @throws IllegalArgumentException if number of values does not match number of placeholders.
+	 * @throws IOException if an I/O error occurred while writing.
+	 */
+	void render(Writer writer, Object... values) throws IOException {
+
+		if (values.length != getPlaceholderCount()) {
+			String msg = "Expected %d template values but got %d";
+			throw new IllegalArgumentException(String.format(msg, getPlaceholderCount(), values.length));
+		}
+		for (int i = 0; i < values.length; i++) {
+			writer.write(parts[i]);
+			escape(writer, String.valueOf(values[i]));
+		}
+		writer.write(parts[values.length]);
+	}
+
+	/**
+	 * Write given text to writer with HTML special characters escaped.
+	 * The result is safe to use both as element text and as quoted attribute value.
+	 */
+	static void escape(Writer writer, String text) throws IOException {
+
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			String entity = switch (text.charAt(i)) {
+				case '&' -> "&amp;";
+				case '<' -> "&lt;";
+				case '>' -> "&gt;";
+				case '"' -> "&quot;";
+				case '\u00a0' -> "&nbsp;";
+				default -> null;
+			};
+			if (entity != null) {
+				writer.write(text, start, i - start);
+				writer.write(entity);
+				start = i + 1;
+			}
+		}
+		writer.write(text, start, text.length() - start);
+	}
+}
@@ -0,0 +1,491 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+
+import io.matshou.cata.tilecov.json.CataIdentifiableFilter;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.CopyFromResolver;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
+import io.matshou.cata.tilecov.profile.CoverageEvaluationEvent;
+import io.matshou.cata.tilecov.profile.FileResolutionEvent;
+import io.matshou.cata.tilecov.profile.Metrics;
+import io.matshou.cata.tilecov.tile.CataTileset;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+import io.matshou.cata.tilecov.tile.TileIdSet;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+/**
+ * This class contains data on coverage of multiple {@link CataTileset} instances
+ * derived from the same set of JSON objects.
+ * <p>
+ * Coverage is computed in a single pass over objects. Filters are applied and {@code looks_like}
+ * references are resolved once for each object after which the object is classified against every
+ * tileset by testing membership of its id in tileset bitsets. The result is a {@link TilesetCoverage}
+ * view for each tileset, identical to coverage built with {@link TilesetCoverage.Builder}.
+ * <p>
+ * When an executor is configured resolved objects are classified against each tileset in parallel.
+ * Tile and object ids are mapped to bitset keys by the {@link IdDictionary} the coverage was created with,
+ * which is shared by all coverage instances derived from it.
+ */
+public final class MultiTilesetCoverage {
+
+	private final ImmutableSet<CataIdentifiableFilter> filters;
+	private final ImmutableSortedMap<Path, Set<CataJsonObject>> objects;
+	private final LooksLikeGraph looksLikeGraph;
+	private final ImmutableList<TilesetCoverage> coverages;
+	private final IdDictionary dictionary;
+	private final @Nullable ExecutorService executor;
+
+	private MultiTilesetCoverage(ImmutableSet<CataIdentifiableFilter> filters,
+			ImmutableSortedMap<Path, Set<CataJsonObject>> objects, LooksLikeGraph looksLikeGraph,
+			ImmutableList<TilesetCoverage> coverages, IdDictionary dictionary, @Nullable ExecutorService executor) {
+
+		this.dictionary = dictionary;
+		this.executor = executor;
+		this.filters = filters;
+		this.objects = objects;
+		this.looksLikeGraph = looksLikeGraph;
+		this.coverages = coverages;
+	}
+
+	/**
+	 * This class represents objects parsed from a single JSON file after filters have been
+	 * applied and {@code looks_like} references resolved, ready to be classified against tilesets.
+	 */
+	private static final class ResolvedFile {
+
+		private final IdDictionary dictionary;
+		private final String[] ids;
+		private final int[] keys;
+		private final boolean[] inherited;
+
+		private ResolvedFile(Set<CataJsonObject> objects, Set<CataIdentifiableFilter> filters,
+				LooksLikeGraph looksLikeGraph, IdDictionary dictionary, boolean directory) {
+
+			this.dictionary = dictionary;
+			List<CataJsonObject> included = new ArrayList<>(objects.size());
+			for (CataJsonObject object : objects) {
+				Optional<CataIdentifiableFilter> filter = filters.stream().filter(f -> f.match(object)).findFirst();
+				if (filter.isEmpty()) {
+					included.add(object);
+				}
+				// objects of directory entries are already counted in their files
+				else if (!directory) {
+					Metrics.getDefault().filterRejected(filter.get().name());
+				}
+			}
+			ids = new String[included.size()];
+			keys = new int[ids.length];
+			inherited = new boolean[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				CataJsonObject object = included.get(i);
+				ids[i] = object.getIds().get(0);
+				keys[i] = dictionary.indexOf(ids[i]);
+				inherited[i] = isInherited(object, looksLikeGraph);
+			}
+		}
+
+		private ImmutableMap<String, CoverageType> classify(TileIdSet tileIds) {
+
+			// sets of ids that use a different dictionary are checked by id
+			boolean sameDictionary = tileIds.getDictionary() == dictionary;
+			Map<String, CoverageType> fileCoverage = new HashMap<>();
+			for (int i = 0; i < ids.length; i++) {
+				if (sameDictionary ? tileIds.contains(keys[i]) : tileIds.contains(ids[i])) {
+					fileCoverage.put(ids[i], CoverageType.UNIQUE);
+				}
+				else if (inherited[i]) {
+					fileCoverage.put(ids[i], CoverageType.INHERITED);
+				}
+				else {
+					fileCoverage.put(ids[i], CoverageType.NO_COVERAGE);
+				}
+			}
+			return ImmutableMap.copyOf(fileCoverage);
+		}
+	}
+
+	private static boolean isInherited(CataJsonObject object, LooksLikeGraph looksLikeGraph) {
+		return looksLikeGraph.resolve(object) != object;
+	}
+
+	/**
+	 * Compute coverage of given objects for each of given tilesets.
+	 *
+	 * @param tilesets tilesets to compute coverage for.
+	 * @param filters conditions under which objects are excluded from coverage.
+	 * @param objects objects mapped to paths of JSON files they were parsed from.
+	 * @param looksLikeGraph graph used to resolve {@code looks_like} references or {@code null}
+	 * to build a graph over given objects with {@code copy-from} inheritance resolved.
+	 * @param dictionary dictionary used to map tile and object ids to keys.
+	 * @param executor executor used to classify objects against tilesets in parallel
+	 * or {@code null} to classify objects on the calling thread.
+	 * @return new instance of {@code MultiTilesetCoverage}.
+	 */
+	static MultiTilesetCoverage create(List<CataTileset> tilesets, Set<CataIdentifiableFilter> filters,
+			SortedMap<Path, Set<CataJsonObject>> objects, @Nullable LooksLikeGraph looksLikeGraph,
+			IdDictionary dictionary, @Nullable ExecutorService executor) {
+
+		if (looksLikeGraph == null) {
+			Collection<Set<CataJsonObject>> objectSets = objects.values();
+			looksLikeGraph = LooksLikeGraph.of(objectSets, CopyFromResolver.of(objectSets));
+		}
+		MultiTilesetCoverage empty = new MultiTilesetCoverage(ImmutableSet.copyOf(filters),
+				ImmutableSortedMap.copyOfSorted(objects), looksLikeGraph, ImmutableList.of(), dictionary, executor);
+		return empty.withTilesets(tilesets, Set.of());
+	}
+
+	/**
+	 * @param coverage coverage of a single tileset.
+	 * @return new instance of {@code MultiTilesetCoverage} that contains only given coverage.
+	 */
+	static MultiTilesetCoverage of(TilesetCoverage coverage) {
+		return new MultiTilesetCoverage(coverage.getFilters(), coverage.getObjects(),
+				coverage.getLooksLikeGraph(), ImmutableList.of(coverage), coverage.getIdDictionary(), null);
+	}
+
+	/**
+	 * Resolve objects of each given file once and classify them against each given tileset.
+	 *
+	 * @param files objects mapped to paths of JSON files they were parsed from.
+	 * @param tilesets tilesets to classify objects against.
+	 * @param looksLikeGraph graph used to resolve {@code looks_like} references.
+	 * @param directories paths of aggregated directory entries, which are excluded from metrics.
+	 * @return coverage data mapped to file paths for each tileset in order of given tilesets.
+	 */
+	private List<Map<Path, ImmutableMap<String, CoverageType>>> classify(Map<Path, Set<CataJsonObject>> files,
+			List<CataTileset> tilesets, LooksLikeGraph looksLikeGraph, Set<Path> directories) {
+
+		// tile ids are added to the dictionary before objects are resolved to dictionary keys
+		List<TileIdSet> tileIds = new ArrayList<>(tilesets.size());
+		for (CataTileset tileset : tilesets) {
+			tileIds.add(tileset.getTileIds(dictionary));
+		}
+		Map<Path, ResolvedFile> resolvedFiles = new HashMap<>();
+		int objectCount = 0;
+		if (!tilesets.isEmpty()) {
+			for (Map.Entry<Path, Set<CataJsonObject>> entry : files.entrySet()) {
+				FileResolutionEvent event = new FileResolutionEvent();
+				event.begin();
+				boolean directory = directories.contains(entry.getKey());
+				ResolvedFile resolvedFile =
+						new ResolvedFile(entry.getValue(), filters, looksLikeGraph, dictionary, directory);
+				if (event.shouldCommit()) {
+					event.commit(entry.getKey(), resolvedFile.ids.length, -1, null);
+				}
+				resolvedFiles.put(entry.getKey(), resolvedFile);
+				if (!directory) {
+					objectCount += resolvedFile.ids.length;
+				}
+			}
+		}
+		int classifiedCount = objectCount;
+		List<Callable<Map<Path, ImmutableMap<String, CoverageType>>>> tasks = new ArrayList<>(tilesets.size());
+		for (int i = 0; i < tilesets.size(); i++) {
+			CataTileset tileset = tilesets.get(i);
+			TileIdSet tilesetIds = tileIds.get(i);
+			tasks.add(() -> {
+				CoverageEvaluationEvent event = new CoverageEvaluationEvent();
+				event.begin();
+				Map<Path, ImmutableMap<String, CoverageType>> tilesetData = new HashMap<>();
+				for (Map.Entry<Path, ResolvedFile> entry : resolvedFiles.entrySet()) {
+					tilesetData.put(entry.getKey(), entry.getValue().classify(tilesetIds));
+				}
+				Metrics.getDefault().coverageEvaluated(classifiedCount);
+				if (event.shouldCommit()) {
+					event.commit(tileset.getPath(), classifiedCount, -1, tileset.getName());
+				}
+				return tilesetData;
+			});
+		}
+		List<Map<Path, ImmutableMap<String, CoverageType>>> result = new ArrayList<>(tasks.size());
+		try {
+			if (executor == null || tasks.size() < 2) {
+				for (Callable<Map<Path, ImmutableMap<String, CoverageType>>> task : tasks) {
+					result.add(task.call());
+				}
+			}
+			else {
+				for (Future<Map<Path, ImmutableMap<String, CoverageType>>> future : executor.invokeAll(tasks)) {
+					result.add(future.get());
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing tileset coverage", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			// tasks do not throw checked exceptions
+			throw new IllegalStateException(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Create a new multi tileset coverage that shares coverage of all tilesets with this instance
+	 * but maps ids to keys with given dictionary. Coverage is not computed again, tile ids are
+	 * mapped with the new dictionary the next time objects are classified against a tileset.
+	 *
+	 * @param dictionary dictionary used to map tile and object ids to keys.
+	 * @return new instance of {@code MultiTilesetCoverage} with given dictionary.
+	 */
+	@Contract("_ -> new")
+	public MultiTilesetCoverage withIdDictionary(IdDictionary dictionary) {
+
+		ImmutableList.Builder<TilesetCoverage> result = ImmutableList.builder();
+		for (TilesetCoverage coverage : coverages) {
+			result.add(coverage.withIdDictionary(dictionary));
+		}
+		return new MultiTilesetCoverage(filters, objects, looksLikeGraph, result.build(), dictionary, executor);
+	}
+
+	/**
+	 * Create a new multi tileset coverage where coverage of given tilesets is computed and added or,
+	 * for tilesets in the same directory as tilesets already covered, replaced. Objects are resolved
+	 * once for all given tilesets and coverage of other tilesets is shared with this instance.
+	 *
+	 * @param tilesets tilesets to compute coverage for.
+	 * @param removed paths to directories of tilesets whose coverage should be removed.
+	 * @return new instance of {@code MultiTilesetCoverage} with updated tilesets.
+	 */
+	@Contract("_, _ -> new")
+	public MultiTilesetCoverage withTilesets(Collection<CataTileset> tilesets, Set<Path> removed) {
+
+		List<Map<Path, ImmutableMap<String, CoverageType>>> data = classify(objects, List.copyOf(tilesets),
+				looksLikeGraph, TilesetCoverage.findDirectoryEntries(objects.keySet()));
+
+		Map<Path, TilesetCoverage> result = new LinkedHashMap<>();
+		for (TilesetCoverage coverage : coverages) {
+			if (!removed.contains(coverage.getTileset().getPath())) {
+				result.put(coverage.getTileset().getPath(), coverage);
+			}
+		}
+		int index = 0;
+		for (CataTileset tileset : tilesets) {
+			result.put(tileset.getPath(), new TilesetCoverage(tileset,
+					filters, objects, looksLikeGraph, dictionary, data.get(index++)));
+		}
+		return new MultiTilesetCoverage(filters, objects, looksLikeGraph, ImmutableList.copyOf(result.values()), dictionary, executor);
+	}
+
+	/**
+	 * Create a new multi tileset coverage that reflects changes to JSON files this coverage was derived from.
+	 * <p>
+	 * Only changed files and files that contain objects whose {@code looks_like} references resolve
+	 * differently in the given graph are resolved again, each of them once for all tilesets.
+	 * Entries for all other files are shared with this coverage instance.
+	 *
+	 * @param looksLikeGraph graph of {@code looks_like} references between objects after the change.
+	 * @param changed {@code Map} of file paths to objects that were parsed from changed files.
+	 * @param removed {@code Set} of paths to files that were removed.
+	 * @return new instance of {@code MultiTilesetCoverage} with updated entries.
+	 */
+	@Contract("_, _, _ -> new")
+	public MultiTilesetCoverage update(LooksLikeGraph looksLikeGraph,
+			Map<Path, ? extends Set<CataJsonObject>> changed, Set<Path> removed) {
+
+		Map<Path, Set<CataJsonObject>> tempObjects = new HashMap<>(objects);
+		tempObjects.keySet().removeAll(removed);
+
+		Map<Path, Set<CataJsonObject>> recompute = new HashMap<>(changed);
+		if (looksLikeGraph != this.looksLikeGraph) {
+			for (Map.Entry<Path, Set<CataJsonObject>> entry : tempObjects.entrySet()) {
+				if (!changed.containsKey(entry.getKey()) && entry.getValue().stream().anyMatch(o ->
+						isInherited(o, looksLikeGraph) != isInherited(o, this.looksLikeGraph))) {
+					recompute.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		tempObjects.putAll(recompute);
+		ImmutableSortedMap<Path, Set<CataJsonObject>> newObjects = ImmutableSortedMap.copyOf(tempObjects);
+
+		List<CataTileset> tilesets = new ArrayList<>(coverages.size());
+		for (TilesetCoverage coverage : coverages) {
+			tilesets.add(coverage.getTileset());
+		}
+		List<Map<Path, ImmutableMap<String, CoverageType>>> data = classify(recompute, tilesets, looksLikeGraph,
+				TilesetCoverage.findDirectoryEntries(newObjects.keySet()));
+
+		ImmutableList.Builder<TilesetCoverage> result = ImmutableList.builderWithExpectedSize(coverages.size());
+		for (int i = 0; i < coverages.size(); i++) {
+			result.add(coverages.get(i).withEntries(newObjects, looksLikeGraph, removed, data.get(i)));
+		}
+		return new MultiTilesetCoverage(filters, newObjects, looksLikeGraph, result.build(), dictionary, executor);
+	}
+
+	/**
+	 * This builder is used to construct a {@link MultiTilesetCoverage} object.
+	 * <p>
+	 * Call {@link #create(Collection)} to create a new builder and {@link #build()}
+	 * to instruct the builder to create a new {@code MultiTilesetCoverage} instance.
+	 */
+	public static class Builder {
+
+		private final List<CataTileset> tilesets;
+		private final Set<CataIdentifiableFilter> idFilters = new HashSet<>();
+		private final TreeMap<Path, Set<CataJsonObject>> cataJsonObjects = new TreeMap<>();
+		private @Nullable LooksLikeGraph looksLikeGraph;
+		private IdDictionary dictionary = new IdDictionary();
+		private @Nullable ExecutorService executor;
+
+		private Builder(Collection<CataTileset> tilesets) {
+			this.tilesets = new ArrayList<>(tilesets);
+			idFilters.add(CataIdentifiableFilter.NO_EMPTY_ID);
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for given tilesets.
+		 *
+		 * @param tilesets tilesets to create coverage for.
+		 * @return new instance of {@code Builder}.
+		 */
+		@Contract("_ -> new")
+		public static Builder create(Collection<CataTileset> tilesets) {
+			return new Builder(tilesets);
+		}
+
+		/**
+		 * Configure the builder to create coverage with specified
+		 * JSON objects that were parsed from given file path.
+		 *
+		 * @param path {@code Path} the specified objects should be mapped to.
+		 * @param objects {@code Set} of objects to use to construct coverage.
+		 * @return instance of this builder.
+		 */
+		@Contract("_, _ -> this")
+		public Builder withCataJsonObjects(Path path, Set<CataJsonObject> objects) {
+			cataJsonObjects.put(path, objects);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to resolve {@code looks_like} references with given graph.
+		 * When no graph is configured one will be built over all objects given to the builder
+		 * with properties inherited through {@code copy-from} chains resolved.
+		 *
+		 * @param looksLikeGraph graph used to resolve {@code looks_like} references.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withLooksLikeGraph(LooksLikeGraph looksLikeGraph) {
+			this.looksLikeGraph = looksLikeGraph;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to map tile and object ids to keys with given dictionary.
+		 * The dictionary is also used when the created coverage is updated.
+		 *
+		 * @param dictionary dictionary used to map ids to keys.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withIdDictionary(IdDictionary dictionary) {
+			this.dictionary = dictionary;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to classify objects against tilesets in parallel on given executor.
+		 * The executor is also used when the created coverage is updated.
+		 *
+		 * @param executor executor used to classify objects or {@code null} to use the calling thread.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withExecutor(@Nullable ExecutorService executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to exclude certain id's from coverage.
+		 *
+		 * @return instance of this builder.
+		 */
+		@Contract("-> this")
+		public Builder excludeOverlays() {
+
+			idFilters.add(CataIdentifiableFilter.NO_OVERLAYS);
+			return this;
+		}
+
+		/**
+		 * @return new instance of {@code MultiTilesetCoverage} based on builder configuration.
+		 */
+		@Contract("-> new")
+		public MultiTilesetCoverage build() {
+			return MultiTilesetCoverage.create(tilesets, idFilters, cataJsonObjects, looksLikeGraph, dictionary, executor);
+		}
+	}
+
+	/**
+	 * @return coverage of each tileset in order in which tilesets were added.
+	 */
+	public ImmutableList<TilesetCoverage> getCoverages() {
+		return coverages;
+	}
+
+	/**
+	 * @param tilesetDir path to tileset directory.
+	 * @return coverage of tileset in given directory or {@code null} if the tileset is not covered.
+	 */
+	public @Nullable TilesetCoverage getCoverage(Path tilesetDir) {
+
+		for (TilesetCoverage coverage : coverages) {
+			if (coverage.getTileset().getPath().equals(tilesetDir)) {
+				return coverage;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return dictionary used to map tile and object ids to keys.
+	 */
+	public IdDictionary getIdDictionary() {
+		return dictionary;
+	}
+}
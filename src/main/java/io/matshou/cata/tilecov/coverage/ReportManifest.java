@@ -0,0 +1,197 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+/**
+ * This class represents a manifest of files written to report output directory.
+ * <p>
+ * For every output file the manifest records a hash and size of file contents, which lets
+ * the report skip rewriting files whose contents did not change since the last run.
+ * Manifest is stored in output directory as {@value #FILE_NAME} and is safe to update
+ * from multiple threads. Entries are always written sorted by file name.
+ */
+final class ReportManifest {
+
+	static final String FILE_NAME = ".tilecov-manifest.json";
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+	private final Path manifestPath;
+	private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Represents recorded contents of single output file.
+	 */
+	static final class Entry {
+
+		private final String hash;
+		private final long size;
+
+		Entry(String hash, long size) {
+			this.hash = hash;
+			this.size = size;
+		}
+
+		/**
+		 * @return hash of file contents.
+		 */
+		String getHash() {
+			return hash;
+		}
+
+		/**
+		 * @return size of file contents in bytes.
+		 */
+		long getSize() {
+			return size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Entry entry = (Entry) o;
+			return size == entry.size && hash.equals(entry.hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(hash, size);
+		}
+	}
+
+	private ReportManifest(Path manifestPath) {
+		this.manifestPath = manifestPath;
+	}
+
+	/**
+	 * Read manifest from given output directory. When the manifest does not exist
+	 * or cannot be read an empty manifest is returned, and all files will be written.
+	 *
+	 * @param outputDir report output directory.
+	 * @return manifest for given output directory.
+	 */
+	@Contract("_ -> new")
+	static ReportManifest read(Path outputDir) {
+
+		ReportManifest manifest = new ReportManifest(outputDir.resolve(FILE_NAME));
+		if (Files.isRegularFile(manifest.manifestPath)) {
+			try (Reader reader = Files.newBufferedReader(manifest.manifestPath, StandardCharsets.UTF_8)) {
+				Map<String, Entry> entries = GSON.fromJson(reader, ENTRIES_TYPE);
+				if (entries != null) {
+					entries.forEach((name, entry) -> {
+						if (name != null && entry != null && entry.hash != null) {
+							manifest.entries.put(name, entry);
+						}
+					});
+				}
+			}
+			catch (IOException | JsonParseException e) {
+				// corrupted manifest only means that all files are written again
+				manifest.entries.clear();
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Check whether output file with given name is up to date. A file is up to date when
+	 * manifest contains an entry for the file equal to given entry, and the file exists with
+	 * the recorded size.
+	 *
+	 * @param name path to file relative to output directory.
+	 * @param entry entry describing contents the file should have.
+	 * @return {@code true} if the file does not need to be written.
+	 */
+	boolean isUpToDate(String name, Entry entry) {
+
+		if (!entry.equals(entries.get(name))) {
+			return false;
+		}
+		Path file = manifestPath.resolveSibling(name);
+		try {
+			return Files.isRegularFile(file) && Files.size(file) == entry.size;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Record contents of output file with given name.
+	 *
+	 * @param name path to file relative to output directory.
+	 * @param entry entry describing contents of the file.
+	 */
+	void put(String name, Entry entry) {
+		entries.put(name, entry);
+	}
+
+	/**
+	 * @return recorded entry for output file with given name or {@code null} if there is no entry.
+	 */
+	@Nullable Entry get(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * Write this manifest to output directory, replacing the previous manifest atomically.
+	 *
+	 * @throws IOException when an I/O error occurred while writing manifest.
+	 */
+	void write() throws IOException {
+
+		Path tempFile = AtomicFiles.createTempFile(manifestPath);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				GSON.toJson(entries, ENTRIES_TYPE, writer);
+			}
+			AtomicFiles.moveAtomically(tempFile, manifestPath);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+}
@@ -20,16 +20,21 @@ package io.matshou.cata.tilecov.coverage;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 
+import io.matshou.cata.tilecov.AnalysisSession;
 import io.matshou.cata.tilecov.json.CataIdentifiableFilter;
 import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
 import io.matshou.cata.tilecov.tile.CataTileset;
+import io.matshou.cata.tilecov.tile.IdDictionary;
 
 /**
  * This class contains data on {@link CataTileset} coverage.
@@ -78,6 +83,17 @@ public class TilesetCoverage {
 			}
 		}
 
+		/**
+		 * Create coverage statistics from precomputed amounts of objects of each coverage type.
+		 */
+		CoverageStats(int unique, int inherited, int none) {
+
+			total = unique + inherited + none;
+			type[CoverageType.UNIQUE.ordinal()] = unique;
+			type[CoverageType.INHERITED.ordinal()] = inherited;
+			type[CoverageType.NO_COVERAGE.ordinal()] = none;
+		}
+
 		/**
 		 * @return total amount of objects that were considered in tile coverage.
 		 */
@@ -127,54 +143,129 @@ public class TilesetCoverage {
 	 */
 	final ImmutableMap<Path, CoverageStats> stats;
 
-	private TilesetCoverage(CataTileset tileset, TreeMap<Path,
-			Set<CataJsonObject>> jsonObjectsMapped, Set<CataIdentifiableFilter> filters) {
+	/**
+	 * Conditions under which objects are excluded from coverage.
+	 */
+	private final ImmutableSet<CataIdentifiableFilter> filters;
+
+	/**
+	 * Objects mapped to paths of JSON files they were parsed from.
+	 */
+	private final ImmutableSortedMap<Path, Set<CataJsonObject>> objects;
+
+	/**
+	 * Graph used to resolve {@code looks_like} references of objects.
+	 */
+	private final LooksLikeGraph looksLikeGraph;
+
+	/**
+	 * Dictionary used to map tile and object ids to keys, reused when the coverage is updated.
+	 */
+	private final IdDictionary dictionary;
+
+	TilesetCoverage(CataTileset tileset, ImmutableSet<CataIdentifiableFilter> filters,
+			ImmutableSortedMap<Path, Set<CataJsonObject>> objects, LooksLikeGraph looksLikeGraph,
+			IdDictionary dictionary, Map<Path, ImmutableMap<String, CoverageType>> data) {
 
 		this.tileset = tileset;
-		Set<String> tileIds = tileset.getTileIds();
+		this.filters = filters;
+		this.objects = objects;
+		this.looksLikeGraph = looksLikeGraph;
+		this.dictionary = dictionary;
 
-		Map<Path, ImmutableMap<String, CoverageType>> tempData = new HashMap<>();
 		Map<Path, CoverageStats> tempStats = new HashMap<>();
+		for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : data.entrySet()) {
+			tempStats.put(entry.getKey(), new CoverageStats(entry.getValue()));
+		}
+		this.data = ImmutableSortedMap.copyOf(data);
+		this.stats = ImmutableMap.copyOf(tempStats);
+	}
 
-		for (Map.Entry<Path, Set<CataJsonObject>> entry : jsonObjectsMapped.entrySet()) {
-			Set<CataJsonObject> objects = entry.getValue();
-			Map<String, CoverageType> fileCoverage = new HashMap<>();
-			for (CataJsonObject object : objects) {
-				// the object has been excluded by filters
-				if (filters.stream().anyMatch(f -> f.match(object))) {
-					continue;
-				}
-				String objectId = object.getIds().get(0);
-				if (tileIds.contains(objectId)) {
-					fileCoverage.put(objectId, CoverageType.UNIQUE);
-					continue;
-				}
-				// copy object id from object that looks like the object
-				CataJsonObject looksLike = object.looksLikeWhat(objects);
-				if (!looksLike.equals(object)) {
-					fileCoverage.put(objectId, CoverageType.INHERITED);
-					continue;
-				}
-				fileCoverage.put(objectId, CoverageType.NO_COVERAGE);
-			}
-			tempData.put(entry.getKey(), ImmutableMap.copyOf(fileCoverage));
-			tempStats.put(entry.getKey(), new CoverageStats(fileCoverage));
+	private TilesetCoverage(TilesetCoverage coverage, ImmutableSortedMap<Path, Set<CataJsonObject>> objects,
+			LooksLikeGraph looksLikeGraph, IdDictionary dictionary,
+			ImmutableSortedMap<Path, ImmutableMap<String, CoverageType>> data, ImmutableMap<Path, CoverageStats> stats) {
+
+		this.tileset = coverage.tileset;
+		this.filters = coverage.filters;
+		this.objects = objects;
+		this.looksLikeGraph = looksLikeGraph;
+		this.dictionary = dictionary;
+		this.data = data;
+		this.stats = stats;
+	}
+
+	/**
+	 * Create a new tileset coverage where entries for given files are replaced or removed.
+	 * Statistics are computed only for replaced entries.
+	 *
+	 * @param objects objects mapped to paths of JSON files after the change.
+	 * @param looksLikeGraph graph of {@code looks_like} references after the change.
+	 * @param removed {@code Set} of paths to files that were removed.
+	 * @param replaced coverage data mapped to paths of files that were added or recomputed.
+	 * @return new instance of {@code TilesetCoverage} with updated entries.
+	 */
+	TilesetCoverage withEntries(ImmutableSortedMap<Path, Set<CataJsonObject>> objects, LooksLikeGraph looksLikeGraph,
+			Set<Path> removed, Map<Path, ImmutableMap<String, CoverageType>> replaced) {
+
+		Map<Path, ImmutableMap<String, CoverageType>> tempData = new HashMap<>(data);
+		Map<Path, CoverageStats> tempStats = new HashMap<>(stats);
+
+		for (Path path : removed) {
+			tempData.remove(path);
+			tempStats.remove(path);
+		}
+		for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : replaced.entrySet()) {
+			tempData.put(entry.getKey(), entry.getValue());
+			tempStats.put(entry.getKey(), new CoverageStats(entry.getValue()));
 		}
-		data = ImmutableSortedMap.copyOf(tempData);
-		stats = ImmutableMap.copyOf(tempStats);
+		return new TilesetCoverage(this, objects, looksLikeGraph, dictionary,
+				ImmutableSortedMap.copyOf(tempData), ImmutableMap.copyOf(tempStats));
+	}
+
+	/**
+	 * Create a new tileset coverage that shares all entries with this coverage
+	 * but maps ids to keys with given dictionary when it is updated.
+	 *
+	 * @param dictionary dictionary used to map tile and object ids to keys.
+	 * @return new instance of {@code TilesetCoverage} with given dictionary.
+	 */
+	TilesetCoverage withIdDictionary(IdDictionary dictionary) {
+		return new TilesetCoverage(this, objects, looksLikeGraph, dictionary, data, stats);
+	}
+
+	/**
+	 * Create a new tileset coverage that reflects changes to JSON files this coverage was derived from.
+	 * <p>
+	 * Coverage data and statistics are computed only for changed files and files that contain objects
+	 * whose {@code looks_like} references resolve differently in the given graph. Entries for all
+	 * other files are shared with this coverage instance.
+	 *
+	 * @param looksLikeGraph graph of {@code looks_like} references between objects after the change.
+	 * @param changed {@code Map} of file paths to objects that were parsed from changed files.
+	 * @param removed {@code Set} of paths to files that were removed.
+	 * @return new instance of {@code TilesetCoverage} with updated entries.
+	 * @see MultiTilesetCoverage#update(LooksLikeGraph, Map, Set)
+	 */
+	public TilesetCoverage update(LooksLikeGraph looksLikeGraph,
+			Map<Path, ? extends Set<CataJsonObject>> changed, Set<Path> removed) {
+		return MultiTilesetCoverage.of(this).update(looksLikeGraph, changed, removed).getCoverages().get(0);
 	}
 
 	/**
 	 * This builder is used to construct a {@link TilesetCoverage} object.
 	 * <p>
-	 * Call {@link #create(Path)} or {@link #create(CataTileset)} to create a new builder
-	 * and {@link #build()} to instruct the builder to create a new {@code TilesetCoverage} instance.
+	 * Call {@link #create(Path)}, {@link #create(Path, AnalysisSession)} or {@link #create(CataTileset)}
+	 * to create a new builder and {@link #build()} to instruct the builder to create a new
+	 * {@code TilesetCoverage} instance.
 	 */
 	public static class Builder {
 
 		private final CataTileset tileset;
 		private final Set<CataIdentifiableFilter> idFilters = new HashSet<>();
 		private final TreeMap<Path, Set<CataJsonObject>> cataJsonObjects = new TreeMap<>();
+		private @Nullable LooksLikeGraph looksLikeGraph;
+		private IdDictionary dictionary = new IdDictionary();
+		private @Nullable ExecutorService executor;
 
 		private Builder(CataTileset tileset) {
 			this.tileset = tileset;
@@ -199,6 +290,26 @@ public class TilesetCoverage {
 			return new Builder(tilesetDir);
 		}
 
+		/**
+		 * Create a new {@link Builder} instance for given path in given session. The tileset
+		 * is loaded from cache of the session and coverage is evaluated on its tileset executor
+		 * with ids mapped to keys by the dictionary of the session.
+		 *
+		 * @param tilesetDir directory to construct the tileset from.
+		 * @param session session the coverage is evaluated in.
+		 * @return new instance of {@code Builder}.
+		 *
+		 * @throws IOException if an error occurred while constructing {@link CataTileset}.
+		 */
+		@Contract("_, _ -> new")
+		public static Builder create(Path tilesetDir, AnalysisSession session) throws IOException {
+
+			Builder builder = new Builder(new CataTileset(tilesetDir, session.getCache()));
+			builder.executor = session.getTilesetExecutor();
+			builder.dictionary = session.getIdDictionary();
+			return builder;
+		}
+
 		/**
 		 * Create a new {@link Builder} instance for given tileset.
 		 *
@@ -224,6 +335,20 @@ public class TilesetCoverage {
 			return this;
 		}
 
+		/**
+		 * Configure the builder to resolve {@code looks_like} references with given graph.
+		 * When no graph is configured one will be built over all objects given to the builder
+		 * with properties inherited through {@code copy-from} chains resolved.
+		 *
+		 * @param looksLikeGraph graph used to resolve {@code looks_like} references.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withLooksLikeGraph(LooksLikeGraph looksLikeGraph) {
+			this.looksLikeGraph = looksLikeGraph;
+			return this;
+		}
+
 		/**
 		 * Configure the builder to exclude certain id's from coverage.
 		 *
@@ -241,10 +366,61 @@ public class TilesetCoverage {
 		 */
 		@Contract("-> new")
 		public TilesetCoverage build() {
-			return new TilesetCoverage(tileset, cataJsonObjects, idFilters);
+			return MultiTilesetCoverage.create(List.of(tileset),
+					idFilters, cataJsonObjects, looksLikeGraph, dictionary, executor).getCoverages().get(0);
 		}
 	}
 
+	/**
+	 * @return conditions under which objects are excluded from coverage.
+	 */
+	ImmutableSet<CataIdentifiableFilter> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * @return objects mapped to paths of JSON files they were parsed from.
+	 */
+	ImmutableSortedMap<Path, Set<CataJsonObject>> getObjects() {
+		return objects;
+	}
+
+	/**
+	 * @return graph used to resolve {@code looks_like} references of objects.
+	 */
+	LooksLikeGraph getLooksLikeGraph() {
+		return looksLikeGraph;
+	}
+
+	/**
+	 * @return dictionary used to map tile and object ids to keys.
+	 */
+	IdDictionary getIdDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Find paths of entries that aggregate objects of other entries. JSON file trees map every
+	 * JSON directory to all objects of files in that directory, so objects of directory entries
+	 * are also found under entries of their files and should not be counted twice.
+	 *
+	 * @param paths paths of coverage entries.
+	 * @return {@code Set} of given paths that are parent directories of other given paths.
+	 */
+	static Set<Path> findDirectoryEntries(Collection<Path> paths) {
+
+		Set<Path> entries = paths instanceof Set ? (Set<Path>) paths : new HashSet<>(paths);
+		Set<Path> result = new HashSet<>();
+		for (Path path : entries) {
+			for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+				if (entries.contains(parent)) {
+					result.add(parent);
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @return {@code CataTileset} associated with this coverage.
 	 */
@@ -284,4 +460,17 @@ public class TilesetCoverage {
 		}
 		return result;
 	}
+
+	/**
+	 * Write this coverage to a binary snapshot file that can later be opened with
+	 * {@link CoverageSnapshot#open(Path)} without recomputing coverage.
+	 *
+	 * @param file path to snapshot file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 * @see CoverageSnapshot#write(Collection, Path)
+	 */
+	public void writeSnapshot(Path file) throws IOException {
+		CoverageSnapshot.write(Set.of(this), file);
+	}
 }
@@ -17,235 +17,423 @@
  */
 package io.matshou.cata.tilecov.coverage;
 
-import java.io.File;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.util.*;
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Attributes;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Tag;
-
-import com.google.common.collect.ImmutableMap;
-import com.google.common.io.Files;
-
-import io.matshou.cata.tilecov.Main;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+import io.matshou.cata.tilecov.profile.Metrics;
+import io.matshou.cata.tilecov.profile.ReportPageEvent;
 
 import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
-import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
 
 /**
  * This class represents a report that relays information on how much game objects
  * a particular tileset is covering. It also includes information on the type of
  * coverage being provided to each object.
  * <p>
- * Once the class object is constructed an HTML document will be created will a complete
- * coverage report. To write the report to file call {@link #writeToFile(Path)} method.
+ * Reports are not built in memory. Each HTML page is rendered from precompiled templates
+ * and streamed row by row straight to a buffered file channel, so memory used by the report
+ * does not grow with the number of objects covered. To write the report to file call
+ * {@link #writeToFile(Path)} or {@link #writeToFile(Path, ExecutorService)} method.
  */
 public class TilesetCoverageReport {
 
-	private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.0");
+	private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT =
+			ThreadLocal.withInitial(() -> new DecimalFormat("0.0"));
+
+	/** Hash function used to detect changes of output file contents. */
+	private static final HashFunction CONTENT_HASH = Hashing.murmur3_128();
+
+	/** Pages are written in order of tileset names, or directories for tilesets with the same name. */
+	static final Comparator<TilesetCoverage> PAGE_ORDER = Comparator
+			.comparing((TilesetCoverage c) -> c.getTileset().getName())
+			.thenComparing(c -> c.getTileset().getPath());
 
-	private static final Element FLEX_TABLE = divWithAttributes(Map.of("class", "flex-table"));
-	private static final Element FLEX_ROW = divWithAttributes(Map.of("class", "flex-row"));
-	private static final Element FLEX_COLUMN = divWithAttributes(Map.of("class", "flex-column"));
-	private static final Element INDENTED_TEXT = divWithAttributes(Map.of("class", "indented-text"));
+	/** Size of character buffer used when streaming page to file. */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
 
 	private static final Path[] CSS_FILE_PATHS = {
 			Paths.get("css/main.css"), Paths.get("css/table.css")
 	};
-	private final Map<TilesetCoverage, Document> coverageReports = new HashMap<>();
+
+	/** Page head and table header, expects page title and tileset display name. */
+	private static final HtmlTemplate PAGE_HEADER = HtmlTemplate.compile("""
+			<html lang="en">
+			 <head>
+			  <link rel="stylesheet" href="css/main.css">
+			  <link rel="stylesheet" href="css/table.css">
+			  <title>{}</title>
+			 </head>
+			 <body>
+			  <h1>{}</h1>
+			  <hr>
+			  <div class="flex-table coverage wide">
+			   <div class="flex-row">
+			    <div class="flex-column">
+			     <div class="indented-text">
+			      Files
+			     </div>
+			    </div>
+			    <div class="flex-column">
+			     <img src="assets/total.png" alt="total" width="25" height="25">
+			    </div>
+			    <div class="flex-column">
+			     <img src="assets/eye.png" alt="looks-like" width="25" height="25">
+			    </div>
+			    <div class="flex-column">
+			     <img src="assets/x.png" alt="no-coverage" width="25" height="25">
+			    </div>
+			    <div class="flex-column">
+			     <div class="indented-text">
+			      Coverage
+			     </div>
+			    </div>
+			   </div>
+			""");
+
+	/**
+	 * Table row for single file, expects file link, file name, total, inherited
+	 * and no coverage count, coverage bar color and percentage (twice).
+	 */
+	private static final HtmlTemplate TABLE_ROW = HtmlTemplate.compile("""
+			   <div class="flex-row">
+			    <div>
+			     <div class="indented-text">
+			      <a href="{}" target="blank">{}</a>
+			     </div>
+			    </div>
+			    <div>
+			     {}
+			    </div>
+			    <div>
+			     {}
+			    </div>
+			    <div>
+			     {}
+			    </div>
+			    <div>
+			     <div class="coverage-bar" color="{}" style="flex: 0 0 {}"></div>
+			     <div class="coverage-text">
+			      {}
+			     </div>
+			    </div>
+			   </div>
+			""");
+
+	private static final HtmlTemplate PAGE_FOOTER = HtmlTemplate.compile("""
+			  </div>
+			 </body>
+			</html>""");
+
+	private final ImmutableList<TilesetCoverage> coverageList;
+	private final @Nullable Path gameDir;
 
 	/**
 	 * Create coverage reports for given {@code Set} of tileset coverages.
-	 * The constructor will create HTML document objects that will contain statistical
-	 * reports for every tileset. To write the documents to file call {@link #writeToFile(Path).}
+	 * No markup is rendered until the report is written to file by calling
+	 * {@link #writeToFile(Path)}, which renders one HTML page for every tileset.
+	 * Pages are always rendered in the order of tileset names.
+	 * <p>
+	 * Paths of files are displayed as they are stored in coverage.
 	 *
 	 * @param tilesetCoverage {@code Set} of tileset coverage to generate reports for.
+	 * @see #TilesetCoverageReport(Set, Path)
 	 */
 	public TilesetCoverageReport(Set<TilesetCoverage> tilesetCoverage) {
-
-		Document htmlDocument = Jsoup.parse("<html lang=\"en\">");
-		String title = "Cataclysm Tileset Coverage Report";
-
-		// create HTML header and append to document
-		appendHtmlHeader(htmlDocument, title);
-
-		// HTML body element
-		Element body = htmlDocument.body();
-
-		body.appendChild(new Element("h1").text(title));
-		body.appendChild(new Element("hr"));
-
-		String intro = "This document contains information about currently installed Cataclysm tilesets.";
-		body.appendChild(new Element("p").text(intro));
-
-		body.appendChild(new Element("h2").text("Table of Content"));
-		body.appendChild(new Element("hr"));
-
-		tilesetCoverage.forEach(this::createCoverageReport);
+		this(tilesetCoverage, null);
 	}
 
-	private void createCoverageReport(TilesetCoverage coverage) {
-
-		Document htmlDocument = Jsoup.parse("<html lang=\"en\">");
-		String tilesetName = coverage.getTileset().getDisplayName();
-
-		// create HTML header and append to document
-		appendHtmlHeader(htmlDocument, tilesetName + " - Tileset Coverage Report");
-
-		// HTML body element
-		Element body = htmlDocument.body();
-
-		body.appendChild(new Element("h1").text(tilesetName));
-		body.appendChild(new Element("hr"));
-
-		// table that will contain report data for tileset
-		Element table = FLEX_TABLE.shallowClone().addClass("coverage").addClass("wide");
-
-		// report table columns
-		Element tableColumns = FLEX_ROW.shallowClone().appendChildren(List.of(
-				cloneElement(FLEX_COLUMN, INDENTED_TEXT.shallowClone().text("Files")),
-				cloneElement(FLEX_COLUMN, imageElement("assets/total.png", "total", 25)),
-				cloneElement(FLEX_COLUMN, imageElement("assets/eye.png", "looks-like", 25)),
-				cloneElement(FLEX_COLUMN, imageElement("assets/x.png", "no-coverage", 25)),
-				cloneElement(FLEX_COLUMN, INDENTED_TEXT.shallowClone().text("Coverage"))
-		));
-		table.appendChild(tableColumns);
-
-		for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
-			CoverageStats coverageStats = Objects.requireNonNull(coverage.stats.get(entry.getKey()));
-			table.appendChild(getReportTableRow(entry.getKey(),
-					coverageStats.getObjectsTotal(),
-					coverageStats.getUniqueCoverageTotal(),
-					coverageStats.getInheritedTotal(),
-					coverageStats.getNoCoverageTotal()
-			));
-		}
-		body.appendChild(table);
+	/**
+	 * Create coverage reports for given {@code Set} of tileset coverages,
+	 * displaying paths of files relative to given game directory.
+	 *
+	 * @param tilesetCoverage {@code Set} of tileset coverage to generate reports for.
+	 * @param gameDir game directory the coverage was computed for
+	 * or {@code null} to display paths as they are stored in coverage.
+	 */
+	public TilesetCoverageReport(Set<TilesetCoverage> tilesetCoverage, @Nullable Path gameDir) {
+		this.coverageList = ImmutableList.sortedCopyOf(PAGE_ORDER, tilesetCoverage);
+		this.gameDir = gameDir;
+	}
 
-		// map the document to tileset coverage instance
-		coverageReports.put(coverage, htmlDocument);
+	/**
+	 * Write coverage report HTML pages to files in directory denoted by designated
+	 * output directory. Each page is named after the tileset it reports on. Along with
+	 * the HTML files multiple dependency files will be included in the output directory.
+	 * <p>
+	 * Output is incremental, a hash of every file written is recorded in a manifest in
+	 * output directory, and files whose contents did not change since they were last written
+	 * are left untouched. Changed files are written to a temporary file first and then
+	 * atomically moved in place, so readers never observe partially written files.
+	 *
+	 * @param outputDir path to directory where to write the file.
+	 * @return {@code Set} of paths to files that were written, in natural order.
+	 *
+	 * @throws IOException when an I/O error occurred while reading or writing from stream.
+	 * @throws FileNotFoundException when unable to find {@code coverage.css} file in jar or output directory.
+	 */
+	public ImmutableSortedSet<Path> writeToFile(Path outputDir) throws IOException {
+		return writeToFile(outputDir, null);
 	}
 
 	/**
-	 * Write the contents of HTML document containing the coverage report to a file
-	 * in directory denoted by designated output directory. The name of the file will
-	 * always be {@code coverage.html}. Along with the HTML file multiple
-	 * dependency files will be included in the output directory.
+	 * Write coverage report HTML pages to files in directory denoted by designated
+	 * output directory, streaming pages for different tilesets in parallel on given executor.
 	 *
 	 * @param outputDir path to directory where to write the file.
+	 * @param executor executor to write pages on or {@code null} to write pages on calling thread.
+	 * @return {@code Set} of paths to files that were written, in natural order.
 	 *
 	 * @throws IOException when an I/O error occurred while reading or writing from stream.
 	 * @throws FileNotFoundException when unable to find {@code coverage.css} file in jar or output directory.
+	 * @see #writeToFile(Path)
 	 */
-	public void writeToFile(Path outputDir) throws IOException {
+	public ImmutableSortedSet<Path> writeToFile(Path outputDir,
+			@Nullable ExecutorService executor) throws IOException {
 
-		// coverage CSS files
-		for (Path cssFilePath : CSS_FILE_PATHS) {
-			copyFileFromJar(cssFilePath.toString(), outputDir);
-		}
+		Files.createDirectories(outputDir);
+		ReportManifest manifest = ReportManifest.read(outputDir);
+		Queue<Path> written = new ConcurrentLinkedQueue<>();
+
+		copyStyleSheets(outputDir, manifest, written);
 		// copy all HTML asset files
 		String[] assetFilePaths = { "eye.png", "total.png", "x.png" };
 		for (String assetFilePath : assetFilePaths) {
-			copyFileFromJar("assets/" + assetFilePath, outputDir);
+			copyFileFromJar("assets/" + assetFilePath, outputDir, manifest, written);
+		}
+		// stream coverage report HTML pages to file
+		try {
+			if (executor == null || coverageList.size() < 2) {
+				for (TilesetCoverage coverage : coverageList) {
+					writePage(coverage, outputDir, manifest, written);
+				}
+				return ImmutableSortedSet.copyOf(written);
+			}
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (TilesetCoverage coverage : coverageList) {
+				tasks.add(() -> {
+					writePage(coverage, outputDir, manifest, written);
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+			return ImmutableSortedSet.copyOf(written);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing coverage report", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
 		}
-		// write coverage report HTML documents to file
-		for (Map.Entry<TilesetCoverage, Document> entry : coverageReports.entrySet()) {
-			Path htmlPath = outputDir.resolve(entry.getKey().getTileset().getName() + ".html");
-			Files.asCharSink(htmlPath.toFile(), Charset.defaultCharset()).write(entry.getValue().outerHtml());
+		finally {
+			// record pages that were written even if writing other pages failed
+			if (!written.isEmpty()) {
+				manifest.write();
+			}
 		}
 	}
 
-	private static void appendHtmlHeader(Document document, String title) {
+	/**
+	 * Copy coverage CSS files to given output directory, unless they are already present
+	 * with the same contents. Other pages that use the same style sheets as coverage reports
+	 * copy them with this method.
+	 *
+	 * @param outputDir path to directory to copy the files to.
+	 *
+	 * @throws IOException when an I/O exception occurred while copying files.
+	 * @throws FileNotFoundException when unable to find CSS files in jar.
+	 */
+	static void copyStyleSheets(Path outputDir) throws IOException {
 
-		// HTML head element
-		Element head = document.head();
+		ReportManifest manifest = ReportManifest.read(outputDir);
+		Queue<Path> written = new ConcurrentLinkedQueue<>();
+		copyStyleSheets(outputDir, manifest, written);
+		if (!written.isEmpty()) {
+			manifest.write();
+		}
+	}
+
+	private static void copyStyleSheets(Path outputDir,
+			ReportManifest manifest, Queue<Path> written) throws IOException {
 
 		for (Path cssFilePath : CSS_FILE_PATHS) {
-			Attributes linkAttributes = new Attributes();
-			linkAttributes.put("rel", "stylesheet");
-			linkAttributes.put("href", cssFilePath.toString());
+			copyFileFromJar(cssFilePath.toString().replace('\\', '/'), outputDir, manifest, written);
+		}
+	}
 
-			head.appendChild(new Element(Tag.valueOf("link"), null, linkAttributes));
+	/**
+	 * Stream HTML page with coverage report for given tileset to temporary file in output
+	 * directory, and move it in place of the page file only when its contents changed.
+	 *
+	 * @param coverage tileset coverage to write report page for.
+	 * @param outputDir path to directory where to write the file.
+	 * @param manifest manifest of files in output directory.
+	 * @param written queue to add path of page file to if it was written.
+	 *
+	 * @throws IOException when an I/O error occurred while writing to file.
+	 */
+	private void writePage(TilesetCoverage coverage, Path outputDir,
+			ReportManifest manifest, Queue<Path> written) throws IOException {
+
+		ReportPageEvent event = new ReportPageEvent();
+		event.begin();
+		String fileName = coverage.getTileset().getName() + ".html";
+		Path htmlPath = outputDir.resolve(fileName);
+		Path tempFile = AtomicFiles.createTempFile(htmlPath);
+		int objectCount = 0;
+		try {
+			HashingOutputStream hashingStream;
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+				 Writer writer = new BufferedWriter(new OutputStreamWriter(hashingStream = new HashingOutputStream(
+						 CONTENT_HASH, Channels.newOutputStream(channel)), Charset.defaultCharset()), WRITE_BUFFER_SIZE)
+			) {
+				String tilesetName = coverage.getTileset().getDisplayName();
+				PAGE_HEADER.render(writer, tilesetName + " - Tileset Coverage Report", tilesetName);
+
+				for (Path path : coverage.data.keySet()) {
+					CoverageStats coverageStats = Objects.requireNonNull(coverage.stats.get(path));
+					objectCount += coverageStats.getObjectsTotal();
+					writeReportTableRow(writer, path,
+							coverageStats.getObjectsTotal(),
+							coverageStats.getUniqueCoverageTotal(),
+							coverageStats.getInheritedTotal(),
+							coverageStats.getNoCoverageTotal()
+					);
+				}
+				PAGE_FOOTER.render(writer);
+			}
+			ReportManifest.Entry entry = new ReportManifest.Entry(
+					hashingStream.hash().toString(), Files.size(tempFile));
+
+			if (!manifest.isUpToDate(fileName, entry)) {
+				AtomicFiles.moveAtomically(tempFile, htmlPath);
+				manifest.put(fileName, entry);
+				written.add(htmlPath);
+				Metrics.getDefault().pageWritten();
+			}
+			if (event.shouldCommit()) {
+				event.commit(htmlPath, objectCount, entry.getSize(), coverage.getTileset().getName());
+			}
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
 		}
-		head.appendChild(new Element("title").text(title));
 	}
 
 	/**
-	 * Copy file from application jar to specified output directory.
+	 * Copy file from application jar to specified output directory, unless the file
+	 * is already present in output directory with the same contents.
 	 * <p>
 	 * Note that the file must be a regular file and <b>not</b> a directory.
 	 *
 	 * @param filePath path to file to copy.
 	 * @param outputDir path to directory to copy the file to.
+	 * @param manifest manifest of files in output directory.
+	 * @param written queue to add path of target file to if it was written.
 	 *
 	 * @throws IOException when an I/O exception occurred while copying file.
 	 */
-	private static void copyFileFromJar(String filePath, Path outputDir) throws IOException {
+	private static void copyFileFromJar(String filePath, Path outputDir,
+			ReportManifest manifest, Queue<Path> written) throws IOException {
 
-		InputStream stream = TilesetCoverageReport.class.getResourceAsStream('/' + filePath);
-		if (stream == null) {
+		URL resource = TilesetCoverageReport.class.getResource('/' + filePath);
+		if (resource == null) {
 			String msg = "Unable to find '%s' file in jar";
 			throw new FileNotFoundException(String.format(msg, filePath));
 		}
-		byte[] buffer = new byte[stream.available()];
-		stream.read(buffer);
-
-		File targetFile = outputDir.resolve(filePath).toFile();
-		File targetParentFile = targetFile.getParentFile();
-		if (!targetParentFile.exists() && !targetParentFile.mkdirs()) {
-			throw new IOException("Unable to create directory structure for path: " + targetFile.getPath());
+		ReportManifest.Entry entry;
+		try (HashingInputStream stream = new HashingInputStream(CONTENT_HASH, resource.openStream())) {
+			long size = ByteStreams.exhaust(stream);
+			entry = new ReportManifest.Entry(stream.hash().toString(), size);
 		}
-		Files.write(buffer, targetFile);
-		if (!targetFile.exists()) {
-			String msg = "Unable to find '%s' file in output dir: %s";
-			throw new FileNotFoundException(String.format(msg, filePath, outputDir));
+		if (manifest.isUpToDate(filePath, entry)) {
+			return;
 		}
-	}
-
-	private static Element divWithAttributes(Map<String, String> attributesMap) {
-
-		Attributes attributes = new Attributes();
-		for (Map.Entry<String, String> entry : attributesMap.entrySet()) {
-			attributes.add(entry.getKey(), entry.getValue());
+		Path targetFile = outputDir.resolve(filePath);
+		Files.createDirectories(targetFile.getParent());
+
+		Path tempFile = AtomicFiles.createTempFile(targetFile);
+		try {
+			try (ReadableByteChannel source = openResourceChannel(resource);
+				 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)
+			) {
+				long position = 0, transferred;
+				while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+					position += transferred;
+				}
+				if (position != entry.getSize()) {
+					String msg = "Expected to copy %d bytes of '%s' file but copied %d";
+					throw new IOException(String.format(msg, entry.getSize(), filePath, position));
+				}
+			}
+			AtomicFiles.moveAtomically(tempFile, targetFile);
+			manifest.put(filePath, entry);
+			written.add(targetFile);
 		}
-		return new Element(Tag.valueOf("div"), null, attributes);
-	}
-
-	private static Element linkElement(String link, String name) {
-
-		Attributes attributes = new Attributes();
-		attributes.add("href", link);
-		attributes.add("target", "blank");
-
-		return new Element(Tag.valueOf("a"), null, attributes).text(name);
-	}
-
-	private static Element imageElement(String src, String alt, int size) {
-
-		Attributes attributes = new Attributes();
-		attributes.add("src", src);
-		attributes.add("alt", alt);
-		if (size > 0) {
-			attributes.add("width", String.valueOf(size));
-			attributes.add("height", String.valueOf(size));
+		finally {
+			Files.deleteIfExists(tempFile);
 		}
-		return new Element(Tag.valueOf("img"), null, attributes);
 	}
 
-	private static Element cloneElement(Element element, Element appendChild) {
-		return element.shallowClone().appendChild(appendChild);
+	/**
+	 * Open channel to read given resource from. Resources that are regular files
+	 * are opened as file channels, which lets the file system transfer bytes directly.
+	 */
+	private static ReadableByteChannel openResourceChannel(URL resource) throws IOException {
+
+		if ("file".equals(resource.getProtocol())) {
+			try {
+				return FileChannel.open(Paths.get(resource.toURI()), StandardOpenOption.READ);
+			}
+			catch (URISyntaxException e) {
+				// fallback to reading resource as stream
+			}
+		}
+		return Channels.newChannel(resource.openStream());
 	}
 
-	private static Element getReportTableRow(Path path, int total, int unique, int inherited, int none) {
+	private void writeReportTableRow(Writer writer, Path path,
+			int total, int unique, int inherited, int none) throws IOException {
 
 		String color = "green";
 		double percent = (inherited + unique) / ((double) total) * 100;
@@ -255,21 +443,22 @@ public class TilesetCoverageReport {
 		else if (percent < 66) {
 			color = "blue";
 		}
-		String pathName = Main.getGameDirectory().relativize(path).toString().replace('\\', '/');
-		Element result = FLEX_ROW.shallowClone();
-
-		Element linkElement = cloneElement(INDENTED_TEXT, linkElement("file:///" + path, pathName));
-		result.appendChild(new Element("div").appendChild(linkElement));
-
-		result.appendChild(new Element("div").text(String.valueOf(total)));
-		result.appendChild(new Element("div").text(String.valueOf(inherited)));
-		result.appendChild(new Element("div").text(String.valueOf(none)));
-
-		String percentText = DECIMAL_FORMAT.format(percent) + '%';
-		Element coverageBar = divWithAttributes(Map.of("class", "coverage-bar",
-				"color", color, "style", "flex: 0 0 " + percentText
-		));
-		Element coverageText = divWithAttributes(Map.of("class", "coverage-text")).text(percentText);
-		return result.appendChild(new Element("div").appendChild(coverageBar).appendChild(coverageText));
+		String pathName = getPathName(path, gameDir);
+		String percentText = DECIMAL_FORMAT.get().format(percent) + '%';
+
+		TABLE_ROW.render(writer, "file:///" + path, pathName,
+				total, inherited, none, color, percentText, percentText);
+	}
+
+	/**
+	 * @return path to given file relative to given game directory, with {@code /} as name separator.
+	 * When game directory is {@code null} or cannot be related to the path, the path is returned as is.
+	 */
+	static String getPathName(Path path, @Nullable Path gameDir) {
+
+		if (gameDir != null && gameDir.isAbsolute() == path.isAbsolute()) {
+			path = gameDir.relativize(path);
+		}
+		return path.toString().replace('\\', '/');
 	}
 }
@@ -0,0 +1,571 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class generates synthetic Cataclysm game directories used to test and measure how
+ * coverage scales with the amount of game data.
+ * <p>
+ * Generated directory contains {@code data/json} files with the configured number of objects spread
+ * over configured JSON directories, and a {@code gfx} directory with one tileset for every configured
+ * coverage ratio. Objects form {@code looks_like} and {@code copy-from} chains of bounded depth,
+ * some objects are abstract and some have overlay ids. Every value is derived from a seeded random
+ * generator, so generating with the same configuration always writes the same files.
+ * <p>
+ * Objects and tile entries are streamed to files as they are generated, so memory used by the
+ * generator is a few bytes per object and directories with millions of objects can be generated.
+ */
+public final class GameDataGenerator {
+
+	private static final Splitter OPTION_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+	private static final Splitter VALUE_SPLITTER = Splitter.on(':').trimResults();
+	private static final Splitter RATIO_SPLITTER = Splitter.on('/').trimResults().omitEmptyStrings();
+
+	/**
+	 * Object types declared by objects in JSON directories, other directories declare {@code GENERIC} objects.
+	 */
+	private static final ImmutableMap<String, String> OBJECT_TYPES = ImmutableMap.of(
+			"items", "GENERIC", "monsters", "MONSTER", "furniture_and_terrain", "furniture", "vehicles", "vehicle_part"
+	);
+	private static final String[] MATERIALS = { "plastic", "steel", "wood", "cotton", "glass", "flesh" };
+	private static final String[] COLORS = { "white", "red", "blue", "green", "brown", "light_gray" };
+
+	private final long seed;
+	private final int objectCount, objectsPerFile;
+	private final long maxFileSize;
+	private final double looksLikeRatio, copyFromRatio, abstractRatio, overlayRatio;
+	private final int looksLikeDepth, copyFromDepth;
+	private final ImmutableList<String> jsonDirs;
+	private final ImmutableMap<String, Double> tilesets;
+
+	private GameDataGenerator(Builder builder) {
+
+		seed = builder.seed;
+		objectCount = builder.objectCount;
+		objectsPerFile = builder.objectsPerFile;
+		maxFileSize = builder.maxFileSize;
+		looksLikeRatio = builder.looksLikeRatio;
+		looksLikeDepth = builder.looksLikeDepth;
+		copyFromRatio = builder.copyFromRatio;
+		copyFromDepth = builder.copyFromDepth;
+		abstractRatio = builder.abstractRatio;
+		overlayRatio = builder.overlayRatio;
+		jsonDirs = ImmutableList.copyOf(builder.jsonDirs);
+		tilesets = !builder.tilesets.isEmpty()
+				? ImmutableMap.copyOf(builder.tilesets) : ImmutableMap.of("synthetic_tileset", 0.5);
+	}
+
+	/**
+	 * This builder is used to construct a {@link GameDataGenerator} object.
+	 * <p>
+	 * Call {@link #create()} or {@link #parse(String)} to create a new builder and {@link #build()}
+	 * to instruct the builder to create a new {@code GameDataGenerator} instance.
+	 */
+	public static class Builder {
+
+		private long seed;
+		private int objectCount = 1000, objectsPerFile = 500;
+		private long maxFileSize = Long.MAX_VALUE;
+		private double looksLikeRatio = 0.3, copyFromRatio = 0.2, abstractRatio = 0.02, overlayRatio = 0.05;
+		private int looksLikeDepth = 3, copyFromDepth = 2;
+		private final List<String> jsonDirs = new ArrayList<>(List.of("items", "monsters"));
+		private final Map<String, Double> tilesets = new LinkedHashMap<>();
+
+		private Builder() {}
+
+		/**
+		 * @return new instance of {@code Builder} with default configuration.
+		 */
+		@Contract("-> new")
+		public static Builder create() {
+			return new Builder();
+		}
+
+		/**
+		 * Create a new {@link Builder} instance configured with given options. Options are
+		 * separated by commas and each option is a name and value separated by a colon, for example
+		 * {@code objects:100000,seed:7,looksLikeDepth:5,coverage:0.25/0.75}. Available options are
+		 * {@code seed}, {@code objects}, {@code perFile}, {@code fileSize}, {@code looksLike},
+		 * {@code looksLikeDepth}, {@code copyFrom}, {@code copyFromDepth}, {@code abstract},
+		 * {@code overlays}, {@code dirs} (separated by {@code /}) and {@code coverage}
+		 * (separated by {@code /}, one tileset is generated for each ratio).
+		 *
+		 * @param options options to configure the builder with.
+		 * @return new instance of {@code Builder}.
+		 *
+		 * @throws IllegalArgumentException when any option is unknown or has an illegal value.
+		 */
+		@Contract("_ -> new")
+		public static Builder parse(String options) {
+
+			Builder builder = new Builder();
+			for (String option : OPTION_SPLITTER.split(options)) {
+				List<String> entry = VALUE_SPLITTER.splitToList(option);
+				if (entry.size() != 2) {
+					throw new IllegalArgumentException("Malformed generator option: " + option);
+				}
+				String value = entry.get(1);
+				try {
+					switch (entry.get(0)) {
+						case "seed" -> builder.withSeed(Long.parseLong(value));
+						case "objects" -> builder.withObjectCount(Integer.parseInt(value));
+						case "perFile" -> builder.withObjectsPerFile(Integer.parseInt(value));
+						case "fileSize" -> builder.withMaxFileSize(Long.parseLong(value));
+						case "looksLike" -> builder.withLooksLike(Double.parseDouble(value), builder.looksLikeDepth);
+						case "looksLikeDepth" -> builder.withLooksLike(builder.looksLikeRatio, Integer.parseInt(value));
+						case "copyFrom" -> builder.withCopyFrom(Double.parseDouble(value), builder.copyFromDepth);
+						case "copyFromDepth" -> builder.withCopyFrom(builder.copyFromRatio, Integer.parseInt(value));
+						case "abstract" -> builder.withAbstractRatio(Double.parseDouble(value));
+						case "overlays" -> builder.withOverlayRatio(Double.parseDouble(value));
+						case "dirs" -> builder.withJsonDirs(RATIO_SPLITTER.splitToList(value).toArray(new String[0]));
+						case "coverage" -> {
+							int index = 0;
+							for (String ratio : RATIO_SPLITTER.split(value)) {
+								builder.withTileset("synthetic_tileset_" + index++, Double.parseDouble(ratio));
+							}
+						}
+						default -> throw new IllegalArgumentException("Unknown generator option: " + entry.get(0));
+					}
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Generator option is not a number: " + option, e);
+				}
+			}
+			return builder;
+		}
+
+		/**
+		 * Configure the builder to derive all generated values from given seed.
+		 *
+		 * @param seed seed of random generator.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withSeed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate given number of objects, including abstract objects.
+		 *
+		 * @param count number of objects to generate.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when count is negative.
+		 */
+		@Contract("_ -> this")
+		public Builder withObjectCount(int count) {
+			this.objectCount = requirePositive("object count", count, true);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to write at most given number of objects to each JSON file.
+		 *
+		 * @param count maximum number of objects in a single file.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when count is not positive.
+		 */
+		@Contract("_ -> this")
+		public Builder withObjectsPerFile(int count) {
+			this.objectsPerFile = requirePositive("objects per file", count, false);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to start a new JSON file once a file grows to given size. Every file
+		 * contains at least one object, so files can be larger than given size by the size of an object.
+		 *
+		 * @param bytes maximum size of a single file in bytes.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when size is not positive.
+		 */
+		@Contract("_ -> this")
+		public Builder withMaxFileSize(long bytes) {
+
+			if (bytes <= 0) {
+				throw new IllegalArgumentException("Maximum file size has to be positive: " + bytes);
+			}
+			this.maxFileSize = bytes;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate {@code looks_like} references.
+		 *
+		 * @param ratio ratio of objects that reference another object.
+		 * @param maxDepth maximum number of references in a single chain.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when ratio is not between 0 and 1 or depth is negative.
+		 */
+		@Contract("_, _ -> this")
+		public Builder withLooksLike(double ratio, int maxDepth) {
+
+			this.looksLikeRatio = requireRatio("looks_like", ratio);
+			this.looksLikeDepth = requirePositive("looks_like depth", maxDepth, true);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate {@code copy-from} references.
+		 *
+		 * @param ratio ratio of objects that copy from another object.
+		 * @param maxDepth maximum number of references in a single chain.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when ratio is not between 0 and 1 or depth is negative.
+		 */
+		@Contract("_, _ -> this")
+		public Builder withCopyFrom(double ratio, int maxDepth) {
+
+			this.copyFromRatio = requireRatio("copy-from", ratio);
+			this.copyFromDepth = requirePositive("copy-from depth", maxDepth, true);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate given ratio of abstract objects,
+		 * which can only be referenced with {@code copy-from}.
+		 *
+		 * @param ratio ratio of abstract objects.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when ratio is not between 0 and 1.
+		 */
+		@Contract("_ -> this")
+		public Builder withAbstractRatio(double ratio) {
+			this.abstractRatio = requireRatio("abstract", ratio);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate given ratio of objects with overlay ids.
+		 *
+		 * @param ratio ratio of overlay objects.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when ratio is not between 0 and 1.
+		 */
+		@Contract("_ -> this")
+		public Builder withOverlayRatio(double ratio) {
+			this.overlayRatio = requireRatio("overlay", ratio);
+			return this;
+		}
+
+		/**
+		 * Configure the builder to spread JSON files over given directories, replacing the default
+		 * {@code items} and {@code monsters} directories. Files are assigned to directories in turn.
+		 *
+		 * @param dirs paths to directories relative to {@code data/json} directory.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when no directories are given.
+		 */
+		@Contract("_ -> this")
+		public Builder withJsonDirs(String... dirs) {
+
+			if (dirs.length == 0) {
+				throw new IllegalArgumentException("Expected at least one JSON directory");
+			}
+			jsonDirs.clear();
+			jsonDirs.addAll(Arrays.asList(dirs));
+			return this;
+		}
+
+		/**
+		 * Configure the builder to generate a tileset with given name. When no tilesets are configured
+		 * a single tileset named {@code synthetic_tileset} that covers half of objects is generated.
+		 *
+		 * @param name name of the tileset and its directory.
+		 * @param coverageRatio ratio of objects that have a tile in the tileset.
+		 * @return instance of this builder.
+		 *
+		 * @throws IllegalArgumentException when ratio is not between 0 and 1.
+		 */
+		@Contract("_, _ -> this")
+		public Builder withTileset(String name, double coverageRatio) {
+			tilesets.put(name, requireRatio("coverage", coverageRatio));
+			return this;
+		}
+
+		/**
+		 * @return new instance of {@code GameDataGenerator} based on builder configuration.
+		 */
+		@Contract("-> new")
+		public GameDataGenerator build() {
+			return new GameDataGenerator(this);
+		}
+
+		private static double requireRatio(String name, double ratio) {
+
+			if (!(ratio >= 0 && ratio <= 1)) {
+				String msg = "Ratio of %s objects has to be between 0 and 1: %s";
+				throw new IllegalArgumentException(String.format(msg, name, ratio));
+			}
+			return ratio;
+		}
+
+		private static int requirePositive(String name, int value, boolean allowZero) {
+
+			if (value < 0 || (value == 0 && !allowZero)) {
+				String msg = "Value of %s has to be %s: %d";
+				throw new IllegalArgumentException(String.format(msg, name, allowZero ? "non-negative" : "positive", value));
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Growable list of object indices that random references can be picked from.
+	 */
+	private static final class IndexPool {
+
+		private int[] values = new int[64];
+		private int size;
+
+		private void add(int value) {
+
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private int pick(Random random) {
+			return values[random.nextInt(size)];
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+	}
+
+	/**
+	 * Generate game data in given directory.
+	 *
+	 * @param gameDir path to directory to generate {@code data/json} and {@code gfx} directories in.
+	 * @return generated game data.
+	 *
+	 * @throws FileAlreadyExistsException when {@code data/json} or {@code gfx} directory already has files.
+	 * @throws IOException when an I/O error occurred while writing files.
+	 */
+	public GeneratedGameData generate(Path gameDir) throws IOException {
+
+		Path jsonDir = gameDir.resolve("data/json");
+		Path gfxDir = gameDir.resolve("gfx");
+		for (Path dir : new Path[]{ jsonDir, gfxDir }) {
+			if (Files.isDirectory(dir)) {
+				try (Stream<Path> stream = Files.list(dir)) {
+					if (stream.findAny().isPresent()) {
+						throw new FileAlreadyExistsException(dir.toString(), null, "Directory is not empty");
+					}
+				}
+			}
+		}
+		Random random = new Random(seed);
+		BitSet abstracts = new BitSet(objectCount), overlays = new BitSet(objectCount);
+		int[] looksLikeDepths = new int[objectCount], copyFromDepths = new int[objectCount];
+		IndexPool looksLikeTargets = new IndexPool(), copyFromTargets = new IndexPool();
+
+		List<Path> jsonFiles = new ArrayList<>();
+		Writer writer = null;
+		long fileSize = 0;
+		int fileObjects = 0;
+		try {
+			for (int i = 0; i < objectCount; i++) {
+				if (writer == null || fileObjects == objectsPerFile || fileSize >= maxFileSize) {
+					if (writer != null) {
+						writer.write("\n]\n");
+						writer.close();
+					}
+					String dir = jsonDirs.get(jsonFiles.size() % jsonDirs.size());
+					Path jsonFile = jsonDir.resolve(dir).resolve(String.format("synthetic_%05d.json", jsonFiles.size()));
+					Files.createDirectories(jsonFile.getParent());
+					writer = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8);
+					writer.write("[\n");
+					jsonFiles.add(jsonFile);
+					fileSize = 2;
+					fileObjects = 0;
+				}
+				boolean isAbstract = random.nextDouble() < abstractRatio;
+				abstracts.set(i, isAbstract);
+				overlays.set(i, !isAbstract && random.nextDouble() < overlayRatio);
+
+				// only objects generated earlier are referenced so that chains never form a cycle
+				@Nullable String looksLike = null, copyFrom = null;
+				if (!isAbstract && !looksLikeTargets.isEmpty() && random.nextDouble() < looksLikeRatio) {
+					int target = looksLikeTargets.pick(random);
+					looksLike = getId(target, abstracts, overlays);
+					looksLikeDepths[i] = looksLikeDepths[target] + 1;
+				}
+				if (!copyFromTargets.isEmpty() && random.nextDouble() < copyFromRatio) {
+					int target = copyFromTargets.pick(random);
+					copyFrom = getId(target, abstracts, overlays);
+					copyFromDepths[i] = copyFromDepths[target] + 1;
+				}
+				// abstract objects do not have an id that looks_like could reference
+				if (!isAbstract && looksLikeDepths[i] < looksLikeDepth) {
+					looksLikeTargets.add(i);
+				}
+				if (copyFromDepths[i] < copyFromDepth) {
+					copyFromTargets.add(i);
+				}
+				String type = OBJECT_TYPES.getOrDefault(jsonDirs.get((jsonFiles.size() - 1) % jsonDirs.size()), "GENERIC");
+				String object = writeObject(i, type, getId(i, abstracts, overlays), isAbstract, looksLike, copyFrom, random);
+				if (fileObjects > 0) {
+					writer.write(",\n");
+					fileSize += 2;
+				}
+				writer.write(object);
+				// generated objects contain only ASCII characters
+				fileSize += object.length();
+				fileObjects++;
+			}
+			if (writer != null) {
+				writer.write("\n]\n");
+			}
+		}
+		finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+		List<Path> tilesetDirs = new ArrayList<>();
+		Map<String, Integer> uniqueCoverage = new LinkedHashMap<>();
+		long tilesetSeed = seed;
+		for (Map.Entry<String, Double> entry : tilesets.entrySet()) {
+			Path tilesetDir = gfxDir.resolve(entry.getKey());
+			uniqueCoverage.put(entry.getKey(), writeTileset(tilesetDir, entry.getKey(),
+					entry.getValue(), new Random(++tilesetSeed * 31), abstracts, overlays));
+			tilesetDirs.add(tilesetDir);
+		}
+		int objectsTotal = objectCount - abstracts.cardinality() - overlays.cardinality();
+		return new GeneratedGameData(gameDir, jsonFiles, tilesetDirs, objectCount, objectsTotal, uniqueCoverage);
+	}
+
+	private static String getId(int index, BitSet abstracts, BitSet overlays) {
+
+		if (abstracts.get(index)) {
+			return "synthetic_abstract_" + index;
+		}
+		return (overlays.get(index) ? "overlay_synthetic_" : "synthetic_") + index;
+	}
+
+	private static String writeObject(int index, String type, String id, boolean isAbstract,
+			@Nullable String looksLike, @Nullable String copyFrom, Random random) throws IOException {
+
+		StringWriter result = new StringWriter(512);
+		JsonWriter writer = new JsonWriter(result);
+		writer.setIndent("  ");
+		writer.beginObject();
+		writer.name(isAbstract ? "abstract" : "id").value(id);
+		writer.name("type").value(type);
+		if (copyFrom != null) {
+			writer.name("copy-from").value(copyFrom);
+		}
+		if (looksLike != null) {
+			writer.name("looks_like").value(looksLike);
+		}
+		writer.name("name").beginObject().name("str").value("synthetic object " + index).endObject();
+		// objects that copy from another object usually declare only properties that differ
+		if (copyFrom == null || random.nextBoolean()) {
+			writer.name("description").value("A synthetic object number " + index
+					+ " generated to measure how tile coverage scales with the amount of game data.");
+			writer.name("weight").value((random.nextInt(5000) + 1) + " g");
+			writer.name("volume").value((random.nextInt(2000) + 1) + " ml");
+			writer.name("price").value(random.nextInt(100000));
+			writer.name("material").beginArray().value(MATERIALS[random.nextInt(MATERIALS.length)]).endArray();
+			writer.name("symbol").value(String.valueOf((char) ('a' + random.nextInt(26))));
+			writer.name("color").value(COLORS[random.nextInt(COLORS.length)]);
+		}
+		writer.endObject();
+		writer.flush();
+		return result.toString();
+	}
+
+	/**
+	 * Write tileset directory with {@code tileset.txt} and {@code tile_config.json} files.
+	 *
+	 * @return number of objects that are not overlays and have a tile in the tileset.
+	 */
+	private int writeTileset(Path tilesetDir, String name, double coverageRatio,
+			Random random, BitSet abstracts, BitSet overlays) throws IOException {
+
+		Files.createDirectories(tilesetDir);
+		Files.writeString(tilesetDir.resolve("tileset.txt"), String.join("\n",
+				"#Synthetic tileset", "", "NAME: " + name, "VIEW: " + name,
+				"JSON: tile_config.json", "TILESET: tiles.png", ""));
+
+		int result = 0;
+		try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(
+				tilesetDir.resolve("tile_config.json"), StandardCharsets.UTF_8))
+		) {
+			writer.setIndent("  ");
+			writer.beginObject();
+			writer.name("tile_info").beginArray().beginObject()
+					.name("height").value(32).name("width").value(32)
+					.name("iso").value(false).name("pixelscale").value(1).endObject().endArray();
+			writer.name("tiles-new").beginArray().beginObject();
+			writer.name("file").value("tiles.png");
+			writer.name("tiles").beginArray();
+			int sprite = 0;
+			for (int i = 0; i < objectCount; i++) {
+				if (abstracts.get(i) || random.nextDouble() >= coverageRatio) {
+					continue;
+				}
+				writer.beginObject();
+				writer.name("id").value(getId(i, abstracts, overlays));
+				writer.name("fg").value(sprite++);
+				if (random.nextBoolean()) {
+					writer.name("bg").value(sprite++);
+				}
+				writer.name("rotates").value(random.nextBoolean());
+				writer.endObject();
+				if (!overlays.get(i)) {
+					result++;
+				}
+			}
+			writer.endArray();
+			writer.endObject().endArray();
+			writer.endObject();
+		}
+		return result;
+	}
+}
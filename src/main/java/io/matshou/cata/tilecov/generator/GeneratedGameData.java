@@ -0,0 +1,99 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.generator;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * This class describes game data written by {@link GameDataGenerator}.
+ */
+public final class GeneratedGameData {
+
+	private final Path gameDir;
+	private final ImmutableList<Path> jsonFiles, tilesetDirs;
+	private final int objectCount, objectsTotal;
+	private final ImmutableMap<String, Integer> uniqueCoverage;
+
+	GeneratedGameData(Path gameDir, List<Path> jsonFiles, List<Path> tilesetDirs,
+			int objectCount, int objectsTotal, Map<String, Integer> uniqueCoverage) {
+
+		this.gameDir = gameDir;
+		this.jsonFiles = ImmutableList.copyOf(jsonFiles);
+		this.tilesetDirs = ImmutableList.copyOf(tilesetDirs);
+		this.objectCount = objectCount;
+		this.objectsTotal = objectsTotal;
+		this.uniqueCoverage = ImmutableMap.copyOf(uniqueCoverage);
+	}
+
+	/**
+	 * @return path to game directory the data was generated in.
+	 */
+	public Path getGameDir() {
+		return gameDir;
+	}
+
+	/**
+	 * @return path to {@code data/json} directory in game directory.
+	 */
+	public Path getJsonDir() {
+		return gameDir.resolve("data/json");
+	}
+
+	/**
+	 * @return paths to generated JSON files in order of generation.
+	 */
+	public ImmutableList<Path> getJsonFiles() {
+		return jsonFiles;
+	}
+
+	/**
+	 * @return paths to generated tileset directories in order of configuration.
+	 */
+	public ImmutableList<Path> getTilesetDirs() {
+		return tilesetDirs;
+	}
+
+	/**
+	 * @return number of generated objects, including abstract and overlay objects.
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * @return number of objects considered in coverage when overlays are excluded,
+	 * which are all objects that are neither abstract nor overlays.
+	 */
+	public int getObjectsTotal() {
+		return objectsTotal;
+	}
+
+	/**
+	 * @param tilesetName name of generated tileset.
+	 * @return number of objects considered in coverage that have a tile in given tileset
+	 * or {@code 0} if no tileset with given name was generated.
+	 */
+	public int getUniqueCoverageTotal(String tilesetName) {
+		return uniqueCoverage.getOrDefault(tilesetName, 0);
+	}
+}
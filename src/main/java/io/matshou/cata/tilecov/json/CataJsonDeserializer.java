@@ -19,7 +19,6 @@ package io.matshou.cata.tilecov.json;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 
 /**
  * This class represents a custom deserializer for {@link CataJsonObject} class.
@@ -31,11 +30,7 @@ public class CataJsonDeserializer extends JsonObjectDeserializer<CataJsonObject>
 	}
 
 	@Override
-	void deserializeObjectMembers(Gson gson, JsonObject object, CataJsonObject target, String entry) {
-
-		JsonElement element = object.get(entry);
-		if (element != null) {
-			deserializeObjectProperty(element, target, entry);
-		}
+	void deserializeObjectMembers(Gson gson, String entry, JsonElement element, CataJsonObject target) {
+		deserializeObjectProperty(gson, element, target, entry);
 	}
 }
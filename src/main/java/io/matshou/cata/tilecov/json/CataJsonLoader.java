@@ -0,0 +1,108 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * This class represents a strategy for loading {@link CataJsonObject} instances from a JSON file.
+ * <p>
+ * Cataclysm JSON files are expected to contain a single array of JSON objects.
+ */
+public enum CataJsonLoader {
+
+	/**
+	 * This loader streams the JSON file with {@link JsonReader} and reads only the properties
+	 * declared by {@link CataJsonObject} using the adapter generated at compile time.
+	 * All other property values are skipped while streaming and no intermediate
+	 * JSON element tree is ever built.
+	 */
+	STREAMING {
+		@Override
+		public Optional<List<CataJsonObject>> load(Path jsonPath) throws IOException {
+
+			try (JsonReader reader = JsonFiles.newReader(jsonPath)) {
+				try {
+					if (reader.peek() == JsonToken.NULL) {
+						return Optional.empty();
+					}
+				}
+				catch (EOFException e) {
+					// empty documents are treated as null objects
+					return Optional.empty();
+				}
+				List<CataJsonObject> result = new ArrayList<>();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					CataJsonObject object = CataJsonObjectJsonAdapter.INSTANCE.read(reader);
+					if (object != null) {
+						result.add(object);
+					}
+				}
+				reader.endArray();
+				if (reader.peek() != JsonToken.END_DOCUMENT) {
+					throw new JsonIOException("JSON document was not fully consumed: " + jsonPath);
+				}
+				return Optional.of(result);
+			}
+			catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+				throw new JsonSyntaxException(String.format("Malformed JSON in %s: %s", jsonPath, e.getMessage()), e);
+			}
+		}
+	},
+
+	/**
+	 * This loader deserializes the JSON file with {@link JsonObjectBuilder} and {@link CataJsonDeserializer}
+	 * which builds a complete JSON element tree for each object before it is converted.
+	 */
+	GSON {
+		@Override
+		public Optional<List<CataJsonObject>> load(Path jsonPath) throws IOException {
+
+			return JsonObjectBuilder.<CataJsonObject>create()
+					.ofType(CataJsonObject.class)
+					.withListTypeToken(new TypeToken<>() {})
+					.withDeserializer(CataJsonDeserializer.class)
+					.buildAsList(jsonPath);
+		}
+	};
+
+	/**
+	 * Load JSON objects from the JSON file under given path.
+	 *
+	 * @param jsonPath path to JSON file to load.
+	 * @return optional containing list of JSON objects loaded from file
+	 * or an empty optional if the file does not contain any JSON.
+	 *
+	 * @throws IOException if an I/O exception occurred while reading the file.
+	 * @throws JsonSyntaxException when there was an error while parsing the file.
+	 */
+	public abstract Optional<List<CataJsonObject>> load(Path jsonPath) throws IOException;
+}
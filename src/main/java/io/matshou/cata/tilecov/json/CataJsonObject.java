@@ -17,6 +17,10 @@
  */
 package io.matshou.cata.tilecov.json;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +31,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.annotations.SerializedName;
 
+import static io.matshou.cata.tilecov.DataStrings.readString;
+import static io.matshou.cata.tilecov.DataStrings.writeString;
+
 /**
  * This class represents Cataclysm JSON object data structure for objects that can have tiles.
  * Information here is needed to generate tile coverage metrics.
@@ -34,28 +41,31 @@ import com.google.gson.annotations.SerializedName;
 @SuppressWarnings("unused")
 public class CataJsonObject implements CataIdentifiable {
 
-	private @Nullable String type;
+	@Nullable String type;
 
 	@SerializedArrayName("id")
-	private @Nullable List<String> objectIds;
+	@Nullable List<String> objectIds;
 
 	@SerializedObjectName("description")
-	private @Nullable JsonObjectProperty objectDescription;
+	@Nullable JsonObjectProperty objectDescription;
 
 	@SerializedObjectName("name")
-	private @Nullable JsonObjectProperty objectName;
+	@Nullable JsonObjectProperty objectName;
 
 	@SerializedArrayName("color")
-	private @Nullable java.util.List<String> fgColor;
+	@Nullable java.util.List<String> fgColor;
 
 	@SerializedArrayName("bgcolor")
-	private @Nullable java.util.List<String> bgColor;
+	@Nullable java.util.List<String> bgColor;
 
 	@SerializedName(value = "looks_like")
-	private @Nullable String looksLike;
+	@Nullable String looksLike;
 
 	@SerializedName(value = "copy-from")
-	private @Nullable String copyFrom;
+	@Nullable String copyFrom;
+
+	@SerializedName(value = "abstract")
+	@Nullable String abstractId;
 
 	@Override
 	public String toString() {
@@ -157,6 +167,15 @@ public class CataJsonObject implements CataIdentifiable {
 		return this;
 	}
 
+	/**
+	 * @return id of an object this object looks like
+	 * or an empty string if this property is not defined.
+	 * @see LooksLikeGraph
+	 */
+	public String getLooksLike() {
+		return looksLike != null ? looksLike : "";
+	}
+
 	/**
 	 * Identification of an object to copy or inherit properties from
 	 * or an empty string if this property is not defined.
@@ -168,6 +187,121 @@ public class CataJsonObject implements CataIdentifiable {
 		return copyFrom != null ? copyFrom : "";
 	}
 
+	/**
+	 * Identification of this object when it is an abstract object or an empty string if this
+	 * property is not defined. Abstract objects do not appear in game and exist only
+	 * so that other objects can copy or inherit their properties with {@code copy-from}.
+	 */
+	public String getAbstractId() {
+		return abstractId != null ? abstractId : "";
+	}
+
+	/**
+	 * Create a new object with properties of this object where properties that are not
+	 * defined in this object are inherited from given object this object copies from.
+	 * Identification properties of this object are never inherited. When neither object
+	 * defines {@code looks_like} property the new object looks like the parent object,
+	 * which mirrors how the game falls back to tiles of the object it copies from.
+	 *
+	 * @param parent object this object copies properties from.
+	 * @return new object with inherited properties.
+	 */
+	CataJsonObject inherit(CataJsonObject parent) {
+
+		CataJsonObject result = new CataJsonObject();
+		result.type = type != null ? type : parent.type;
+		result.objectIds = objectIds;
+		result.abstractId = abstractId;
+		result.objectDescription = objectDescription != null ? objectDescription : parent.objectDescription;
+		result.objectName = objectName != null ? objectName : parent.objectName;
+		result.fgColor = fgColor != null ? fgColor : parent.fgColor;
+		result.bgColor = bgColor != null ? bgColor : parent.bgColor;
+		if (looksLike != null) {
+			result.looksLike = looksLike;
+		}
+		else if (parent.looksLike != null || parent.getIds().isEmpty()) {
+			result.looksLike = parent.looksLike;
+		}
+		else {
+			result.looksLike = parent.getIds().get(0);
+		}
+		result.copyFrom = copyFrom;
+		return result;
+	}
+
+	/**
+	 * Write this object in compact binary form to given output.
+	 * The object can be read back with {@link #readFrom(DataInput)}.
+	 *
+	 * @param out output to write the object to.
+	 *
+	 * @throws IOException if an I/O error occurred while writing.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+
+		writeString(out, type);
+		writeStringList(out, objectIds);
+		writeString(out, objectDescription != null ? objectDescription.str : null);
+		writeString(out, objectName != null ? objectName.str : null);
+		writeStringList(out, fgColor);
+		writeStringList(out, bgColor);
+		writeString(out, looksLike);
+		writeString(out, copyFrom);
+		writeString(out, abstractId);
+	}
+
+	/**
+	 * Read an object in binary form written by {@link #writeTo(DataOutput)} from given input.
+	 *
+	 * @param in input to read the object from.
+	 * @return object read from the input.
+	 *
+	 * @throws IOException if an I/O error occurred while reading.
+	 */
+	public static CataJsonObject readFrom(DataInput in) throws IOException {
+
+		CataJsonObject result = new CataJsonObject();
+		result.type = readString(in);
+		result.objectIds = readStringList(in);
+		result.objectDescription = readObjectProperty(in);
+		result.objectName = readObjectProperty(in);
+		result.fgColor = readStringList(in);
+		result.bgColor = readStringList(in);
+		result.looksLike = readString(in);
+		result.copyFrom = readString(in);
+		result.abstractId = readString(in);
+		return result;
+	}
+
+	private static void writeStringList(DataOutput out, @Nullable List<String> values) throws IOException {
+
+		out.writeInt(values != null ? values.size() : -1);
+		if (values != null) {
+			for (String value : values) {
+				writeString(out, value);
+			}
+		}
+	}
+
+	private static @Nullable List<String> readStringList(DataInput in) throws IOException {
+
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		List<String> result = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(readString(in));
+		}
+		return result;
+	}
+
+	private static @Nullable JsonObjectProperty readObjectProperty(DataInput in) throws IOException {
+
+		String value = readString(in);
+		return value != null ? new JsonObjectProperty(value) : null;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 
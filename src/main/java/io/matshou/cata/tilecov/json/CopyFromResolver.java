@@ -0,0 +1,249 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * This class resolves properties that Cataclysm JSON objects inherit through {@code copy-from} chains.
+ * <p>
+ * Objects are indexed by their id or, for abstract objects, by their {@code abstract} id so that
+ * abstract parents take part in resolution even though they are excluded from coverage. Every object
+ * that copies from another object is resolved to an effective object whose undefined properties are
+ * inherited from the effective parent object, see {@link CataJsonObject#inherit(CataJsonObject)}.
+ * <p>
+ * Since every object copies from at most one parent, objects form a forest of inheritance trees.
+ * Each tree is resolved from its root down in topological order, so every object is resolved exactly
+ * once and resolution is linear in the number of objects. Trees are independent of each other and
+ * are resolved in parallel. References to objects that do not exist and {@code copy-from} cycles
+ * are recorded, objects with such references are resolved as if they did not copy from anything.
+ */
+public final class CopyFromResolver {
+
+	/**
+	 * Effective objects mapped to objects they were resolved from by identity.
+	 */
+	private final Map<CataJsonObject, CataJsonObject> effective;
+
+	private final ImmutableMap<String, String> danglingReferences;
+	private final ImmutableSet<String> cycles;
+
+	private CopyFromResolver(Iterable<? extends Collection<CataJsonObject>> objectSets, @Nullable ForkJoinPool pool) {
+
+		Map<String, CataJsonObject> nodes = new HashMap<>();
+		List<CataJsonObject> objects = new ArrayList<>();
+		for (Collection<CataJsonObject> objectSet : objectSets) {
+			for (CataJsonObject object : objectSet) {
+				String key = getKey(object);
+				if (key != null) {
+					nodes.putIfAbsent(key, object);
+				}
+				objects.add(object);
+			}
+		}
+		// objects mapped to keys of parents they copy from
+		Map<String, List<CataJsonObject>> children = new HashMap<>();
+		List<CataJsonObject> roots = new ArrayList<>();
+		Map<String, String> tempDangling = new LinkedHashMap<>();
+		for (CataJsonObject object : objects) {
+			String parentKey = object.copyFromWhat();
+			if (parentKey.isEmpty()) {
+				roots.add(object);
+			}
+			else if (!nodes.containsKey(parentKey)) {
+				tempDangling.put(getDisplayKey(object), parentKey);
+				roots.add(object);
+			}
+			else {
+				children.computeIfAbsent(parentKey, k -> new ArrayList<>()).add(object);
+			}
+		}
+		Map<CataJsonObject, CataJsonObject> tempEffective = Collections.synchronizedMap(new IdentityHashMap<>());
+		resolveTrees(roots, nodes, children, tempEffective, pool);
+
+		// objects that were not reached from any root are part of or descend from a cycle
+		Set<String> tempCycles = new LinkedHashSet<>();
+		for (CataJsonObject object : objects) {
+			if (!tempEffective.containsKey(object)) {
+				Set<String> chain = new LinkedHashSet<>();
+				String key = getKey(object);
+				while (key != null && chain.add(key)) {
+					CataJsonObject parent = nodes.get(key);
+					key = parent != null && !parent.copyFromWhat().isEmpty() ? parent.copyFromWhat() : null;
+				}
+				// resolve the cycle from the object that closes it as if it was a root,
+				// so this object and other descendants of the cycle inherit from the cycle
+				CataJsonObject root = object;
+				if (key != null) {
+					tempCycles.add(key);
+					root = nodes.get(key);
+				}
+				resolveTrees(List.of(root), nodes, children, tempEffective, pool);
+			}
+		}
+		effective = Collections.unmodifiableMap(new IdentityHashMap<>(tempEffective));
+		danglingReferences = ImmutableMap.copyOf(tempDangling);
+		cycles = ImmutableSet.copyOf(tempCycles);
+	}
+
+	/**
+	 * Resolve inheritance trees of given roots.
+	 *
+	 * @param roots objects that do not copy from any resolvable object.
+	 * @param nodes objects mapped to keys that identify them as {@code copy-from} parents.
+	 * @param children objects mapped to keys of objects they copy from.
+	 * @param effective map to store effective objects to.
+	 * @param pool pool used to resolve trees in parallel or {@code null} to use common pool.
+	 */
+	private static void resolveTrees(List<CataJsonObject> roots, Map<String, CataJsonObject> nodes,
+			Map<String, List<CataJsonObject>> children, Map<CataJsonObject, CataJsonObject> effective,
+			@Nullable ForkJoinPool pool) {
+
+		Runnable task = () -> roots.parallelStream().forEach(root -> {
+			Map<CataJsonObject, CataJsonObject> treeEffective = new IdentityHashMap<>();
+			Deque<CataJsonObject> pending = new ArrayDeque<>();
+			treeEffective.put(root, root);
+			pending.add(root);
+			while (!pending.isEmpty()) {
+				CataJsonObject parent = pending.poll();
+				String key = getKey(parent);
+				// only the first object with a particular key is considered a parent
+				if (key == null || nodes.get(key) != parent) {
+					continue;
+				}
+				CataJsonObject parentEffective = treeEffective.get(parent);
+				for (CataJsonObject child : children.getOrDefault(key, List.of())) {
+					if (!treeEffective.containsKey(child) && !effective.containsKey(child)) {
+						treeEffective.put(child, child.inherit(parentEffective));
+						pending.add(child);
+					}
+				}
+			}
+			effective.putAll(treeEffective);
+		});
+		ForkJoinPool executor = pool != null ? pool : ForkJoinPool.commonPool();
+		try {
+			executor.submit(task).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while resolving copy-from inheritance", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Resolve inheritance of given sets of objects.
+	 *
+	 * @param objectSets sets of objects to resolve, usually one set for each JSON file.
+	 * @param pool pool used to resolve independent inheritance trees in parallel
+	 * or {@code null} to use the common pool.
+	 * @return new instance of {@code CopyFromResolver}.
+	 */
+	@Contract("_, _ -> new")
+	public static CopyFromResolver of(Iterable<? extends Collection<CataJsonObject>> objectSets,
+			@Nullable ForkJoinPool pool) {
+		return new CopyFromResolver(objectSets, pool);
+	}
+
+	/**
+	 * Resolve inheritance of given sets of objects using the common pool.
+	 *
+	 * @param objectSets sets of objects to resolve, usually one set for each JSON file.
+	 * @return new instance of {@code CopyFromResolver}.
+	 */
+	@Contract("_ -> new")
+	public static CopyFromResolver of(Iterable<? extends Collection<CataJsonObject>> objectSets) {
+		return new CopyFromResolver(objectSets, null);
+	}
+
+	/**
+	 * @return key that identifies given object as a {@code copy-from} parent or {@code null}
+	 * if the object has neither an id nor an abstract id.
+	 */
+	private static @Nullable String getKey(CataJsonObject object) {
+
+		List<String> ids = object.objectIds;
+		if (ids != null && !ids.isEmpty() && ids.get(0) != null && !ids.get(0).isEmpty()) {
+			return ids.get(0);
+		}
+		String abstractId = object.getAbstractId();
+		return !abstractId.isEmpty() ? abstractId : null;
+	}
+
+	private static String getDisplayKey(CataJsonObject object) {
+
+		String key = getKey(object);
+		return key != null ? key : "";
+	}
+
+	/**
+	 * @param object object to get the effective object for.
+	 * @return effective object with inherited properties or given object if it was not resolved
+	 * by this resolver or does not copy from another object.
+	 */
+	@Contract(pure = true)
+	public CataJsonObject getEffective(CataJsonObject object) {
+
+		CataJsonObject result = effective.get(object);
+		return result != null ? result : object;
+	}
+
+	/**
+	 * @param objects objects to get the effective objects for.
+	 * @return list of effective objects in iteration order of given objects.
+	 * @see #getEffective(CataJsonObject)
+	 */
+	public List<CataJsonObject> getEffective(Collection<CataJsonObject> objects) {
+
+		List<CataJsonObject> result = new ArrayList<>(objects.size());
+		for (CataJsonObject object : objects) {
+			result.add(getEffective(object));
+		}
+		return result;
+	}
+
+	/**
+	 * @return map of keys of objects whose {@code copy-from} property references an object
+	 * that does not exist, mapped to the referenced keys.
+	 */
+	public ImmutableMap<String, String> getDanglingReferences() {
+		return danglingReferences;
+	}
+
+	/**
+	 * @return keys of objects at which {@code copy-from} chains close a cycle.
+	 */
+	public ImmutableSet<String> getCycles() {
+		return cycles;
+	}
+}
@@ -19,14 +19,16 @@ package io.matshou.cata.tilecov.json;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
 
 /**
  * This class represents a custom deserializer for Json that is able to handle
@@ -35,6 +37,12 @@ import com.google.gson.reflect.TypeToken;
  * <p>
  * Note that implementation class has to have a constructor declared with public or package access
  * so a new instance of it can be created via reflection by {@link JsonObjectBuilder} class.
+ * <p>
+ * Objects are deserialized in a single pass over the JSON object members. Members handled
+ * by the deserializer are converted from their elements directly and only the remaining
+ * members are handed to Gson. When a JSON adapter was generated for the object class by
+ * {@code JsonAdapterProcessor}, {@link JsonCodecRegistry} registers that adapter instead
+ * of the deserializer, so this deserializer is used for classes without generated adapters.
  *
  * @param <T> type for which the deserializer is being registered.
  */
@@ -56,7 +64,7 @@ abstract class JsonArrayDeserializer<T> implements JsonDeserializer<T> {
 	JsonArrayDeserializer(Class<T> objectClass) {
 		jsonObjectClass = objectClass;
 
-		Map<String, Field> result = new java.util.HashMap<>();
+		Map<String, Field> result = new HashMap<>();
 		for (Field field : jsonObjectClass.getDeclaredFields()) {
 			SerializedArrayName[] annotations = field.getAnnotationsByType(SerializedArrayName.class);
 			if (annotations.length == 0) {
@@ -79,47 +87,94 @@ abstract class JsonArrayDeserializer<T> implements JsonDeserializer<T> {
 	}
 
 	/**
-	 * Convert an element in given {@code JsonObject} to either a {@code String} or list of strings
-	 * depending on whether the found entry is a json array or a standard element.
+	 * Convert given element to a list of strings depending on whether
+	 * the element is a json array or a standard element and store it in target field.
+	 * Array elements that are objects (like weighted sprite entries) are skipped.
 	 *
-	 * @param gson {@code GSon} used in deserializing.
-	 * @param jsonObject object to search for given entry element.
-	 * @param target target of array deserialization.
 	 * @param entry name of the json element to deserialize.
+	 * @param element json element to deserialize.
+	 * @param target target of array deserialization.
+	 *
+	 * @throws JsonSyntaxException if the element is neither a string nor an array of strings.
 	 */
 	@Contract(mutates = "param3")
-	void deserializeArrayMembers(Gson gson, JsonObject jsonObject, T target, String entry) {
+	void deserializeArrayMembers(String entry, JsonElement element, T target) {
 
-		JsonElement element = jsonObject.get(entry);
-		if (element != null) {
-			List<String> result;
-			if (!element.isJsonArray()) {
-				result = List.of(gson.fromJson(element, String.class));
-			}
-			else {
-				result = gson.fromJson(element, new TypeToken<>() {}.getType());
-			}
-			try {
-				// no need to check for key presence, already checked by caller
-				//noinspection ConstantConditions
-				jsonArrayFields.get(entry).set(target, result);
-			}
-			catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
+		List<String> result = null;
+		if (element.isJsonArray()) {
+			JsonArray jsonArray = element.getAsJsonArray();
+			result = new ArrayList<>(jsonArray.size());
+			for (JsonElement arrayElement : jsonArray) {
+				if (!arrayElement.isJsonObject()) {
+					result.add(convertToString(entry, arrayElement));
+				}
 			}
 		}
+		else if (!element.isJsonNull()) {
+			result = List.of(convertToString(entry, element));
+		}
+		try {
+			// no need to check for key presence, already checked by caller
+			//noinspection ConstantConditions
+			jsonArrayFields.get(entry).set(target, result);
+		}
+		catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static @Nullable String convertToString(String entry, JsonElement element) {
+
+		if (element.isJsonNull()) {
+			return null;
+		}
+		if (!element.isJsonPrimitive()) {
+			throw new JsonSyntaxException(String.format("Expected a string value in '%s' but was %s", entry, element));
+		}
+		return element.getAsString();
+	}
+
+	/**
+	 * @return {@code true} if the property with given name needs to be deserialized
+	 * by this deserializer instead of Gson default adapters.
+	 */
+	boolean isCustomMember(String entry) {
+		return jsonArrayFields.containsKey(entry);
+	}
+
+	/**
+	 * Deserialize property with given name that needs to be handled by this deserializer.
+	 *
+	 * @param gson {@code GSon} used in deserializing.
+	 * @param entry name of the json element to deserialize.
+	 * @param element json element to deserialize.
+	 * @param target target of deserialization.
+	 */
+	@Contract(mutates = "param4")
+	void deserializeCustomMember(Gson gson, String entry, JsonElement element, T target) {
+		deserializeArrayMembers(entry, element, target);
 	}
 
 	@Override
 	public T deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
 
-		Gson gson = new Gson();
-		JsonObject jsonObject = json.getAsJsonObject();
-		T targetObject = gson.fromJson(json, jsonObjectClass);
+		// shared plain Gson without this deserializer registered
+		Gson gson = JsonCodecRegistry.getDefault().getGson(jsonObjectClass, null);
 
-		// handle json properties that can be both string and array of string
-		for (String entry : jsonArrayFields.keySet()) {
-			deserializeArrayMembers(gson, jsonObject, targetObject, entry);
+		// split members in a single pass, custom members are never seen by Gson
+		JsonObject plainMembers = new JsonObject();
+		List<Map.Entry<String, JsonElement>> customMembers = new ArrayList<>();
+		for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
+			if (isCustomMember(entry.getKey())) {
+				customMembers.add(entry);
+			}
+			else {
+				plainMembers.add(entry.getKey(), entry.getValue());
+			}
+		}
+		T targetObject = gson.fromJson(plainMembers, jsonObjectClass);
+		for (Map.Entry<String, JsonElement> entry : customMembers) {
+			deserializeCustomMember(gson, entry.getKey(), entry.getValue(), targetObject);
 		}
 		return targetObject;
 	}
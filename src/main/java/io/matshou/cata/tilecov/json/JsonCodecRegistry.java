@@ -0,0 +1,266 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * This class represents a thread-safe registry of precompiled JSON codecs.
+ * <p>
+ * Each codec is identified by the type of object it builds, the deserializer registered
+ * for that type and the {@link TypeToken} that determines the result of deserialization.
+ * Creating a {@link Gson} instance, constructing the deserializer reflectively and resolving
+ * the {@link TypeAdapter} are done only once for each such combination. The resulting codec
+ * is then shared between all callers, which is safe since both {@code Gson} and its type adapters
+ * are immutable and thread-safe once created.
+ * <p>
+ * When a {@link JsonArrayDeserializer} is requested for a type that has a JSON adapter generated
+ * by {@code JsonAdapterProcessor}, the generated adapter is registered instead of the deserializer.
+ */
+public final class JsonCodecRegistry {
+
+	private static final JsonCodecRegistry DEFAULT = new JsonCodecRegistry();
+
+	private final ConcurrentMap<Key, Codec<?>> codecs = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Key, Gson> gsonInstances = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * This class represents a precompiled codec that can deserialize JSON into objects of type {@code R}.
+	 *
+	 * @param <R> type of object that is the result of deserialization.
+	 */
+	public static final class Codec<R> {
+
+		private final Gson gson;
+		private final TypeAdapter<R> adapter;
+		private final Type type;
+
+		@SuppressWarnings("unchecked")
+		private Codec(Gson gson, TypeToken<?> token) {
+			this.gson = gson;
+			this.type = token.getType();
+			this.adapter = (TypeAdapter<R>) gson.getAdapter(token);
+		}
+
+		/**
+		 * @return {@code Gson} instance this codec was built with.
+		 */
+		public Gson getGson() {
+			return gson;
+		}
+
+		/**
+		 * @return type adapter resolved for the codec {@code TypeToken}.
+		 */
+		public TypeAdapter<R> getAdapter() {
+			return adapter;
+		}
+
+		/**
+		 * Deserialize JSON read from given reader.
+		 *
+		 * @param reader reader to read JSON from.
+		 * @return deserialized object or {@code null} if the reader is at the end of the document.
+		 *
+		 * @throws JsonSyntaxException when there was an error while parsing the JSON.
+		 * @throws JsonIOException when there was an error while reading from the reader.
+		 */
+		public @Nullable R fromJson(Reader reader) {
+			return gson.fromJson(reader, type);
+		}
+
+		/**
+		 * Deserialize given JSON string.
+		 *
+		 * @param json string to deserialize.
+		 * @return deserialized object or {@code null} if the string is empty.
+		 *
+		 * @throws JsonSyntaxException when there was an error while parsing the JSON.
+		 */
+		public @Nullable R fromJson(String json) {
+			return gson.fromJson(json, type);
+		}
+
+		/**
+		 * Deserialize given JSON element tree.
+		 *
+		 * @param json element tree to deserialize.
+		 * @return deserialized object or {@code null} if the element is {@code null}.
+		 *
+		 * @throws JsonSyntaxException when there was an error while parsing the JSON.
+		 */
+		public @Nullable R fromJson(JsonElement json) {
+			return gson.fromJson(json, type);
+		}
+	}
+
+	private static final class Key {
+
+		private final Type objectType;
+		private final @Nullable Class<?> deserializer;
+		private final @Nullable Type tokenType;
+
+		private Key(Type objectType, @Nullable Class<?> deserializer, @Nullable Type tokenType) {
+			this.objectType = objectType;
+			this.deserializer = deserializer;
+			this.tokenType = tokenType;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Key key = (Key) o;
+			return objectType.equals(key.objectType) && Objects.equals(deserializer, key.deserializer)
+					&& Objects.equals(tokenType, key.tokenType);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(objectType, deserializer, tokenType);
+		}
+	}
+
+	private JsonCodecRegistry() {}
+
+	/**
+	 * @return registry instance shared by the whole application.
+	 */
+	public static JsonCodecRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Get codec for given combination of object type, deserializer and type token.
+	 * The codec will be created and stored in registry the first time it is requested.
+	 *
+	 * @param type {@code Class} representing the object that will be built.
+	 * @param deserializer {@code Class} of the deserializer to register for the object type
+	 * or {@code null} if the object should be deserialized by Gson default adapters.
+	 * @param token {@code TypeToken} used in deserialization.
+	 * @param <T> type of object the deserializer is registered for.
+	 * @param <R> type of object that is the result of deserialization.
+	 * @return codec for given combination.
+	 *
+	 * @throws IllegalStateException when unable to construct the deserializer.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T, R> Codec<R> getCodec(Class<T> type,
+			@Nullable Class<? extends JsonDeserializer<T>> deserializer, TypeToken<?> token) {
+
+		Key key = new Key(type, deserializer, token.getType());
+		Codec<?> codec = codecs.get(key);
+		if (codec != null) {
+			hits.incrementAndGet();
+			return (Codec<R>) codec;
+		}
+		// another thread may have stored the codec in the meantime, which also counts as a hit
+		boolean[] created = new boolean[1];
+		codec = codecs.computeIfAbsent(key, k -> {
+			created[0] = true;
+			return new Codec<>(getGson(type, deserializer), token);
+		});
+		if (created[0]) {
+			misses.incrementAndGet();
+		}
+		else {
+			hits.incrementAndGet();
+		}
+		return (Codec<R>) codec;
+	}
+
+	/**
+	 * Get {@code Gson} instance that has the given deserializer registered for object type.
+	 *
+	 * @param type {@code Class} representing the object that will be built.
+	 * @param deserializer {@code Class} of the deserializer to register for the object type
+	 * or {@code null} if no custom deserializer should be registered.
+	 * @param <T> type of object the deserializer is registered for.
+	 * @return shared {@code Gson} instance.
+	 *
+	 * @throws IllegalStateException when unable to construct the deserializer.
+	 */
+	public <T> Gson getGson(Class<T> type, @Nullable Class<? extends JsonDeserializer<T>> deserializer) {
+
+		// Gson instances without custom deserializers are the same for every type
+		Key key = new Key(deserializer != null ? type : Object.class, deserializer, null);
+		return gsonInstances.computeIfAbsent(key, k -> createGson(type, deserializer));
+	}
+
+	@Contract("_, _ -> new")
+	private static Gson createGson(Class<?> type, @Nullable Class<?> deserializer) {
+
+		if (deserializer == null) {
+			return new Gson();
+		}
+		// generated adapters replace reflective deserializers and stream objects straight from the reader
+		TypeAdapter<?> generatedAdapter = GeneratedJsonAdapters.forType(type);
+		if (generatedAdapter != null && JsonArrayDeserializer.class.isAssignableFrom(deserializer)) {
+			return new GsonBuilder().registerTypeAdapter(type, generatedAdapter).create();
+		}
+		try {
+			// assume there is a single constructor with no arguments
+			Constructor<?> constructor = deserializer.getDeclaredConstructor();
+			return new GsonBuilder().registerTypeAdapter(type, constructor.newInstance()).create();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to construct deserializer " + deserializer.getName(), e);
+		}
+	}
+
+	/**
+	 * @return number of times a requested codec was already present in registry.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of times a requested codec had to be created.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of codecs stored in registry.
+	 */
+	public int size() {
+		return codecs.size();
+	}
+}
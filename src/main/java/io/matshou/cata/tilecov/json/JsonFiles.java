@@ -0,0 +1,55 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jetbrains.annotations.Contract;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * This class provides helpers to stream JSON files that are read without {@code Gson}.
+ */
+public final class JsonFiles {
+
+	private JsonFiles() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Open a {@link JsonReader} that streams the UTF-8 encoded JSON file under given path.
+	 * The reader is lenient, so it accepts the same documents that {@code Gson} accepts.
+	 *
+	 * @param jsonPath path to JSON file to read.
+	 * @return new reader of the JSON file, the caller is responsible for closing it.
+	 *
+	 * @throws IOException if an I/O error occurred while opening the file.
+	 */
+	@Contract("_ -> new")
+	public static JsonReader newReader(Path jsonPath) throws IOException {
+
+		JsonReader reader = new JsonReader(Files.newBufferedReader(jsonPath, StandardCharsets.UTF_8));
+		// be as forgiving as Gson is when parsing documents
+		reader.setLenient(true);
+		return reader;
+	}
+}
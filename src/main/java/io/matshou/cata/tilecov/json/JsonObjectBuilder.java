@@ -18,7 +18,6 @@
 package io.matshou.cata.tilecov.json;
 
 import java.io.*;
-import java.lang.reflect.Constructor;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
@@ -26,7 +25,6 @@ import java.util.Optional;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
@@ -124,8 +122,7 @@ public class JsonObjectBuilder<T> {
 		return new InputStreamReader(new FileInputStream(jsonFile));
 	}
 
-	@Contract("-> new")
-	private GsonBuilder startBuildFromPath() {
+	private <R> JsonCodecRegistry.Codec<R> startBuildFromPath() {
 
 		if (jsonObjectType == null) {
 			throw new IllegalStateException("jsonObjectType was not defined");
@@ -133,18 +130,7 @@ public class JsonObjectBuilder<T> {
 		if (typeToken == null) {
 			throw new IllegalStateException("typeToken was not defined");
 		}
-		GsonBuilder builder = new GsonBuilder();
-		try {
-			if (deserializer != null) {
-				// assume there is a single constructor with no arguments
-				Constructor<?> constructor = deserializer.getDeclaredConstructor();
-				builder.registerTypeAdapter(jsonObjectType, constructor.newInstance());
-			}
-		}
-		catch (ReflectiveOperationException e) {
-			throw new RuntimeException(e);
-		}
-		return builder;
+		return JsonCodecRegistry.getDefault().getCodec(jsonObjectType, deserializer, typeToken);
 	}
 
 	/**
@@ -160,9 +146,9 @@ public class JsonObjectBuilder<T> {
 	 */
 	public Optional<List<T>> buildAsList(Path jsonPath) throws IOException {
 
-		GsonBuilder builder = startBuildFromPath();
+		JsonCodecRegistry.Codec<List<T>> codec = startBuildFromPath();
 		try (Reader reader = readJsonFromPath(jsonPath)) {
-			return Optional.ofNullable(builder.create().fromJson(reader, typeToken.getType()));
+			return Optional.ofNullable(codec.fromJson(reader));
 		}
 	}
 
@@ -179,33 +165,25 @@ public class JsonObjectBuilder<T> {
 	 */
 	public Optional<T> build(Path jsonPath) throws IOException {
 
-		GsonBuilder builder = startBuildFromPath();
+		JsonCodecRegistry.Codec<T> codec = startBuildFromPath();
 		try (Reader reader = readJsonFromPath(jsonPath)) {
-			return Optional.ofNullable(builder.create().fromJson(reader, typeToken.getType()));
+			return Optional.ofNullable(codec.fromJson(reader));
 		}
 	}
 
-	@Contract("-> new")
-	private GsonBuilder startBuildFromString() {
+	private <R> JsonCodecRegistry.Codec<R> startBuildFromString() {
 
-		GsonBuilder builder = new GsonBuilder();
-		if (deserializer != null) {
-			if (jsonObjectType == null) {
-				throw new IllegalStateException("jsonObjectType was not defined");
-			}
-			try {
-				// assume there is a single constructor with no arguments
-				Constructor<?> constructor = deserializer.getDeclaredConstructor();
-				builder.registerTypeAdapter(jsonObjectType, constructor.newInstance());
-			}
-			catch (ReflectiveOperationException e) {
-				throw new RuntimeException(e);
-			}
+		if (deserializer != null && jsonObjectType == null) {
+			throw new IllegalStateException("jsonObjectType was not defined");
 		}
 		if (typeToken == null) {
 			throw new IllegalStateException("typeToken was not defined");
 		}
-		return builder;
+		if (jsonObjectType == null) {
+			// there is no deserializer so the object type is only needed to identify the codec
+			return JsonCodecRegistry.getDefault().getCodec(typeToken.getRawType(), null, typeToken);
+		}
+		return JsonCodecRegistry.getDefault().getCodec(jsonObjectType, deserializer, typeToken);
 	}
 
 	/**
@@ -222,8 +200,8 @@ public class JsonObjectBuilder<T> {
 	 */
 	public Optional<List<T>> buildAsList(String json) {
 
-		GsonBuilder builder = startBuildFromString();
-		return Optional.ofNullable(builder.create().fromJson(json, typeToken.getType()));
+		JsonCodecRegistry.Codec<List<T>> codec = startBuildFromString();
+		return Optional.ofNullable(codec.fromJson(json));
 	}
 
 	/**
@@ -240,7 +218,7 @@ public class JsonObjectBuilder<T> {
 	 */
 	public Optional<T> build(String json) {
 
-		GsonBuilder builder = startBuildFromString();
-		return Optional.ofNullable(builder.create().fromJson(json, typeToken.getType()));
+		JsonCodecRegistry.Codec<T> codec = startBuildFromString();
+		return Optional.ofNullable(codec.fromJson(json));
 	}
 }
@@ -18,17 +18,15 @@
 package io.matshou.cata.tilecov.json;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Type;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
 
 abstract class JsonObjectDeserializer<T> extends JsonArrayDeserializer<T> {
 
@@ -43,7 +41,7 @@ abstract class JsonObjectDeserializer<T> extends JsonArrayDeserializer<T> {
 	JsonObjectDeserializer(Class<T> objectClass) {
 		super(objectClass);
 
-		Map<String, Field> result = new java.util.HashMap<>();
+		Map<String, Field> result = new HashMap<>();
 		for (Field field : jsonObjectClass.getDeclaredFields()) {
 			SerializedObjectName[] annotations = field.getAnnotationsByType(SerializedObjectName.class);
 			if (annotations.length == 0) {
@@ -75,57 +73,57 @@ abstract class JsonObjectDeserializer<T> extends JsonArrayDeserializer<T> {
 
 	/**
 	 * Deserialize JSON property with given name from specified {@code JsonElement}.
+	 * The property can be either a string or an object that holds {@code str} string value.
 	 *
+	 * @param gson {@code GSon} used in deserializing.
 	 * @param element {@code JsonElement} to deserialize.
 	 * @param target instance of {@code T} that will store the result.
-	 * @param name name of the property to find and deserialize.
+	 * @param name name of the property to deserialize.
+	 *
+	 * @throws NullJsonObjectException when the property value is {@code null}.
 	 */
-	void deserializeObjectProperty(JsonElement element, T target, String name) {
+	void deserializeObjectProperty(Gson gson, JsonElement element, T target, String name) {
 
 		Field field = Objects.requireNonNull(jsonObjectFields.get(name));
 		if (element.isJsonPrimitive()) {
 			changeFieldValue(field, target, new JsonObjectProperty(element.getAsString()));
 			return;
 		}
-		Optional<JsonObjectProperty> jsonObjectProperty = JsonObjectBuilder.<JsonObjectProperty>create()
-				.ofType(JsonObjectProperty.class)
-				.withTypeToken(new TypeToken<>() {})
-				.build(element.toString());
-
-		if (jsonObjectProperty.isEmpty()) {
-			throw new NullJsonObjectException(name, TilesJsonObject.class);
+		JsonObjectProperty jsonObjectProperty = gson.fromJson(element, JsonObjectProperty.class);
+		if (jsonObjectProperty == null) {
+			throw new NullJsonObjectException(name, JsonObjectProperty.class);
 		}
-		changeFieldValue(field, target, jsonObjectProperty.get());
+		changeFieldValue(field, target, jsonObjectProperty);
 	}
 
 	/**
 	 * Deserialize target fields annotated with {@link SerializedObjectName} annotation.
 	 *
 	 * @param gson {@code GSon} used in deserializing.
-	 * @param object object to search for given entry element.
-	 * @param target target of array deserialization.
 	 * @param entry name of the json element to deserialize.
+	 * @param element json element to deserialize.
+	 * @param target target of object deserialization.
 	 *
 	 * @throws NullJsonObjectException when deserializing JSON object unexpectedly returned {@code null}.
 	 */
-	@Contract(mutates = "param3")
-	abstract void deserializeObjectMembers(Gson gson, JsonObject object, T target, String entry);
+	@Contract(mutates = "param4")
+	abstract void deserializeObjectMembers(Gson gson, String entry, JsonElement element, T target);
 
 	@Override
-	public T deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
+	boolean isCustomMember(String entry) {
+		return jsonObjectFields.containsKey(entry) || super.isCustomMember(entry);
+	}
 
-		Gson gson = new Gson();
-		JsonObject jsonObject = json.getAsJsonObject();
-		T targetObject = gson.fromJson(json, jsonObjectClass);
+	@Override
+	void deserializeCustomMember(Gson gson, String entry, JsonElement element, T target) {
 
 		// handle json properties that need to be deserialized into custom objects
-		for (String entry : jsonObjectFields.keySet()) {
-			deserializeObjectMembers(gson, jsonObject, targetObject, entry);
+		if (jsonObjectFields.containsKey(entry)) {
+			deserializeObjectMembers(gson, entry, element, target);
 		}
 		// handle json properties that can be both string and array of string
-		for (String entry : jsonArrayFields.keySet()) {
-			deserializeArrayMembers(gson, jsonObject, targetObject, entry);
+		else {
+			super.deserializeCustomMember(gson, entry, element, target);
 		}
-		return targetObject;
 	}
 }
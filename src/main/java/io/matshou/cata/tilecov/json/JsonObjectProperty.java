@@ -17,21 +17,26 @@
  */
 package io.matshou.cata.tilecov.json;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * This object represents a JSON property that holds {@code str} string value.
  */
 public class JsonObjectProperty {
 
-	private final String str;
+	@Nullable String str;
+
+	JsonObjectProperty() {}
 
 	JsonObjectProperty(String value) {
 		str = value;
 	}
 
 	/**
-	 * @return property value held by this JSON object.
+	 * @return property value held by this JSON object
+	 * or an empty string if the value is not defined.
 	 */
 	public String get() {
-		return str;
+		return str != null ? str : "";
 	}
 }
@@ -0,0 +1,248 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.util.*;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import io.matshou.cata.tilecov.profile.LooksLikeResolutionEvent;
+import io.matshou.cata.tilecov.profile.Metrics;
+
+/**
+ * This class represents a graph of {@code looks_like} references between Cataclysm JSON objects.
+ * <p>
+ * The graph is built once over objects from any number of files and maps object ids to objects,
+ * so that {@code looks_like} references can be resolved across file and category boundaries.
+ * Transitive resolution of every reference chain is computed when the graph is built which
+ * makes {@link #resolve(CataJsonObject)} a constant time lookup. Reference chains that form
+ * a cycle and references to objects that do not exist in the graph are recorded and can be
+ * retrieved with {@link #getCycles()} and {@link #getDanglingReferences()}.
+ * <p>
+ * When the graph is built with a {@link CopyFromResolver} the graph is built over effective
+ * objects, so {@code looks_like} properties inherited through {@code copy-from} chains are resolved.
+ *
+ * @see CataJsonObject#looksLikeWhat(Set)
+ */
+public final class LooksLikeGraph {
+
+	/**
+	 * Objects mapped to their first id, the first object with a particular id wins.
+	 */
+	private final ImmutableMap<String, CataJsonObject> nodes;
+
+	/**
+	 * Object ids mapped to the last object in their {@code looks_like} reference chain,
+	 * members of a cycle are mapped to themselves.
+	 */
+	private final ImmutableMap<String, CataJsonObject> resolved;
+
+	private final ImmutableMap<String, String> danglingReferences;
+	private final ImmutableList<ImmutableList<String>> cycles;
+	private final ImmutableSet<String> cycleMembers;
+	private final @Nullable CopyFromResolver resolver;
+
+	private LooksLikeGraph(Iterable<? extends Collection<CataJsonObject>> objectSets,
+			@Nullable CopyFromResolver resolver) {
+
+		this.resolver = resolver;
+		LooksLikeResolutionEvent event = new LooksLikeResolutionEvent();
+		event.begin();
+		Map<String, CataJsonObject> tempNodes = new LinkedHashMap<>();
+		for (Collection<CataJsonObject> objects : objectSets) {
+			for (CataJsonObject object : objects) {
+				object = resolver != null ? resolver.getEffective(object) : object;
+				String id = getId(object);
+				if (id != null) {
+					tempNodes.putIfAbsent(id, object);
+				}
+			}
+		}
+		Map<String, CataJsonObject> tempResolved = new HashMap<>();
+		Map<String, String> tempDangling = new LinkedHashMap<>();
+		List<ImmutableList<String>> tempCycles = new ArrayList<>();
+
+		List<String> chain = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		long hops = 0;
+		for (Map.Entry<String, CataJsonObject> entry : tempNodes.entrySet()) {
+			if (tempResolved.containsKey(entry.getKey())) {
+				continue;
+			}
+			chain.clear();
+			visited.clear();
+			String id = entry.getKey();
+			CataJsonObject node = entry.getValue(), result;
+			while (true) {
+				chain.add(id);
+				visited.add(id);
+				String target = node.getLooksLike();
+				if (target.isEmpty()) {
+					result = node;
+					break;
+				}
+				// chain continues into an already resolved chain
+				CataJsonObject targetResolved = tempResolved.get(target);
+				if (targetResolved != null) {
+					result = targetResolved;
+					break;
+				}
+				CataJsonObject targetNode = tempNodes.get(target);
+				if (targetNode == null) {
+					tempDangling.put(id, target);
+					result = node;
+					break;
+				}
+				if (visited.contains(target)) {
+					// cycle members have no end of chain so each one resolves to itself,
+					// objects that lead into the cycle resolve to the object they enter it through
+					int start = chain.indexOf(target);
+					List<String> cycle = chain.subList(start, chain.size());
+					tempCycles.add(ImmutableList.copyOf(cycle));
+					for (String member : cycle) {
+						tempResolved.put(member, tempNodes.get(member));
+					}
+					cycle.clear();
+					result = targetNode;
+					break;
+				}
+				id = target;
+				node = targetNode;
+				hops++;
+			}
+			for (String chainId : chain) {
+				tempResolved.put(chainId, result);
+			}
+		}
+		nodes = ImmutableMap.copyOf(tempNodes);
+		resolved = ImmutableMap.copyOf(tempResolved);
+		danglingReferences = ImmutableMap.copyOf(tempDangling);
+		cycles = ImmutableList.copyOf(tempCycles);
+		cycleMembers = tempCycles.stream().flatMap(List::stream).collect(ImmutableSet.toImmutableSet());
+		Metrics.getDefault().looksLikeHops(hops);
+		if (event.shouldCommit()) {
+			event.commit(null, nodes.size(), -1, null);
+		}
+	}
+
+	/**
+	 * Build a new graph over given sets of objects.
+	 *
+	 * @param objectSets sets of objects to include in the graph, usually one set for each JSON file.
+	 * @return new instance of {@code LooksLikeGraph}.
+	 */
+	@Contract("_ -> new")
+	public static LooksLikeGraph of(Iterable<? extends Collection<CataJsonObject>> objectSets) {
+		return new LooksLikeGraph(objectSets, null);
+	}
+
+	/**
+	 * Build a new graph over effective objects of given sets of objects.
+	 *
+	 * @param objectSets sets of objects to include in the graph, usually one set for each JSON file.
+	 * @param resolver resolver used to find effective objects with inherited properties.
+	 * @return new instance of {@code LooksLikeGraph}.
+	 */
+	@Contract("_, _ -> new")
+	public static LooksLikeGraph of(Iterable<? extends Collection<CataJsonObject>> objectSets,
+			CopyFromResolver resolver) {
+		return new LooksLikeGraph(objectSets, resolver);
+	}
+
+	private static @Nullable String getId(CataJsonObject object) {
+
+		List<String> ids = object.objectIds;
+		if (ids == null || ids.isEmpty()) {
+			return null;
+		}
+		String id = ids.get(0);
+		return id != null && !id.isEmpty() ? id : null;
+	}
+
+	/**
+	 * @param id id of the object to find.
+	 * @return object with given id or {@code null} if no such object exists in the graph.
+	 */
+	@Contract(pure = true)
+	public @Nullable CataJsonObject get(String id) {
+		return nodes.get(id);
+	}
+
+	/**
+	 * Find the object at the end of {@code looks_like} reference chain of given object.
+	 * The chain ends with an object that does not define {@code looks_like} property or
+	 * an object whose {@code looks_like} reference does not exist in the graph. Members of
+	 * a reference cycle resolve to themselves and chains that lead into a cycle end with
+	 * the member of the cycle they enter it through.
+	 *
+	 * @param object object to resolve, does not have to be a member of the graph.
+	 * @return the object at the end of reference chain or given object if it does not define
+	 * or inherit {@code looks_like} property, the reference does not exist or it is a cycle member.
+	 */
+	@Contract(pure = true)
+	public CataJsonObject resolve(CataJsonObject object) {
+
+		CataJsonObject effective = resolver != null ? resolver.getEffective(object) : object;
+		String target = effective.getLooksLike();
+		if (target.isEmpty()) {
+			return object;
+		}
+		String id = getId(effective);
+		if (id != null && cycleMembers.contains(id) && cycleMembers.contains(target)) {
+			return object;
+		}
+		CataJsonObject result = resolved.get(target);
+		return result != null && result != effective ? result : object;
+	}
+
+	/**
+	 * @return resolver used to find effective objects or {@code null}
+	 * if the graph was built without resolving {@code copy-from} inheritance.
+	 */
+	public @Nullable CopyFromResolver getCopyFromResolver() {
+		return resolver;
+	}
+
+	/**
+	 * @return number of objects in the graph.
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * @return map of ids of objects whose {@code looks_like} property references
+	 * an object that does not exist in the graph, mapped to the referenced ids.
+	 */
+	public ImmutableMap<String, String> getDanglingReferences() {
+		return danglingReferences;
+	}
+
+	/**
+	 * @return list of {@code looks_like} reference cycles, each cycle is represented by
+	 * a list of ids in order of reference starting with the first object found in the cycle.
+	 */
+	public ImmutableList<ImmutableList<String>> getCycles() {
+		return cycles;
+	}
+}
@@ -20,11 +20,9 @@ package io.matshou.cata.tilecov.json;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -37,22 +35,16 @@ public class TileAtlasJsonDeserializer extends JsonObjectDeserializer<TileAtlasJ
 	}
 
 	@Override
-	void deserializeObjectMembers(Gson gson, JsonObject object, TileAtlasJsonObject target, String entry) {
+	void deserializeObjectMembers(Gson gson, String entry, JsonElement element, TileAtlasJsonObject target) {
 
-		JsonElement element = object.get(entry);
-		if (element == null) {
-			return;
-		}
-		Optional<List<TilesJsonObject>> tileAtlasJsonObjects = JsonObjectBuilder.<TilesJsonObject>create()
-				.ofType(TilesJsonObject.class)
-				.withListTypeToken(new TypeToken<>() {})
-				.withDeserializer(TilesJsonDeserializer.class)
-				.buildAsList(element.toString());
+		JsonCodecRegistry.Codec<List<TilesJsonObject>> codec = JsonCodecRegistry.getDefault().getCodec(
+				TilesJsonObject.class, TilesJsonDeserializer.class, new TypeToken<List<TilesJsonObject>>() {});
 
-		Field field = Objects.requireNonNull(jsonObjectFields.get("tiles"));
-		if (tileAtlasJsonObjects.isEmpty()) {
+		List<TilesJsonObject> tilesJsonObjects = codec.fromJson(element);
+		if (tilesJsonObjects == null) {
 			throw new NullJsonObjectException("tiles", TilesJsonObject.class);
 		}
-		changeFieldValue(field, target, tileAtlasJsonObjects.get());
+		Field field = Objects.requireNonNull(jsonObjectFields.get("tiles"));
+		changeFieldValue(field, target, tilesJsonObjects);
 	}
 }
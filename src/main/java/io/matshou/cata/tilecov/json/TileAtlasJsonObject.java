@@ -33,22 +33,22 @@ import com.google.gson.annotations.SerializedName;
 @SuppressWarnings("unused")
 public class TileAtlasJsonObject {
 
-	private @Nullable String file;
+	@Nullable String file;
 
 	@SerializedObjectName("tiles")
-	private @Nullable List<TilesJsonObject> lTiles;
+	@Nullable List<TilesJsonObject> lTiles;
 
 	@SerializedName("sprite_width")
-	private int spriteWidth;
+	int spriteWidth;
 
 	@SerializedName("sprite_height")
-	private int spriteHeight;
+	int spriteHeight;
 
 	@SerializedName("sprite_offset_x")
-	private int spriteOffsetX;
+	int spriteOffsetX;
 
 	@SerializedName("sprite_offset_y")
-	private int spriteOffsetY;
+	int spriteOffsetY;
 
 	/**
 	 * @return name of the tile atlas file
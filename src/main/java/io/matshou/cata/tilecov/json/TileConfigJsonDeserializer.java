@@ -20,11 +20,9 @@ package io.matshou.cata.tilecov.json;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -37,36 +35,30 @@ public class TileConfigJsonDeserializer extends JsonObjectDeserializer<TileConfi
 	}
 
 	@Override
-	void deserializeObjectMembers(Gson gson, JsonObject object, TileConfigJsonObject target, String entry) {
+	void deserializeObjectMembers(Gson gson, String entry, JsonElement element, TileConfigJsonObject target) {
 
-		JsonElement element = object.get(entry);
-		if (element == null) {
-			return;
-		}
 		if (entry.equals("tile_info")) {
-			Optional<List<TileInfoJsonObject>> jsonObjects = JsonObjectBuilder.<TileInfoJsonObject>create()
-					.ofType(TileInfoJsonObject.class)
-					.withListTypeToken(new TypeToken<>() {})
-					.buildAsList(element.toString());
+			JsonCodecRegistry.Codec<List<TileInfoJsonObject>> codec = JsonCodecRegistry.getDefault().getCodec(
+					TileInfoJsonObject.class, null, new TypeToken<List<TileInfoJsonObject>>() {});
 
-			Field field = Objects.requireNonNull(jsonObjectFields.get("tile_info"));
-			if (jsonObjects.isEmpty()) {
+			List<TileInfoJsonObject> jsonObjects = codec.fromJson(element);
+			if (jsonObjects == null || jsonObjects.isEmpty()) {
 				throw new NullJsonObjectException("tile_info", TileInfoJsonObject.class);
 			}
-			changeFieldValue(field, target, jsonObjects.get().get(0));
+			Field field = Objects.requireNonNull(jsonObjectFields.get("tile_info"));
+			changeFieldValue(field, target, jsonObjects.get(0));
 		}
 		else if (entry.equals("tiles-new")) {
-			Optional<List<TileAtlasJsonObject>> jsonObjects = JsonObjectBuilder.<TileAtlasJsonObject>create()
-					.ofType(TileAtlasJsonObject.class)
-					.withListTypeToken(new TypeToken<>() {})
-					.withDeserializer(TileAtlasJsonDeserializer.class)
-					.buildAsList(element.toString());
+			JsonCodecRegistry.Codec<List<TileAtlasJsonObject>> codec = JsonCodecRegistry.getDefault().getCodec(
+					TileAtlasJsonObject.class, TileAtlasJsonDeserializer.class,
+					new TypeToken<List<TileAtlasJsonObject>>() {});
 
-			Field field = Objects.requireNonNull(jsonObjectFields.get("tiles-new"));
-			if (jsonObjects.isEmpty()) {
+			List<TileAtlasJsonObject> jsonObjects = codec.fromJson(element);
+			if (jsonObjects == null) {
 				throw new NullJsonObjectException("tiles-new", TileAtlasJsonObject.class);
 			}
-			changeFieldValue(field, target, jsonObjects.get());
+			Field field = Objects.requireNonNull(jsonObjectFields.get("tiles-new"));
+			changeFieldValue(field, target, jsonObjects);
 		}
 	}
 }
@@ -34,10 +34,10 @@ import com.google.common.collect.ImmutableList;
 public class TileConfigJsonObject {
 
 	@SerializedObjectName("tile_info")
-	private @Nullable TileInfoJsonObject tileInfo;
+	@Nullable TileInfoJsonObject tileInfo;
 
 	@SerializedObjectName("tiles-new")
-	private @Nullable List<TileAtlasJsonObject> tileAtlases;
+	@Nullable List<TileAtlasJsonObject> tileAtlases;
 
 	/**
 	 * @return basic tileset information.
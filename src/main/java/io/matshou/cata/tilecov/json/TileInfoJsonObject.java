@@ -26,8 +26,8 @@ package io.matshou.cata.tilecov.json;
 @SuppressWarnings("unused")
 public class TileInfoJsonObject {
 
-	private int height, width, pixelscale;
-	private boolean iso;
+	int height, width, pixelscale;
+	boolean iso;
 
 	/**
 	 * @return width of each tile in this tileset.
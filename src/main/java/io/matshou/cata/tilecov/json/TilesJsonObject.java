@@ -33,13 +33,13 @@ import com.google.common.collect.ImmutableList;
 public class TilesJsonObject implements CataIdentifiable {
 
 	@SerializedArrayName("id")
-	private @Nullable List<String> tileId;
+	@Nullable List<String> tileId;
 
 	@SerializedArrayName("fg")
-	private @Nullable List<String> tileFg;
+	@Nullable List<String> tileFg;
 
 	@SerializedArrayName("bg")
-	private @Nullable List<String> tileBg;
+	@Nullable List<String> tileBg;
 
 	/**
 	 * @return ID of the objects that will be mapped to this tile
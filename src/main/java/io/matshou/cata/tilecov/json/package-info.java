@@ -15,6 +15,14 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+/**
+ * Classes used to deserialize Cataclysm and tileset JSON files.
+ * <p>
+ * JSON adapters for classes in this package are generated at compile time by {@code JsonAdapterProcessor}.
+ * Generated adapters are separate classes in this package that read and write fields of the class they
+ * were generated for directly, so fields bound to JSON properties are declared package-private instead of
+ * {@code private}. Other classes should only access these fields through methods of the declaring class.
+ */
 @NoNullObjects
 package io.matshou.cata.tilecov.json;
 
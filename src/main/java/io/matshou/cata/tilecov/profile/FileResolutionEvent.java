@@ -0,0 +1,33 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when objects of a single JSON file are filtered and mapped
+ * to dictionary keys before they are classified against tilesets.
+ * Carries path of the file and number of objects left after filtering.
+ */
+@Name(TilecovEvent.NAME_PREFIX + "FileResolution")
+@Label("File Resolution")
+@Description("Objects of a file filtered and prepared for classification")
+public final class FileResolutionEvent extends TilecovEvent {
+}
@@ -0,0 +1,354 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.*;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+/**
+ * This class counts work done by the application while it is running.
+ * <p>
+ * Counters are updated from the same places that emit flight recorder events and phase latencies
+ * are recorded whenever a {@link Profiler.Phase} is closed, whether profiling is enabled or not.
+ * Counters are {@link LongAdder} instances so updating them from parse pools and tileset
+ * executors does not contend. Call {@link #register()} to expose the metrics through
+ * platform MBean server and {@link #writeTextfile(Path)} to write them in Prometheus
+ * text format for node exporter textfile collector.
+ */
+public final class Metrics implements MetricsMXBean {
+
+	/**
+	 * Name the metrics are registered under in platform MBean server.
+	 */
+	public static final String OBJECT_NAME = "io.matshou.cata.tilecov:type=Metrics";
+
+	/**
+	 * Name of file the metrics are written to in Prometheus text format.
+	 */
+	public static final String TEXTFILE_NAME = "tilecov.prom";
+
+	private static final Metrics DEFAULT = new Metrics();
+
+	/**
+	 * This class represents latencies of all completed runs of a single phase.
+	 */
+	public static final class PhaseLatency {
+
+		private final long count, totalNanos, maxNanos;
+
+		@ConstructorParameters({ "count", "totalNanos", "maxNanos" })
+		public PhaseLatency(long count, long totalNanos, long maxNanos) {
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+		}
+
+		/**
+		 * @return number of completed runs of the phase.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return total wall time of all runs of the phase in nanoseconds.
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @return wall time of the longest run of the phase in nanoseconds.
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+	}
+
+	private static final class PhaseCounter {
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	private final LongAdder filesParsed = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder objectsLoaded = new LongAdder();
+	private final LongAdder looksLikeHops = new LongAdder();
+	private final LongAdder coverageEvaluations = new LongAdder();
+	private final LongAdder objectsClassified = new LongAdder();
+	private final LongAdder pagesWritten = new LongAdder();
+	private final Map<String, LongAdder> filterRejections = new ConcurrentHashMap<>();
+	private final Map<String, PhaseCounter> phases = new ConcurrentHashMap<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return metrics shared by the whole application.
+	 */
+	public static Metrics getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Register metrics shared by the whole application with platform MBean server
+	 * under {@value OBJECT_NAME} name. Does nothing if the metrics are already registered.
+	 *
+	 * @return name the metrics are registered under.
+	 *
+	 * @throws IllegalStateException if the metrics could not be registered.
+	 */
+	public static ObjectName register() {
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			try {
+				server.registerMBean(DEFAULT, name);
+			}
+			catch (InstanceAlreadyExistsException e) {
+				// metrics have already been registered
+			}
+			return name;
+		}
+		catch (JMException e) {
+			throw new IllegalStateException("Unable to register metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Count a JSON file that was parsed or loaded from parse cache.
+	 *
+	 * @param byteSize size of the file in bytes.
+	 * @param objectCount number of objects loaded from the file.
+	 */
+	public void fileParsed(long byteSize, int objectCount) {
+
+		filesParsed.increment();
+		bytesRead.add(byteSize);
+		objectsLoaded.add(objectCount);
+	}
+
+	/**
+	 * Count an object that was excluded from coverage by a filter.
+	 *
+	 * @param filter name of the filter that excluded the object.
+	 */
+	public void filterRejected(String filter) {
+		filterRejections.computeIfAbsent(filter, f -> new LongAdder()).increment();
+	}
+
+	/**
+	 * @param hops number of {@code looks_like} references followed.
+	 */
+	public void looksLikeHops(long hops) {
+		looksLikeHops.add(hops);
+	}
+
+	/**
+	 * Count objects that were classified against tile ids of a tileset.
+	 *
+	 * @param objectCount number of classified objects.
+	 */
+	public void coverageEvaluated(int objectCount) {
+
+		coverageEvaluations.increment();
+		objectsClassified.add(objectCount);
+	}
+
+	/**
+	 * Count a coverage report page that was written to output directory.
+	 */
+	public void pageWritten() {
+		pagesWritten.increment();
+	}
+
+	/**
+	 * Record latency of a completed phase.
+	 *
+	 * @param name name of the phase.
+	 * @param nanos wall time of the phase in nanoseconds.
+	 */
+	public void phaseCompleted(String name, long nanos) {
+
+		PhaseCounter counter = phases.computeIfAbsent(name, n -> new PhaseCounter());
+		counter.count.increment();
+		counter.totalNanos.add(nanos);
+		counter.maxNanos.accumulate(nanos);
+	}
+
+	@Override
+	public long getFilesParsed() {
+		return filesParsed.sum();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getObjectsLoaded() {
+		return objectsLoaded.sum();
+	}
+
+	@Override
+	public ImmutableMap<String, Long> getFilterRejections() {
+
+		Map<String, Long> result = new TreeMap<>();
+		filterRejections.forEach((k, v) -> result.put(k, v.sum()));
+		return ImmutableMap.copyOf(result);
+	}
+
+	@Override
+	public long getLooksLikeHops() {
+		return looksLikeHops.sum();
+	}
+
+	@Override
+	public long getCoverageEvaluations() {
+		return coverageEvaluations.sum();
+	}
+
+	@Override
+	public long getObjectsClassified() {
+		return objectsClassified.sum();
+	}
+
+	@Override
+	public long getPagesWritten() {
+		return pagesWritten.sum();
+	}
+
+	@Override
+	public ImmutableMap<String, PhaseLatency> getPhaseLatencies() {
+
+		Map<String, PhaseLatency> result = new TreeMap<>();
+		phases.forEach((k, v) -> result.put(k, new PhaseLatency(v.count.sum(), v.totalNanos.sum(), v.maxNanos.get())));
+		return ImmutableMap.copyOf(result);
+	}
+
+	@Override
+	public void reset() {
+
+		for (LongAdder counter : new LongAdder[]{ filesParsed, bytesRead, objectsLoaded,
+				looksLikeHops, coverageEvaluations, objectsClassified, pagesWritten }) {
+			counter.reset();
+		}
+		filterRejections.clear();
+		phases.clear();
+	}
+
+	/**
+	 * Write all metrics in Prometheus text format to {@value TEXTFILE_NAME} file in given directory.
+	 * The file is written to a temporary file first and moved in place, so node exporter never
+	 * reads a partially written file.
+	 *
+	 * @param outputDir path to directory to write the file to.
+	 * @return path to written file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public Path writeTextfile(Path outputDir) throws IOException {
+
+		Files.createDirectories(outputDir);
+		Path file = outputDir.resolve(TEXTFILE_NAME);
+		// node exporter only reads files with .prom extension, and has to be able to read the file
+		// when running as a different user, so the file is created with default permissions
+		Path tempFile = AtomicFiles.createTempFile(file);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				writeCounter(writer, "files_parsed", "JSON files parsed or loaded from parse cache.", getFilesParsed());
+				writeCounter(writer, "bytes_read", "Total size of parsed JSON files in bytes.", getBytesRead());
+				writeCounter(writer, "objects_loaded", "Objects loaded from JSON files.", getObjectsLoaded());
+				writeHeader(writer, "filter_rejections_total",
+						"Objects excluded from coverage by each filter.", "counter");
+				for (Map.Entry<String, Long> entry : getFilterRejections().entrySet()) {
+					writer.write("tilecov_filter_rejections_total{filter=\"" + escape(entry.getKey())
+							+ "\"} " + entry.getValue() + '\n');
+				}
+				writeCounter(writer, "looks_like_hops", "looks_like references followed.", getLooksLikeHops());
+				writeCounter(writer, "coverage_evaluations",
+						"Times objects were classified against a tileset.", getCoverageEvaluations());
+				writeCounter(writer, "objects_classified",
+						"Objects classified against a tileset.", getObjectsClassified());
+				writeCounter(writer, "pages_written", "Coverage report pages written.", getPagesWritten());
+				writeHeader(writer, "phase_duration_seconds", "Wall time of completed phases.", "summary");
+				for (Map.Entry<String, PhaseLatency> entry : getPhaseLatencies().entrySet()) {
+					String labels = "{phase=\"" + escape(entry.getKey()) + "\"} ";
+					PhaseLatency latency = entry.getValue();
+					writer.write("tilecov_phase_duration_seconds_sum" + labels + seconds(latency.getTotalNanos()) + '\n');
+					writer.write("tilecov_phase_duration_seconds_count" + labels + latency.getCount() + '\n');
+				}
+				writeHeader(writer, "phase_duration_max_seconds", "Wall time of the longest run of phases.", "gauge");
+				for (Map.Entry<String, PhaseLatency> entry : getPhaseLatencies().entrySet()) {
+					writer.write("tilecov_phase_duration_max_seconds{phase=\"" + escape(entry.getKey())
+							+ "\"} " + seconds(entry.getValue().getMaxNanos()) + '\n');
+				}
+				writeHeader(writer, "last_run_timestamp_seconds", "Time the metrics were written.", "gauge");
+				writer.write("tilecov_last_run_timestamp_seconds " + System.currentTimeMillis() / 1000 + '\n');
+			}
+			AtomicFiles.moveAtomically(tempFile, file);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+		return file;
+	}
+
+	private static void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+
+		writer.write("# HELP tilecov_" + name + ' ' + help + '\n');
+		writer.write("# TYPE tilecov_" + name + ' ' + type + '\n');
+	}
+
+	private static void writeCounter(Writer writer, String name, String help, long value) throws IOException {
+
+		writeHeader(writer, name + "_total", help, "counter");
+		writer.write("tilecov_" + name + "_total " + value + '\n');
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+
+	/**
+	 * Escape given label value as required by Prometheus text format.
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link Metrics} registered with platform MBean server.
+ * All counters are cumulative since the application was started or metrics were reset.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return number of JSON files parsed or loaded from parse cache.
+	 */
+	long getFilesParsed();
+
+	/**
+	 * @return total size of JSON files parsed or loaded from parse cache in bytes.
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return number of objects loaded from JSON files.
+	 */
+	long getObjectsLoaded();
+
+	/**
+	 * @return number of objects excluded from coverage mapped to names of filters that excluded them.
+	 */
+	Map<String, Long> getFilterRejections();
+
+	/**
+	 * @return number of {@code looks_like} references followed while building reference graphs.
+	 */
+	long getLooksLikeHops();
+
+	/**
+	 * @return number of times objects were classified against tile ids of a tileset.
+	 */
+	long getCoverageEvaluations();
+
+	/**
+	 * @return number of objects classified against tile ids of a tileset, counted once for each tileset.
+	 */
+	long getObjectsClassified();
+
+	/**
+	 * @return number of coverage report pages written to output directory.
+	 */
+	long getPagesWritten();
+
+	/**
+	 * @return latencies of completed phases mapped to names of phases.
+	 */
+	Map<String, Metrics.PhaseLatency> getPhaseLatencies();
+
+	/**
+	 * Reset all counters to zero.
+	 */
+	void reset();
+}
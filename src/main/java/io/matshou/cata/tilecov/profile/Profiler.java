@@ -0,0 +1,440 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongFunction;
+
+import org.jetbrains.annotations.Contract;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonWriter;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+
+/**
+ * This class records how much wall time, CPU time and memory is spent in each phase of a run,
+ * and on each JSON file and tileset that is loaded.
+ * <p>
+ * Phases are measured across all live threads, so work done by parse pools and tileset executors
+ * during a phase is attributed to that phase. Threads that terminate before a phase ends take their
+ * part of the measurement with them. Phases with the same name are aggregated. Files and tilesets
+ * are measured on the thread that loads them. CPU time and allocated bytes are read through
+ * {@link com.sun.management.ThreadMXBean} and are reported as {@code -1} when the JVM does not
+ * support measuring them.
+ * <p>
+ * A {@link #disabled() disabled} profiler measures nothing and its methods only run given tasks,
+ * so code can be instrumented unconditionally.
+ */
+public final class Profiler {
+
+	/**
+	 * Name of file the profile is written to in output directory.
+	 */
+	public static final String FILE_NAME = "profile.json";
+
+	private static final Profiler DISABLED = new Profiler(false);
+
+	/**
+	 * This class represents a kind of measured item.
+	 */
+	public enum Kind {
+
+		/**
+		 * JSON file parsed from {@code data/json} directory.
+		 */
+		FILE,
+
+		/**
+		 * Tileset whose {@code tile_config.json} was loaded.
+		 */
+		TILESET
+	}
+
+	/**
+	 * This class represents work that can be measured by a profiler.
+	 *
+	 * @param <T> type of the result of work.
+	 */
+	@FunctionalInterface
+	public interface Task<T> {
+		T call() throws IOException;
+	}
+
+	/**
+	 * This class represents a measurement of a phase, a file or a tileset.
+	 */
+	public static final class Sample {
+
+		private final String name;
+		private final long size;
+		private long count, wallNanos, cpuNanos, allocatedBytes;
+
+		private Sample(String name, long size) {
+			this.name = name;
+			this.size = size;
+		}
+
+		private void add(long wall, long cpu, long allocated) {
+
+			count++;
+			wallNanos += wall;
+			cpuNanos = cpu < 0 || cpuNanos < 0 ? -1 : cpuNanos + cpu;
+			allocatedBytes = allocated < 0 || allocatedBytes < 0 ? -1 : allocatedBytes + allocated;
+		}
+
+		/**
+		 * @return name of the phase, path of the file relative to its JSON directory or name of tileset directory.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return size of measured file in bytes or {@code -1} when the size is not known.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return number of times the phase was entered or item was loaded.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return elapsed wall time in nanoseconds.
+		 */
+		public long getWallNanos() {
+			return wallNanos;
+		}
+
+		/**
+		 * @return consumed CPU time in nanoseconds or {@code -1} if not supported.
+		 */
+		public long getCpuNanos() {
+			return cpuNanos;
+		}
+
+		/**
+		 * @return allocated memory in bytes or {@code -1} if not supported.
+		 */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+	}
+
+	/**
+	 * This class represents a phase that is being measured.
+	 * Closing the phase records the measurement.
+	 */
+	public final class Phase implements AutoCloseable {
+
+		private final String name;
+		private final long startWall;
+		private final Map<Long, long[]> startThreads;
+
+		private Phase(String name) {
+			this.name = name;
+			this.startThreads = enabled ? readAllThreads() : Map.of();
+			this.startWall = System.nanoTime();
+		}
+
+		@Override
+		public void close() {
+
+			long wall = System.nanoTime() - startWall;
+			// phase latencies are always recorded as metrics, even when profiling is not enabled
+			Metrics.getDefault().phaseCompleted(name, wall);
+			if (!enabled) {
+				return;
+			}
+			long cpu = cpuSupported ? 0 : -1, allocated = allocationSupported ? 0 : -1;
+			for (Map.Entry<Long, long[]> entry : readAllThreads().entrySet()) {
+				long[] start = startThreads.getOrDefault(entry.getKey(), new long[2]);
+				long[] end = entry.getValue();
+				if (cpu >= 0 && end[0] >= 0) {
+					cpu += end[0] - Math.max(start[0], 0);
+				}
+				if (allocated >= 0 && end[1] >= 0) {
+					allocated += end[1] - Math.max(start[1], 0);
+				}
+			}
+			synchronized (phases) {
+				phases.computeIfAbsent(name, n -> new Sample(n, -1)).add(wall, cpu, allocated);
+			}
+		}
+	}
+
+	private final boolean enabled, cpuSupported, allocationSupported;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	/**
+	 * Phases in order in which they were first entered.
+	 */
+	private final Map<String, Sample> phases = new LinkedHashMap<>();
+	private final Map<Kind, Queue<Sample>> items = new EnumMap<>(Kind.class);
+
+	private Profiler(boolean enabled) {
+
+		this.enabled = enabled;
+		threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (enabled) {
+			if (threadBean.isThreadCpuTimeSupported()) {
+				threadBean.setThreadCpuTimeEnabled(true);
+			}
+			if (threadBean.isThreadAllocatedMemorySupported()) {
+				threadBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		cpuSupported = enabled && threadBean.isThreadCpuTimeEnabled();
+		allocationSupported = enabled && threadBean.isThreadAllocatedMemoryEnabled();
+		for (Kind kind : Kind.values()) {
+			items.put(kind, new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	/**
+	 * @return new profiler that records measurements.
+	 */
+	@Contract("-> new")
+	public static Profiler create() {
+		return new Profiler(true);
+	}
+
+	/**
+	 * @return profiler that does not record any measurements.
+	 */
+	public static Profiler disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * @return {@code true} if this profiler records measurements.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Start measuring a phase, the phase is measured until returned object is closed.
+	 *
+	 * @param name name of the phase.
+	 * @return phase that is being measured.
+	 */
+	public Phase phase(String name) {
+		return new Phase(name);
+	}
+
+	/**
+	 * Run given task and record its measurement on the calling thread.
+	 *
+	 * @param kind kind of item the task loads.
+	 * @param name name of the item.
+	 * @param size size of the item in bytes or {@code -1} if not known.
+	 * @param task task to run.
+	 * @param <T> type of task result.
+	 * @return result of given task.
+	 *
+	 * @throws IOException when the task throws an exception.
+	 */
+	public <T> T measure(Kind kind, String name, long size, Task<T> task) throws IOException {
+
+		if (!enabled) {
+			return task.call();
+		}
+		long threadId = Thread.currentThread().getId();
+		long startCpu = cpuSupported ? threadBean.getThreadCpuTime(threadId) : -1;
+		long startAllocated = allocationSupported ? threadBean.getThreadAllocatedBytes(threadId) : -1;
+		long startWall = System.nanoTime();
+		try {
+			return task.call();
+		}
+		finally {
+			long wall = System.nanoTime() - startWall;
+			long cpu = cpuSupported ? threadBean.getThreadCpuTime(threadId) - startCpu : -1;
+			long allocated = allocationSupported ? threadBean.getThreadAllocatedBytes(threadId) - startAllocated : -1;
+			Sample sample = new Sample(name, size);
+			sample.add(wall, cpu, allocated);
+			items.get(kind).add(sample);
+		}
+	}
+
+	/**
+	 * Read CPU time and allocated bytes of every live thread.
+	 *
+	 * @return pair of CPU time and allocated bytes mapped to thread ids.
+	 */
+	private Map<Long, long[]> readAllThreads() {
+
+		long[] ids = threadBean.getAllThreadIds();
+		long[] cpu = cpuSupported ? threadBean.getThreadCpuTime(ids) : null;
+		long[] allocated = allocationSupported ? threadBean.getThreadAllocatedBytes(ids) : null;
+		Map<Long, long[]> result = new HashMap<>(ids.length * 2);
+		for (int i = 0; i < ids.length; i++) {
+			result.put(ids[i], new long[]{ cpu != null ? cpu[i] : -1, allocated != null ? allocated[i] : -1 });
+		}
+		return result;
+	}
+
+	/**
+	 * @return measurements of phases in order in which phases were first entered.
+	 */
+	public ImmutableList<Sample> getPhases() {
+
+		synchronized (phases) {
+			return ImmutableList.copyOf(phases.values());
+		}
+	}
+
+	/**
+	 * @param kind kind of items to get measurements for.
+	 * @param order order of returned measurements.
+	 * @return measurements of items of given kind in given order.
+	 */
+	public ImmutableList<Sample> getItems(Kind kind, Comparator<Sample> order) {
+		return ImmutableList.sortedCopyOf(order, items.get(kind));
+	}
+
+	/**
+	 * @return order of measurements from the longest wall time to the shortest.
+	 */
+	public static Comparator<Sample> bySlowest() {
+		return descending(Sample::getWallNanos);
+	}
+
+	/**
+	 * @return order of measurements from the most allocated memory to the least.
+	 */
+	public static Comparator<Sample> byLargestAllocation() {
+		return descending(Sample::getAllocatedBytes);
+	}
+
+	private static Comparator<Sample> descending(ToLongFunction<Sample> value) {
+		return Comparator.comparingLong(value).reversed().thenComparing(Sample::getName);
+	}
+
+	/**
+	 * Print measurements of phases followed by items that took the longest
+	 * and allocated the most memory.
+	 *
+	 * @param out stream to print to.
+	 * @param limit maximum number of items of each kind to print in each ranking.
+	 */
+	public void printSummary(PrintStream out, int limit) {
+
+		out.println("Profile:");
+		out.printf("  %-40s %8s %12s %12s %12s%n", "phase", "count", "wall ms", "cpu ms", "alloc MB");
+		for (Sample phase : getPhases()) {
+			printSample(out, phase, String.valueOf(phase.getCount()));
+		}
+		for (Kind kind : Kind.values()) {
+			String label = kind.name().toLowerCase(Locale.ROOT);
+			List<Sample> slowest = getItems(kind, bySlowest());
+			if (slowest.isEmpty()) {
+				continue;
+			}
+			List<Sample> largest = getItems(kind, byLargestAllocation());
+			for (List<Sample> ranking : allocationSupported ? List.of(slowest, largest) : List.of(slowest)) {
+				out.println();
+				out.printf("  %-40s %8s %12s %12s %12s%n", (ranking == slowest ? "slowest " : "largest allocating ")
+						+ label + " (" + slowest.size() + ")", "size KB", "wall ms", "cpu ms", "alloc MB");
+				for (Sample sample : ranking.subList(0, Math.min(limit, ranking.size()))) {
+					printSample(out, sample, sample.getSize() >= 0 ? String.valueOf(sample.getSize() / 1024) : "");
+				}
+			}
+		}
+	}
+
+	private static void printSample(PrintStream out, Sample sample, String detail) {
+
+		out.printf(Locale.ROOT, "  %-40s %8s %12.1f %12s %12s%n", abbreviate(sample.getName()), detail,
+				sample.getWallNanos() / 1e6,
+				sample.getCpuNanos() >= 0 ? String.format(Locale.ROOT, "%.1f", sample.getCpuNanos() / 1e6) : "n/a",
+				sample.getAllocatedBytes() >= 0
+						? String.format(Locale.ROOT, "%.1f", sample.getAllocatedBytes() / (1024.0 * 1024.0)) : "n/a");
+	}
+
+	private static String abbreviate(String name) {
+		return name.length() <= 40 ? name : "..." + name.substring(name.length() - 37);
+	}
+
+	/**
+	 * Write all measurements to {@value FILE_NAME} file in given directory. Phases are written
+	 * in order in which they were first entered and items from the slowest to the fastest.
+	 *
+	 * @param outputDir path to directory to write the profile to.
+	 * @return path to written file.
+	 *
+	 * @throws IOException when an I/O error occurred while writing.
+	 */
+	public Path writeToFile(Path outputDir) throws IOException {
+
+		Files.createDirectories(outputDir);
+		Path file = outputDir.resolve(FILE_NAME);
+		Path tempFile = AtomicFiles.createTempFile(file);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+				 JsonWriter jsonWriter = new JsonWriter(writer)
+			) {
+				jsonWriter.setIndent("  ");
+				jsonWriter.beginObject();
+				jsonWriter.name("phases");
+				writeSamples(jsonWriter, getPhases());
+				for (Kind kind : Kind.values()) {
+					jsonWriter.name(kind.name().toLowerCase(Locale.ROOT) + "s");
+					writeSamples(jsonWriter, getItems(kind, bySlowest()));
+				}
+				jsonWriter.endObject();
+			}
+			AtomicFiles.moveAtomically(tempFile, file);
+		}
+		finally {
+			Files.deleteIfExists(tempFile);
+		}
+		return file;
+	}
+
+	private static void writeSamples(JsonWriter writer, List<Sample> samples) throws IOException {
+
+		writer.beginArray();
+		for (Sample sample : samples) {
+			writer.beginObject();
+			writer.name("name").value(sample.getName());
+			if (sample.getSize() >= 0) {
+				writer.name("size").value(sample.getSize());
+			}
+			writer.name("count").value(sample.getCount());
+			writer.name("wallNanos").value(sample.getWallNanos());
+			writer.name("cpuNanos").value(sample.getCpuNanos());
+			writer.name("allocatedBytes").value(sample.getAllocatedBytes());
+			writer.endObject();
+		}
+		writer.endArray();
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when tile ids are read from {@code tile_config.json} of a tileset,
+ * or loaded from parse cache. Carries path and size of the tile config file, number of tile
+ * entries and name of the tileset.
+ */
+@Name(TilecovEvent.NAME_PREFIX + "TileConfigLoad")
+@Label("Tile Config Load")
+@Description("Tile ids loaded from tile_config.json of a tileset")
+public final class TileConfigLoadEvent extends TilecovEvent {
+}
@@ -0,0 +1,79 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.nio.file.Path;
+
+import org.jetbrains.annotations.Nullable;
+
+import jdk.jfr.*;
+
+/**
+ * Base class of flight recorder events emitted by Cata-TileCov.
+ * <p>
+ * Every event carries the same set of fields, fields that do not apply to a particular
+ * event are left empty or set to {@code -1}. Events are meant to be used as follows,
+ * so that nothing but the event itself is computed when the event is not recorded:
+ * <pre>{@code
+ * FileParseEvent event = new FileParseEvent();
+ * event.begin();
+ * List<CataJsonObject> objects = load(path);
+ * if (event.shouldCommit()) {
+ *     event.commit(path, objects.size(), Files.size(path), null);
+ * }
+ * }</pre>
+ * Start a recording with {@code -XX:StartFlightRecording} JVM option to record the events.
+ */
+@Category({ "Cata-TileCov" })
+@StackTrace(false)
+public abstract class TilecovEvent extends Event {
+
+	static final String NAME_PREFIX = "io.matshou.cata.tilecov.";
+
+	// fields are not private because flight recorder ignores private fields of event superclasses
+	@Label("Path")
+	protected String path = "";
+
+	@Label("Object Count")
+	protected int objectCount = -1;
+
+	@Label("Byte Size")
+	@DataAmount
+	protected long byteSize = -1;
+
+	@Label("Tileset Name")
+	protected String tilesetName = "";
+
+	/**
+	 * Set fields of this event and commit it. Should only be called
+	 * after {@link #shouldCommit()} returned {@code true}.
+	 *
+	 * @param path path to the file or directory the event is about or {@code null} if it does not apply.
+	 * @param objectCount number of objects or tile entries the event is about or {@code -1} if it does not apply.
+	 * @param byteSize size of the file the event is about in bytes or {@code -1} if it does not apply.
+	 * @param tilesetName name of the tileset the event is about or {@code null} if it does not apply.
+	 */
+	public void commit(@Nullable Path path, int objectCount, long byteSize, @Nullable String tilesetName) {
+
+		this.path = path != null ? path.toString() : "";
+		this.objectCount = objectCount;
+		this.byteSize = byteSize;
+		this.tilesetName = tilesetName != null ? tilesetName : "";
+		commit();
+	}
+}
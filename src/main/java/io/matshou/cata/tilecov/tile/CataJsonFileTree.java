@@ -20,21 +20,30 @@ package io.matshou.cata.tilecov.tile;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.gson.reflect.TypeToken;
 
+import io.matshou.cata.tilecov.AnalysisSession;
 import io.matshou.cata.tilecov.json.*;
+import io.matshou.cata.tilecov.profile.FileParseEvent;
+import io.matshou.cata.tilecov.profile.Metrics;
+import io.matshou.cata.tilecov.profile.Profiler;
 
 /**
  * This class represents a file-tree of all JSON files in a Cataclysm file directory.
@@ -48,6 +57,10 @@ import io.matshou.cata.tilecov.json.*;
  * defined in the blacklist can be considered for inclusion. The primary way to filter which files
  * inside the root path get included is to call the constructor with the {@code target}
  * parameter set to directory path which you want to limit the inclusion to.
+ * <p>
+ * Files can be parsed in parallel on a {@link ForkJoinPool} when the tree is constructed
+ * with a {@link Builder} configured with a pool. The resulting tree is the same
+ * regardless of whether files were parsed serially or in parallel.
  */
 public class CataJsonFileTree extends TreeMap<Path, ImmutableSet<CataJsonObject>> {
 
@@ -55,19 +68,176 @@ public class CataJsonFileTree extends TreeMap<Path, ImmutableSet<CataJsonObject>
 			Paths.get("monsters/monster_goals.json")
 	);
 
+	private final Path root;
+	private final @Nullable Path target;
+	private final FileLoader fileLoader;
+
 	/**
 	 * Construct and populate a JSON file-tree for given directory path.
 	 *
 	 * @param root path to directory as starting point for mapping file tree.
 	 * @param target path to directory that is the target of file tree mapping.
 	 * When this is {@code null} all {@code .json} files will be included in the file tree.
+	 * @param loader strategy used to load JSON objects from each file.
+	 * @throws IOException when an I/O exception occurs while walking files or building JSON object.
+	 * @throws FileNotFoundException when given path does not point to an existing file.
+	 * @throws IllegalArgumentException when given path does not represent a valid directory.
+	 * @throws NullJsonObjectException when building a JSON object returns {@code null}.
+	 */
+	public CataJsonFileTree(Path root, @Nullable Path target, CataJsonLoader loader) throws IOException {
+		this(root, target, createFileLoader(root, loader, null, Profiler.disabled()), null, Profiler.disabled());
+	}
+
+	private CataJsonFileTree(Builder builder) throws IOException {
+		this(builder.root, builder.target, createFileLoader(builder.root,
+				builder.loader, builder.cache, builder.profiler), builder.pool, builder.profiler);
+	}
+
+	private CataJsonFileTree(Path root, @Nullable Path target, FileLoader fileLoader,
+			@Nullable ForkJoinPool pool, Profiler profiler) throws IOException {
+		super(init(root, target, fileLoader, pool, profiler));
+		this.root = root;
+		this.target = target;
+		this.fileLoader = fileLoader;
+	}
+
+	/**
+	 * This builder is used to construct a {@link CataJsonFileTree} object.
+	 * <p>
+	 * Call {@link #create(Path)} to create a new builder and {@link #build()}
+	 * to instruct the builder to create a new {@code CataJsonFileTree} instance.
+	 */
+	public static class Builder {
+
+		private final Path root;
+		private @Nullable Path target;
+		private CataJsonLoader loader = CataJsonLoader.STREAMING;
+		private @Nullable ForkJoinPool pool;
+		private @Nullable ParseCache cache;
+		private Profiler profiler = Profiler.disabled();
+
+		private Builder(Path root) {
+			this.root = root;
+		}
+
+		/**
+		 * Create a new {@link Builder} instance for given directory path.
+		 *
+		 * @param root path to directory as starting point for mapping file tree.
+		 * @return new instance of {@code Builder}.
+		 */
+		@Contract("_ -> new")
+		public static Builder create(Path root) {
+			return new Builder(root);
+		}
+
+		/**
+		 * Configure the builder to limit the inclusion of files to given directory.
+		 *
+		 * @param target path to directory that is the target of file tree mapping.
+		 * When this is {@code null} all {@code .json} files will be included in the file tree.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withTarget(@Nullable Path target) {
+			this.target = target;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load JSON objects with given strategy.
+		 *
+		 * @param loader strategy used to load JSON objects from each file.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withLoader(CataJsonLoader loader) {
+			this.loader = loader;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to parse files in parallel on given pool.
+		 * The largest files are scheduled first so that they do not delay completion.
+		 *
+		 * @param pool pool used to parse files or {@code null} to parse files on the calling thread.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withPool(@Nullable ForkJoinPool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to load files from given cache. Files that are not cached
+		 * or have changed since they were cached are parsed and stored in the cache.
+		 *
+		 * @param cache cache to load files from or {@code null} to always parse files.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withCache(@Nullable ParseCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to measure walking the directory, parsing files and each file with given profiler.
+		 *
+		 * @param profiler profiler to record measurements with.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withProfiler(Profiler profiler) {
+			this.profiler = profiler;
+			return this;
+		}
+
+		/**
+		 * Configure the builder to parse files on the pool of given session,
+		 * load files from its cache and measure parsing with its profiler.
+		 *
+		 * @param session session the file tree is loaded in.
+		 * @return instance of this builder.
+		 */
+		@Contract("_ -> this")
+		public Builder withSession(AnalysisSession session) {
+
+			pool = session.getPool();
+			cache = session.getCache();
+			profiler = session.getProfiler();
+			return this;
+		}
+
+		/**
+		 * @return new instance of {@code CataJsonFileTree} based on builder configuration.
+		 *
+		 * @throws IOException when an I/O exception occurs while walking files or building JSON object.
+		 * @throws FileNotFoundException when given path does not point to an existing file.
+		 * @throws IllegalArgumentException when given path does not represent a valid directory.
+		 * @throws NullJsonObjectException when building a JSON object returns {@code null}.
+		 */
+		@Contract("-> new")
+		public CataJsonFileTree build() throws IOException {
+			return new CataJsonFileTree(this);
+		}
+	}
+
+	/**
+	 * Construct and populate a JSON file-tree for given directory path
+	 * using the {@link CataJsonLoader#STREAMING streaming} loader.
+	 *
+	 * @param root path to directory as starting point for mapping file tree.
+	 * @param target path to directory that is the target of file tree mapping.
+	 * When this is {@code null} all {@code .json} files will be included in the file tree.
 	 * @throws IOException when an I/O exception occurs while walking files or building JSON object.
 	 * @throws FileNotFoundException when given path does not point to an existing file.
 	 * @throws IllegalArgumentException when given path does not represent a valid directory.
 	 * @throws NullJsonObjectException when building a JSON object returns {@code null}.
 	 */
 	public CataJsonFileTree(Path root, @Nullable Path target) throws IOException {
-		super(init(root, target));
+		this(root, target, CataJsonLoader.STREAMING);
 	}
 
 	/**
@@ -109,7 +279,8 @@ public class CataJsonFileTree extends TreeMap<Path, ImmutableSet<CataJsonObject>
 		return true;
 	}
 
-	private static Map<Path, ImmutableSet<CataJsonObject>> init(Path root, @Nullable Path target) throws IOException {
+	private static Map<Path, ImmutableSet<CataJsonObject>> init(Path root, @Nullable Path target,
+			FileLoader fileLoader, @Nullable ForkJoinPool pool, Profiler profiler) throws IOException {
 
 		File fileTreeDir = root.toFile();
 		if (!fileTreeDir.exists()) {
@@ -118,35 +289,213 @@ public class CataJsonFileTree extends TreeMap<Path, ImmutableSet<CataJsonObject>
 		if (!fileTreeDir.isDirectory()) {
 			throw new IllegalArgumentException("Expected path to be directory: " + root);
 		}
-		Set<CataJsonObject> allCataJsonObjects = new HashSet<>();
-		Map<Path, ImmutableSet<CataJsonObject>> result = new HashMap<>();
-		for (Path jsonFile : Files.find(root, 10, (p, bfa) ->
-				shouldInclude(root.relativize(p), bfa, target)).collect(Collectors.toSet())) {
-
-			// deserialize the json file under found path
-			Optional<List<CataJsonObject>> cataJsonObjects = JsonObjectBuilder.<CataJsonObject>create()
-					.ofType(CataJsonObject.class)
-					.withListTypeToken(new TypeToken<>() {})
-					.withDeserializer(CataJsonDeserializer.class)
-					.buildAsList(jsonFile);
+		// files are sorted so that objects are always aggregated in the same order
+		List<Path> jsonFiles;
+		try (Profiler.Phase ignored = profiler.phase("walk data/json");
+			 Stream<Path> stream = Files.find(root, 10, (p, bfa) -> shouldInclude(root.relativize(p), bfa, target))
+		) {
+			jsonFiles = stream.sorted().collect(Collectors.toList());
+		}
+		List<List<CataJsonObject>> cataJsonObjects;
+		try (Profiler.Phase ignored = profiler.phase("parse data/json")) {
+			cataJsonObjects = pool != null ? loadParallel(jsonFiles, fileLoader, pool) : loadSerial(jsonFiles, fileLoader);
+		}
 
+		Set<CataJsonObject> allCataJsonObjects = new LinkedHashSet<>();
+		Map<Path, ImmutableSet<CataJsonObject>> result = new HashMap<>();
+		for (int i = 0; i < jsonFiles.size(); i++) {
 			// create a relative path for json file
 			// if path to file tree was /home/cata/data/json/
 			// and path to file was /home/cata/data/json/monsters/slugs.json
 			// then the relative path would be /monsters/slugs.json
-			Path relativePath = root.relativize(jsonFile);
+			Path relativePath = root.relativize(jsonFiles.get(i));
 
-			if (cataJsonObjects.isEmpty()) {
-				throw new NullJsonObjectException(CataJsonObject.class);
-			}
-			result.put(relativePath, ImmutableSet.copyOf(cataJsonObjects.get()));
-			allCataJsonObjects.addAll(cataJsonObjects.get());
+			result.put(relativePath, ImmutableSet.copyOf(cataJsonObjects.get(i)));
+			allCataJsonObjects.addAll(cataJsonObjects.get(i));
 		}
 		// include target directory in the result so that users can have a better overview
 		result.put(target != null ? target : root, ImmutableSet.copyOf(allCataJsonObjects));
 		return result;
 	}
 
+	private static FileLoader createFileLoader(Path root, CataJsonLoader loader,
+			@Nullable ParseCache cache, Profiler profiler) {
+
+		FileLoader base = cache != null ? f -> cache.loadJsonObjects(root, f, loader) : f -> load(f, loader);
+		FileLoader result = f -> {
+			FileParseEvent event = new FileParseEvent();
+			event.begin();
+			List<CataJsonObject> objects = base.load(f);
+			long size = Files.size(f);
+			Metrics.getDefault().fileParsed(size, objects.size());
+			if (event.shouldCommit()) {
+				event.commit(f, objects.size(), size, null);
+			}
+			return objects;
+		};
+		if (!profiler.isEnabled()) {
+			return result;
+		}
+		return f -> profiler.measure(Profiler.Kind.FILE,
+				root.relativize(f).toString().replace('\\', '/'), Files.size(f), () -> result.load(f));
+	}
+
+	/**
+	 * Reload given JSON files and update the entries mapped to them.
+	 * <p>
+	 * Files that belong to this file tree are parsed again, files that no longer exist are removed
+	 * from the tree and all other files are ignored. When any entry changes, the entry for target
+	 * directory is aggregated again in the same order as when the tree was constructed.
+	 * <p>
+	 * Files that fail to load keep their previous entries and the exception is put in given
+	 * failures map under the file path. Entries of files that were reloaded or removed
+	 * are removed from the failures map, so the map holds only files that still fail to load.
+	 *
+	 * @param jsonFiles paths to files that should be reloaded.
+	 * @param failures {@code Map} of file paths to exceptions thrown while loading them.
+	 * @return {@code Set} of entry keys that were changed or removed, including target directory entry.
+	 */
+	public Set<Path> reload(Collection<Path> jsonFiles, Map<Path, Exception> failures) {
+
+		Set<Path> result = new HashSet<>();
+		for (Path jsonFile : jsonFiles) {
+			if (!jsonFile.startsWith(root)) {
+				continue;
+			}
+			Path relativePath = root.relativize(jsonFile);
+			try {
+				if (Files.isRegularFile(jsonFile)) {
+					BasicFileAttributes attributes = Files.readAttributes(jsonFile, BasicFileAttributes.class);
+					if (shouldInclude(relativePath, attributes, target)) {
+						put(relativePath, ImmutableSet.copyOf(fileLoader.load(jsonFile)));
+						failures.remove(jsonFile);
+						result.add(relativePath);
+					}
+				}
+				else {
+					// file that no longer exists cannot fail to load
+					failures.remove(jsonFile);
+					if (remove(relativePath) != null) {
+						result.add(relativePath);
+					}
+				}
+			}
+			catch (IOException | RuntimeException e) {
+				// file is probably being edited, keep previous entry until it loads again
+				failures.put(jsonFile, e);
+			}
+		}
+		if (!result.isEmpty()) {
+			Path targetKey = target != null ? target : root;
+			Set<CataJsonObject> allCataJsonObjects = new LinkedHashSet<>();
+			for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : entrySet()) {
+				if (!entry.getKey().equals(targetKey)) {
+					allCataJsonObjects.addAll(entry.getValue());
+				}
+			}
+			put(targetKey, ImmutableSet.copyOf(allCataJsonObjects));
+			result.add(targetKey);
+		}
+		return result;
+	}
+
+	/**
+	 * @return path to directory that is the starting point of this file tree.
+	 */
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return path to directory that is the target of this file tree
+	 * or {@code null} if all {@code .json} files are included in the file tree.
+	 */
+	public @Nullable Path getTarget() {
+		return target;
+	}
+
+	/**
+	 * Deserialize the json file under given path.
+	 *
+	 * @throws NullJsonObjectException when the file does not contain JSON objects.
+	 */
+	private static List<CataJsonObject> load(Path jsonFile, CataJsonLoader loader) throws IOException {
+
+		Optional<List<CataJsonObject>> cataJsonObjects = loader.load(jsonFile);
+		if (cataJsonObjects.isEmpty()) {
+			throw new NullJsonObjectException(CataJsonObject.class);
+		}
+		return cataJsonObjects.get();
+	}
+
+	private interface FileLoader {
+		List<CataJsonObject> load(Path jsonFile) throws IOException;
+	}
+
+	private static List<List<CataJsonObject>> loadSerial(List<Path> jsonFiles, FileLoader loader) throws IOException {
+
+		List<List<CataJsonObject>> result = new ArrayList<>(jsonFiles.size());
+		for (Path jsonFile : jsonFiles) {
+			result.add(loader.load(jsonFile));
+		}
+		return result;
+	}
+
+	/**
+	 * Deserialize given json files in parallel on specified pool. Each file is parsed by a separate task
+	 * which stores the result in its own slot, so no synchronization is needed when merging results.
+	 *
+	 * @return list of deserialized objects for each file in the same order as given files.
+	 */
+	private static List<List<CataJsonObject>> loadParallel(List<Path> jsonFiles,
+			FileLoader loader, ForkJoinPool pool) throws IOException {
+
+		long[] fileSizes = new long[jsonFiles.size()];
+		for (int i = 0; i < fileSizes.length; i++) {
+			fileSizes[i] = Files.size(jsonFiles.get(i));
+		}
+		// schedule the largest files first
+		Integer[] schedule = new Integer[jsonFiles.size()];
+		Arrays.setAll(schedule, i -> i);
+		Arrays.sort(schedule, Comparator.comparingLong((Integer i) -> fileSizes[i]).reversed());
+
+		// slots are only replaced and never added or removed, so tasks can set them concurrently
+		List<List<CataJsonObject>> slots = new ArrayList<>(Collections.nCopies(jsonFiles.size(), null));
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(schedule.length);
+		for (int index : schedule) {
+			tasks.add(pool.submit(() -> {
+				slots.set(index, loader.load(jsonFiles.get(index)));
+				return null;
+			}));
+		}
+		try {
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		}
+		catch (InterruptedException e) {
+			tasks.forEach(t -> t.cancel(false));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing JSON files");
+		}
+		catch (ExecutionException e) {
+			tasks.forEach(t -> t.cancel(false));
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		// joining the tasks guarantees visibility of slot values
+		return slots;
+	}
+
 	/**
 	 * Get {@link CataJsonObject} instances registered under given directory path.
 	 *
@@ -18,22 +18,38 @@
 package io.matshou.cata.tilecov.tile;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+
+import org.jetbrains.annotations.Nullable;
 
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
 import io.matshou.cata.tilecov.json.*;
+import io.matshou.cata.tilecov.profile.TileConfigLoadEvent;
 
 public class CataTileset {
 
 	private final String name, displayName;
-	private final TileConfigJsonObject tileConfig;
+	private final Path path, configPath;
+
+	/**
+	 * Index of tile ids built by streaming the tile config file.
+	 */
+	private final TileIdIndex tileIdIndex;
+
+	/**
+	 * Complete tile config that is deserialized only when requested.
+	 */
+	private volatile @Nullable TileConfigJsonObject tileConfig;
 
 	/**
 	 * Create a new {@code Tileset} instance for given directory path.
+	 * <p>
+	 * Only tile ids are read from tile config file when the tileset is created,
+	 * sprite data and other tile properties are deserialized only when {@link #getTileConfig()} is called.
 	 *
 	 * @param path path to tileset directory.
 	 *
@@ -43,7 +59,26 @@ public class CataTileset {
 	 * @throws JsonSyntaxException if an error occurred while parsing tile config json.
 	 */
 	public CataTileset(Path path) throws IOException {
+		this(path, null);
+	}
 
+	/**
+	 * Create a new {@code Tileset} instance for given directory path.
+	 * <p>
+	 * When a cache is provided the tile ids are loaded from cache if tile config
+	 * file has not changed since it was cached, otherwise the file is streamed and cached.
+	 *
+	 * @param path path to tileset directory.
+	 * @param cache cache to load tile ids from or {@code null} to always read tile config file.
+	 *
+	 * @throws IOException if an error occurred while loading properties from file.
+	 * @throws FileNotFoundException if tileset directory or metadata file doesn't exist.
+	 * @throws IllegalStateException if path to config file was not specified in metadata.
+	 * @throws JsonSyntaxException if an error occurred while parsing tile config json.
+	 */
+	public CataTileset(Path path, @Nullable ParseCache cache) throws IOException {
+
+		this.path = path;
 		File tilesetDir = path.toFile();
 		if (!tilesetDir.exists()) {
 			throw new FileNotFoundException("Tileset directory does not exist: " + path);
@@ -67,16 +102,22 @@ public class CataTileset {
 		if (!tileConfigFile.exists()) {
 			throw new FileNotFoundException("Unable to find config file for tileset: " + name);
 		}
-		Optional<TileConfigJsonObject> oTileConfig = JsonObjectBuilder.<TileConfigJsonObject>create()
-				.ofType(TileConfigJsonObject.class)
-				.withTypeToken(new TypeToken<>() {})
-				.withDeserializer(TileConfigJsonDeserializer.class)
-				.build(tileConfigFile.toPath());
-
-		if (oTileConfig.isEmpty()) {
-			throw new NullJsonObjectException(TileConfigJsonObject.class);
+		configPath = tileConfigFile.toPath();
+		Path cacheRoot = path.toAbsolutePath().getParent();
+		TileConfigLoadEvent event = new TileConfigLoadEvent();
+		event.begin();
+		tileIdIndex = cache != null && cacheRoot != null
+				? cache.loadTileIdIndex(cacheRoot, configPath) : TileIdIndex.read(configPath);
+		if (event.shouldCommit()) {
+			event.commit(configPath, tileIdIndex.getTileCount(), Files.size(configPath), name);
 		}
-		tileConfig = oTileConfig.get();
+	}
+
+	/**
+	 * @return path to directory of this tileset.
+	 */
+	public Path getPath() {
+		return path;
 	}
 
 	/**
@@ -94,18 +135,50 @@ public class CataTileset {
 	}
 
 	/**
+	 * @param dictionary dictionary used to map tile id's to keys.
 	 * @param filters conditions under which tile id's should be filtered.
-	 * @return {@code Set} of all object ID's that will be mapped to one or more tiles in this tileset.
+	 * @return immutable {@code Set} of all object ID's that will be mapped to one or more tiles in this tileset.
+	 */
+	public TileIdSet getTileIds(IdDictionary dictionary, CataIdentifiableFilter... filters) {
+		return tileIdIndex.getTileIds(dictionary, filters);
+	}
+
+	/**
+	 * @return index of tile ids declared in this tileset.
 	 */
-	public Set<String> getTileIds(CataIdentifiableFilter... filters) {
+	public TileIdIndex getTileIdIndex() {
+		return tileIdIndex;
+	}
+
+	/**
+	 * Get complete tile config of this tileset including sprite data.
+	 * The tile config file is deserialized the first time this method is called.
+	 *
+	 * @return tile config of this tileset.
+	 *
+	 * @throws IOException if an I/O error occurred while reading tile config file.
+	 * @throws JsonSyntaxException if an error occurred while parsing tile config json.
+	 */
+	public TileConfigJsonObject getTileConfig() throws IOException {
+
+		TileConfigJsonObject result = tileConfig;
+		if (result == null) {
+			synchronized (this) {
+				result = tileConfig;
+				if (result == null) {
+					Optional<TileConfigJsonObject> oTileConfig = JsonObjectBuilder.<TileConfigJsonObject>create()
+							.ofType(TileConfigJsonObject.class)
+							.withTypeToken(new TypeToken<>() {})
+							.withDeserializer(TileConfigJsonDeserializer.class)
+							.build(configPath);
 
-		Set<TilesJsonObject> filteredTiles = new HashSet<>();
-		for (TileAtlasJsonObject tileAtlas : tileConfig.getTileAtlases()) {
-			filteredTiles.addAll(tileAtlas.getTiles().stream().filter(v ->
-					Arrays.stream(filters).noneMatch(f -> f.match(v))).collect(Collectors.toSet()));
+					if (oTileConfig.isEmpty()) {
+						throw new NullJsonObjectException(TileConfigJsonObject.class);
+					}
+					tileConfig = result = oTileConfig.get();
+				}
+			}
 		}
-		Set<String> result = new HashSet<>();
-		filteredTiles.forEach(t -> result.addAll(t.getIds()));
 		return result;
 	}
 }
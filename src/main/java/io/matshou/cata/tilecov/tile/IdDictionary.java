@@ -0,0 +1,115 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * This class represents a thread-safe dictionary that maps object and tile ids to dense integer keys.
+ * <p>
+ * Each distinct id is assigned the next free key the first time it is interned, keys start at zero
+ * and are never reassigned. Dense keys allow sets of ids to be stored as bitsets, see {@link TileIdSet}.
+ * Looking up keys of ids that were already interned is lock-free.
+ * <p>
+ * Dictionaries are not shared by the whole application, each analysis session owns its own dictionary
+ * that is passed down to the code that computes coverage, see {@link io.matshou.cata.tilecov.AnalysisSession}.
+ */
+public final class IdDictionary {
+
+	private final ConcurrentMap<String, Integer> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * Ids indexed by their keys, the array grows as new ids are interned.
+	 */
+	private volatile String[] ids = new String[1024];
+	private volatile int size;
+
+	/**
+	 * Create a new empty dictionary.
+	 */
+	public IdDictionary() {
+	}
+
+	/**
+	 * Get the key assigned to given id, assigning a new key if the id has not been interned yet.
+	 *
+	 * @param id id to intern.
+	 * @return key assigned to the id.
+	 */
+	public int intern(String id) {
+
+		Integer key = keys.get(id);
+		return key != null ? key : internNew(id);
+	}
+
+	private synchronized int internNew(String id) {
+
+		Integer key = keys.get(id);
+		if (key != null) {
+			return key;
+		}
+		int newKey = size;
+		String[] array = ids;
+		if (newKey == array.length) {
+			array = Arrays.copyOf(array, array.length * 2);
+		}
+		array[newKey] = id;
+		// publish the array before the key so that readers can always resolve keys they find
+		ids = array;
+		size = newKey + 1;
+		keys.put(id, newKey);
+		return newKey;
+	}
+
+	/**
+	 * @param id id to find the key for.
+	 * @return key assigned to given id or {@code -1} if the id has not been interned.
+	 */
+	@Contract(pure = true)
+	public int indexOf(String id) {
+
+		Integer key = keys.get(id);
+		return key != null ? key : -1;
+	}
+
+	/**
+	 * @param key key assigned to an id.
+	 * @return id that was assigned given key.
+	 *
+	 * @throws IndexOutOfBoundsException if no id was assigned the key.
+	 */
+	@Contract(pure = true)
+	public String get(int key) {
+
+		if (key < 0 || key >= size) {
+			throw new IndexOutOfBoundsException("No id assigned to key: " + key);
+		}
+		return ids[key];
+	}
+
+	/**
+	 * @return number of ids interned in this dictionary.
+	 */
+	public int size() {
+		return size;
+	}
+}
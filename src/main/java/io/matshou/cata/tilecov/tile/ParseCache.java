@@ -0,0 +1,301 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.Hashing;
+
+import io.matshou.cata.tilecov.AtomicFiles;
+import io.matshou.cata.tilecov.DataStrings;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.NullJsonObjectException;
+
+/**
+ * This class represents a persistent on-disk cache of parsed JSON files.
+ * <p>
+ * Each cached file is stored in compact binary form in a separate cache entry, which is
+ * keyed by the path of the file relative to its root directory, file size, last modification
+ * time and optionally a hash of file contents. An entry is used only when all of these match
+ * the file on disk, otherwise the file is parsed again and the entry is replaced. This means
+ * that the cache is invalidated separately for each file. Entries are stored in a separate
+ * directory for each root directory, so the same cache can serve multiple game directories
+ * with files under the same relative paths, for example both game versions compared in diff mode. Entries are written to a temporary
+ * file first and then moved in place, so a cache entry is never observed partially written.
+ * <p>
+ * Entries that cannot be read for any reason are treated as missing. Entries that cannot
+ * be written are skipped and recorded, so the cache never fails loading a file that was parsed
+ * and callers can report the failures with {@link #takeWriteFailures()}.
+ */
+public final class ParseCache {
+
+	/**
+	 * Magic number that identifies cache entry files.
+	 */
+	private static final int MAGIC = 0x5443_4331;
+
+	/**
+	 * Version of the binary format, entries with a different version are ignored.
+	 */
+	private static final int VERSION = 3;
+
+	private static final String JSON_NAMESPACE = "json";
+	private static final String TILESET_NAMESPACE = "gfx";
+	private static final String ENTRY_SUFFIX = ".bin";
+
+	private final Path cacheDir;
+	private final boolean hashContents;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Exceptions thrown while writing cache entries mapped to paths of cached files.
+	 */
+	private final ConcurrentMap<Path, Exception> writeFailures = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new parse cache that stores entries in given directory.
+	 *
+	 * @param cacheDir directory to store cache entries in, created when needed.
+	 * @param hashContents whether entries should also be keyed by a hash of file contents.
+	 * Hashing still requires the file to be read, but catches changes that preserve file size and time.
+	 */
+	public ParseCache(Path cacheDir, boolean hashContents) {
+		this.cacheDir = cacheDir;
+		this.hashContents = hashContents;
+	}
+
+	private interface Loader<T> {
+		T load(Path file) throws IOException;
+	}
+
+	private interface EntryWriter<T> {
+		void write(T value, DataOutput out) throws IOException;
+	}
+
+	private interface EntryReader<T> {
+		T read(DataInput in) throws IOException;
+	}
+
+	/**
+	 * This class represents the fingerprint of a file that a cache entry is keyed by.
+	 */
+	private static final class Fingerprint {
+
+		private final String relativePath;
+		private final long size, modifiedTime, hash;
+
+		private Fingerprint(String relativePath, long size, long modifiedTime, long hash) {
+			this.relativePath = relativePath;
+			this.size = size;
+			this.modifiedTime = modifiedTime;
+			this.hash = hash;
+		}
+
+		private void writeTo(DataOutput out) throws IOException {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			DataStrings.writeString(out, relativePath);
+			out.writeLong(size);
+			out.writeLong(modifiedTime);
+			out.writeLong(hash);
+		}
+
+		private boolean matches(DataInput in) throws IOException {
+
+			return in.readInt() == MAGIC && in.readInt() == VERSION && relativePath.equals(DataStrings.readString(in))
+					&& in.readLong() == size && in.readLong() == modifiedTime && in.readLong() == hash;
+		}
+	}
+
+	/**
+	 * Load JSON objects from given file, either from cache or by parsing the file with given loader.
+	 *
+	 * @param root root directory the file path is relative to in cache entry key.
+	 * @param jsonFile path to JSON file to load.
+	 * @param loader strategy used to load JSON objects when the file is not cached.
+	 * @return list of JSON objects loaded from file.
+	 *
+	 * @throws IOException if an I/O error occurred while reading the file.
+	 * @throws NullJsonObjectException if the file does not contain any JSON.
+	 */
+	public List<CataJsonObject> loadJsonObjects(Path root, Path jsonFile, CataJsonLoader loader) throws IOException {
+
+		return load(JSON_NAMESPACE, root, jsonFile, f -> loader.load(f).orElseThrow(() ->
+				new NullJsonObjectException(CataJsonObject.class)), (objects, out) -> {
+			out.writeInt(objects.size());
+			for (CataJsonObject object : objects) {
+				object.writeTo(out);
+			}
+		}, in -> {
+			int size = in.readInt();
+			List<CataJsonObject> result = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				result.add(CataJsonObject.readFrom(in));
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Load tile id index for given tile config file, either from cache or by streaming the file.
+	 *
+	 * @param root root directory the file path is relative to in cache entry key.
+	 * @param tileConfigFile path to {@code tile_config.json} file.
+	 * @return tile id index for given file.
+	 *
+	 * @throws IOException if an I/O error occurred while reading the file.
+	 * @see TileIdIndex#read(Path)
+	 */
+	public TileIdIndex loadTileIdIndex(Path root, Path tileConfigFile) throws IOException {
+		return load(TILESET_NAMESPACE, root, tileConfigFile, TileIdIndex::read, TileIdIndex::writeTo, TileIdIndex::readFrom);
+	}
+
+	private <T> T load(String namespace, Path root, Path file, Loader<T> loader,
+			EntryWriter<T> writer, EntryReader<T> reader) throws IOException {
+
+		Path absoluteRoot = root.toAbsolutePath().normalize();
+		Path relativePath = absoluteRoot.relativize(file.toAbsolutePath().normalize());
+		Path rootDir = cacheDir.resolve(namespace).resolve(getRootName(absoluteRoot)).normalize();
+		Path entryPath = rootDir.resolve(relativePath + ENTRY_SUFFIX).normalize();
+		if (!entryPath.startsWith(rootDir)) {
+			throw new IllegalArgumentException("File is not located under root directory: " + file);
+		}
+		Fingerprint fingerprint = createFingerprint(relativePath, file);
+		T cached = readEntry(entryPath, fingerprint, reader);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached;
+		}
+		misses.incrementAndGet();
+		T result = loader.load(file);
+		try {
+			writeEntry(entryPath, fingerprint, result, writer);
+		}
+		catch (IOException | RuntimeException e) {
+			// the file was parsed successfully, so failing to cache it should not fail the analysis
+			writeFailures.put(file, e);
+		}
+		return result;
+	}
+
+	/**
+	 * @return name of directory that stores entries of files under given root directory.
+	 */
+	private static String getRootName(Path absoluteRoot) {
+		long hash = Hashing.murmur3_128().hashString(absoluteRoot.toString(), StandardCharsets.UTF_8).asLong();
+		return Long.toHexString(hash);
+	}
+
+	private Fingerprint createFingerprint(Path relativePath, Path file) throws IOException {
+
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long hash = hashContents ? Hashing.murmur3_128().hashBytes(Files.readAllBytes(file)).asLong() : 0;
+		// use the same separator on every platform
+		String key = relativePath.toString().replace(File.separatorChar, '/');
+		return new Fingerprint(key, attributes.size(), attributes.lastModifiedTime().toMillis(), hash);
+	}
+
+	private static <T> @Nullable T readEntry(Path entryPath, Fingerprint fingerprint, EntryReader<T> reader) {
+
+		if (!Files.isRegularFile(entryPath)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryPath)))) {
+			return fingerprint.matches(in) ? reader.read(in) : null;
+		}
+		catch (IOException | RuntimeException e) {
+			// corrupted or incompatible entries are parsed again
+			return null;
+		}
+	}
+
+	private static <T> void writeEntry(Path entryPath, Fingerprint fingerprint,
+			T value, EntryWriter<T> writer) throws IOException {
+
+		Path entryDir = entryPath.getParent();
+		Files.createDirectories(entryDir);
+		Path tempFile = AtomicFiles.createTempFile(entryPath);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				fingerprint.writeTo(out);
+				writer.write(value, out);
+			}
+			AtomicFiles.moveAtomically(tempFile, entryPath);
+		}
+		finally {
+			// removes partially written entry when writing failed
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * @return directory where cache entries are stored.
+	 */
+	public Path getCacheDir() {
+		return cacheDir;
+	}
+
+	/**
+	 * @return number of times a file was loaded from cache.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of times a file had to be parsed.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Remove and return failures to write cache entries recorded since the last call,
+	 * so that each failure is reported once.
+	 *
+	 * @return exceptions thrown while writing cache entries mapped to paths of cached files.
+	 */
+	public ImmutableSortedMap<Path, Exception> takeWriteFailures() {
+
+		Map<Path, Exception> result = new TreeMap<>();
+		for (Path file : writeFailures.keySet()) {
+			Exception failure = writeFailures.remove(file);
+			if (failure != null) {
+				result.put(file, failure);
+			}
+		}
+		return ImmutableSortedMap.copyOf(result);
+	}
+}
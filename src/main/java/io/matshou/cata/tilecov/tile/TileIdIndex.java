@@ -0,0 +1,373 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.Contract;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import io.matshou.cata.tilecov.DataStrings;
+import io.matshou.cata.tilecov.json.CataIdentifiable;
+import io.matshou.cata.tilecov.json.CataIdentifiableFilter;
+import io.matshou.cata.tilecov.json.JsonFiles;
+import io.matshou.cata.tilecov.json.NullJsonObjectException;
+import io.matshou.cata.tilecov.json.TileConfigJsonObject;
+
+/**
+ * This class represents a compact index of tile ids declared in tileset {@code tile_config.json} file.
+ * <p>
+ * The index is built by streaming the config file and reading only {@code tiles-new[*].tiles[*].id}
+ * and {@code additional_tiles[*].id} properties, all sprite data and other properties are skipped
+ * without being materialized in memory. Tile ids are stored in a single flat array with an array
+ * of offsets that marks where the ids of each tile entry begin. Sets of tile ids that result
+ * from filtering tile entries are computed once for each combination of filters and stored
+ * as {@link TileIdSet} bitsets of keys in the {@link IdDictionary} they were requested with.
+ */
+public final class TileIdIndex {
+
+	private static final String[] EMPTY = new String[0];
+
+	/**
+	 * Ids of all tile entries in order of declaration.
+	 */
+	private final String[] tileIds;
+
+	/**
+	 * Offsets in {@link #tileIds} that mark where the ids of each tile entry begin.
+	 * The last element marks the end of the last tile entry.
+	 */
+	private final int[] tileOffsets;
+
+	/**
+	 * Ids of tile entries declared in {@code additional_tiles} property of other tile entries.
+	 */
+	private final ImmutableSet<String> additionalTileIds;
+
+	private final ConcurrentMap<Set<CataIdentifiableFilter>, TileIdSet> filteredIds =
+			new ConcurrentHashMap<>();
+
+	private TileIdIndex(String[] tileIds, int[] tileOffsets, ImmutableSet<String> additionalTileIds) {
+		this.tileIds = tileIds;
+		this.tileOffsets = tileOffsets;
+		this.additionalTileIds = additionalTileIds;
+	}
+
+	/**
+	 * Build a new tile id index by streaming tile config file under given path.
+	 *
+	 * @param tileConfigPath path to {@code tile_config.json} file.
+	 * @return newly created tile id index.
+	 *
+	 * @throws IOException if an I/O error occurred while reading the file.
+	 * @throws NullJsonObjectException if the file does not contain a JSON object.
+	 * @throws JsonSyntaxException if an error occurred while parsing the file.
+	 */
+	@Contract("_ -> new")
+	public static TileIdIndex read(Path tileConfigPath) throws IOException {
+
+		try (JsonReader reader = JsonFiles.newReader(tileConfigPath)) {
+			try {
+				if (reader.peek() == JsonToken.NULL) {
+					throw new NullJsonObjectException(TileConfigJsonObject.class);
+				}
+			}
+			catch (EOFException e) {
+				// empty documents are treated as null objects
+				throw new NullJsonObjectException(TileConfigJsonObject.class);
+			}
+			Builder builder = new Builder();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("tiles-new")) {
+					readObjectOrArray(reader, () -> readTileAtlas(reader, builder));
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return builder.build();
+		}
+		catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	private interface ObjectReader {
+		void read() throws IOException;
+	}
+
+	/**
+	 * Read a property value that can be either a single object or an array of objects.
+	 */
+	private static void readObjectOrArray(JsonReader reader, ObjectReader objectReader) throws IOException {
+
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BEGIN_OBJECT) {
+			objectReader.read();
+		}
+		else if (token == JsonToken.BEGIN_ARRAY) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+					objectReader.read();
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endArray();
+		}
+		else {
+			reader.skipValue();
+		}
+	}
+
+	private static void readTileAtlas(JsonReader reader, Builder builder) throws IOException {
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("tiles")) {
+				readObjectOrArray(reader, () -> readTile(reader, builder, false));
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readTile(JsonReader reader, Builder builder, boolean additional) throws IOException {
+
+		List<String> ids = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id" -> ids = readIds(reader);
+				case "additional_tiles" -> readObjectOrArray(reader, () -> readTile(reader, builder, true));
+				// sprite data is not needed for the index
+				default -> reader.skipValue();
+			}
+		}
+		reader.endObject();
+		if (additional) {
+			if (ids != null) {
+				builder.additionalTileIds.addAll(ids);
+			}
+		}
+		else {
+			builder.addTile(ids != null ? ids : List.of());
+		}
+	}
+
+	/**
+	 * Read a property value that can be either a single string or an array of strings.
+	 */
+	private static List<String> readIds(JsonReader reader) throws IOException {
+
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BEGIN_ARRAY) {
+			List<String> result = new ArrayList<>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				token = reader.peek();
+				if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+					result.add(reader.nextString());
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endArray();
+			return result;
+		}
+		if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+			return List.of(reader.nextString());
+		}
+		reader.skipValue();
+		return List.of();
+	}
+
+	private static final class Builder {
+
+		private final List<String> tileIds = new ArrayList<>();
+		private final List<Integer> tileOffsets = new ArrayList<>();
+		private final Set<String> additionalTileIds = new LinkedHashSet<>();
+
+		private void addTile(List<String> ids) {
+			tileOffsets.add(tileIds.size());
+			tileIds.addAll(ids);
+		}
+
+		private TileIdIndex build() {
+
+			int[] offsets = new int[tileOffsets.size() + 1];
+			for (int i = 0; i < tileOffsets.size(); i++) {
+				offsets[i] = tileOffsets.get(i);
+			}
+			offsets[offsets.length - 1] = tileIds.size();
+			String[] ids = tileIds.isEmpty() ? EMPTY : tileIds.toArray(EMPTY);
+			return new TileIdIndex(ids, offsets, ImmutableSet.copyOf(additionalTileIds));
+		}
+	}
+
+	/**
+	 * This class represents a view of a single tile entry ids.
+	 */
+	private final class TileEntry implements CataIdentifiable {
+
+		private final int index;
+
+		private TileEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public ImmutableList<String> getIds() {
+			return ImmutableList.copyOf(Arrays.asList(tileIds).subList(tileOffsets[index], tileOffsets[index + 1]));
+		}
+	}
+
+	/**
+	 * Write this index in compact binary form to given output.
+	 *
+	 * @param out output to write the index to.
+	 *
+	 * @throws IOException if an I/O error occurred while writing.
+	 */
+	void writeTo(DataOutput out) throws IOException {
+
+		out.writeInt(tileIds.length);
+		for (String tileId : tileIds) {
+			DataStrings.writeString(out, tileId);
+		}
+		out.writeInt(tileOffsets.length);
+		for (int offset : tileOffsets) {
+			out.writeInt(offset);
+		}
+		out.writeInt(additionalTileIds.size());
+		for (String tileId : additionalTileIds) {
+			DataStrings.writeString(out, tileId);
+		}
+	}
+
+	/**
+	 * Read an index in binary form written by {@link #writeTo(DataOutput)} from given input.
+	 *
+	 * @param in input to read the index from.
+	 * @return index read from the input.
+	 *
+	 * @throws IOException if an I/O error occurred while reading.
+	 */
+	@Contract("_ -> new")
+	static TileIdIndex readFrom(DataInput in) throws IOException {
+
+		String[] ids = new String[in.readInt()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = readTileId(in);
+		}
+		int[] offsets = new int[in.readInt()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = in.readInt();
+		}
+		int additionalCount = in.readInt();
+		ImmutableSet.Builder<String> additionalIds = ImmutableSet.builderWithExpectedSize(additionalCount);
+		for (int i = 0; i < additionalCount; i++) {
+			additionalIds.add(readTileId(in));
+		}
+		if (offsets.length == 0 || offsets[offsets.length - 1] != ids.length) {
+			throw new IOException("Malformed tile id index");
+		}
+		return new TileIdIndex(ids, offsets, additionalIds.build());
+	}
+
+	private static String readTileId(DataInput in) throws IOException {
+
+		String tileId = DataStrings.readString(in);
+		if (tileId == null) {
+			throw new IOException("Malformed tile id index");
+		}
+		return tileId;
+	}
+
+	/**
+	 * @return number of tile entries declared in {@code tiles} properties of tile atlases.
+	 */
+	public int getTileCount() {
+		return tileOffsets.length - 1;
+	}
+
+	/**
+	 * @param dictionary dictionary used to map tile ids to keys.
+	 * @param filters conditions under which tile entries should be filtered.
+	 * @return {@code Set} of ids of all tile entries that do not match any of given filters.
+	 * Note that ids of tile entries declared in {@code additional_tiles} properties are not included.
+	 */
+	public TileIdSet getTileIds(IdDictionary dictionary, CataIdentifiableFilter... filters) {
+
+		Set<CataIdentifiableFilter> key = filters.length == 0 ? Set.of()
+				: Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(filters)));
+
+		TileIdSet result = filteredIds.computeIfAbsent(key, k -> filterTileIds(dictionary, k));
+		if (result.getDictionary() != dictionary) {
+			// sets are only kept for the dictionary the index was last used with
+			result = filterTileIds(dictionary, key);
+			filteredIds.put(key, result);
+		}
+		return result;
+	}
+
+	private TileIdSet filterTileIds(IdDictionary dictionary, Set<CataIdentifiableFilter> filters) {
+
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < getTileCount(); i++) {
+			int from = tileOffsets[i], to = tileOffsets[i + 1];
+			if (!filters.isEmpty()) {
+				TileEntry entry = new TileEntry(i);
+				if (filters.stream().anyMatch(f -> f.match(entry))) {
+					continue;
+				}
+			}
+			for (int j = from; j < to; j++) {
+				result.add(tileIds[j]);
+			}
+		}
+		return TileIdSet.of(dictionary, result);
+	}
+
+	/**
+	 * @return {@code Set} of ids of tile entries declared in {@code additional_tiles} properties.
+	 */
+	public ImmutableSet<String> getAdditionalTileIds() {
+		return additionalTileIds;
+	}
+}
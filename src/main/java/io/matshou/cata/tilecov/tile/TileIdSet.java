@@ -0,0 +1,240 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.util.*;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * This class represents an immutable set of ids stored as a bitset of {@link IdDictionary} keys.
+ * <p>
+ * The set is stored as an array of 64-bit words where each bit marks whether the id with the
+ * corresponding key is a member of the set. Words before the first and after the last non-empty
+ * word are not stored, so the set only takes as much memory as the range of keys it contains.
+ * Membership checks resolve to a single bit test and unions, intersections and differences
+ * of sets that share the same dictionary are computed one word at a time.
+ */
+public final class TileIdSet extends AbstractSet<String> {
+
+	private static final long[] NO_WORDS = new long[0];
+
+	private final IdDictionary dictionary;
+
+	/**
+	 * Index of the first stored word, words before it are empty.
+	 */
+	private final int firstWord;
+	private final long[] words;
+	private final int size;
+
+	private TileIdSet(IdDictionary dictionary, int firstWord, long[] words) {
+
+		int from = 0, to = words.length;
+		while (from < to && words[from] == 0) {
+			from++;
+		}
+		while (to > from && words[to - 1] == 0) {
+			to--;
+		}
+		this.dictionary = dictionary;
+		this.firstWord = from < to ? firstWord + from : 0;
+		this.words = from < to ? Arrays.copyOfRange(words, from, to) : NO_WORDS;
+
+		int count = 0;
+		for (long word : this.words) {
+			count += Long.bitCount(word);
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Create a new set that contains given ids, interning them in given dictionary.
+	 *
+	 * @param dictionary dictionary used to map ids to keys.
+	 * @param ids ids to include in the set.
+	 * @return new instance of {@code TileIdSet}.
+	 */
+	@Contract("_, _ -> new")
+	public static TileIdSet of(IdDictionary dictionary, Iterable<String> ids) {
+
+		BitSet bits = new BitSet();
+		for (String id : ids) {
+			bits.set(dictionary.intern(id));
+		}
+		return new TileIdSet(dictionary, 0, bits.toLongArray());
+	}
+
+	/**
+	 * @param key dictionary key of an id.
+	 * @return {@code true} if the id with given key is a member of this set.
+	 */
+	@Contract(pure = true)
+	public boolean contains(int key) {
+
+		int index = (key >> 6) - firstWord;
+		return key >= 0 && index >= 0 && index < words.length && (words[index] & (1L << key)) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof String && contains(dictionary.indexOf((String) o));
+	}
+
+	/**
+	 * @param other set to combine with this set.
+	 * @return new set that contains ids that are members of either set.
+	 */
+	@Contract(pure = true)
+	public TileIdSet union(TileIdSet other) {
+
+		checkDictionary(other);
+		if (other.words.length == 0) {
+			return this;
+		}
+		if (words.length == 0) {
+			return other;
+		}
+		int first = Math.min(firstWord, other.firstWord);
+		int end = Math.max(firstWord + words.length, other.firstWord + other.words.length);
+		long[] result = new long[end - first];
+		System.arraycopy(words, 0, result, firstWord - first, words.length);
+		for (int i = 0; i < other.words.length; i++) {
+			result[other.firstWord - first + i] |= other.words[i];
+		}
+		return new TileIdSet(dictionary, first, result);
+	}
+
+	/**
+	 * @param other set to intersect with this set.
+	 * @return new set that contains ids that are members of both sets.
+	 */
+	@Contract(pure = true)
+	public TileIdSet intersection(TileIdSet other) {
+
+		checkDictionary(other);
+		int first = Math.max(firstWord, other.firstWord);
+		int end = Math.min(firstWord + words.length, other.firstWord + other.words.length);
+		if (end <= first) {
+			return new TileIdSet(dictionary, 0, NO_WORDS);
+		}
+		long[] result = new long[end - first];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = words[first - firstWord + i] & other.words[first - other.firstWord + i];
+		}
+		return new TileIdSet(dictionary, first, result);
+	}
+
+	/**
+	 * @param other set of ids to remove from this set.
+	 * @return new set that contains ids that are members of this set but not of the other set.
+	 */
+	@Contract(pure = true)
+	public TileIdSet difference(TileIdSet other) {
+
+		checkDictionary(other);
+		long[] result = words.clone();
+		for (int i = 0; i < result.length; i++) {
+			int otherIndex = firstWord + i - other.firstWord;
+			if (otherIndex >= 0 && otherIndex < other.words.length) {
+				result[i] &= ~other.words[otherIndex];
+			}
+		}
+		return new TileIdSet(dictionary, firstWord, result);
+	}
+
+	private void checkDictionary(TileIdSet other) {
+
+		if (dictionary != other.dictionary) {
+			throw new IllegalArgumentException("Sets of ids have to share the same dictionary");
+		}
+	}
+
+	/**
+	 * @return dictionary that maps ids of this set to keys.
+	 */
+	public IdDictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+
+		return new Iterator<>() {
+
+			private int next = nextKey(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public String next() {
+
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				String id = dictionary.get(next);
+				next = nextKey(next + 1);
+				return id;
+			}
+		};
+	}
+
+	/**
+	 * @return key of the first member of this set that is greater or equal to given key
+	 * or {@code -1} if there is no such member.
+	 */
+	private int nextKey(int from) {
+
+		int index = Math.max((from >> 6) - firstWord, 0);
+		if (index >= words.length) {
+			return -1;
+		}
+		long word = (index + firstWord) == (from >> 6) ? words[index] & (-1L << from) : words[index];
+		while (true) {
+			if (word != 0) {
+				return ((index + firstWord) << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++index == words.length) {
+				return -1;
+			}
+			word = words[index];
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (o instanceof TileIdSet other && other.dictionary == dictionary) {
+			return firstWord == other.firstWord && Arrays.equals(words, other.words);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.matshou.cata.tilecov.config.Config;
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+
+public class AnalysisSessionTest {
+
+	private static Path analyze(AnalysisSession session) throws IOException {
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(session)
+				.withJsonTargets("items", "monsters").excludeOverlays().build();
+		workspace.load();
+		workspace.writeReport();
+
+		Path snapshotFile = session.getGameDir().resolveSibling(
+				session.getGameDir().getFileName() + "-" + Thread.currentThread().getId() + ".snapshot");
+		workspace.writeSnapshot(snapshotFile);
+		return snapshotFile;
+	}
+
+	@Test
+	void shouldRunIndependentAnalysesConcurrently(@TempDir Path tempDir) throws Exception {
+
+		List<GeneratedGameData> games = new ArrayList<>();
+		for (int seed = 1; seed <= 2; seed++) {
+			games.add(GameDataGenerator.Builder.parse("objects:400,perFile:100,seed:" + seed)
+					.build().generate(tempDir.resolve("game" + seed)));
+		}
+		// coverage of each game computed by sessions that run one at a time
+		List<Path> expected = new ArrayList<>();
+		for (GeneratedGameData game : games) {
+			try (AnalysisSession session = AnalysisSession.Builder.create(game.getGameDir()).build()) {
+				expected.add(analyze(session));
+			}
+		}
+		List<AnalysisSession> sessions = new ArrayList<>();
+		List<Callable<Path>> tasks = new ArrayList<>();
+		for (int i = 0; i < games.size(); i++) {
+			AnalysisSession session = AnalysisSession.Builder.create(games.get(i).getGameDir())
+					.withOutputDir(tempDir.resolve("output" + i)).withParseThreads(2).withTilesetThreads(2).build();
+			sessions.add(session);
+			tasks.add(() -> analyze(session));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			List<Future<Path>> futures = executor.invokeAll(tasks);
+			for (int i = 0; i < futures.size(); i++) {
+				Path snapshotFile;
+				try {
+					snapshotFile = futures.get(i).get();
+				}
+				catch (ExecutionException e) {
+					throw (Exception) e.getCause();
+				}
+				Assertions.assertEquals(-1L, Files.mismatch(expected.get(i), snapshotFile));
+
+				// report of each session shows paths relative to game directory of that session
+				Path page = tempDir.resolve("output" + i).resolve("synthetic_tileset.html");
+				String html = Files.readString(page, Charset.defaultCharset());
+				Assertions.assertTrue(html.contains(">data/json/items/"));
+				Assertions.assertFalse(html.contains(">" + tempDir));
+			}
+		}
+		finally {
+			executor.shutdown();
+			sessions.forEach(AnalysisSession::close);
+		}
+		// ids of each analysis are interned only in the dictionary of its own session
+		Assertions.assertNotSame(sessions.get(0).getIdDictionary(), sessions.get(1).getIdDictionary());
+		Assertions.assertTrue(sessions.get(0).getIdDictionary().size() > 0);
+		for (AnalysisSession session : sessions) {
+			Assertions.assertTrue(session.getPool() == null || session.getPool().isShutdown());
+			Assertions.assertTrue(session.getTilesetExecutor() == null || session.getTilesetExecutor().isShutdown());
+		}
+	}
+
+	@Test
+	void shouldConfigureSessionFromConfiguration(@TempDir Path tempDir) {
+
+		Config config = Config.defaults();
+		try (AnalysisSession session = AnalysisSession.Builder.create(tempDir).withConfig(config)
+				.withParseThreads(1).withOutputDir(tempDir.resolve("reports")).build()) {
+
+			Assertions.assertSame(config, session.getConfig());
+			Assertions.assertEquals(tempDir, session.getGameDir());
+			Assertions.assertEquals(tempDir.resolve("reports"), session.getOutputDir());
+			// caching is disabled by default
+			Assertions.assertNull(session.getCache());
+			// builder methods called after configuration override configured values
+			Assertions.assertNull(session.getPool());
+			Assertions.assertFalse(session.getProfiler().isEnabled());
+		}
+		Assertions.assertThrows(IllegalArgumentException.class, () ->
+				AnalysisSession.Builder.create(tempDir).withTilesetThreads(0));
+	}
+}
@@ -19,11 +19,16 @@ package io.matshou.cata.tilecov;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import io.matshou.cata.tilecov.config.Config;
+import io.matshou.cata.tilecov.coverage.CoverageExport;
+
 public class MainTest {
 
 	private static final String GAME_DIRECTORY = Main.Argument.GAME_DIRECTORY.appArgName;
@@ -35,28 +40,22 @@ public class MainTest {
 		return result;
 	}
 
-	public static void setGameDirectory(Path path) {
-		Main.APP_ARGS.put(Main.Argument.GAME_DIRECTORY, path);
-	}
-
-	public static void clearGameDirectory() {
-		Main.APP_ARGS.remove(Main.Argument.GAME_DIRECTORY);
-	}
+	private static final Config CONFIG = Config.defaults();
 	/*
 	@Test
 	void shouldThrowExceptionWhenMissingNonOptionalArguments() {
 
 		// app arguments are not supplied
 		Assertions.assertThrows(IllegalStateException.class, () ->
-				Main.handleAppArgs(new String[]{})
+				Main.handleAppArgs(new String[]{}, CONFIG)
 		);
 		// app arguments are empty
 		Assertions.assertThrows(IllegalStateException.class, () ->
-				Main.handleAppArgs(new String[]{ "" })
+				Main.handleAppArgs(new String[]{ "" }, CONFIG)
 		);
 		// non-optional app argument is empty
 		Assertions.assertThrows(IllegalStateException.class, () ->
-				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' })
+				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' }, CONFIG)
 		);
 	}*/
 
@@ -65,23 +64,23 @@ public class MainTest {
 
 		// app arguments have no delimiter
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ "arg1 value1 arg2 value2" })
+				Main.handleAppArgs(new String[]{ "arg1 value1 arg2 value2" }, CONFIG)
 		);
 		// app arguments have no value
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ "arg1value1 arg2value2" })
+				Main.handleAppArgs(new String[]{ "arg1value1 arg2value2" }, CONFIG)
 		);
 		// app arguments are using wrong delimiter
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ "arg1-value1 arg2~value2" })
+				Main.handleAppArgs(new String[]{ "arg1-value1 arg2~value2" }, CONFIG)
 		);
 		// app arguments are separated by comma
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ "arg1=value1,arg2=value2" })
+				Main.handleAppArgs(new String[]{ "arg1=value1,arg2=value2" }, CONFIG)
 		);
 		// app arguments are properly formatted
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ "arg1=value1 arg2=value2" })
+				Main.handleAppArgs(new String[]{ "arg1=value1 arg2=value2" }, CONFIG)
 		);
 	}
 
@@ -94,8 +93,8 @@ public class MainTest {
 		String GAME_DIRECTORY_SYS = Main.Argument.GAME_DIRECTORY.sysPropName;
 		System.setProperty(GAME_DIRECTORY_SYS, systemCataDir.toString());
 
-		Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + appCataDir });
-		Assertions.assertEquals(systemCataDir, Main.getGameDirectory());
+		Map<Main.Argument, Object> appArgs = Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + appCataDir }, CONFIG);
+		Assertions.assertEquals(systemCataDir, Main.getGameDirectory(appArgs));
 
 		// when property is not cleared other tests will fail
 		System.clearProperty(GAME_DIRECTORY_SYS);
@@ -105,8 +104,8 @@ public class MainTest {
 	void shouldParseApplicationArgumentAsObjects(@TempDir Path tempDir) {
 
 		Path cataDirPath = assertDirectoryCreated(tempDir, "data/cata");
-		Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + cataDirPath });
-		Assertions.assertEquals(cataDirPath, Main.getGameDirectory());
+		Map<Main.Argument, Object> appArgs = Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + cataDirPath }, CONFIG);
+		Assertions.assertEquals(cataDirPath, Main.getGameDirectory(appArgs));
 	}
 
 	@Test
@@ -117,14 +116,32 @@ public class MainTest {
 
 		// argument value is a non-existing directory
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + "=" + tempDir.resolve("pseudo/path") })
+				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + "=" + tempDir.resolve("pseudo/path") }, CONFIG)
 		);
 		Path filePath = tempDir.resolve(".file");
 		Assertions.assertTrue(filePath.toFile().createNewFile());
 
 		// argument value is not a valid directory
 		Assertions.assertThrows(IllegalArgumentException.class, () ->
-				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + "=" + filePath })
+				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + "=" + filePath }, CONFIG)
+		);
+	}
+
+	@Test
+	void shouldParseExportArgumentAsSetOfFormats(@TempDir Path tempDir) {
+
+		Path cataDirPath = assertDirectoryCreated(tempDir, "data/cata");
+		String export = Main.Argument.EXPORT.appArgName;
+
+		Map<Main.Argument, Object> appArgs = Main.handleAppArgs(
+				new String[]{ GAME_DIRECTORY + '=' + cataDirPath, export + "=csv, JSON_LINES" }, CONFIG);
+		Assertions.assertEquals(Set.of(CoverageExport.CSV, CoverageExport.JSON_LINES), Main.getExports(appArgs));
+
+		appArgs = Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + cataDirPath }, CONFIG);
+		Assertions.assertEquals(Set.of(), Main.getExports(appArgs));
+
+		Assertions.assertThrows(IllegalArgumentException.class, () ->
+				Main.handleAppArgs(new String[]{ GAME_DIRECTORY + '=' + cataDirPath, export + "=xml" }, CONFIG)
 		);
 	}
 }
@@ -49,7 +49,7 @@ public class ConfigTest {
 	@Test
 	void shouldCreateConfigFileWhenMissing(@TempDir Path tempDir) throws IOException {
 
-		assertDoesNotThrow(() -> Config.initialize(tempDir));
+		assertDoesNotThrow(() -> Config.load(tempDir));
 		File configFile = tempDir.resolve(Config.FILENAME).toFile();
 		assertTrue(configFile.exists());
 
@@ -71,7 +71,7 @@ public class ConfigTest {
 	void shouldThrowExceptionWhenOptionalPropertyMissing(@TempDir Path tempDir) throws IOException {
 
 		createConfigFile(tempDir);
-		assertThrows(MissingConfigPropertyException.class, () -> Config.initialize(tempDir));
+		assertThrows(MissingConfigPropertyException.class, () -> Config.load(tempDir));
 	}
 
 	@Test
@@ -85,7 +85,7 @@ public class ConfigTest {
 				sink.write(entry.name + '=' + '\n');
 			}
 		}
-		assertThrows(IllegalConfigPropertyException.class, () -> Config.initialize(tempDir));
+		assertThrows(IllegalConfigPropertyException.class, () -> Config.load(tempDir));
 	}
 
 	@Test
@@ -99,7 +99,7 @@ public class ConfigTest {
 
 		sink.write(Config.Entry.GAME_DIR.name + '=' + wrongPath + '\n');
 		sink.write(Config.Entry.OUTPUT_DIR.name + '=' + "reports" + '\n');
-		assertThrows(IllegalConfigPropertyException.class, () -> Config.initialize(tempDir));
+		assertThrows(IllegalConfigPropertyException.class, () -> Config.load(tempDir));
 	}
 
 	@Test
@@ -113,15 +113,66 @@ public class ConfigTest {
 
 		sink.write(Config.Entry.GAME_DIR.name + '=' + notDirectory + '\n');
 		sink.write(Config.Entry.OUTPUT_DIR.name + '=' + "reports" + '\n');
-		assertThrows(IllegalConfigPropertyException.class, () -> Config.initialize(tempDir));
+		assertThrows(IllegalConfigPropertyException.class, () -> Config.load(tempDir));
+	}
+
+	@Test
+	void shouldUseDefaultValueWhenOptionalPropertyMissing(@TempDir Path tempDir) throws IOException {
+
+		File configFile = createConfigFile(tempDir);
+		CharSink sink = Files.asCharSink(configFile, Charset.defaultCharset(), FileWriteMode.APPEND);
+
+		sink.write(Config.Entry.GAME_DIR.name + '=' + tempDir + '\n');
+		sink.write(Config.Entry.OUTPUT_DIR.name + '=' + "reports" + '\n');
+		Config config = assertDoesNotThrow(() -> Config.load(tempDir));
+
+		Integer expected = Runtime.getRuntime().availableProcessors();
+		assertEquals(expected, config.getProperty(Config.Entry.PARSE_THREADS.name, Integer.class));
+		assertEquals(expected, config.getProperty(Config.Entry.TILESET_THREADS.name, Integer.class));
+	}
+
+	@Test
+	void shouldThrowExceptionWhenParseThreadsNegative(@TempDir Path tempDir) throws IOException {
+
+		File configFile = createConfigFile(tempDir);
+		CharSink sink = Files.asCharSink(configFile, Charset.defaultCharset(), FileWriteMode.APPEND);
+
+		sink.write(Config.Entry.GAME_DIR.name + '=' + tempDir + '\n');
+		sink.write(Config.Entry.OUTPUT_DIR.name + '=' + "reports" + '\n');
+		sink.write(Config.Entry.PARSE_THREADS.name + '=' + "-1" + '\n');
+		assertThrows(IllegalConfigPropertyException.class, () -> Config.load(tempDir));
+	}
+
+	@Test
+	void shouldThrowExceptionWhenTilesetThreadsNotNumber(@TempDir Path tempDir) throws IOException {
+
+		File configFile = createConfigFile(tempDir);
+		CharSink sink = Files.asCharSink(configFile, Charset.defaultCharset(), FileWriteMode.APPEND);
+
+		sink.write(Config.Entry.GAME_DIR.name + '=' + tempDir + '\n');
+		sink.write(Config.Entry.OUTPUT_DIR.name + '=' + "reports" + '\n');
+		sink.write(Config.Entry.TILESET_THREADS.name + '=' + "many" + '\n');
+		assertThrows(IllegalConfigPropertyException.class, () -> Config.load(tempDir));
 	}
 
 	@Test
 	@SuppressWarnings("ResultOfMethodCallIgnored")
 	void shouldThrowExceptionWhenGettingPropertyWithWrongType() {
 
-		Config.properties = ImmutableMap.of("entry", 0);
-		assertThrows(ClassCastException.class, () -> Config.getProperty("entry", String.class));
-		assertDoesNotThrow(() -> Config.getProperty("entry", Integer.class));
+		Config config = new Config(ImmutableMap.of("entry", 0));
+		assertThrows(ClassCastException.class, () -> config.getProperty("entry", String.class));
+		assertDoesNotThrow(() -> config.getProperty("entry", Integer.class));
+	}
+
+	@Test
+	void shouldUseDefaultValuesOfOptionalProperties() {
+
+		Config config = Config.defaults();
+		assertNull(config.getProperty(Config.Entry.GAME_DIR.name, File.class));
+		assertNull(config.getProperty(Config.Entry.CACHE_DIR.name, File.class));
+		assertEquals(Boolean.FALSE, config.getProperty(Config.Entry.CACHE_HASH.name, Boolean.class));
+
+		Integer expected = Runtime.getRuntime().availableProcessors();
+		assertEquals(expected, config.getProperty(Config.Entry.PARSE_THREADS.name, Integer.class));
 	}
 }
@@ -0,0 +1,228 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
+import io.matshou.cata.tilecov.tile.CataTileset;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+public class CoverageDiffTest extends UnitTestResources {
+
+	private static final Path FURNITURE = Paths.get("data/json/furniture.json");
+	private static final Path MONSTERS = Paths.get("data/json/monsters.json");
+	private static final Path ITEMS = Paths.get("data/json/items.json");
+
+	private TilesetCoverage createCoverage(String tileset,
+			Map<Path, ImmutableMap<String, CoverageType>> data) throws IOException {
+
+		return new TilesetCoverage(new CataTileset(getTempDir().resolve("gfx").resolve(tileset)),
+				ImmutableSet.of(), ImmutableSortedMap.of(), LooksLikeGraph.of(List.of()), new IdDictionary(), data);
+	}
+
+	private CoverageSnapshot createSnapshot(Path file, TilesetCoverage... coverages) throws IOException {
+
+		CoverageSnapshot.write(Set.of(coverages), file, null);
+		return CoverageSnapshot.open(file);
+	}
+
+	@Test
+	void shouldFindAddedRemovedAndChangedCoverage(@TempDir Path tempDir) throws IOException {
+
+		CoverageSnapshot before = createSnapshot(tempDir.resolve("before.snapshot"),
+				createCoverage("diamond_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("chair", CoverageType.UNIQUE, "table", CoverageType.NO_COVERAGE),
+						MONSTERS, ImmutableMap.of("slug", CoverageType.INHERITED, "zombie", CoverageType.UNIQUE)
+				)),
+				createCoverage("red_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("chair", CoverageType.UNIQUE)
+				))
+		);
+		CoverageSnapshot after = createSnapshot(tempDir.resolve("after.snapshot"),
+				createCoverage("diamond_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("bench", CoverageType.UNIQUE,
+								"chair", CoverageType.UNIQUE, "table", CoverageType.INHERITED),
+						ITEMS, ImmutableMap.of("rock", CoverageType.NO_COVERAGE)
+				)),
+				createCoverage("sample_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("chair", CoverageType.NO_COVERAGE)
+				))
+		);
+		CoverageDiff diff = CoverageDiff.of(before, after);
+		Assertions.assertFalse(diff.isEmpty());
+
+		List<CoverageDiff.TilesetDiff> tilesets = diff.getTilesets();
+		Assertions.assertEquals(Integer.valueOf(3), Integer.valueOf(tilesets.size()));
+
+		CoverageDiff.TilesetDiff diamond = tilesets.get(0);
+		Assertions.assertEquals("diamond_tileset", diamond.getName());
+		Assertions.assertTrue(diamond.isInBefore() && diamond.isInAfter());
+		// bench and rock were added, slug and zombie were removed, table changed
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(diamond.getAddedCount()));
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(diamond.getRemovedCount()));
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(diamond.getChangedCount()));
+
+		// files are in order of paths, and objects in order of ids
+		List<CoverageDiff.FileDiff> files = diamond.getFiles();
+		Assertions.assertEquals(Integer.valueOf(3), Integer.valueOf(files.size()));
+		Assertions.assertEquals("data/json/furniture.json", files.get(0).getFile());
+		Assertions.assertEquals("data/json/items.json", files.get(1).getFile());
+		Assertions.assertEquals("data/json/monsters.json", files.get(2).getFile());
+
+		List<CoverageDiff.Change> changes = files.get(0).getChanges();
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(changes.size()));
+		Assertions.assertEquals("bench", changes.get(0).getId());
+		Assertions.assertNull(changes.get(0).getBefore());
+		Assertions.assertEquals(CoverageType.UNIQUE, changes.get(0).getAfter());
+		Assertions.assertEquals("table", changes.get(1).getId());
+		Assertions.assertEquals(CoverageType.NO_COVERAGE, changes.get(1).getBefore());
+		Assertions.assertEquals(CoverageType.INHERITED, changes.get(1).getAfter());
+
+		Assertions.assertNotNull(files.get(0).getBefore());
+		Assertions.assertNull(files.get(1).getBefore());
+		Assertions.assertNull(files.get(2).getAfter());
+
+		CoverageDiff.TilesetDiff red = tilesets.get(1);
+		Assertions.assertEquals("red_tileset", red.getName());
+		Assertions.assertFalse(red.isInAfter());
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(red.getRemovedCount()));
+
+		CoverageDiff.TilesetDiff sample = tilesets.get(2);
+		Assertions.assertFalse(sample.isInBefore());
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(sample.getAddedCount()));
+	}
+
+	@Test
+	void shouldFindNoChangesBetweenEqualSnapshots(@TempDir Path tempDir) throws IOException {
+
+		TilesetCoverage coverage = createCoverage("diamond_tileset", Map.of(
+				FURNITURE, ImmutableMap.of("chair", CoverageType.UNIQUE, "table", CoverageType.NO_COVERAGE)
+		));
+		CoverageDiff diff = CoverageDiff.of(createSnapshot(tempDir.resolve("before.snapshot"), coverage),
+				createSnapshot(tempDir.resolve("after.snapshot"), coverage));
+
+		Assertions.assertTrue(diff.isEmpty());
+		Assertions.assertTrue(diff.getTilesets().get(0).getFiles().isEmpty());
+	}
+
+	@Test
+	void shouldWriteDiffAsJsonAndHtml(@TempDir Path tempDir) throws IOException {
+
+		CoverageDiff diff = CoverageDiff.of(
+				createSnapshot(tempDir.resolve("before.snapshot"), createCoverage("diamond_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("chair", CoverageType.UNIQUE)
+				))),
+				createSnapshot(tempDir.resolve("after.snapshot"), createCoverage("diamond_tileset", Map.of(
+						FURNITURE, ImmutableMap.of("chair", CoverageType.INHERITED, "<stool>", CoverageType.UNIQUE)
+				)))
+		);
+		diff.writeToFile(tempDir);
+
+		String json = Files.readString(tempDir.resolve(CoverageDiff.JSON_FILE_NAME), StandardCharsets.UTF_8);
+		JsonObject tileset = JsonParser.parseString(json).getAsJsonObject()
+				.getAsJsonArray("tilesets").get(0).getAsJsonObject();
+		Assertions.assertEquals("diamond_tileset", tileset.get("name").getAsString());
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(tileset.get("added").getAsInt()));
+
+		JsonObject file = tileset.getAsJsonArray("files").get(0).getAsJsonObject();
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(
+				file.getAsJsonObject("before").get("total").getAsInt()));
+		JsonArray changes = file.getAsJsonArray("changes");
+		Assertions.assertEquals("<stool>", changes.get(0).getAsJsonObject().get("id").getAsString());
+		Assertions.assertTrue(changes.get(0).getAsJsonObject().get("before").isJsonNull());
+		Assertions.assertEquals("INHERITED", changes.get(1).getAsJsonObject().get("after").getAsString());
+
+		String html = Files.readString(tempDir.resolve(CoverageDiff.HTML_FILE_NAME), StandardCharsets.UTF_8);
+		Assertions.assertTrue(html.contains("<div class=\"flex-table coverage wide\">"));
+		// style sheets linked by the page are copied next to it
+		Assertions.assertTrue(html.contains("href=\"css/main.css\""));
+		Assertions.assertTrue(Files.isRegularFile(tempDir.resolve("css/main.css")));
+		Assertions.assertTrue(Files.isRegularFile(tempDir.resolve("css/table.css")));
+		Assertions.assertTrue(html.contains("&lt;stool&gt;"));
+		Assertions.assertTrue(html.endsWith("</html>"));
+
+		StringWriter writer = new StringWriter();
+		diff.writeJson(writer);
+		Assertions.assertEquals(json, writer.toString());
+	}
+
+	@Test
+	void shouldCountChangesOnceInWorkspaceSnapshots(@TempDir Path tempDir) throws IOException {
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+				.withJsonTargets("items", "monsters").build();
+		workspace.load();
+		Path beforeFile = tempDir.resolve("before.snapshot");
+		workspace.writeSnapshot(beforeFile);
+
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Files.writeString(gunsPath, "[ { \"id\": \"calico\", \"type\": \"GUN\" }, "
+				+ "{ \"id\": \"new_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+		workspace.load();
+		Path afterFile = tempDir.resolve("after.snapshot");
+		workspace.writeSnapshot(afterFile);
+
+		CoverageDiff diff = CoverageDiff.of(CoverageSnapshot.open(beforeFile), CoverageSnapshot.open(afterFile));
+		for (CoverageDiff.TilesetDiff tileset : diff.getTilesets()) {
+			// new_gun was added and 90two, ar15, cx4, glock_19 and sniper_rifle were removed
+			Assertions.assertEquals(1, tileset.getAddedCount(), tileset.getName());
+			Assertions.assertEquals(5, tileset.getRemovedCount(), tileset.getName());
+
+			Set<String> changedIds = new HashSet<>();
+			CoverageDiff.FileDiff directory = null;
+			for (CoverageDiff.FileDiff file : tileset.getFiles()) {
+				for (CoverageDiff.Change change : file.getChanges()) {
+					Assertions.assertTrue(changedIds.add(change.getId()), change.getId());
+				}
+				if (file.isDirectory()) {
+					directory = file;
+				}
+			}
+			// directory entries show changed statistics without repeating changes of their files
+			Assertions.assertNotNull(directory);
+			Assertions.assertEquals("data/json/items", directory.getFile());
+			Assertions.assertTrue(directory.getChanges().isEmpty());
+			Assertions.assertEquals(changedIds.size(), tileset.getAddedCount()
+					+ tileset.getRemovedCount() + tileset.getChangedCount());
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
+import io.matshou.cata.tilecov.tile.CataTileset;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+public class CoverageExportTest extends UnitTestResources {
+
+	private static final Path JSON_PATH = Paths.get("data/json/monsters/slugs.json");
+
+	private TilesetCoverage tilesetCoverage;
+
+	@Override
+	protected void setupUnitTest(File tempDir) throws IOException {
+		super.setupUnitTest(tempDir);
+
+		// coverage data is given directly, so it can contain ids with special characters
+		Map<Path, ImmutableMap<String, CoverageType>> data = Map.of(JSON_PATH, ImmutableMap.of(
+				"mon_slug", CoverageType.UNIQUE,
+				"mon, \"quoted\"", CoverageType.NO_COVERAGE
+		));
+		tilesetCoverage = new TilesetCoverage(new CataTileset(getTempDir().resolve("gfx/diamond_tileset")),
+				ImmutableSet.of(), ImmutableSortedMap.of(), LooksLikeGraph.of(List.of()), new IdDictionary(), data);
+
+	}
+
+	@Test
+	void shouldExportCoverageAsJsonLines() throws IOException {
+
+		StringWriter writer = new StringWriter();
+		CoverageExport.JSON_LINES.write(Set.of(tilesetCoverage), writer);
+
+		String[] lines = writer.toString().split("\n");
+		Assertions.assertEquals(Integer.valueOf(3), Integer.valueOf(lines.length));
+
+		JsonObject stats = JsonParser.parseString(lines[0]).getAsJsonObject();
+		Assertions.assertEquals("stats", stats.get("record").getAsString());
+		Assertions.assertEquals("diamond_tileset", stats.get("tileset").getAsString());
+		Assertions.assertEquals("data/json/monsters/slugs.json", stats.get("file").getAsString());
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(stats.get("total").getAsInt()));
+
+		Map<String, CoverageType> coverage = tilesetCoverage.data.get(JSON_PATH);
+		for (int i = 1; i < lines.length; i++) {
+			JsonObject object = JsonParser.parseString(lines[i]).getAsJsonObject();
+			Assertions.assertEquals("object", object.get("record").getAsString());
+			String id = object.get("id").getAsString();
+			Assertions.assertEquals(coverage.get(id).name(), object.get("coverage").getAsString());
+		}
+	}
+
+	@Test
+	void shouldExportCoverageAsCsv(@TempDir Path tempDir) throws IOException {
+
+		Path exportPath = CoverageExport.CSV.writeToFile(Set.of(tilesetCoverage), tempDir);
+		Assertions.assertEquals(tempDir.resolve("coverage.csv"), exportPath);
+
+		List<String> lines = Files.readAllLines(exportPath, StandardCharsets.UTF_8);
+		Assertions.assertEquals(Integer.valueOf(4), Integer.valueOf(lines.size()));
+		Assertions.assertEquals("record,tileset,file,id,coverage,total,unique,inherited,none", lines.get(0));
+
+		CoverageStats stats = tilesetCoverage.stats.get(JSON_PATH);
+		String expectedStats = String.format("stats,diamond_tileset,data/json/monsters/slugs.json,,,%d,%d,%d,%d",
+				stats.getObjectsTotal(), stats.getUniqueCoverageTotal(),
+				stats.getInheritedTotal(), stats.getNoCoverageTotal());
+		Assertions.assertEquals(expectedStats, lines.get(1));
+
+		// values with special characters are quoted
+		String quotedId = "\"mon, \"\"quoted\"\"\"";
+		Assertions.assertTrue(lines.stream().anyMatch(l -> l.contains(',' + quotedId + ',')));
+		for (String line : lines.subList(2, lines.size())) {
+			Assertions.assertTrue(line.startsWith("object,diamond_tileset,data/json/monsters/slugs.json,"));
+			Assertions.assertTrue(line.endsWith(",,,,"));
+		}
+	}
+
+	@Test
+	void shouldNotExportDirectoryEntries() throws IOException {
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+				.withJsonTargets("items", "monsters").build();
+		workspace.load();
+		TilesetCoverage coverage = workspace.getCoverage(getTempDir().resolve("gfx/purple_tileset"));
+		Assertions.assertNotNull(coverage);
+
+		StringWriter writer = new StringWriter();
+		CoverageExport.JSON_LINES.write(Set.of(coverage), writer, getTempDir());
+
+		Set<String> files = new HashSet<>();
+		int objectCount = 0;
+		for (String line : writer.toString().split("\n")) {
+			JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+			files.add(record.get("file").getAsString());
+			if (record.get("record").getAsString().equals("object")) {
+				objectCount++;
+			}
+		}
+		Assertions.assertFalse(files.contains("data/json/items"));
+		Assertions.assertFalse(files.contains("data/json/monsters"));
+		Assertions.assertTrue(files.contains("data/json/items/guns.json"));
+
+		// every object is exported once, under the file it is defined in
+		int expectedCount = coverage.getCoverage(getTempDir().resolve("data/json/items")).size()
+				+ coverage.getCoverage(getTempDir().resolve("data/json/monsters")).size();
+		Assertions.assertEquals(expectedCount, objectCount);
+	}
+
+	@Test
+	void shouldFindExportFormatByNameOrExtension() {
+
+		Assertions.assertEquals(CoverageExport.JSON_LINES, CoverageExport.of("jsonl"));
+		Assertions.assertEquals(CoverageExport.JSON_LINES, CoverageExport.of("json_lines"));
+		Assertions.assertEquals(CoverageExport.CSV, CoverageExport.of("CSV"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> CoverageExport.of("xml"));
+	}
+}
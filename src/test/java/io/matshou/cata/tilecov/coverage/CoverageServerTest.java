@@ -0,0 +1,207 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+
+public class CoverageServerTest extends UnitTestResources {
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private CoverageServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+				.withJsonTargets("items", "monsters").withOutputDir(getTempDir().resolve("reports")).build();
+		workspace.load();
+		workspace.writeReport();
+
+		server = CoverageServer.Builder.create(workspace).withPort(0).withThreads(2).build();
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.close();
+	}
+
+	private HttpResponse<String> send(String method, String path) throws IOException {
+
+		URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + path);
+		HttpRequest request = HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+		}
+		catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private JsonObject getJson(String method, String path) throws IOException {
+
+		HttpResponse<String> response = send(method, path);
+		Assertions.assertEquals(200, response.statusCode(), response.body());
+		return JsonParser.parseString(response.body()).getAsJsonObject();
+	}
+
+	@Test
+	void shouldListTilesetsAndServeReportPages() throws IOException {
+
+		JsonArray tilesets = getJson("GET", "/api/tilesets").getAsJsonArray("tilesets");
+		Assertions.assertEquals(5, tilesets.size());
+
+		Set<String> names = new HashSet<>();
+		for (JsonElement tileset : tilesets) {
+			names.add(tileset.getAsJsonObject().get("name").getAsString());
+		}
+		Assertions.assertTrue(names.contains("purple_tileset"));
+
+		HttpResponse<String> page = send("GET", "/report/purple_tileset.html");
+		Assertions.assertEquals(200, page.statusCode());
+		Assertions.assertTrue(page.body().contains("PurpleTileset"));
+
+		Assertions.assertEquals(404, send("GET", "/report/missing.html").statusCode());
+		Assertions.assertEquals(404, send("GET", "/report/%2e%2e/data/json/items/guns.json").statusCode());
+	}
+
+	@Test
+	void shouldAnswerCoverageQueries() throws IOException {
+
+		JsonObject tileset = getJson("GET", "/api/coverage?tileset=purple_tileset");
+		Assertions.assertTrue(tileset.getAsJsonArray("files").size() > 0);
+
+		JsonObject file = getJson("GET", "/api/coverage?tileset=purple_tileset&file=data/json/items/guns.json");
+		JsonObject objects = file.getAsJsonObject("objects");
+		Assertions.assertEquals("UNIQUE", objects.get("calico").getAsString());
+		Assertions.assertEquals(objects.size(), file.get("total").getAsInt());
+
+		JsonArray coverage = getJson("GET", "/api/coverage?id=calico").getAsJsonArray("coverage");
+		Assertions.assertEquals(5, coverage.size());
+		for (JsonElement element : coverage) {
+			Assertions.assertEquals("data/json/items/guns.json", element.getAsJsonObject().get("file").getAsString());
+		}
+		coverage = getJson("GET", "/api/coverage?id=calico&tileset=purple_tileset").getAsJsonArray("coverage");
+		Assertions.assertEquals(1, coverage.size());
+
+		Assertions.assertEquals(404, send("GET", "/api/coverage?tileset=missing").statusCode());
+		Assertions.assertEquals(400, send("GET", "/api/coverage").statusCode());
+		Assertions.assertEquals(405, send("GET", "/api/refresh").statusCode());
+	}
+
+	@Test
+	void shouldRefreshOnlyChangedInputs() throws IOException, InterruptedException {
+
+		JsonObject refresh = getJson("POST", "/api/refresh");
+		Assertions.assertEquals(0, refresh.get("changedFiles").getAsInt());
+		Assertions.assertEquals(0, refresh.getAsJsonArray("updatedTilesets").size());
+
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Files.writeString(gunsPath, "[ { \"id\": \"new_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+
+		// file changes are delivered to the watcher asynchronously
+		long deadline = System.currentTimeMillis() + 10_000;
+		do {
+			Thread.sleep(50);
+			refresh = getJson("POST", "/api/refresh");
+		}
+		while (refresh.get("changedFiles").getAsInt() == 0 && System.currentTimeMillis() < deadline);
+		Assertions.assertEquals(5, refresh.getAsJsonArray("updatedTilesets").size());
+
+		Assertions.assertEquals(5, getJson("GET", "/api/coverage?id=new_gun").getAsJsonArray("coverage").size());
+		Assertions.assertEquals(0, getJson("GET", "/api/coverage?id=calico").getAsJsonArray("coverage").size());
+
+		refresh = getJson("POST", "/api/refresh?full=true");
+		Assertions.assertTrue(refresh.get("full").getAsBoolean());
+		Assertions.assertEquals(5, refresh.getAsJsonArray("updatedTilesets").size());
+	}
+
+	@Test
+	void shouldKeepChangesWhenRefreshFails() throws IOException, InterruptedException {
+
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Files.writeString(gunsPath, "[ { \"id\": \"new_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+
+		// reports cannot be written when a file takes place of the output directory
+		Path reportsDir = getTempDir().resolve("reports");
+		Path movedReportsDir = getTempDir().resolve("reports-moved");
+		Files.move(reportsDir, movedReportsDir);
+		Files.createFile(reportsDir);
+
+		HttpResponse<String> response;
+		long deadline = System.currentTimeMillis() + 10_000;
+		do {
+			Thread.sleep(50);
+			response = send("POST", "/api/refresh");
+		}
+		while (response.statusCode() == 200 && System.currentTimeMillis() < deadline);
+		Assertions.assertEquals(500, response.statusCode());
+		Assertions.assertTrue(response.body().contains("reports"), response.body());
+
+		// changes of the failed refresh are applied by the next one
+		Files.delete(reportsDir);
+		Files.move(movedReportsDir, reportsDir);
+		JsonObject refresh = getJson("POST", "/api/refresh");
+		Assertions.assertTrue(refresh.get("changedFiles").getAsInt() > 0);
+		Assertions.assertEquals(5, refresh.getAsJsonArray("updatedTilesets").size());
+		Assertions.assertEquals(5, getJson("GET", "/api/coverage?id=new_gun").getAsJsonArray("coverage").size());
+	}
+
+	@Test
+	void shouldReportFilesThatFailToRefresh() throws IOException, InterruptedException {
+
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Files.writeString(gunsPath, "[ { \"id\": \"new_gun\", ", StandardCharsets.UTF_8);
+
+		JsonObject refresh;
+		long deadline = System.currentTimeMillis() + 10_000;
+		do {
+			Thread.sleep(50);
+			refresh = getJson("POST", "/api/refresh");
+		}
+		while (refresh.get("changedFiles").getAsInt() == 0 && System.currentTimeMillis() < deadline);
+
+		JsonObject failures = refresh.getAsJsonObject("failures");
+		Assertions.assertTrue(failures.has("data/json/items/guns.json"), failures.toString());
+		Assertions.assertTrue(getJson("GET", "/api/tilesets").getAsJsonObject("failures").has("data/json/items/guns.json"));
+
+		// file keeps coverage of its previous content
+		Assertions.assertEquals(5, getJson("GET", "/api/coverage?id=calico").getAsJsonArray("coverage").size());
+	}
+}
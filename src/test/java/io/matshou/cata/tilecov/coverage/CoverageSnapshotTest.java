@@ -0,0 +1,163 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.reflect.TypeToken;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.CataJsonDeserializer;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.JsonObjectBuilder;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageStats;
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+public class CoverageSnapshotTest extends UnitTestResources {
+
+	private static final Path[] JSON_PATHS = new Path[]{
+			Paths.get("data/json/monsters/slugs.json"),
+			Paths.get("data/json/items/fluff.json"),
+			Paths.get("data/json/furniture_and_terrain/furniture.json")
+	};
+	private TilesetCoverage diamondCoverage, sampleCoverage;
+
+	@Override
+	protected void setupUnitTest(File tempDir) throws IOException {
+		super.setupUnitTest(tempDir);
+
+		TilesetCoverage.Builder diamondBuilder = TilesetCoverage.Builder
+				.create(getTempDir().resolve("gfx/diamond_tileset")).excludeOverlays();
+		TilesetCoverage.Builder sampleBuilder = TilesetCoverage.Builder
+				.create(getTempDir().resolve("gfx/sample_tileset")).excludeOverlays();
+
+		for (int i = 0; i < JSON_PATHS.length; i++) {
+			Optional<List<CataJsonObject>> oJsonObjects = JsonObjectBuilder.<CataJsonObject>create()
+					.ofType(CataJsonObject.class)
+					.withListTypeToken(new TypeToken<>() {})
+					.withDeserializer(CataJsonDeserializer.class)
+					.buildAsList(JSON_PATHS[i]);
+
+			Assertions.assertTrue(oJsonObjects.isPresent());
+			diamondBuilder.withCataJsonObjects(JSON_PATHS[i], new HashSet<>(oJsonObjects.get()));
+			// sample tileset does not cover the last file
+			if (i < JSON_PATHS.length - 1) {
+				sampleBuilder.withCataJsonObjects(JSON_PATHS[i], new HashSet<>(oJsonObjects.get()));
+			}
+		}
+		diamondCoverage = diamondBuilder.build();
+		sampleCoverage = sampleBuilder.build();
+	}
+
+	@Test
+	void shouldReadCoverageWrittenToSnapshot(@TempDir Path tempDir) throws IOException {
+
+		Path snapshotFile = tempDir.resolve(CoverageSnapshot.FILE_NAME);
+		CoverageSnapshot.write(Set.of(sampleCoverage, diamondCoverage), snapshotFile);
+
+		CoverageSnapshot snapshot = CoverageSnapshot.open(snapshotFile);
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(snapshot.getTilesetCount()));
+		Assertions.assertEquals(Integer.valueOf(JSON_PATHS.length), Integer.valueOf(snapshot.getFileCount()));
+		Assertions.assertEquals("diamond_tileset", snapshot.getTileset(0).getName());
+		Assertions.assertNull(snapshot.getTileset("unknown_tileset"));
+
+		for (TilesetCoverage coverage : List.of(diamondCoverage, sampleCoverage)) {
+			CoverageSnapshot.TilesetView view = snapshot.getTileset(coverage.getTileset().getName());
+			Assertions.assertNotNull(view);
+			Assertions.assertEquals(coverage.getTileset().getDisplayName(), view.getDisplayName());
+
+			for (Map.Entry<Path, ImmutableMap<String, CoverageType>> entry : coverage.data.entrySet()) {
+				String file = entry.getKey().toString().replace('\\', '/');
+
+				// point lookups
+				for (Map.Entry<String, CoverageType> object : entry.getValue().entrySet()) {
+					Assertions.assertEquals(object.getValue(), view.getCoverageType(file, object.getKey()));
+				}
+				Assertions.assertNull(view.getCoverageType(file, "unknown_id"));
+
+				// per-file scans
+				Map<String, CoverageType> scanned = new HashMap<>();
+				view.forEach(file, scanned::put);
+				Assertions.assertEquals(entry.getValue(), scanned);
+
+				CoverageStats expected = coverage.stats.get(entry.getKey());
+				CoverageStats actual = view.getStats(file);
+				Assertions.assertNotNull(actual);
+				Assertions.assertEquals(Integer.valueOf(expected.getObjectsTotal()), Integer.valueOf(actual.getObjectsTotal()));
+				Assertions.assertEquals(Integer.valueOf(expected.getUniqueCoverageTotal()), Integer.valueOf(actual.getUniqueCoverageTotal()));
+				Assertions.assertEquals(Integer.valueOf(expected.getInheritedTotal()), Integer.valueOf(actual.getInheritedTotal()));
+				Assertions.assertEquals(Integer.valueOf(expected.getNoCoverageTotal()), Integer.valueOf(actual.getNoCoverageTotal()));
+			}
+		}
+		// files not covered by tileset have no entries
+		CoverageSnapshot.TilesetView sampleView = snapshot.getTileset("sample_tileset");
+		Assertions.assertNotNull(sampleView);
+		Assertions.assertNull(sampleView.getStats("data/json/furniture_and_terrain/furniture.json"));
+		Assertions.assertNull(sampleView.getStats("data/json/unknown.json"));
+	}
+
+	@Test
+	void shouldWriteSnapshotFromTilesetCoverage(@TempDir Path tempDir) throws IOException {
+
+		Path snapshotFile = tempDir.resolve(CoverageSnapshot.FILE_NAME);
+		sampleCoverage.writeSnapshot(snapshotFile);
+
+		CoverageSnapshot snapshot = CoverageSnapshot.open(snapshotFile);
+		Assertions.assertEquals(Integer.valueOf(1), Integer.valueOf(snapshot.getTilesetCount()));
+		Assertions.assertEquals("sample_tileset", snapshot.getTileset(0).getName());
+		Assertions.assertEquals("data/json/items/fluff.json", snapshot.getFile(0));
+	}
+
+	@Test
+	void shouldNotOpenInvalidSnapshot(@TempDir Path tempDir) throws IOException {
+
+		Path snapshotFile = tempDir.resolve(CoverageSnapshot.FILE_NAME);
+		Files.writeString(snapshotFile, "not a snapshot");
+		Assertions.assertThrows(IOException.class, () -> CoverageSnapshot.open(snapshotFile));
+
+		// snapshot written with another format version
+		CoverageSnapshot.write(Set.of(diamondCoverage), snapshotFile);
+		byte[] bytes = Files.readAllBytes(snapshotFile);
+		ByteBuffer.wrap(bytes).putInt(4, CoverageSnapshot.VERSION + 1);
+		Files.write(snapshotFile, bytes);
+		Assertions.assertThrows(IOException.class, () -> CoverageSnapshot.open(snapshotFile));
+
+		// truncated snapshot
+		ByteBuffer.wrap(bytes).putInt(4, CoverageSnapshot.VERSION);
+		Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length / 2));
+		Assertions.assertThrows(IOException.class, () -> CoverageSnapshot.open(snapshotFile));
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.matshou.cata.tilecov.AnalysisSession;
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.tile.IdDictionary;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+public class CoverageWorkspaceTest extends UnitTestResources {
+
+	private CoverageWorkspace createWorkspace() throws IOException {
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+				.withJsonTargets("items", "monsters").build();
+		workspace.load();
+		return workspace;
+	}
+
+	private static void assertSameCoverage(CoverageWorkspace expected, CoverageWorkspace actual) {
+
+		Assertions.assertEquals(expected.getCoverages().size(), actual.getCoverages().size());
+		for (TilesetCoverage expectedCoverage : expected.getCoverages()) {
+			Path tilesetDir = expected.getGfxDir().resolve(expectedCoverage.getTileset().getName());
+			TilesetCoverage actualCoverage = actual.getCoverage(tilesetDir);
+			Assertions.assertNotNull(actualCoverage);
+			Assertions.assertEquals(expectedCoverage.data, actualCoverage.data);
+			Assertions.assertEquals(expectedCoverage.data.keySet(), actualCoverage.stats.keySet());
+			for (Path path : expectedCoverage.data.keySet()) {
+				TilesetCoverage.CoverageStats expectedStats = expectedCoverage.stats.get(path);
+				TilesetCoverage.CoverageStats actualStats = actualCoverage.stats.get(path);
+				Assertions.assertNotNull(expectedStats);
+				Assertions.assertNotNull(actualStats);
+				Assertions.assertEquals(expectedStats.getObjectsTotal(), actualStats.getObjectsTotal());
+				Assertions.assertEquals(expectedStats.getNoCoverageTotal(), actualStats.getNoCoverageTotal());
+			}
+		}
+	}
+
+	@Test
+	void shouldLoadCoverageForEveryTileset() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Assertions.assertEquals(5, workspace.getCoverages().size());
+
+		TilesetCoverage coverage = workspace.getCoverage(getTempDir().resolve("gfx/purple_tileset"));
+		Assertions.assertNotNull(coverage);
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Assertions.assertEquals(Set.of("calico", "ar15", "cx4"),
+				coverage.getCoverageOfType(CoverageType.UNIQUE, gunsPath));
+	}
+
+	@Test
+	void shouldUpdateCoverageOnlyForChangedFiles() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Path fluffPath = getTempDir().resolve("data/json/items/fluff.json");
+		Path purpleTileset = getTempDir().resolve("gfx/purple_tileset");
+
+		TilesetCoverage before = workspace.getCoverage(purpleTileset);
+		Assertions.assertNotNull(before);
+
+		String json = "[ { \"id\": \"calico\", \"type\": \"GUN\" }, { \"id\": \"new_gun\", \"type\": \"GUN\" } ]";
+		Files.writeString(gunsPath, json, StandardCharsets.UTF_8);
+		Set<TilesetCoverage> updated = workspace.update(List.of(gunsPath));
+		Assertions.assertEquals(5, updated.size());
+
+		TilesetCoverage after = workspace.getCoverage(purpleTileset);
+		Assertions.assertNotNull(after);
+		Assertions.assertEquals(Set.of("calico", "new_gun"), after.getCoverage(gunsPath));
+		// entries for files that did not change are shared with previous coverage
+		Assertions.assertSame(before.data.get(fluffPath), after.data.get(fluffPath));
+
+		assertSameCoverage(createWorkspace(), workspace);
+	}
+
+	@Test
+	void shouldUpdateCoverageWhenFileIsRemoved() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+
+		Files.delete(gunsPath);
+		workspace.update(List.of(gunsPath));
+
+		for (TilesetCoverage coverage : workspace.getCoverages()) {
+			Assertions.assertFalse(coverage.data.containsKey(gunsPath));
+		}
+		assertSameCoverage(createWorkspace(), workspace);
+	}
+
+	@Test
+	void shouldKeepPreviousCoverageWhenFileFailsToLoad() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Path purpleTileset = getTempDir().resolve("gfx/purple_tileset");
+		TilesetCoverage before = workspace.getCoverage(purpleTileset);
+		Assertions.assertNotNull(before);
+
+		String json = Files.readString(gunsPath);
+		Files.writeString(gunsPath, "[ { \"id\": \"calico\", ", StandardCharsets.UTF_8);
+		workspace.update(List.of(gunsPath));
+
+		Assertions.assertEquals(Set.of(gunsPath), workspace.getJsonFailures().keySet());
+		TilesetCoverage after = workspace.getCoverage(purpleTileset);
+		Assertions.assertNotNull(after);
+		Assertions.assertEquals(before.getCoverage(gunsPath), after.getCoverage(gunsPath));
+
+		Files.writeString(gunsPath, json, StandardCharsets.UTF_8);
+		workspace.update(List.of(gunsPath));
+		Assertions.assertTrue(workspace.getJsonFailures().isEmpty());
+		assertSameCoverage(createWorkspace(), workspace);
+	}
+
+	@Test
+	void shouldRescanDirectoriesWhenChangesWereLost() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+		Path newPath = getTempDir().resolve("data/json/items/new_guns.json");
+
+		Files.delete(gunsPath);
+		Files.writeString(newPath, "[ { \"id\": \"new_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+		Path redTileset = getTempDir().resolve("gfx/red_tileset");
+		Files.delete(redTileset.resolve("tileset.txt"));
+
+		List<Path> roots = new ArrayList<>(workspace.getJsonDirs());
+		roots.add(workspace.getGfxDir());
+		workspace.update(roots);
+
+		Assertions.assertNull(workspace.getCoverage(redTileset));
+		for (TilesetCoverage coverage : workspace.getCoverages()) {
+			Assertions.assertFalse(coverage.data.containsKey(gunsPath));
+			Assertions.assertTrue(coverage.data.containsKey(newPath));
+		}
+		assertSameCoverage(createWorkspace(), workspace);
+	}
+
+	@Test
+	void shouldReleaseIdsOfRemovedObjectsOnReload() throws IOException {
+
+		try (AnalysisSession session = AnalysisSession.Builder.create(getTempDir()).build()) {
+			CoverageWorkspace workspace = CoverageWorkspace.Builder.create(session)
+					.withJsonTargets("items", "monsters").build();
+			workspace.load();
+			IdDictionary firstDictionary = session.getIdDictionary();
+			Assertions.assertTrue(firstDictionary.indexOf("calico") >= 0);
+
+			Path gunsPath = getTempDir().resolve("data/json/items/guns.json");
+			Files.writeString(gunsPath, "[ { \"id\": \"renamed_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+			workspace.load();
+
+			// reloaded coverage maps ids with the new dictionary of the session
+			Path purpleTileset = getTempDir().resolve("gfx/purple_tileset");
+			TilesetCoverage coverage = workspace.getCoverage(purpleTileset);
+			Assertions.assertNotNull(coverage);
+			Assertions.assertNotSame(firstDictionary, session.getIdDictionary());
+			Assertions.assertSame(session.getIdDictionary(), coverage.getIdDictionary());
+			Assertions.assertTrue(session.getIdDictionary().indexOf("calico") >= 0);
+			Assertions.assertEquals(Set.of("renamed_gun"), coverage.getCoverageOfType(CoverageType.NO_COVERAGE, gunsPath));
+		}
+	}
+
+	@Test
+	void shouldReleaseIdsOfRemovedTilesInWatchMode() throws IOException {
+
+		try (AnalysisSession session = AnalysisSession.Builder.create(getTempDir()).build()) {
+			CoverageWorkspace workspace = CoverageWorkspace.Builder.create(session)
+					.withJsonTargets("items", "monsters").build();
+			workspace.load();
+
+			// tiles are renamed over and over while the workspace is only updated
+			Path purpleTileset = getTempDir().resolve("gfx/purple_tileset");
+			Path tileConfig = purpleTileset.resolve("tile_config.json");
+			String json = Files.readString(tileConfig);
+			int maxSize = 0;
+			for (int i = 0; i < 50; i++) {
+				Files.writeString(tileConfig, json.replace("\"calico\"", "\"calico_" + i + "\""));
+				workspace.update(List.of(tileConfig));
+				maxSize = Math.max(maxSize, session.getIdDictionary().size());
+			}
+			TilesetCoverage coverage = workspace.getCoverage(purpleTileset);
+			Assertions.assertNotNull(coverage);
+			Assertions.assertSame(session.getIdDictionary(), coverage.getIdDictionary());
+			Assertions.assertTrue(maxSize < 50, "dictionary grew to " + maxSize + " ids");
+			Assertions.assertEquals(-1, session.getIdDictionary().indexOf("calico_0"));
+			Assertions.assertTrue(session.getIdDictionary().indexOf("calico_49") >= 0);
+		}
+	}
+
+	@Test
+	void shouldReloadOnlyChangedTilesets() throws IOException {
+
+		CoverageWorkspace workspace = createWorkspace();
+		Path purpleTileset = getTempDir().resolve("gfx/purple_tileset");
+		Path redTileset = getTempDir().resolve("gfx/red_tileset");
+		TilesetCoverage redBefore = workspace.getCoverage(redTileset);
+
+		Path tileConfig = purpleTileset.resolve("tile_config.json");
+		Files.writeString(tileConfig, Files.readString(tileConfig));
+		Set<TilesetCoverage> updated = workspace.update(List.of(tileConfig));
+
+		Assertions.assertEquals(1, updated.size());
+		Assertions.assertSame(redBefore, workspace.getCoverage(redTileset));
+		assertSameCoverage(createWorkspace(), workspace);
+	}
+
+	@Test
+	void shouldWriteReportsOnlyForUpdatedTilesets() throws IOException {
+
+		Path outputDir = getTempDir().resolve("reports");
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+				.withJsonTargets("items", "monsters").withOutputDir(outputDir).build();
+		workspace.load();
+
+		Path tileConfig = getTempDir().resolve("gfx/purple_tileset/tile_config.json");
+		workspace.update(List.of(tileConfig));
+
+		try (Stream<Path> stream = Files.list(outputDir)) {
+			Assertions.assertEquals(List.of(outputDir.resolve("purple_tileset.html")),
+					stream.filter(p -> p.toString().endsWith(".html")).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	void shouldIsolateBrokenTilesetsWhenLoadingInParallel() throws IOException {
+
+		Path brokenTileset = getTempDir().resolve("gfx/broken_tileset");
+		Files.createDirectories(brokenTileset);
+		Files.writeString(brokenTileset.resolve("tileset.txt"), "NAME: broken_tileset\nJSON: tile_config.json\n");
+		Files.writeString(brokenTileset.resolve("tile_config.json"), "{ \"tiles-new\": [ { \"tiles\": [ { \"id\": ");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CoverageWorkspace workspace = CoverageWorkspace.Builder.create(getTempDir())
+					.withJsonTargets("items", "monsters").withTilesetExecutor(executor).build();
+			workspace.load();
+
+			Assertions.assertEquals(Set.of(brokenTileset), workspace.getTilesetFailures().keySet());
+			Assertions.assertNull(workspace.getCoverage(brokenTileset));
+
+			// remove the broken tileset so that parallel coverage can be compared with sequential coverage
+			Files.delete(brokenTileset.resolve("tileset.txt"));
+			workspace.update(List.of(brokenTileset.resolve("tileset.txt")));
+			Assertions.assertTrue(workspace.getTilesetFailures().isEmpty());
+			assertSameCoverage(createWorkspace(), workspace);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.CataJsonDeserializer;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+import io.matshou.cata.tilecov.json.JsonObjectBuilder;
+import io.matshou.cata.tilecov.tile.CataTileset;
+
+public class MultiTilesetCoverageTest extends UnitTestResources {
+
+	private static final String[] TILESETS = {
+			"blue_tileset", "diamond_tileset", "purple_tileset", "red_tileset", "sample_tileset"
+	};
+	private static final String[] JSON_FILES = {
+			"data/json/furniture_and_terrain/furniture.json",
+			"data/json/items/fluff.json",
+			"data/json/items/guns.json",
+			"data/json/monsters/slugs.json"
+	};
+	private final Map<Path, Set<CataJsonObject>> jsonObjects = new TreeMap<>();
+	private final List<CataTileset> tilesets = new ArrayList<>();
+
+	@Override
+	protected void setupUnitTest(File tempDir) throws IOException {
+		super.setupUnitTest(tempDir);
+
+		for (String jsonFile : JSON_FILES) {
+			Path jsonPath = getTempDir().resolve(jsonFile);
+			Optional<List<CataJsonObject>> oJsonObjects = JsonObjectBuilder.<CataJsonObject>create()
+					.ofType(CataJsonObject.class)
+					.withListTypeToken(new TypeToken<>() {})
+					.withDeserializer(CataJsonDeserializer.class)
+					.buildAsList(jsonPath);
+
+			Assertions.assertTrue(oJsonObjects.isPresent());
+			jsonObjects.put(jsonPath, new HashSet<>(oJsonObjects.get()));
+		}
+		for (String tileset : TILESETS) {
+			tilesets.add(new CataTileset(getTempDir().resolve("gfx").resolve(tileset)));
+		}
+	}
+
+	@Test
+	void shouldComputeSameCoverageAsSingleTilesetCoverage() {
+
+		MultiTilesetCoverage.Builder builder = MultiTilesetCoverage.Builder.create(tilesets).excludeOverlays();
+		jsonObjects.forEach(builder::withCataJsonObjects);
+		MultiTilesetCoverage multiCoverage = builder.build();
+
+		Assertions.assertEquals(tilesets.size(), multiCoverage.getCoverages().size());
+		for (CataTileset tileset : tilesets) {
+			TilesetCoverage.Builder singleBuilder = TilesetCoverage.Builder.create(tileset).excludeOverlays();
+			jsonObjects.forEach(singleBuilder::withCataJsonObjects);
+			TilesetCoverage expected = singleBuilder.build();
+
+			TilesetCoverage actual = multiCoverage.getCoverage(tileset.getPath());
+			Assertions.assertNotNull(actual);
+			Assertions.assertSame(tileset, actual.getTileset());
+			Assertions.assertEquals(expected.data, actual.data);
+			for (Path path : jsonObjects.keySet()) {
+				TilesetCoverage.CoverageStats expectedStats = Objects.requireNonNull(expected.stats.get(path));
+				TilesetCoverage.CoverageStats actualStats = Objects.requireNonNull(actual.stats.get(path));
+				Assertions.assertEquals(expectedStats.getUniqueCoverageTotal(), actualStats.getUniqueCoverageTotal());
+				Assertions.assertEquals(expectedStats.getInheritedTotal(), actualStats.getInheritedTotal());
+			}
+		}
+	}
+
+	@Test
+	void shouldReplaceAndRemoveTilesets() throws IOException {
+
+		MultiTilesetCoverage.Builder builder = MultiTilesetCoverage.Builder.create(tilesets);
+		jsonObjects.forEach(builder::withCataJsonObjects);
+		MultiTilesetCoverage multiCoverage = builder.build();
+
+		Path purpleDir = getTempDir().resolve("gfx/purple_tileset");
+		Path redDir = getTempDir().resolve("gfx/red_tileset");
+		TilesetCoverage blue = multiCoverage.getCoverages().get(0);
+		TilesetCoverage purple = multiCoverage.getCoverage(purpleDir);
+
+		MultiTilesetCoverage updated = multiCoverage.withTilesets(List.of(new CataTileset(purpleDir)), Set.of(redDir));
+		Assertions.assertEquals(tilesets.size() - 1, updated.getCoverages().size());
+		Assertions.assertNull(updated.getCoverage(redDir));
+		Assertions.assertSame(blue, updated.getCoverage(blue.getTileset().getPath()));
+
+		TilesetCoverage newPurple = updated.getCoverage(purpleDir);
+		Assertions.assertNotNull(purple);
+		Assertions.assertNotNull(newPurple);
+		Assertions.assertNotSame(purple, newPurple);
+		Assertions.assertEquals(purple.data, newPurple.data);
+	}
+}
@@ -19,12 +19,18 @@ package io.matshou.cata.tilecov.coverage;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.MethodOrderer;
@@ -34,7 +40,6 @@ import org.junit.jupiter.api.io.TempDir;
 
 import com.google.gson.reflect.TypeToken;
 
-import io.matshou.cata.tilecov.MainTest;
 import io.matshou.cata.tilecov.UnitTestResources;
 import io.matshou.cata.tilecov.json.CataJsonDeserializer;
 import io.matshou.cata.tilecov.json.CataJsonObject;
@@ -74,14 +79,85 @@ public class TilesetCoverageReportTest extends UnitTestResources {
 	@Test
 	void shouldGenerateTilesetCoverageReportToOutputDirectory(@TempDir Path tempDir) throws IOException {
 
-		MainTest.setGameDirectory(Paths.get("."));
-		new TilesetCoverageReport(Set.of(tilesetCoverage)).writeToFile(tempDir);
+		new TilesetCoverageReport(Set.of(tilesetCoverage), Paths.get(".")).writeToFile(tempDir);
 
 		Assertions.assertTrue(tempDir.resolve("coverage.css").toFile().exists());
 		Assertions.assertTrue(tempDir.resolve("coverage.html").toFile().exists());
+	}
+
+	@Test
+	void shouldStreamCoverageReportPageForTileset(@TempDir Path tempDir) throws IOException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			TilesetCoverage otherCoverage = TilesetCoverage.Builder
+					.create(getTempDir().resolve("gfx/sample_tileset"))
+					.withCataJsonObjects(Paths.get("data/json/monsters/slugs.json"), Set.of())
+					.excludeOverlays().build();
+
+			new TilesetCoverageReport(Set.of(tilesetCoverage, otherCoverage)).writeToFile(tempDir, executor);
+		}
+		finally {
+			executor.shutdown();
+		}
+		Assertions.assertTrue(tempDir.resolve("css/main.css").toFile().exists());
+		Assertions.assertTrue(tempDir.resolve("css/table.css").toFile().exists());
+		Assertions.assertTrue(tempDir.resolve("sample_tileset.html").toFile().exists());
+
+		String html = Files.readString(tempDir.resolve("diamond_tileset.html"), Charset.defaultCharset());
+		Assertions.assertTrue(html.startsWith("<html lang=\"en\">"));
+		Assertions.assertTrue(html.endsWith("</html>"));
+		Assertions.assertTrue(html.contains("<link rel=\"stylesheet\" href=\"css/table.css\">"));
+		Assertions.assertTrue(html.contains("<div class=\"flex-table coverage wide\">"));
+
+		// one header row and one row for each file
+		int rows = html.split("<div class=\"flex-row\">", -1).length - 1;
+		Assertions.assertEquals(Integer.valueOf(tilesetCoverage.data.size() + 1), Integer.valueOf(rows));
+		Assertions.assertTrue(html.contains(">data/json/monsters/slugs.json</a>"));
+		Assertions.assertTrue(html.contains("<div class=\"coverage-bar\" color=\""));
+	}
+
+	@Test
+	void shouldRenderTemplateWithEscapedValues() throws IOException {
 
-		// clear game directory property since it is in a static declaration,
-		// and it will interfere with other tests if we don't clear it
-		MainTest.clearGameDirectory();
+		HtmlTemplate template = HtmlTemplate.compile("<a href=\"{}\">{}</a>");
+		Assertions.assertEquals(Integer.valueOf(2), Integer.valueOf(template.getPlaceholderCount()));
+
+		StringWriter writer = new StringWriter();
+		template.render(writer, "a\"b", "<x> & y");
+		Assertions.assertEquals("<a href=\"a&quot;b\">&lt;x&gt; &amp; y</a>", writer.toString());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> template.render(writer, "one"));
+	}
+
+	@Test
+	void shouldOnlyWriteReportFilesWithChangedContents(@TempDir Path tempDir) throws IOException {
+
+		TilesetCoverageReport report = new TilesetCoverageReport(Set.of(tilesetCoverage));
+		Set<Path> written = report.writeToFile(tempDir);
+
+		Path pagePath = tempDir.resolve("diamond_tileset.html");
+		Assertions.assertTrue(written.contains(pagePath));
+		Assertions.assertTrue(written.contains(tempDir.resolve("css/main.css")));
+		Assertions.assertTrue(written.contains(tempDir.resolve("assets/eye.png")));
+		Assertions.assertTrue(tempDir.resolve(ReportManifest.FILE_NAME).toFile().exists());
+
+		// nothing changed so nothing should be written
+		Assertions.assertTrue(report.writeToFile(tempDir).isEmpty());
+
+		// missing and stale files should be written again
+		Files.delete(tempDir.resolve("assets/eye.png"));
+		Files.writeString(pagePath, "stale");
+		Assertions.assertEquals(Set.of(tempDir.resolve("assets/eye.png"), pagePath), report.writeToFile(tempDir));
+		Assertions.assertTrue(Files.readString(pagePath, Charset.defaultCharset()).endsWith("</html>"));
+
+		// without manifest every file should be written
+		Files.writeString(tempDir.resolve(ReportManifest.FILE_NAME), "{ corrupted");
+		Assertions.assertEquals(written, report.writeToFile(tempDir));
+
+		// no temporary files should be left in output directory
+		try (Stream<Path> files = Files.walk(tempDir)) {
+			Assertions.assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+		}
 	}
 }
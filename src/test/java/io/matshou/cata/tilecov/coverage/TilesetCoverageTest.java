@@ -19,6 +19,7 @@ package io.matshou.cata.tilecov.coverage;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -27,10 +28,12 @@ import org.junit.jupiter.api.Test;
 
 import com.google.gson.reflect.TypeToken;
 
+import io.matshou.cata.tilecov.AnalysisSession;
 import io.matshou.cata.tilecov.UnitTestResources;
 import io.matshou.cata.tilecov.json.CataJsonDeserializer;
 import io.matshou.cata.tilecov.json.CataJsonObject;
 import io.matshou.cata.tilecov.json.JsonObjectBuilder;
+import io.matshou.cata.tilecov.json.LooksLikeGraph;
 import io.matshou.cata.tilecov.tile.CataTileset;
 
 import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
@@ -113,4 +116,42 @@ public class TilesetCoverageTest extends UnitTestResources {
 		Assertions.assertEquals(2, coverageStats.getInheritedTotal());
 		Assertions.assertEquals(1, coverageStats.getNoCoverageTotal());
 	}
+
+	@Test
+	void shouldInheritCoverageFromObjectsInOtherFiles() throws IOException {
+
+		Path otherPath = getTempDir().resolve("data/json/items/other_guns.json");
+		String json = "[ { \"id\": \"m4\", \"looks_like\": \"ar15\" }, { \"id\": \"m9\", \"looks_like\": \"m8\" } ]";
+		Files.writeString(otherPath, json);
+		Optional<List<CataJsonObject>> oJsonObjects = JsonObjectBuilder.<CataJsonObject>create()
+				.ofType(CataJsonObject.class)
+				.withListTypeToken(new TypeToken<>() {})
+				.withDeserializer(CataJsonDeserializer.class)
+				.buildAsList(otherPath);
+
+		Assertions.assertTrue(oJsonObjects.isPresent());
+		TilesetCoverage coverage = TilesetCoverage.Builder.create(tilesetPath)
+				.withCataJsonObjects(jsonPath, jsonItemObjects)
+				.withCataJsonObjects(otherPath, new HashSet<>(oJsonObjects.get())).build();
+
+		Assertions.assertEquals(Set.of("m4"), coverage.getCoverageOfType(CoverageType.INHERITED, otherPath));
+		Assertions.assertEquals(Set.of("m9"), coverage.getCoverageOfType(CoverageType.NO_COVERAGE, otherPath));
+	}
+
+	@Test
+	void shouldReuseIdDictionaryWhenUpdated() throws IOException {
+
+		try (AnalysisSession session = AnalysisSession.Builder.create(getTempDir()).build()) {
+			TilesetCoverage coverage = TilesetCoverage.Builder.create(tilesetPath, session)
+					.withCataJsonObjects(jsonPath, jsonItemObjects).build();
+			Assertions.assertSame(session.getIdDictionary(), coverage.getIdDictionary());
+
+			int size = session.getIdDictionary().size();
+			TilesetCoverage updated = coverage.update(LooksLikeGraph.of(List.of(jsonItemObjects)),
+					Map.of(jsonPath, jsonItemObjects), Set.of());
+			Assertions.assertSame(session.getIdDictionary(), updated.getIdDictionary());
+			Assertions.assertEquals(size, session.getIdDictionary().size());
+			Assertions.assertEquals(coverage.getCoverage(jsonPath), updated.getCoverage(jsonPath));
+		}
+	}
 }
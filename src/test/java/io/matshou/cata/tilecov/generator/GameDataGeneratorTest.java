@@ -0,0 +1,164 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.generator;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.coverage.TilesetCoverage;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+
+import static io.matshou.cata.tilecov.coverage.TilesetCoverage.CoverageType;
+
+public class GameDataGeneratorTest {
+
+	private static List<CataJsonObject> loadObjects(GeneratedGameData data) throws IOException {
+
+		List<CataJsonObject> result = new ArrayList<>();
+		for (Path jsonFile : data.getJsonFiles()) {
+			result.addAll(CataJsonLoader.STREAMING.load(jsonFile).orElseThrow());
+		}
+		return result;
+	}
+
+	@Test
+	void shouldGenerateSameFilesForSameSeed(@TempDir Path tempDir) throws IOException {
+
+		GameDataGenerator generator = GameDataGenerator.Builder.parse("objects:2000,seed:42").build();
+		GeneratedGameData first = generator.generate(tempDir.resolve("first"));
+		GeneratedGameData second = generator.generate(tempDir.resolve("second"));
+
+		Assertions.assertEquals(first.getJsonFiles().size(), second.getJsonFiles().size());
+		for (int i = 0; i < first.getJsonFiles().size(); i++) {
+			Assertions.assertArrayEquals(Files.readAllBytes(first.getJsonFiles().get(i)),
+					Files.readAllBytes(second.getJsonFiles().get(i)));
+		}
+		Path tileConfig = Path.of("synthetic_tileset/tile_config.json");
+		Assertions.assertArrayEquals(Files.readAllBytes(first.getGameDir().resolve("gfx").resolve(tileConfig)),
+				Files.readAllBytes(second.getGameDir().resolve("gfx").resolve(tileConfig)));
+
+		GeneratedGameData other = GameDataGenerator.Builder.parse("objects:2000,seed:43").build()
+				.generate(tempDir.resolve("other"));
+		Assertions.assertNotEquals(Files.readString(first.getJsonFiles().get(0)),
+				Files.readString(other.getJsonFiles().get(0)));
+	}
+
+	@Test
+	void shouldSplitObjectsIntoFiles(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.create()
+				.withObjectCount(1000).withObjectsPerFile(300).build().generate(tempDir.resolve("count"));
+
+		Assertions.assertEquals(4, data.getJsonFiles().size());
+		Assertions.assertEquals(1000, loadObjects(data).size());
+		// files are spread over json directories in turn
+		Assertions.assertEquals(data.getJsonDir().resolve("items"), data.getJsonFiles().get(0).getParent());
+		Assertions.assertEquals(data.getJsonDir().resolve("monsters"), data.getJsonFiles().get(1).getParent());
+
+		data = GameDataGenerator.Builder.create().withObjectCount(1000)
+				.withMaxFileSize(64 * 1024).build().generate(tempDir.resolve("size"));
+		Assertions.assertTrue(data.getJsonFiles().size() > 2);
+		for (Path jsonFile : data.getJsonFiles()) {
+			Assertions.assertTrue(Files.size(jsonFile) < 65 * 1024);
+		}
+		Assertions.assertEquals(1000, loadObjects(data).size());
+	}
+
+	@Test
+	void shouldLimitReferenceChainDepth(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.create().withObjectCount(5000)
+				.withLooksLike(0.8, 2).withCopyFrom(0.5, 1).build().generate(tempDir);
+
+		Map<String, CataJsonObject> objects = new HashMap<>();
+		int looksLikeCount = 0, copyFromCount = 0, abstractCount = 0;
+		for (CataJsonObject object : loadObjects(data)) {
+			String key = !object.getAbstractId().isEmpty() ? object.getAbstractId() : object.getIds().get(0);
+			Assertions.assertNull(objects.put(key, object));
+			looksLikeCount += object.getLooksLike().isEmpty() ? 0 : 1;
+			copyFromCount += object.copyFromWhat().isEmpty() ? 0 : 1;
+			abstractCount += object.getAbstractId().isEmpty() ? 0 : 1;
+		}
+		Assertions.assertTrue(looksLikeCount > 0 && copyFromCount > 0 && abstractCount > 0);
+		for (CataJsonObject object : objects.values()) {
+			int depth = 0;
+			for (CataJsonObject next = object; !next.getLooksLike().isEmpty(); depth++) {
+				next = Objects.requireNonNull(objects.get(next.getLooksLike()));
+			}
+			Assertions.assertTrue(depth <= 2);
+			depth = 0;
+			for (CataJsonObject next = object; !next.copyFromWhat().isEmpty(); depth++) {
+				next = Objects.requireNonNull(objects.get(next.copyFromWhat()));
+			}
+			Assertions.assertTrue(depth <= 1);
+		}
+	}
+
+	@Test
+	void shouldGenerateTilesetsWithConfiguredCoverage(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.parse("objects:4000,overlays:0.1,coverage:0.2/0.9")
+				.build().generate(tempDir);
+		Assertions.assertEquals(2, data.getTilesetDirs().size());
+
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(tempDir)
+				.withJsonTargets("items", "monsters").excludeOverlays().build();
+		workspace.load();
+		Assertions.assertTrue(workspace.getTilesetFailures().isEmpty());
+
+		for (Path tilesetDir : data.getTilesetDirs()) {
+			TilesetCoverage coverage = workspace.getCoverage(tilesetDir);
+			Assertions.assertNotNull(coverage);
+			int total = 0, unique = 0;
+			for (Path jsonFile : data.getJsonFiles()) {
+				total += coverage.getCoverage(jsonFile).size();
+				unique += coverage.getCoverageOfType(CoverageType.UNIQUE, jsonFile).size();
+			}
+			Assertions.assertEquals(data.getObjectsTotal(), total);
+			Assertions.assertEquals(data.getUniqueCoverageTotal(coverage.getTileset().getName()), unique);
+		}
+		int lowCoverage = data.getUniqueCoverageTotal("synthetic_tileset_0");
+		int highCoverage = data.getUniqueCoverageTotal("synthetic_tileset_1");
+		Assertions.assertTrue(lowCoverage < data.getObjectsTotal() * 0.3);
+		Assertions.assertTrue(highCoverage > data.getObjectsTotal() * 0.8);
+	}
+
+	@Test
+	void shouldRejectIllegalConfiguration(@TempDir Path tempDir) throws IOException {
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> GameDataGenerator.Builder.parse("objects"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> GameDataGenerator.Builder.parse("depth:1"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> GameDataGenerator.Builder.parse("seed:x"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> GameDataGenerator.Builder.parse("coverage:2"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> GameDataGenerator.Builder.parse("perFile:0"));
+
+		GameDataGenerator generator = GameDataGenerator.Builder.parse("objects:10").build();
+		generator.generate(tempDir);
+		// generated files are never mixed with existing game data
+		Assertions.assertThrows(FileAlreadyExistsException.class, () -> generator.generate(tempDir));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.Files;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+
+public class CataJsonLoaderTest extends UnitTestResources {
+
+	private static final String[] JSON_FILES_PATHS = {
+			"data/json/furniture_and_terrain/furniture.json",
+			"data/json/items/fluff.json",
+			"data/json/items/guns.json",
+			"data/json/monsters/slugs.json",
+			"data/json/vehicles/vehicles.json"
+	};
+
+	@Test
+	void shouldLoadSameObjectsAsGsonLoader() throws IOException {
+
+		for (String filePath : JSON_FILES_PATHS) {
+			Path jsonPath = getTempDir().resolve(filePath);
+
+			Optional<List<CataJsonObject>> oExpected = CataJsonLoader.GSON.load(jsonPath);
+			Optional<List<CataJsonObject>> oActual = CataJsonLoader.STREAMING.load(jsonPath);
+			Assertions.assertTrue(oExpected.isPresent());
+			Assertions.assertTrue(oActual.isPresent());
+
+			List<CataJsonObject> expected = oExpected.get();
+			List<CataJsonObject> actual = oActual.get();
+			Assertions.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); ++i) {
+				Assertions.assertEquals(expected.get(i).toString(), actual.get(i).toString());
+			}
+		}
+	}
+
+	@Test
+	void shouldSkipPropertiesNotDeclaredByObject() throws IOException {
+
+		Path jsonPath = getTempDir().resolve("skip.json");
+		Files.asCharSink(jsonPath.toFile(), Charset.defaultCharset()).write(String.join("\n",
+				"[",
+				"  {",
+				"    \"id\": [ \"one\", \"two\" ],",
+				"    \"melee_damage\": { \"bash\": 4, \"cut\": [ 1, 2 ] },",
+				"    \"flags\": [ \"TRANSPARENT\", { \"nested\": [ [ ], { } ] } ],",
+				"    \"name\": { \"str\": \"thing\", \"str_pl\": \"things\" },",
+				"    \"looks_like\": \"three\"",
+				"  }",
+				"]"
+		));
+		Optional<List<CataJsonObject>> oJsonObjects = CataJsonLoader.STREAMING.load(jsonPath);
+		Assertions.assertTrue(oJsonObjects.isPresent());
+		Assertions.assertEquals(1, oJsonObjects.get().size());
+
+		CataJsonObject jsonObject = oJsonObjects.get().get(0);
+		Assertions.assertEquals(List.of("one", "two"), jsonObject.getIds());
+		Assertions.assertEquals("thing", jsonObject.getName());
+		Assertions.assertEquals("three", jsonObject.looksLike);
+	}
+
+	@Test
+	void shouldReturnEmptyOptionalForEmptyFile() throws IOException {
+
+		Path jsonPath = getTempDir().resolve("empty.json");
+		Assertions.assertTrue(jsonPath.toFile().createNewFile());
+		Assertions.assertTrue(CataJsonLoader.STREAMING.load(jsonPath).isEmpty());
+	}
+}
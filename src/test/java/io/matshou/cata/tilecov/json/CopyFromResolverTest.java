@@ -0,0 +1,170 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CopyFromResolverTest {
+
+	private static CataJsonObject createObject(@Nullable String id, @Nullable String copyFrom) {
+
+		CataJsonObject object = new CataJsonObject();
+		object.objectIds = id != null ? List.of(id) : null;
+		object.copyFrom = copyFrom;
+		return object;
+	}
+
+	private static CataJsonObject createAbstract(String abstractId, @Nullable String copyFrom) {
+
+		CataJsonObject object = createObject(null, copyFrom);
+		object.abstractId = abstractId;
+		return object;
+	}
+
+	@Test
+	void shouldInheritPropertiesThroughAbstractParents() {
+
+		CataJsonObject pistolBase = createAbstract("pistol_base", null);
+		pistolBase.type = "GUN";
+		pistolBase.looksLike = "glock_19";
+		pistolBase.fgColor = List.of("dark_gray");
+
+		CataJsonObject heavyPistol = createAbstract("heavy_pistol", "pistol_base");
+		heavyPistol.fgColor = List.of("light_gray");
+
+		CataJsonObject deagle = createObject("deagle", "heavy_pistol");
+		CataJsonObject glock = createObject("glock_19", null);
+
+		// child objects are declared in other files before their parents
+		CopyFromResolver resolver = CopyFromResolver.of(List.of(Set.of(deagle), Set.of(heavyPistol, pistolBase, glock)));
+		CataJsonObject effective = resolver.getEffective(deagle);
+
+		Assertions.assertNotSame(deagle, effective);
+		Assertions.assertEquals(List.of("deagle"), effective.getIds());
+		Assertions.assertEquals("", effective.getAbstractId());
+		Assertions.assertEquals("GUN", effective.getType());
+		Assertions.assertEquals("glock_19", effective.getLooksLike());
+		Assertions.assertEquals(List.of("light_gray"), effective.getForegroundColor());
+		Assertions.assertEquals("heavy_pistol", effective.copyFromWhat());
+
+		Assertions.assertSame(glock, resolver.getEffective(glock));
+		Assertions.assertTrue(resolver.getDanglingReferences().isEmpty());
+		Assertions.assertTrue(resolver.getCycles().isEmpty());
+	}
+
+	@Test
+	void shouldLookLikeParentWhenLooksLikeIsNotDefined() {
+
+		CataJsonObject parent = createObject("m1911", null);
+		CataJsonObject child = createObject("m1911a1", "m1911");
+		CopyFromResolver resolver = CopyFromResolver.of(List.of(Set.of(parent, child)));
+
+		Assertions.assertEquals("m1911", resolver.getEffective(child).getLooksLike());
+		Assertions.assertSame(parent, LooksLikeGraph.of(List.of(Set.of(parent, child)), resolver).resolve(child));
+	}
+
+	@Test
+	void shouldResolveInParallelConsistently() {
+
+		List<CataJsonObject> objects = new ArrayList<>();
+		CataJsonObject root = createAbstract("root", null);
+		root.type = "ITEM";
+		objects.add(root);
+		for (int i = 0; i < 1000; i++) {
+			CataJsonObject tree = createObject("tree_" + i, i % 2 == 0 ? "root" : null);
+			objects.add(tree);
+			// deep chain for each tree
+			String parent = "tree_" + i;
+			for (int j = 0; j < 20; j++) {
+				String id = "tree_" + i + '_' + j;
+				objects.add(createObject(id, parent));
+				parent = id;
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			CopyFromResolver resolver = CopyFromResolver.of(List.of(objects), pool);
+			for (CataJsonObject object : objects) {
+				if (object == root) {
+					continue;
+				}
+				String id = object.getIds().get(0);
+				String expectedType = Integer.parseInt(id.split("_")[1]) % 2 == 0 ? "ITEM" : "";
+				Assertions.assertEquals(expectedType, resolver.getEffective(object).getType(), id);
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void shouldReportDanglingReferencesAndCycles() {
+
+		CataJsonObject orphan = createObject("orphan", "missing");
+		CataJsonObject first = createObject("first", "second");
+		CataJsonObject second = createObject("second", "first");
+		CataJsonObject descendant = createObject("descendant", "second");
+
+		CopyFromResolver resolver = CopyFromResolver.of(List.of(List.of(orphan, first, second, descendant)));
+
+		Assertions.assertEquals(Map.of("orphan", "missing"), resolver.getDanglingReferences());
+		Assertions.assertEquals(1, resolver.getCycles().size());
+		Assertions.assertSame(orphan, resolver.getEffective(orphan));
+		// every object is resolved even when it is part of a cycle
+		Assertions.assertEquals("second", resolver.getEffective(descendant).copyFromWhat());
+	}
+
+	@Test
+	void shouldResolveDescendantsOfCycleFromCycle() {
+
+		CataJsonObject first = createObject("first", "second");
+		first.looksLike = "chair";
+		CataJsonObject second = createObject("second", "first");
+		CataJsonObject descendant = createObject("descendant", "first");
+
+		// descendant is the first object that is not reached from any root
+		CopyFromResolver resolver = CopyFromResolver.of(List.of(List.of(descendant, first, second)));
+
+		Assertions.assertEquals(Set.of("first"), resolver.getCycles());
+		Assertions.assertSame(first, resolver.getEffective(first));
+		Assertions.assertEquals("chair", resolver.getEffective(second).getLooksLike());
+		Assertions.assertEquals("chair", resolver.getEffective(descendant).getLooksLike());
+	}
+
+	@Test
+	void shouldWriteAndReadAbstractId() throws IOException {
+
+		CataJsonObject object = createAbstract("pistol_base", "gun_base");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		object.writeTo(new DataOutputStream(bytes));
+
+		CataJsonObject read = CataJsonObject.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		Assertions.assertEquals("pistol_base", read.getAbstractId());
+		Assertions.assertEquals("gun_base", read.copyFromWhat());
+	}
+}
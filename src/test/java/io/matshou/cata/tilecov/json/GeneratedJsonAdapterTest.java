@@ -0,0 +1,205 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+
+public class GeneratedJsonAdapterTest {
+
+	@Test
+	void shouldGenerateAdaptersForAnnotatedClasses() {
+
+		List<Class<?>> types = List.of(
+				CataJsonObject.class, TilesJsonObject.class, TileAtlasJsonObject.class,
+				TileConfigJsonObject.class, TileInfoJsonObject.class, JsonObjectProperty.class
+		);
+		for (Class<?> type : types) {
+			Assertions.assertNotNull(GeneratedJsonAdapters.forType(type), type.getSimpleName());
+		}
+		Assertions.assertNull(GeneratedJsonAdapters.forType(String.class));
+	}
+
+	@Test
+	void shouldReadStringOrArrayAndStringOrObjectProperties() throws IOException {
+
+		TypeAdapter<CataJsonObject> adapter = CataJsonObjectJsonAdapter.INSTANCE;
+		String json = "{ \"type\": \"GENERIC\", \"id\": \"test_object\", \"name\": \"test\", " +
+				"\"description\": { \"str\": \"test description\", \"ctxt\": \"test\" }, " +
+				"\"color\": [ \"red\", \"green\" ], \"weight\": [ 1, { \"a\": [] } ] }";
+
+		CataJsonObject object = adapter.fromJson(json);
+		Assertions.assertEquals("GENERIC", object.getType());
+		Assertions.assertEquals(List.of("test_object"), object.getIds());
+		Assertions.assertEquals("test", object.getName());
+		Assertions.assertEquals("test description", object.getDescription());
+		Assertions.assertEquals(List.of("red", "green"), object.getForegroundColor());
+		Assertions.assertTrue(object.getBackgroundColor().isEmpty());
+	}
+
+	@Test
+	void shouldReadNestedObjectsAndSkipWeightedSprites() throws IOException {
+
+		String json = "{ \"tile_info\": [ { \"width\": 16, \"height\": \"24\", \"iso\": true } ], " +
+				"\"tiles-new\": { \"file\": \"tiles.png\", \"sprite_width\": 8, " +
+				"\"tiles\": [ { \"id\": [ \"a\", \"b\" ], \"fg\": [ { \"weight\": 1, \"sprite\": 2 }, 3 ] }, " +
+				"{ \"id\": \"c\", \"fg\": 4 } ] } }";
+
+		TileConfigJsonObject tileConfig = TileConfigJsonObjectJsonAdapter.INSTANCE.fromJson(json);
+		TileInfoJsonObject tileInfo = tileConfig.getTileInfo().orElseThrow();
+		Assertions.assertEquals(16, tileInfo.getWidth());
+		Assertions.assertEquals(24, tileInfo.getHeight());
+		Assertions.assertEquals(1, tileInfo.getPixelScale());
+		Assertions.assertTrue(tileInfo.isIsometric());
+
+		List<TileAtlasJsonObject> tileAtlases = tileConfig.getTileAtlases();
+		Assertions.assertEquals(1, tileAtlases.size());
+		TileAtlasJsonObject tileAtlas = tileAtlases.get(0);
+		Assertions.assertEquals("tiles.png", tileAtlas.getFilename());
+		Assertions.assertEquals(8, tileAtlas.getSpriteWidth());
+
+		List<TilesJsonObject> tiles = tileAtlas.getTiles();
+		Assertions.assertEquals(2, tiles.size());
+		Assertions.assertEquals(List.of("a", "b"), tiles.get(0).getIds());
+		Assertions.assertEquals(List.of("3"), tiles.get(0).getForegroundIndex());
+		Assertions.assertEquals(List.of("c"), tiles.get(1).getIds());
+		Assertions.assertEquals(List.of("4"), tiles.get(1).getForegroundIndex());
+	}
+
+	@Test
+	void shouldDeserializeSameObjectsAsGeneratedAdapterInSinglePass() throws IOException {
+
+		String json = "{ \"type\": \"GENERIC\", \"id\": [ \"test_object\" ], \"name\": { \"str\": \"test\" }, " +
+				"\"description\": \"test description\", \"color\": \"red\", \"looks_like\": \"chair\", " +
+				"\"copy-from\": \"parent\", \"weight\": [ 1, { \"a\": [] } ] }";
+
+		CataJsonObject expected = CataJsonObjectJsonAdapter.INSTANCE.fromJson(json);
+		CataJsonObject object = new CataJsonDeserializer().deserialize(
+				JsonParser.parseString(json), CataJsonObject.class, null);
+		Assertions.assertEquals(expected.toString(), object.toString());
+		Assertions.assertEquals(expected.getAbstractId(), object.getAbstractId());
+
+		String tileConfigJson = "{ \"tile_info\": [ { \"width\": 16, \"height\": 24, \"iso\": true } ], " +
+				"\"tiles-new\": [ { \"file\": \"tiles.png\", \"sprite_width\": 8, " +
+				"\"tiles\": [ { \"id\": [ \"a\", \"b\" ], \"fg\": 3 }, { \"id\": \"c\", \"bg\": [ 4 ] } ] } ] }";
+
+		TileConfigJsonObject expectedConfig = TileConfigJsonObjectJsonAdapter.INSTANCE.fromJson(tileConfigJson);
+		TileConfigJsonObject tileConfig = new TileConfigJsonDeserializer().deserialize(
+				JsonParser.parseString(tileConfigJson), TileConfigJsonObject.class, null);
+		Assertions.assertEquals(TileConfigJsonObjectJsonAdapter.INSTANCE.toJson(expectedConfig),
+				TileConfigJsonObjectJsonAdapter.INSTANCE.toJson(tileConfig));
+	}
+
+	@Test
+	void shouldWriteObjectsInFormTheyAreReadIn() throws IOException {
+
+		String json = "{ \"type\": \"GENERIC\", \"id\": \"test_object\", \"name\": \"test\", " +
+				"\"color\": [ \"red\", \"green\" ], \"looks_like\": \"chair\" }";
+
+		CataJsonObject object = CataJsonObjectJsonAdapter.INSTANCE.fromJson(json);
+		String written = CataJsonObjectJsonAdapter.INSTANCE.toJson(object);
+		Assertions.assertEquals("{\"type\":\"GENERIC\",\"id\":[\"test_object\"],\"name\":{\"str\":\"test\"}," +
+				"\"color\":[\"red\",\"green\"],\"looks_like\":\"chair\"}", written);
+
+		CataJsonObject copy = CataJsonObjectJsonAdapter.INSTANCE.fromJson(written);
+		Assertions.assertEquals(object.toString(), copy.toString());
+
+		String tileConfigJson = "{\"tile_info\":{\"height\":24,\"width\":16,\"pixelscale\":0,\"iso\":true}," +
+				"\"tiles-new\":[{\"file\":\"tiles.png\",\"tiles\":[{\"id\":[\"a\",\"b\"],\"fg\":[\"3\"]}]," +
+				"\"sprite_width\":8,\"sprite_height\":0,\"sprite_offset_x\":0,\"sprite_offset_y\":0}]}";
+		TileConfigJsonObject tileConfig = TileConfigJsonObjectJsonAdapter.INSTANCE.fromJson(tileConfigJson);
+		Assertions.assertEquals(tileConfigJson, TileConfigJsonObjectJsonAdapter.INSTANCE.toJson(tileConfig));
+	}
+
+	@Test
+	void shouldRegisterGeneratedAdaptersInsteadOfDeserializers() {
+
+		JsonCodecRegistry.Codec<CataJsonObject> codec = JsonCodecRegistry.getDefault().getCodec(
+				CataJsonObject.class, CataJsonDeserializer.class, TypeToken.get(CataJsonObject.class));
+		Assertions.assertSame(CataJsonObjectJsonAdapter.INSTANCE, codec.getAdapter());
+
+		JsonCodecRegistry.Codec<TilesJsonObject> tilesCodec = JsonCodecRegistry.getDefault().getCodec(
+				TilesJsonObject.class, TilesJsonDeserializer.class, TypeToken.get(TilesJsonObject.class));
+		Assertions.assertSame(TilesJsonObjectJsonAdapter.INSTANCE, tilesCodec.getAdapter());
+
+		String json = "[ { \"type\": \"GENERIC\", \"id\": \"test_object\", \"name\": { \"str\": \"test\" } } ]";
+		List<CataJsonObject> objects = JsonCodecRegistry.getDefault().<CataJsonObject, List<CataJsonObject>>getCodec(
+				CataJsonObject.class, CataJsonDeserializer.class, new TypeToken<List<CataJsonObject>>() {})
+				.fromJson(new StringReader(json));
+		Assertions.assertNotNull(objects);
+		Assertions.assertEquals(1, objects.size());
+		Assertions.assertEquals(List.of("test_object"), objects.get(0).getIds());
+		Assertions.assertEquals("test", objects.get(0).getName());
+	}
+
+	private static <T> void assertSameRejection(Class<? extends RuntimeException> expected,
+			TypeAdapter<T> adapter, JsonArrayDeserializer<T> deserializer, String json) {
+
+		Assertions.assertThrows(expected, () -> adapter.fromJson(json), json);
+		Assertions.assertThrows(expected, () -> deserializer.deserialize(
+				JsonParser.parseString(json), deserializer.jsonObjectClass, null), json);
+	}
+
+	@Test
+	void shouldRejectSameMalformedPropertiesAsDeserializers() throws IOException {
+
+		// weighted sprite entries are skipped by both
+		String weightedJson = "{ \"id\": \"a\", \"fg\": [ { \"weight\": 1, \"sprite\": 2 }, 3 ] }";
+		TilesJsonObject tiles = new TilesJsonDeserializer().deserialize(
+				JsonParser.parseString(weightedJson), TilesJsonObject.class, null);
+		Assertions.assertEquals(TilesJsonObjectJsonAdapter.INSTANCE.toJson(
+				TilesJsonObjectJsonAdapter.INSTANCE.fromJson(weightedJson)),
+				TilesJsonObjectJsonAdapter.INSTANCE.toJson(tiles));
+		Assertions.assertEquals(List.of("3"), tiles.getForegroundIndex());
+
+		for (String json : List.of("{ \"id\": { \"a\": 1 } }", "{ \"id\": [ \"a\", [ \"b\" ] ] }",
+				"{ \"fg\": [ [ \"a\" ] ] }", "{ \"fg\": { \"weight\": 1, \"sprite\": 2 } }")) {
+			assertSameRejection(JsonSyntaxException.class,
+					TilesJsonObjectJsonAdapter.INSTANCE, new TilesJsonDeserializer(), json);
+		}
+		for (String json : List.of("{ \"id\": {} }", "{ \"color\": [ \"red\", [] ] }")) {
+			assertSameRejection(JsonSyntaxException.class,
+					CataJsonObjectJsonAdapter.INSTANCE, new CataJsonDeserializer(), json);
+		}
+		for (String json : List.of("{ \"name\": null }", "{ \"description\": null }")) {
+			assertSameRejection(NullJsonObjectException.class,
+					CataJsonObjectJsonAdapter.INSTANCE, new CataJsonDeserializer(), json);
+		}
+		for (String json : List.of("{ \"tile_info\": null }", "{ \"tile_info\": [] }", "{ \"tiles-new\": null }")) {
+			assertSameRejection(NullJsonObjectException.class,
+					TileConfigJsonObjectJsonAdapter.INSTANCE, new TileConfigJsonDeserializer(), json);
+		}
+		assertSameRejection(NullJsonObjectException.class,
+				TileAtlasJsonObjectJsonAdapter.INSTANCE, new TileAtlasJsonDeserializer(), "{ \"tiles\": null }");
+	}
+
+	@Test
+	void shouldThrowExceptionWhenReadingMalformedProperty() {
+		Assertions.assertThrows(JsonSyntaxException.class, () ->
+				TileInfoJsonObjectJsonAdapter.INSTANCE.fromJson("{ \"width\": [ 1 ] }"));
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public class JsonCodecRegistryTest {
+
+	@Test
+	void shouldReuseCodecForSameCombination() {
+
+		JsonCodecRegistry registry = JsonCodecRegistry.getDefault();
+		JsonCodecRegistry.Codec<List<TilesJsonObject>> codec = registry.getCodec(TilesJsonObject.class,
+				TilesJsonDeserializer.class, new TypeToken<List<TilesJsonObject>>() {});
+
+		long hits = registry.getHitCount();
+		long misses = registry.getMissCount();
+		JsonCodecRegistry.Codec<List<TilesJsonObject>> other = registry.getCodec(TilesJsonObject.class,
+				TilesJsonDeserializer.class, new TypeToken<List<TilesJsonObject>>() {});
+
+		Assertions.assertSame(codec, other);
+		Assertions.assertTrue(registry.getHitCount() > hits);
+		Assertions.assertEquals(misses, registry.getMissCount());
+	}
+
+	@Test
+	void shouldShareGsonBetweenTypeTokens() {
+
+		JsonCodecRegistry registry = JsonCodecRegistry.getDefault();
+		JsonCodecRegistry.Codec<List<TilesJsonObject>> listCodec = registry.getCodec(TilesJsonObject.class,
+				TilesJsonDeserializer.class, new TypeToken<List<TilesJsonObject>>() {});
+		JsonCodecRegistry.Codec<TilesJsonObject> objectCodec = registry.getCodec(TilesJsonObject.class,
+				TilesJsonDeserializer.class, new TypeToken<TilesJsonObject>() {});
+
+		Assertions.assertNotSame(listCodec, objectCodec);
+		Assertions.assertSame(listCodec.getGson(), objectCodec.getGson());
+
+		// plain Gson instances are shared between types
+		Gson plainGson = registry.getGson(TilesJsonObject.class, null);
+		Assertions.assertSame(plainGson, registry.getGson(CataJsonObject.class, null));
+		Assertions.assertNotSame(plainGson, listCodec.getGson());
+	}
+
+	@Test
+	void shouldReturnSameCodecFromConcurrentThreads() throws Exception {
+
+		JsonCodecRegistry registry = JsonCodecRegistry.getDefault();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		long requests = registry.getHitCount() + registry.getMissCount();
+		try {
+			List<Future<JsonCodecRegistry.Codec<List<CataJsonObject>>>> futures = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(() -> registry.getCodec(CataJsonObject.class,
+						CataJsonDeserializer.class, new TypeToken<List<CataJsonObject>>() {})));
+			}
+			Set<JsonCodecRegistry.Codec<?>> codecs = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (Future<JsonCodecRegistry.Codec<List<CataJsonObject>>> future : futures) {
+				codecs.add(future.get());
+			}
+			Assertions.assertEquals(1, codecs.size());
+			// every request is counted either as a hit or as a miss
+			Assertions.assertEquals(requests + 16, registry.getHitCount() + registry.getMissCount());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+
+public class JsonObjectDeserializerTest {
+
+	@SuppressWarnings("unused")
+	private static class TestJsonObject {
+
+		private @Nullable String type;
+
+		@SerializedArrayName("id")
+		private @Nullable List<String> ids;
+
+		@SerializedObjectName("name")
+		private @Nullable JsonObjectProperty name;
+
+		@SerializedObjectName("description")
+		private @Nullable JsonObjectProperty description;
+	}
+
+	public static class TestJsonDeserializer extends JsonObjectDeserializer<TestJsonObject> {
+
+		TestJsonDeserializer() {
+			super(TestJsonObject.class);
+		}
+
+		@Override
+		void deserializeObjectMembers(Gson gson, String entry, JsonElement element, TestJsonObject target) {
+			deserializeObjectProperty(gson, element, target, entry);
+		}
+	}
+
+	@Test
+	void shouldDeserializeAllMembersReflectively() {
+
+		String jsonString = "[ { \"type\": \"test\", \"id\": [ \"id1\", \"id2\" ], \"name\": \"test name\", " +
+				"\"description\": { \"str\": \"test description\" }, \"unknown\": { \"str\": [ 1, 2 ] } } ]";
+
+		Optional<List<TestJsonObject>> oJsonObjects = JsonObjectBuilder.<TestJsonObject>create()
+				.ofType(TestJsonObject.class)
+				.withDeserializer(TestJsonDeserializer.class)
+				.withListTypeToken(new TypeToken<>() {})
+				.buildAsList(jsonString);
+
+		Assertions.assertTrue(oJsonObjects.isPresent());
+		List<TestJsonObject> jsonObjects = oJsonObjects.get();
+		Assertions.assertEquals(1, jsonObjects.size());
+		TestJsonObject jsonObject = jsonObjects.get(0);
+
+		Assertions.assertEquals("test", jsonObject.type);
+		Assertions.assertEquals(List.of("id1", "id2"), jsonObject.ids);
+		Assertions.assertNotNull(jsonObject.name);
+		Assertions.assertEquals("test name", jsonObject.name.get());
+		Assertions.assertNotNull(jsonObject.description);
+		Assertions.assertEquals("test description", jsonObject.description.get());
+	}
+
+	@Test
+	void shouldThrowExceptionWhenObjectPropertyIsNull() {
+
+		String jsonString = "[ { \"name\": null } ]";
+		Assertions.assertThrows(NullJsonObjectException.class, () ->
+				JsonObjectBuilder.<TestJsonObject>create()
+						.ofType(TestJsonObject.class)
+						.withDeserializer(TestJsonDeserializer.class)
+						.withListTypeToken(new TypeToken<>() {})
+						.buildAsList(jsonString));
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.json;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LooksLikeGraphTest {
+
+	private static CataJsonObject createObject(String id, @Nullable String looksLike) {
+
+		CataJsonObject object = new CataJsonObject();
+		object.objectIds = List.of(id);
+		object.looksLike = looksLike;
+		return object;
+	}
+
+	@Test
+	void shouldResolveReferencesAcrossObjectSets() {
+
+		CataJsonObject chair = createObject("chair", null);
+		CataJsonObject bigChair = createObject("big_chair", "chair");
+		CataJsonObject throne = createObject("throne", "big_chair");
+
+		// objects are spread across sets as if they were parsed from different files
+		LooksLikeGraph graph = LooksLikeGraph.of(List.of(Set.of(throne), Set.of(bigChair), Set.of(chair)));
+
+		Assertions.assertEquals(3, graph.size());
+		Assertions.assertSame(bigChair, graph.get("big_chair"));
+		Assertions.assertNull(graph.get("stool"));
+
+		Assertions.assertSame(chair, graph.resolve(throne));
+		Assertions.assertSame(chair, graph.resolve(bigChair));
+		Assertions.assertSame(chair, graph.resolve(chair));
+
+		// objects outside of the graph can be resolved as well
+		CataJsonObject bench = createObject("bench", "big_chair");
+		Assertions.assertSame(chair, graph.resolve(bench));
+
+		Assertions.assertTrue(graph.getDanglingReferences().isEmpty());
+		Assertions.assertTrue(graph.getCycles().isEmpty());
+	}
+
+	@Test
+	void shouldReportDanglingReferences() {
+
+		CataJsonObject lamp = createObject("lamp", "floor_lamp");
+		CataJsonObject lampOff = createObject("lamp_off", "lamp");
+		LooksLikeGraph graph = LooksLikeGraph.of(List.of(Set.of(lamp, lampOff)));
+
+		Assertions.assertSame(lamp, graph.resolve(lamp));
+		Assertions.assertSame(lamp, graph.resolve(lampOff));
+		Assertions.assertEquals(Map.of("lamp", "floor_lamp"), graph.getDanglingReferences());
+	}
+
+	@Test
+	void shouldDetectReferenceCycles() {
+
+		CataJsonObject first = createObject("first", "second");
+		CataJsonObject second = createObject("second", "third");
+		CataJsonObject third = createObject("third", "first");
+		CataJsonObject self = createObject("self", "self");
+
+		LooksLikeGraph graph = LooksLikeGraph.of(List.of(List.of(first, second, third, self)));
+
+		Assertions.assertEquals(List.of(List.of("first", "second", "third"), List.of("self")), graph.getCycles());
+		// every member of a cycle resolves to itself
+		Assertions.assertSame(first, graph.resolve(first));
+		Assertions.assertSame(second, graph.resolve(second));
+		Assertions.assertSame(third, graph.resolve(third));
+		Assertions.assertSame(self, graph.resolve(self));
+	}
+
+	@Test
+	void shouldResolveMembersOfTwoObjectCycleTheSameWay() {
+
+		CataJsonObject a = createObject("a", "b");
+		CataJsonObject b = createObject("b", "a");
+		CataJsonObject c = createObject("c", "a");
+		CataJsonObject d = createObject("d", "c");
+
+		// cycle is entered from both directions depending on which object is visited first
+		for (List<CataJsonObject> objects : List.of(List.of(a, b, c, d), List.of(d, c, b, a))) {
+			LooksLikeGraph graph = LooksLikeGraph.of(List.of(objects));
+			Assertions.assertEquals(1, graph.getCycles().size());
+			Assertions.assertSame(a, graph.resolve(a));
+			Assertions.assertSame(b, graph.resolve(b));
+			// objects that lead into the cycle resolve to the member they enter it through
+			Assertions.assertSame(a, graph.resolve(c));
+			Assertions.assertSame(a, graph.resolve(d));
+		}
+	}
+}
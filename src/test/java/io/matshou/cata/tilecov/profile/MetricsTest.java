@@ -0,0 +1,133 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+
+public class MetricsTest {
+
+	@Test
+	void shouldCountWorkOfWorkspaceRun(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.parse("objects:400,perFile:100,overlays:0.1,seed:5")
+				.build().generate(tempDir.resolve("game"));
+
+		Metrics metrics = Metrics.getDefault();
+		metrics.reset();
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(data.getGameDir())
+				.withJsonTargets("items", "monsters").withOutputDir(tempDir.resolve("output"))
+				.withProfiler(Profiler.disabled()).excludeOverlays().build();
+		workspace.load();
+		workspace.writeReport();
+
+		long bytes = 0;
+		for (Path jsonFile : data.getJsonFiles()) {
+			bytes += Files.size(jsonFile);
+		}
+		Assertions.assertEquals(data.getJsonFiles().size(), metrics.getFilesParsed());
+		Assertions.assertEquals(bytes, metrics.getBytesRead());
+		Assertions.assertEquals(data.getObjectCount(), metrics.getObjectsLoaded());
+		Assertions.assertTrue(metrics.getFilterRejections().getOrDefault("NO_OVERLAYS", 0L) > 0);
+		Assertions.assertEquals(data.getTilesetDirs().size(), metrics.getCoverageEvaluations());
+		Assertions.assertTrue(metrics.getObjectsClassified() > 0);
+
+		// each object is either rejected once or classified once per tileset, not again for its directory
+		long rejected = metrics.getFilterRejections().values().stream().mapToLong(Long::longValue).sum();
+		long classified = metrics.getObjectsClassified() / metrics.getCoverageEvaluations();
+		Assertions.assertEquals(data.getObjectCount(), rejected + classified);
+		Assertions.assertEquals(data.getTilesetDirs().size(), metrics.getPagesWritten());
+
+		// phases are recorded even though profiling is not enabled
+		for (String phase : List.of("parse data/json", "classify coverage", "write report")) {
+			Metrics.PhaseLatency latency = metrics.getPhaseLatencies().get(phase);
+			Assertions.assertNotNull(latency, phase);
+			Assertions.assertTrue(latency.getCount() > 0);
+			Assertions.assertTrue(latency.getMaxNanos() <= latency.getTotalNanos());
+		}
+		metrics.reset();
+		Assertions.assertEquals(0, metrics.getFilesParsed());
+		Assertions.assertTrue(metrics.getPhaseLatencies().isEmpty());
+	}
+
+	@Test
+	void shouldExposeMetricsThroughMBeanServer() throws JMException {
+
+		Metrics metrics = Metrics.getDefault();
+		metrics.reset();
+		metrics.fileParsed(1024, 10);
+		metrics.phaseCompleted("phase", 1_000_000);
+
+		ObjectName name = Metrics.register();
+		Assertions.assertEquals(name, Metrics.register());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Assertions.assertEquals(1L, server.getAttribute(name, "FilesParsed"));
+		Assertions.assertEquals(1024L, server.getAttribute(name, "BytesRead"));
+		Assertions.assertEquals(10L, server.getAttribute(name, "ObjectsLoaded"));
+		Assertions.assertEquals(1, ((TabularData) server.getAttribute(name, "PhaseLatencies")).size());
+		metrics.reset();
+	}
+
+	@Test
+	void shouldWritePrometheusTextfile(@TempDir Path tempDir) throws IOException {
+
+		Metrics metrics = Metrics.getDefault();
+		metrics.reset();
+		metrics.fileParsed(2048, 3);
+		metrics.filterRejected("NO_OVERLAYS");
+		metrics.phaseCompleted("parse \"data\"", 1_500_000_000L);
+
+		Path file = metrics.writeTextfile(tempDir);
+		Assertions.assertEquals(tempDir.resolve(Metrics.TEXTFILE_NAME), file);
+		List<String> lines = Files.readAllLines(file);
+		Assertions.assertTrue(lines.contains("# TYPE tilecov_files_parsed_total counter"));
+		Assertions.assertTrue(lines.contains("tilecov_files_parsed_total 1"));
+		Assertions.assertTrue(lines.contains("tilecov_bytes_read_total 2048"));
+		Assertions.assertTrue(lines.contains("tilecov_filter_rejections_total{filter=\"NO_OVERLAYS\"} 1"));
+		Assertions.assertTrue(lines.contains("tilecov_phase_duration_seconds_sum{phase=\"parse \\\"data\\\"\"} 1.500000"));
+		Assertions.assertTrue(lines.contains("tilecov_phase_duration_seconds_count{phase=\"parse \\\"data\\\"\"} 1"));
+		// no temporary files are left behind
+		try (var stream = Files.list(tempDir)) {
+			Assertions.assertEquals(1, stream.count());
+		}
+		// textfile collector may run as another user, so the file is as readable as any other new file
+		if (Files.getFileStore(tempDir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			Path otherFile = Files.createFile(tempDir.resolve("other.txt"));
+			Assertions.assertEquals(Files.getPosixFilePermissions(otherFile), Files.getPosixFilePermissions(file));
+		}
+		metrics.reset();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+
+public class ProfilerTest {
+
+	@Test
+	void shouldNotRecordMeasurementsWhenDisabled() throws IOException {
+
+		Profiler profiler = Profiler.disabled();
+		try (Profiler.Phase ignored = profiler.phase("phase")) {
+			Assertions.assertEquals("result", profiler.measure(Profiler.Kind.FILE, "file", 10, () -> "result"));
+		}
+		Assertions.assertFalse(profiler.isEnabled());
+		Assertions.assertTrue(profiler.getPhases().isEmpty());
+		Assertions.assertTrue(profiler.getItems(Profiler.Kind.FILE, Profiler.bySlowest()).isEmpty());
+	}
+
+	@Test
+	void shouldAggregatePhasesByName() {
+
+		Profiler profiler = Profiler.create();
+		for (String name : List.of("first", "second", "first")) {
+			try (Profiler.Phase ignored = profiler.phase(name)) {
+				Assertions.assertTrue(profiler.isEnabled());
+			}
+		}
+		List<Profiler.Sample> phases = profiler.getPhases();
+		Assertions.assertEquals(List.of("first", "second"),
+				phases.stream().map(Profiler.Sample::getName).collect(Collectors.toList()));
+		Assertions.assertEquals(2, phases.get(0).getCount());
+		Assertions.assertEquals(1, phases.get(1).getCount());
+	}
+
+	@Test
+	void shouldRankItemsBySlowest() throws IOException {
+
+		Profiler profiler = Profiler.create();
+		profiler.measure(Profiler.Kind.TILESET, "fast", -1, () -> null);
+		profiler.measure(Profiler.Kind.TILESET, "slow", -1, () -> {
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return null;
+		});
+		List<Profiler.Sample> items = profiler.getItems(Profiler.Kind.TILESET, Profiler.bySlowest());
+		Assertions.assertEquals("slow", items.get(0).getName());
+		Assertions.assertEquals("fast", items.get(1).getName());
+		Assertions.assertTrue(profiler.getItems(Profiler.Kind.FILE, Profiler.bySlowest()).isEmpty());
+	}
+
+	@Test
+	void shouldProfileWorkspacePhasesAndItems(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.parse("objects:500,perFile:100,seed:7")
+				.build().generate(tempDir.resolve("game"));
+
+		Profiler profiler = Profiler.create();
+		Path outputDir = tempDir.resolve("output");
+		CoverageWorkspace workspace = CoverageWorkspace.Builder.create(data.getGameDir())
+				.withJsonTargets("items", "monsters").withOutputDir(outputDir).withProfiler(profiler).build();
+		workspace.load();
+		workspace.writeReport();
+
+		List<String> phases = profiler.getPhases().stream()
+				.map(Profiler.Sample::getName).collect(Collectors.toList());
+		for (String phase : List.of("walk data/json", "parse data/json",
+				"resolve references", "load tilesets", "classify coverage", "write report")) {
+			Assertions.assertTrue(phases.contains(phase), phase);
+		}
+		List<Profiler.Sample> files = profiler.getItems(Profiler.Kind.FILE, Profiler.bySlowest());
+		Assertions.assertEquals(data.getJsonFiles().size(), files.size());
+		for (Profiler.Sample file : files) {
+			Assertions.assertTrue(file.getName().endsWith(".json"));
+			Assertions.assertTrue(file.getSize() > 0);
+		}
+		Assertions.assertEquals(data.getTilesetDirs().size(),
+				profiler.getItems(Profiler.Kind.TILESET, Profiler.bySlowest()).size());
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		profiler.printSummary(new PrintStream(stream, true, StandardCharsets.UTF_8), 3);
+		String summary = stream.toString(StandardCharsets.UTF_8);
+		Assertions.assertTrue(summary.contains("parse data/json"));
+		Assertions.assertTrue(summary.contains("slowest file"));
+
+		Path profileFile = profiler.writeToFile(outputDir);
+		Assertions.assertEquals(outputDir.resolve(Profiler.FILE_NAME), profileFile);
+		JsonObject json = JsonParser.parseString(Files.readString(profileFile)).getAsJsonObject();
+		Assertions.assertEquals(phases.size(), json.getAsJsonArray("phases").size());
+		Assertions.assertEquals(files.size(), json.getAsJsonArray("files").size());
+		Assertions.assertEquals(data.getTilesetDirs().size(), json.getAsJsonArray("tilesets").size());
+
+		// profile is readable by the same users as any other file created in output directory
+		if (Files.getFileStore(outputDir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			Path otherFile = Files.createFile(outputDir.resolve("other.txt"));
+			Assertions.assertEquals(Files.getPosixFilePermissions(otherFile), Files.getPosixFilePermissions(profileFile));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.matshou.cata.tilecov.coverage.CoverageWorkspace;
+import io.matshou.cata.tilecov.generator.GameDataGenerator;
+import io.matshou.cata.tilecov.generator.GeneratedGameData;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TilecovEventTest {
+
+	private static List<RecordedEvent> getEvents(List<RecordedEvent> events, Class<? extends TilecovEvent> type) {
+
+		String name = TilecovEvent.NAME_PREFIX + type.getSimpleName().replace("Event", "");
+		return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+	}
+
+	@Test
+	void shouldRecordEventsOfWorkspaceRun(@TempDir Path tempDir) throws IOException {
+
+		GeneratedGameData data = GameDataGenerator.Builder.parse("objects:300,perFile:100,seed:3")
+				.build().generate(tempDir.resolve("game"));
+
+		Path recordingFile = tempDir.resolve("tilecov.jfr");
+		try (Recording recording = new Recording()) {
+			for (Class<? extends TilecovEvent> type : List.of(FileParseEvent.class, TileConfigLoadEvent.class,
+					CoverageEvaluationEvent.class, LooksLikeResolutionEvent.class, FileResolutionEvent.class,
+					ReportPageEvent.class)) {
+				recording.enable(type).withoutThreshold();
+			}
+			recording.start();
+			CoverageWorkspace workspace = CoverageWorkspace.Builder.create(data.getGameDir())
+					.withJsonTargets("items", "monsters").withOutputDir(tempDir.resolve("output")).build();
+			workspace.load();
+			workspace.writeReport();
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		String tilesetName = "synthetic_tileset";
+
+		List<RecordedEvent> fileParseEvents = getEvents(events, FileParseEvent.class);
+		Assertions.assertEquals(data.getJsonFiles().size(), fileParseEvents.size());
+		int objectCount = 0;
+		for (RecordedEvent event : fileParseEvents) {
+			Assertions.assertTrue(event.getString("path").endsWith(".json"));
+			Assertions.assertTrue(event.getLong("byteSize") > 0);
+			objectCount += event.getInt("objectCount");
+		}
+		Assertions.assertEquals(data.getObjectCount(), objectCount);
+
+		List<RecordedEvent> tileConfigEvents = getEvents(events, TileConfigLoadEvent.class);
+		Assertions.assertEquals(1, tileConfigEvents.size());
+		Assertions.assertEquals(tilesetName, tileConfigEvents.get(0).getString("tilesetName"));
+		Assertions.assertTrue(tileConfigEvents.get(0).getLong("byteSize") > 0);
+
+		List<RecordedEvent> coverageEvents = getEvents(events, CoverageEvaluationEvent.class);
+		Assertions.assertEquals(1, coverageEvents.size());
+		Assertions.assertEquals(tilesetName, coverageEvents.get(0).getString("tilesetName"));
+
+		// graph over all objects is built once and objects of each file are resolved once
+		List<RecordedEvent> looksLikeEvents = getEvents(events, LooksLikeResolutionEvent.class);
+		Assertions.assertEquals(1, looksLikeEvents.stream().filter(e -> e.getInt("objectCount") > 0).count());
+		for (RecordedEvent event : looksLikeEvents) {
+			Assertions.assertTrue(event.getString("path").isEmpty());
+		}
+		List<RecordedEvent> resolutionEvents = getEvents(events, FileResolutionEvent.class);
+		Assertions.assertTrue(resolutionEvents.size() > data.getJsonFiles().size());
+		for (RecordedEvent event : resolutionEvents) {
+			Assertions.assertFalse(event.getString("path").isEmpty());
+		}
+
+		List<RecordedEvent> pageEvents = getEvents(events, ReportPageEvent.class);
+		Assertions.assertEquals(1, pageEvents.size());
+		Assertions.assertTrue(pageEvents.get(0).getString("path").endsWith(tilesetName + ".html"));
+		Assertions.assertTrue(pageEvents.get(0).getLong("byteSize") > 0);
+	}
+}
@@ -21,14 +21,15 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import io.matshou.cata.tilecov.UnitTestResources;
 import io.matshou.cata.tilecov.json.CataIdentifiableFilter;
@@ -111,4 +112,52 @@ public class CataJsonFileTreeTest extends UnitTestResources {
 			Assertions.assertFalse(objectId.isEmpty());
 		}
 	}
+
+	@Test
+	void shouldMatchSerialTreeWhenParsingInParallel() throws IOException {
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (Path target : new Path[]{ null, Paths.get("items") }) {
+				CataJsonFileTree serialTree = CataJsonFileTree.Builder.create(jsonDir).withTarget(target).build();
+				CataJsonFileTree parallelTree = CataJsonFileTree.Builder.create(jsonDir)
+						.withTarget(target).withPool(pool).build();
+
+				Assertions.assertEquals(serialTree.keySet(), parallelTree.keySet());
+				for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : serialTree.entrySet()) {
+					List<String> expected = entry.getValue().stream()
+							.map(CataJsonObject::toString).collect(Collectors.toList());
+					List<String> actual = Objects.requireNonNull(parallelTree.get(entry.getKey())).stream()
+							.map(CataJsonObject::toString).collect(Collectors.toList());
+					Assertions.assertEquals(expected, actual, entry.getKey().toString());
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void shouldAggregateDirectoryEntryInFileOrder() throws IOException {
+
+		CataJsonFileTree fileTree = new CataJsonFileTree(jsonDir);
+		assertDirectoryEntryInFileOrder(fileTree);
+
+		fileTree.reload(List.of(jsonDir.resolve(JSON_FILES_PATHS[2])), new HashMap<>());
+		assertDirectoryEntryInFileOrder(fileTree);
+	}
+
+	private void assertDirectoryEntryInFileOrder(CataJsonFileTree fileTree) {
+
+		Set<String> expected = new LinkedHashSet<>();
+		for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : fileTree.entrySet()) {
+			if (!entry.getKey().equals(jsonDir)) {
+				entry.getValue().forEach(o -> expected.add(o.toString()));
+			}
+		}
+		List<String> actual = Objects.requireNonNull(fileTree.get(jsonDir)).stream()
+				.map(CataJsonObject::toString).collect(Collectors.toList());
+		Assertions.assertEquals(new ArrayList<>(expected), actual);
+	}
 }
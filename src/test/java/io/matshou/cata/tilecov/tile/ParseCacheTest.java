@@ -0,0 +1,208 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.CataJsonLoader;
+import io.matshou.cata.tilecov.json.CataJsonObject;
+
+public class ParseCacheTest extends UnitTestResources {
+
+	private final IdDictionary dictionary = new IdDictionary();
+	private Path jsonDir, cacheDir;
+
+	@Override
+	protected void setupUnitTest(File tempDir) throws IOException {
+		super.setupUnitTest(tempDir);
+		jsonDir = getTempDir().resolve("data/json");
+		cacheDir = getTempDir().resolve("cache");
+	}
+
+	private static void assertSameFileTree(CataJsonFileTree expected, CataJsonFileTree actual) {
+
+		Assertions.assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<Path, ImmutableSet<CataJsonObject>> entry : expected.entrySet()) {
+			List<String> expectedObjects = entry.getValue().stream()
+					.map(CataJsonObject::toString).collect(Collectors.toList());
+			List<String> actualObjects = Objects.requireNonNull(actual.get(entry.getKey())).stream()
+					.map(CataJsonObject::toString).collect(Collectors.toList());
+			Assertions.assertEquals(expectedObjects, actualObjects);
+		}
+	}
+
+	@Test
+	void shouldLoadUnchangedFilesFromCache() throws IOException {
+
+		CataJsonFileTree expected = new CataJsonFileTree(jsonDir);
+
+		ParseCache coldCache = new ParseCache(cacheDir, false);
+		CataJsonFileTree coldTree = CataJsonFileTree.Builder.create(jsonDir).withCache(coldCache).build();
+		Assertions.assertEquals(0, coldCache.getHitCount());
+		Assertions.assertEquals(5, coldCache.getMissCount());
+		assertSameFileTree(expected, coldTree);
+
+		ParseCache warmCache = new ParseCache(cacheDir, false);
+		CataJsonFileTree warmTree = CataJsonFileTree.Builder.create(jsonDir).withCache(warmCache).build();
+		Assertions.assertEquals(5, warmCache.getHitCount());
+		Assertions.assertEquals(0, warmCache.getMissCount());
+		assertSameFileTree(expected, warmTree);
+	}
+
+	@Test
+	void shouldKeepEntriesOfDifferentRootDirectoriesApart() throws IOException {
+
+		// another game directory with files under the same relative paths
+		Path otherJsonDir = getTempDir().resolve("other/data/json");
+		try (Stream<Path> stream = Files.walk(jsonDir)) {
+			for (Path file : stream.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				Path target = otherJsonDir.resolve(jsonDir.relativize(file));
+				Files.createDirectories(target.getParent());
+				Files.copy(file, target);
+			}
+		}
+		Files.writeString(otherJsonDir.resolve("items/guns.json"),
+				"[ { \"id\": \"other_gun\", \"type\": \"GUN\" } ]", StandardCharsets.UTF_8);
+
+		CataJsonFileTree.Builder.create(jsonDir).withCache(new ParseCache(cacheDir, false)).build();
+		CataJsonFileTree.Builder.create(otherJsonDir).withCache(new ParseCache(cacheDir, false)).build();
+
+		ParseCache cache = new ParseCache(cacheDir, false);
+		CataJsonFileTree tree = CataJsonFileTree.Builder.create(jsonDir).withCache(cache).build();
+		CataJsonFileTree otherTree = CataJsonFileTree.Builder.create(otherJsonDir).withCache(cache).build();
+		Assertions.assertEquals(10, cache.getHitCount());
+		Assertions.assertEquals(0, cache.getMissCount());
+		assertSameFileTree(new CataJsonFileTree(jsonDir), tree);
+		assertSameFileTree(new CataJsonFileTree(otherJsonDir), otherTree);
+	}
+
+	@Test
+	void shouldInvalidateChangedFiles() throws IOException {
+
+		CataJsonFileTree.Builder.create(jsonDir).withCache(new ParseCache(cacheDir, true)).build();
+
+		Path slugs = jsonDir.resolve("monsters/slugs.json");
+		FileTime modifiedTime = Files.getLastModifiedTime(slugs);
+		String content = Files.readString(slugs);
+		Files.writeString(slugs, content.replace("mon_slug_giant", "mon_slug_small"));
+		// file time is preserved so only content hash can detect the change
+		Files.setLastModifiedTime(slugs, modifiedTime);
+
+		ParseCache cache = new ParseCache(cacheDir, true);
+		CataJsonFileTree fileTree = CataJsonFileTree.Builder.create(jsonDir).withCache(cache).build();
+		Assertions.assertEquals(4, cache.getHitCount());
+		Assertions.assertEquals(1, cache.getMissCount());
+		Assertions.assertTrue(fileTree.getObjectIds().contains("mon_slug_small"));
+		Assertions.assertFalse(fileTree.getObjectIds().contains("mon_slug_giant"));
+	}
+
+	@Test
+	void shouldParseFilesWithCorruptedCacheEntries() throws IOException {
+
+		CataJsonFileTree expected = CataJsonFileTree.Builder.create(jsonDir)
+				.withCache(new ParseCache(cacheDir, false)).build();
+
+		List<Path> entries;
+		try (Stream<Path> stream = Files.walk(cacheDir)) {
+			entries = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		Assertions.assertEquals(5, entries.size());
+		for (Path entry : entries) {
+			Files.write(entry, new byte[]{ 1, 2, 3 });
+		}
+		ParseCache cache = new ParseCache(cacheDir, false);
+		CataJsonFileTree fileTree = CataJsonFileTree.Builder.create(jsonDir).withCache(cache).build();
+		Assertions.assertEquals(5, cache.getMissCount());
+		assertSameFileTree(expected, fileTree);
+	}
+
+	@Test
+	void shouldLoadFilesWhenCacheEntriesCannotBeWritten() throws IOException {
+
+		CataJsonFileTree expected = new CataJsonFileTree(jsonDir);
+
+		// cache entries cannot be written when their directory cannot be created
+		Files.createDirectories(cacheDir);
+		Files.createFile(cacheDir.resolve("json"));
+
+		ParseCache cache = new ParseCache(cacheDir, false);
+		CataJsonFileTree fileTree = CataJsonFileTree.Builder.create(jsonDir).withCache(cache).build();
+		Assertions.assertEquals(5, cache.getMissCount());
+		assertSameFileTree(expected, fileTree);
+		try (Stream<Path> stream = Files.list(cacheDir)) {
+			Assertions.assertEquals(List.of(cacheDir.resolve("json")), stream.collect(Collectors.toList()));
+		}
+
+		// failures are recorded for the caller to report and are taken only once
+		Map<Path, Exception> failures = cache.takeWriteFailures();
+		Assertions.assertEquals(5, failures.size());
+		for (Path file : failures.keySet()) {
+			Assertions.assertTrue(file.startsWith(jsonDir));
+		}
+		Assertions.assertTrue(cache.takeWriteFailures().isEmpty());
+	}
+
+	@Test
+	void shouldCacheStringsLongerThanModifiedUtf8Limit() throws IOException {
+
+		Path jsonFile = jsonDir.resolve("items/long_description.json");
+		String description = "x".repeat(70_000) + "\u00e9";
+		Files.writeString(jsonFile, "[ { \"type\": \"GENERIC\", \"id\": \"long_item\", " +
+				"\"description\": \"" + description + "\" } ]");
+
+		new ParseCache(cacheDir, false).loadJsonObjects(jsonDir, jsonFile, CataJsonLoader.STREAMING);
+		ParseCache cache = new ParseCache(cacheDir, false);
+		List<CataJsonObject> objects = cache.loadJsonObjects(jsonDir, jsonFile, CataJsonLoader.STREAMING);
+
+		Assertions.assertEquals(1, cache.getHitCount());
+		Assertions.assertEquals(1, objects.size());
+		Assertions.assertEquals(description, objects.get(0).getDescription());
+	}
+
+	@Test
+	void shouldLoadTileIdsFromCache() throws IOException {
+
+		Path tilesetDir = getTempDir().resolve("gfx/sample_tileset");
+		CataTileset expected = new CataTileset(tilesetDir);
+
+		new CataTileset(tilesetDir, new ParseCache(cacheDir, false));
+		ParseCache cache = new ParseCache(cacheDir, false);
+		CataTileset tileset = new CataTileset(tilesetDir, cache);
+
+		Assertions.assertEquals(1, cache.getHitCount());
+		Assertions.assertEquals(expected.getTileIds(dictionary), tileset.getTileIds(dictionary));
+		Assertions.assertEquals(expected.getTileIdIndex().getAdditionalTileIds(),
+				tileset.getTileIdIndex().getAdditionalTileIds());
+	}
+}
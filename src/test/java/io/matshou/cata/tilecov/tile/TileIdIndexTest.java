@@ -0,0 +1,97 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.matshou.cata.tilecov.UnitTestResources;
+import io.matshou.cata.tilecov.json.CataIdentifiableFilter;
+import io.matshou.cata.tilecov.json.NullJsonObjectException;
+import io.matshou.cata.tilecov.json.TileAtlasJsonObject;
+import io.matshou.cata.tilecov.json.TilesJsonObject;
+
+public class TileIdIndexTest extends UnitTestResources {
+
+	private final IdDictionary dictionary = new IdDictionary();
+
+	@Test
+	void shouldIndexTileIdsAndAdditionalTileIds() throws IOException {
+
+		TileIdIndex index = TileIdIndex.read(getTempDir().resolve("gfx/sample_tileset/tile_config.json"));
+
+		Assertions.assertEquals(6, index.getTileCount());
+		Assertions.assertTrue(index.getTileIds(dictionary).contains("overlay_mutation_GOURMAND"));
+		Assertions.assertEquals(Set.of("10mm", "t_wall", "vp_atomic_lamp", "t_dirt", "xxx", "yyy"), index.getTileIds(
+				dictionary, CataIdentifiableFilter.NO_EMPTY_ID, CataIdentifiableFilter.NO_OVERLAYS
+		));
+		Assertions.assertTrue(index.getAdditionalTileIds().containsAll(Set.of("center", "corner", "broken")));
+		Assertions.assertFalse(index.getTileIds(dictionary).contains("center"));
+	}
+
+	@Test
+	void shouldMemoizeFilteredTileIds() throws IOException {
+
+		TileIdIndex index = TileIdIndex.read(getTempDir().resolve("gfx/red_tileset/tile_config.json"));
+		Assertions.assertSame(
+				index.getTileIds(dictionary, CataIdentifiableFilter.NO_OVERLAYS, CataIdentifiableFilter.NO_EMPTY_ID),
+				index.getTileIds(dictionary, CataIdentifiableFilter.NO_EMPTY_ID, CataIdentifiableFilter.NO_OVERLAYS)
+		);
+		Assertions.assertSame(index.getTileIds(dictionary), index.getTileIds(dictionary));
+
+		// sets requested with another dictionary contain the same ids mapped to keys of that dictionary
+		IdDictionary otherDictionary = new IdDictionary();
+		TileIdSet otherIds = index.getTileIds(otherDictionary);
+		Assertions.assertSame(otherDictionary, otherIds.getDictionary());
+		Assertions.assertEquals(index.getTileIds(dictionary), otherIds);
+	}
+
+	@Test
+	void shouldMatchTileIdsInCompleteTileConfig() throws IOException {
+
+		String[] tilesets = { "sample_tileset", "red_tileset", "blue_tileset", "purple_tileset", "diamond_tileset" };
+		for (String tilesetName : tilesets) {
+			CataTileset tileset = new CataTileset(getTempDir().resolve("gfx").resolve(tilesetName));
+
+			Set<String> expected = new HashSet<>();
+			for (TileAtlasJsonObject tileAtlas : tileset.getTileConfig().getTileAtlases()) {
+				for (TilesJsonObject tile : tileAtlas.getTiles()) {
+					expected.addAll(tile.getIds());
+				}
+			}
+			Assertions.assertEquals(expected, tileset.getTileIds(dictionary), tilesetName);
+			Assertions.assertSame(tileset.getTileConfig(), tileset.getTileConfig());
+		}
+	}
+
+	@Test
+	void shouldThrowExceptionWhenTileConfigIsEmpty() throws IOException {
+
+		Path tileConfig = Files.createFile(getTempDir().resolve("tile_config.json"));
+		Assertions.assertThrows(NullJsonObjectException.class, () -> TileIdIndex.read(tileConfig));
+
+		Files.writeString(tileConfig, "{ \"tiles-new\": [] }");
+		Assertions.assertEquals(0, TileIdIndex.read(tileConfig).getTileCount());
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Cata-Tilecov - Generates tile coverage reports for Cataclysm.
+ * Copyright (C) 2022 Matthew Cain
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.matshou.cata.tilecov.tile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TileIdSetTest {
+
+	@Test
+	void shouldAssignDenseKeysToIds() {
+
+		IdDictionary dictionary = new IdDictionary();
+		Assertions.assertEquals(0, dictionary.intern("t_wall"));
+		Assertions.assertEquals(1, dictionary.intern("t_dirt"));
+		Assertions.assertEquals(0, dictionary.intern("t_wall"));
+
+		Assertions.assertEquals(-1, dictionary.indexOf("t_floor"));
+		Assertions.assertEquals("t_dirt", dictionary.get(1));
+		Assertions.assertEquals(2, dictionary.size());
+		Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(2));
+	}
+
+	@Test
+	void shouldBehaveAsSetOfIds() {
+
+		IdDictionary dictionary = new IdDictionary();
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			ids.add("id_" + i);
+			dictionary.intern("id_" + i);
+		}
+		// members that span several words away from the start of dictionary
+		Set<String> expected = Set.of("id_70", "id_71", "id_130", "id_299");
+		TileIdSet set = TileIdSet.of(dictionary, expected);
+
+		Assertions.assertEquals(expected, set);
+		Assertions.assertEquals(set, expected);
+		Assertions.assertEquals(expected.hashCode(), set.hashCode());
+		Assertions.assertEquals(4, set.size());
+		Assertions.assertTrue(set.contains("id_130"));
+		Assertions.assertFalse(set.contains("id_131"));
+		Assertions.assertFalse(set.contains("unknown"));
+		Assertions.assertFalse(set.contains(-1));
+		Assertions.assertEquals(List.of("id_70", "id_71", "id_130", "id_299"), new ArrayList<>(set));
+		Assertions.assertTrue(TileIdSet.of(dictionary, List.of()).isEmpty());
+	}
+
+	@Test
+	void shouldCombineSetsOfIds() {
+
+		IdDictionary dictionary = new IdDictionary();
+		for (int i = 0; i < 200; i++) {
+			dictionary.intern("id_" + i);
+		}
+		Set<String> first = Set.of("id_1", "id_64", "id_65", "id_150");
+		Set<String> second = Set.of("id_65", "id_150", "id_199");
+		TileIdSet firstSet = TileIdSet.of(dictionary, first);
+		TileIdSet secondSet = TileIdSet.of(dictionary, second);
+
+		Set<String> union = new HashSet<>(first);
+		union.addAll(second);
+		Assertions.assertEquals(union, firstSet.union(secondSet));
+
+		Set<String> intersection = new HashSet<>(first);
+		intersection.retainAll(second);
+		Assertions.assertEquals(intersection, firstSet.intersection(secondSet));
+
+		Set<String> difference = new HashSet<>(first);
+		difference.removeAll(second);
+		Assertions.assertEquals(difference, firstSet.difference(secondSet));
+		Assertions.assertEquals(Set.of("id_199"), secondSet.difference(firstSet));
+
+		TileIdSet otherSet = TileIdSet.of(new IdDictionary(), first);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> firstSet.union(otherSet));
+	}
+}
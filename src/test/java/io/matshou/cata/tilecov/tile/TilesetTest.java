@@ -51,6 +51,8 @@ public class TilesetTest extends UnitTestResources {
 			"gfx/blue_tileset/tileset.txt"
 	};
 
+	private final IdDictionary dictionary = new IdDictionary();
+
 	@Test
 	void shouldLoadTilesetMetadataFromPath() throws IOException {
 
@@ -137,7 +139,7 @@ public class TilesetTest extends UnitTestResources {
 			Path targetPath = getTempDir().resolve(TILESET_FILE_PATHS[i]).getParent();
 			CataTileset tileset = new CataTileset(targetPath);
 
-			Set<String> tileIds = tileset.getTileIds(
+			Set<String> tileIds = tileset.getTileIds(dictionary,
 					CataIdentifiableFilter.NO_EMPTY_ID, CataIdentifiableFilter.NO_OVERLAYS
 			);
 			Assertions.assertEquals(iter.next(), tileIds);